@@ -0,0 +1,54 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the macnificent benchmarks with the standard JMH command line
+ * options, always adding the GC profiler so that allocation rates (in
+ * particular gc.alloc.rate.norm, the number of bytes allocated per
+ * operation) are reported alongside timings.  The files loaded by
+ * OuiRegistryLoadBenchmark are written by LoadFixtures first, in this JVM
+ * rather than the forks that are measured.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class Benchmarks {
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args JMH command line options; see -h
+     * @throws Exception if the benchmarks cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListProfilers() || cmd.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        LoadFixtures.write();
+        new Runner(new OptionsBuilder().parent(cmd).addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,117 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.tools.ToolProvider;
+
+/**
+ * Writes the files that OuiRegistryLoadBenchmark loads: the test registry
+ * in v2 and v3 format, and the v3 data compiled into a class by
+ * GenerateDataFile --java.  Benchmarks.main() writes them before running
+ * any benchmarks, so the cold benchmarks' forks only open them and have
+ * loaded none of macnificent's classes when their measured call starts.
+ * They are written to target/load-fixtures, relative to the working
+ * directory, or to the directory named by the macnificent.fixtures system
+ * property.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class LoadFixtures {
+
+    static final String GENERATED_CLASS = "com.martiansoftware.macnificent.generated.OuiData";
+
+    static File dir() {
+        return new File(System.getProperty("macnificent.fixtures", "target/load-fixtures"));
+    }
+
+    static File v2File() { return new File(dir(), "v2.dat"); }
+
+    static File v3File() { return new File(dir(), "v3.dat"); }
+
+    static File classesDir() { return new File(dir(), "classes"); }
+
+    /**
+     * Returns the test registry as bundled, in v1 format
+     *
+     * @return the contents of macnificent.dat
+     * @throws IOException if the resource cannot be read
+     */
+    static byte[] v1() throws IOException {
+        InputStream in = LoadFixtures.class.getClassLoader().getResourceAsStream("macnificent.dat");
+        if (in == null) throw new IOException("macnificent.dat is not on the classpath.");
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            for (int n = in.read(buf); n >= 0; n = in.read(buf)) bout.write(buf, 0, n);
+            return bout.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the v2 and v3 files and the compiled generated class, replacing
+     * any written by an earlier build
+     *
+     * @throws Exception if the files cannot be written or the class compiled
+     */
+    static void write() throws Exception {
+        OuiRegistry reg = new OuiRegistry(new ByteArrayInputStream(v1()));
+        long lastModified = reg.getLastModified().getTime();
+        Files.createDirectories(classesDir().toPath());
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OuiDataFile.writeV2(bout, lastModified, reg.table().ouis());
+        Files.write(v2File().toPath(), bout.toByteArray());
+        bout.reset();
+        OuiDataFile.writeV3(bout, lastModified, reg.table().ouis());
+        byte[] v3 = bout.toByteArray();
+        Files.write(v3File().toPath(), v3);
+
+        StringBuilder src = new StringBuilder();
+        GenerateDataFile.writeJava(src, GENERATED_CLASS, reg.table(), v3);
+        Path file = dir().toPath().resolve("OuiData.java");
+        Files.write(file, src.toString().getBytes(StandardCharsets.US_ASCII));
+        String classpath = new File(OuiRegistry.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        if (ToolProvider.getSystemJavaCompiler().run(null, null, null, "-cp", classpath, "-d", classesDir().getPath(), file.toString()) != 0) {
+            throw new IOException("Unable to compile generated class.");
+        }
+    }
+
+    /**
+     * Writes the files, for running OuiRegistryLoadBenchmark other than via
+     * Benchmarks.main()
+     *
+     * @param args ignored
+     * @throws Exception if the files cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        write();
+        System.out.println("Wrote " + dir().getAbsolutePath());
+    }
+}
@@ -0,0 +1,92 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures parsing of MAC address strings in each separator style, both
+ * valid and invalid (in which case MacAddress(String) throws).
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MacAddressParseBenchmark {
+
+    @Param({ ":", "-", ".", "_", " ", "" })
+    public String separator;
+
+    @Param({ "true", "false" })
+    public boolean valid;
+
+    private final String[] _inputs = new String[256];
+
+    private int _next;
+
+    @Setup
+    public void setup() {
+        java.util.Random r = new java.util.Random(42);
+        for (int i = 0; i < _inputs.length; ++i) {
+            long mac = r.nextLong() & 0xffffffffffffL;
+            StringBuilder buf = new StringBuilder();
+            for (int b = 5; b >= 0; --b) {
+                buf.append(String.format(r.nextBoolean() ? "%02x" : "%02X", (mac >>> (8 * b)) & 0xff));
+                if (b > 0) buf.append(separator);
+            }
+            // invalid inputs fail on their last character, the worst case for the parser
+            if (!valid) buf.setCharAt(buf.length() - 1, 'g');
+            _inputs[i] = buf.toString();
+        }
+    }
+
+    private String next() {
+        return _inputs[_next++ & (_inputs.length - 1)];
+    }
+
+    @Benchmark
+    public Object newMacAddress() {
+        try {
+            return new MacAddress(next());
+        } catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public long parse() {
+        return MacAddressParser.parse(next());
+    }
+}
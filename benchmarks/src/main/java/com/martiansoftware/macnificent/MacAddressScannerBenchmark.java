@@ -0,0 +1,99 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures rewriting the MAC addresses in a typical DHCP log line, using
+ * MacAddressScanner and using a regex followed by OuiRegistry.format(String)
+ * as applications did before the scanner existed.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MacAddressScannerBenchmark {
+
+    private static final String LINE = "Oct 17 09:12:44 gw dhcpd[1201]: DHCPACK on 10.0.4.17 to 00:21:9b:07:20:74 (laptop-17) via eth1 relay 00:00:00:11:22:33";
+
+    private static final Pattern MAC = Pattern.compile("\\b[0-9a-fA-F]{2}(?:[:-][0-9a-fA-F]{2}){5}\\b");
+
+    private OuiRegistry _registry;
+    private final StringBuilder _out = new StringBuilder(256);
+    private ByteBuffer _in;
+    private final ByteBuffer _outBytes = ByteBuffer.allocate(256);
+    private MacAddressScanner.Rewriter _rewriter;
+
+    @Setup
+    public void setup() throws IOException {
+        _registry = new OuiRegistry();
+        _in = ByteBuffer.wrap(LINE.getBytes(StandardCharsets.UTF_8));
+        _rewriter = new MacAddressScanner.Rewriter(_registry);
+    }
+
+    @Benchmark
+    public int scan() {
+        return MacAddressScanner.scan(LINE, (mac, start, end) -> {});
+    }
+
+    @Benchmark
+    public StringBuilder rewrite() throws IOException {
+        _out.setLength(0);
+        MacAddressScanner.rewrite(LINE, _registry, _out);
+        return _out;
+    }
+
+    @Benchmark
+    public ByteBuffer rewriteBytes() {
+        _in.clear();
+        _outBytes.clear();
+        _rewriter.rewrite(_in, _outBytes, true);
+        return _outBytes;
+    }
+
+    @Benchmark
+    public String regexThenFormat() {
+        Matcher m = MAC.matcher(LINE);
+        StringBuffer buf = new StringBuffer();
+        while (m.find()) m.appendReplacement(buf, Matcher.quoteReplacement(_registry.format(m.group())));
+        m.appendTail(buf);
+        return buf.toString();
+    }
+}
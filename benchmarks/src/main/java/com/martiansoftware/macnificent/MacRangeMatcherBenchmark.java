@@ -0,0 +1,88 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures classifying a MAC address against a policy of overlapping
+ * prefixes, using MacRangeMatcher and using a linear scan of the ranges as
+ * applications did before it existed.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MacRangeMatcherBenchmark {
+
+    @Param({ "100", "10000" })
+    public int ranges;
+
+    private MacRange[] _ranges;
+    private MacRangeMatcher _matcher;
+    private final long[] _macs = new long[1024];
+    private int _next;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(42);
+        _ranges = new MacRange[ranges];
+        for (int i = 0; i < ranges; ++i) _ranges[i] = MacRange.prefix(r.nextLong() & MacAddress.MAC_MASK, 16 + r.nextInt(21));
+        _matcher = new MacRangeMatcher(_ranges);
+        for (int i = 0; i < _macs.length; ++i) {
+            _macs[i] = i % 2 == 0 ? _ranges[r.nextInt(ranges)].first() : r.nextLong() & MacAddress.MAC_MASK;
+        }
+    }
+
+    private long nextMac() {
+        return _macs[_next++ & (_macs.length - 1)];
+    }
+
+    @Benchmark
+    public int matcher() {
+        return _matcher.match(nextMac());
+    }
+
+    @Benchmark
+    public int linearScan() {
+        long mac = nextMac();
+        int result = MacRangeMatcher.NOT_FOUND;
+        for (int i = 0; i < _ranges.length; ++i) {
+            if (_ranges[i].contains(mac) && (result == MacRangeMatcher.NOT_FOUND || _ranges[i].size() < _ranges[result].size())) result = i;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,105 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the OuiRegistry.format() overloads, and formatTo() into a reused
+ * StringBuilder, over a mix of assigned and unassigned MAC addresses, with
+ * both the default and the compact registry.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OuiRegistryFormatBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean compact;
+
+    private OuiRegistry _registry;
+
+    private final long[] _macs = new long[1024];
+    private final MacAddress[] _macAddresses = new MacAddress[_macs.length];
+    private final String[] _strings = new String[_macs.length];
+
+    private final StringBuilder _buf = new StringBuilder();
+
+    private int _next;
+
+    @Setup
+    public void setup() throws IOException {
+        _registry = new OuiRegistry();
+        Random r = new Random(42);
+        for (int i = 0; i < _macs.length; ++i) {
+            long mac = r.nextLong() & 0xffffffffffffL;
+            // three quarters assigned
+            if ((i & 3) != 0) mac = _registry.getOuiByIndex(r.nextInt(_registry.size())).getPrefix() | (mac & 0xffffff);
+            _macs[i] = mac;
+            _macAddresses[i] = MacAddress.fromLong(mac);
+            _strings[i] = _macAddresses[i].toString();
+        }
+        if (compact) _registry = _registry.compact();
+    }
+
+    private int next() {
+        return _next++ & (_macs.length - 1);
+    }
+
+    @Benchmark
+    public String formatString() {
+        return _registry.format(_strings[next()]);
+    }
+
+    @Benchmark
+    public String formatMacAddress() {
+        return _registry.format(_macAddresses[next()]);
+    }
+
+    @Benchmark
+    public String formatLong() {
+        return _registry.format(_macs[next()]);
+    }
+
+    @Benchmark
+    public int formatToStringBuilder() throws IOException {
+        _buf.setLength(0);
+        _registry.formatTo(_macs[next()], _buf);
+        return _buf.length();
+    }
+}
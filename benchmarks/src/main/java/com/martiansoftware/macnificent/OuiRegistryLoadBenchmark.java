@@ -0,0 +1,202 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures OuiRegistry construction from the bundled data file (v1, via the
+ * classpath or a stream), from the same data in v2 format (via a stream
+ * or memory-mapped), and in v3 format (memory-mapped, or compiled into a
+ * class by GenerateDataFile --java).
+ * The "warm" benchmarks measure steady-state
+ * construction in a JIT-compiled JVM; the "cold" benchmarks measure a single
+ * construction in each of many fresh JVMs, as an application would see at
+ * startup.  The files they load are written beforehand by LoadFixtures.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class OuiRegistryLoadBenchmark {
+
+    private File _v2File;
+    private File _v3File;
+
+    /**
+     * Only resolves the files written by LoadFixtures, so that the cold
+     * benchmarks start with none of macnificent's classes loaded and
+     * nothing read
+     */
+    @Setup
+    public void setup() throws IOException {
+        _v2File = LoadFixtures.v2File();
+        _v3File = LoadFixtures.v3File();
+        if (!_v2File.isFile() || !_v3File.isFile()) {
+            throw new IOException("Missing " + LoadFixtures.dir() + "; run via Benchmarks or LoadFixtures first.");
+        }
+    }
+
+    /**
+     * The v1 and v2 data in memory, for the warm stream benchmarks
+     */
+    @State(Scope.Benchmark)
+    public static class Streams {
+
+        private byte[] _v1;
+        private byte[] _v2;
+
+        @Setup
+        public void setup(OuiRegistryLoadBenchmark files) throws IOException {
+            _v1 = LoadFixtures.v1();
+            _v2 = Files.readAllBytes(files._v2File.toPath());
+        }
+    }
+
+    /**
+     * The class generated by GenerateDataFile --java from the v3 data and
+     * compiled by LoadFixtures, but not yet loaded, in each fork
+     */
+    @State(Scope.Benchmark)
+    public static class GeneratedClass {
+
+        private URLClassLoader _loader;
+
+        @Setup
+        public void setup() throws IOException {
+            URL classes = LoadFixtures.classesDir().toURI().toURL();
+            _loader = new URLClassLoader(new URL[] { classes }, GeneratedClass.class.getClassLoader());
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            _loader.close();
+        }
+
+        ByteBuffer buffer() throws Exception {
+            return (ByteBuffer) Class.forName(LoadFixtures.GENERATED_CLASS, true, _loader).getMethod("buffer").invoke(null);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public OuiRegistry warmDefaultResource() throws IOException {
+        return new OuiRegistry();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public OuiRegistry warmV1Stream(Streams streams) throws IOException {
+        return new OuiRegistry(new ByteArrayInputStream(streams._v1));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public OuiRegistry warmV2Stream(Streams streams) throws IOException {
+        return new OuiRegistry(new ByteArrayInputStream(streams._v2));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public OuiRegistry warmV2Mapped() throws IOException {
+        return new OuiRegistry(_v2File);
+    }
+
+    /**
+     * Includes verifying the checksum
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public OuiRegistry warmV3Mapped() throws IOException {
+        return new OuiRegistry(_v3File);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public OuiRegistry coldDefaultResource() throws IOException {
+        return new OuiRegistry();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public OuiRegistry coldV2Mapped() throws IOException {
+        return new OuiRegistry(_v2File);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public OuiRegistry coldV3Mapped() throws IOException {
+        return new OuiRegistry(_v3File);
+    }
+
+    /**
+     * Includes loading and initializing the generated class
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public OuiRegistry coldGeneratedClass(GeneratedClass generated) throws Exception {
+        return new OuiRegistry(generated.buffer());
+    }
+}
@@ -0,0 +1,118 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures OuiRegistry.getOui() for MAC addresses whose OUI is assigned
+ * (hit), unassigned (miss), and assigned only once the locally
+ * administered or multicast bit is cleared (local, multicast), in both the
+ * default and the compact registry.  indexOf() shows the cost of the lookup
+ * alone, since the compact registry creates an Oui for every getOui().
+ * indexOfDirectBuffer() reads each MAC address in place from a direct
+ * buffer, as when processing captured frames.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OuiRegistryLookupBenchmark {
+
+    @Param({ "hit", "miss", "local", "multicast" })
+    public String kind;
+
+    @Param({ "false", "true" })
+    public boolean compact;
+
+    private OuiRegistry _registry;
+
+    private final long[] _macs = new long[1024];
+
+    private final MacAddress[] _macAddresses = new MacAddress[_macs.length];
+
+    private final ByteBuffer _direct = ByteBuffer.allocateDirect(_macs.length * MacAddress.ETH_ALEN);
+
+    private int _next;
+
+    @Setup
+    public void setup() throws IOException {
+        _registry = new OuiRegistry();
+        Random r = new Random(42);
+        for (int i = 0; i < _macs.length; ) {
+            long mac = r.nextLong() & 0xffffffffffffL & ~(0x03L << 40);
+            boolean assigned = _registry.getOui(mac) != null;
+            if (kind.equals("miss")) {
+                if (assigned) continue;
+            } else {
+                if (!assigned) {
+                    mac = _registry.getOuiByIndex(r.nextInt(_registry.size())).getPrefix() | (mac & 0xffffff);
+                    if ((mac & (0x03L << 40)) != 0) continue;
+                }
+                if (kind.equals("local")) mac |= 0x02L << 40;
+                if (kind.equals("multicast")) mac |= 0x01L << 40;
+                if (!kind.equals("hit") && _registry.getOui(mac).getPrefix() == (mac & 0xffffff000000L)) continue;
+            }
+            _macs[i] = mac;
+            _macAddresses[i] = MacAddress.fromLong(mac);
+            ++i;
+        }
+        for (int i = 0; i < _macs.length; ++i) MacAddress.toBytes(_macs[i], _direct, i * MacAddress.ETH_ALEN);
+        if (compact) _registry = _registry.compact();
+    }
+
+    @Benchmark
+    public Oui getOuiLong() {
+        return _registry.getOui(_macs[_next++ & (_macs.length - 1)]);
+    }
+
+    @Benchmark
+    public int indexOf() {
+        return _registry.indexOf(_macs[_next++ & (_macs.length - 1)]);
+    }
+
+    @Benchmark
+    public int indexOfDirectBuffer() {
+        return _registry.indexOf(_direct, (_next++ & (_macs.length - 1)) * MacAddress.ETH_ALEN);
+    }
+
+    @Benchmark
+    public Oui getOuiMacAddress() {
+        return _registry.getOui(_macAddresses[_next++ & (_macs.length - 1)]);
+    }
+}
@@ -0,0 +1,233 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * An OuiRegistry facade that is usable as soon as it is created, while the
+ * real registry loads in the background.  Until loading completes, the
+ * facade answers from an empty registry: getOui() returns null and
+ * format() returns "Unknown-" results, exactly as for a MAC address whose
+ * OUI is not in the registry.  Once loading completes, the loaded registry
+ * is swapped in behind a single volatile reference, as in
+ * ReloadableOuiRegistry, so lookups never block.
+ *
+ * Callers that would rather wait than get "Unknown-" results can call
+ * awaitReady() with a timeout, or chain work onto whenReady().  If loading
+ * fails, the facade keeps answering from the empty registry and the
+ * failure is available from getLastError().
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class AsyncOuiRegistry {
+
+    private volatile OuiRegistry _current;
+
+    /**
+     * Completes after _current has been set to the loaded registry
+     */
+    private final CompletableFuture<OuiRegistry> _ready;
+
+    /**
+     * Creates a new AsyncOuiRegistry that loads the default registry (as
+     * OuiRegistry() does) on the specified executor.
+     *
+     * @param executor the executor on which to load the registry
+     */
+    public AsyncOuiRegistry(Executor executor) {
+        this(OuiRegistry.loadAsync(executor));
+    }
+
+    /**
+     * Creates a new AsyncOuiRegistry that loads the specified data file (as
+     * OuiRegistry(File) does) on the specified executor.
+     *
+     * @param ouiDataFile the IEEE OUI data file in macnificent's binary format
+     * @param executor the executor on which to load the registry
+     */
+    public AsyncOuiRegistry(File ouiDataFile, Executor executor) {
+        this(OuiRegistry.loadAsync(ouiDataFile, executor));
+    }
+
+    /**
+     * Creates a new AsyncOuiRegistry that switches to the registry supplied
+     * by the specified future when it completes, e.g. one returned by
+     * OuiRegistry.loadAsync().
+     *
+     * @param loading the registry being loaded
+     */
+    public AsyncOuiRegistry(CompletableFuture<OuiRegistry> loading) {
+        _current = OuiRegistry.empty();
+        _ready = loading.thenApply(new Function<OuiRegistry, OuiRegistry>() {
+            @Override
+            public OuiRegistry apply(OuiRegistry registry) {
+                _current = registry;
+                return registry;
+            }
+        });
+    }
+
+    /**
+     * Returns the current registry: the loaded registry if loading has
+     * completed, or an empty registry if not.
+     *
+     * @return the current registry
+     */
+    public OuiRegistry current() {
+        return _current;
+    }
+
+    /**
+     * Returns true if the registry has been loaded.
+     *
+     * @return true if the registry has been loaded
+     */
+    public boolean isReady() {
+        return _ready.isDone() && !_ready.isCompletedExceptionally();
+    }
+
+    /**
+     * Returns a future that completes with the loaded registry once it is in
+     * use by this facade, or exceptionally if loading fails.  Completing or
+     * cancelling the returned future has no effect on this facade.
+     *
+     * @return a future that completes with the loaded registry
+     */
+    public CompletableFuture<OuiRegistry> whenReady() {
+        return _ready.thenApply(Function.identity());
+    }
+
+    /**
+     * Waits up to the specified time for the registry to be loaded.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout argument
+     * @return true if the registry has been loaded, or false if the timeout
+     * elapsed first
+     * @throws IOException if loading failed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        try {
+            _ready.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw asIOException(e.getCause());
+        } catch (CancellationException e) {
+            throw asIOException(e);
+        }
+    }
+
+    private static IOException asIOException(Throwable t) {
+        return t instanceof IOException ? (IOException) t : new IOException("Unable to load OUI registry.", t);
+    }
+
+    /**
+     * Returns the exception that caused loading to fail, or null if loading
+     * succeeded or has not yet completed.
+     *
+     * @return the exception that caused loading to fail, or null
+     */
+    public Throwable getLastError() {
+        if (!_ready.isCompletedExceptionally()) return null;
+        try {
+            _ready.getNow(null);
+            return null;
+        } catch (CancellationException e) {
+            return e;
+        } catch (CompletionException e) {
+            return e.getCause();
+        }
+    }
+
+    /**
+     * See OuiRegistry.getLastModified().  Until loading completes (or if it
+     * fails), the facade answers from an empty registry and this returns
+     * new Date(0), the epoch.
+     * @return a Date representing the last change to the current OUI registry data
+     */
+    public Date getLastModified() { return _current.getLastModified(); }
+
+    /**
+     * See OuiRegistry.size()
+     * @return the number of OUIs contained by the current registry
+     */
+    public int size() { return _current.size(); }
+
+    /**
+     * See OuiRegistry.getOui(MacAddress)
+     * @param mac the MacAddress providing the OUI to retrieve
+     * @return the requested OUI, or null if not found or not yet loaded
+     */
+    public Oui getOui(MacAddress mac) { return _current.getOui(mac); }
+
+    /**
+     * See OuiRegistry.getOui(long)
+     * @param mac the 48-bit MAC address providing the OUI to retrieve
+     * @return the requested OUI, or null if not found or not yet loaded
+     */
+    public Oui getOui(long mac) { return _current.getOui(mac); }
+
+    /**
+     * See OuiRegistry.format(MacAddress)
+     * @param mac the MacAddress to format
+     * @return the reformatted MacAddress using the manufacturer's short name
+     */
+    public String format(MacAddress mac) { return _current.format(mac); }
+
+    /**
+     * See OuiRegistry.format(long)
+     * @param mac the 48-bit MAC address to format
+     * @return the reformatted MAC address using the manufacturer's short name
+     */
+    public String format(long mac) { return _current.format(mac); }
+
+    /**
+     * See OuiRegistry.format(String)
+     * @param macString the MacAddress to format
+     * @return the reformatted macString using the manufacturer's short name,
+     * or the original, unmodified macString if it's not actually a valid MAC.
+     */
+    public String format(String macString) { return _current.format(macString); }
+
+    /**
+     * See OuiRegistry.formatTo(long, Appendable, MacAddressStyle)
+     * @param mac the 48-bit MAC address to format
+     * @param out the destination
+     * @param style the style in which to format the non-OUI portion of the MAC
+     * @throws IOException if thrown by the Appendable
+     */
+    public void formatTo(long mac, Appendable out, MacAddressStyle style) throws IOException {
+        _current.formatTo(mac, out, style);
+    }
+}
@@ -0,0 +1,374 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * OuiTable that answers lookups directly from a ByteBuffer (typically a
+ * memory-mapped file) in macnificent's v2 or v3 binary format, as described
+ * in OuiDataFile.  The checksum and name pool of v3 data are verified when
+ * the table is created.  24-bit OUIs are binary searched in place and Oui objects
+ * are materialized from the buffer the first time each one is requested.
+ * The comparatively few 28- and 36-bit assignments are read into a
+ * PrefixTrie when the table is created, and only consulted for MACs within
+ * an OUI that has been subdivided.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+final class BufferOuiTable extends OuiTable {
+
+    /**
+     * Sorted 24-bit OUIs, possibly flagged with OuiDataFile.HAS_SUB_BLOCKS
+     */
+    private final IntBuffer _keys;
+
+    /**
+     * Prefixes of the 28- and 36-bit assignments, which follow the 24-bit
+     * OUIs in position order
+     */
+    private final long[] _subPrefixes;
+
+    /**
+     * Prefix lengths of the 28- and 36-bit assignments
+     */
+    private final byte[] _subLengths;
+
+    /**
+     * Locates 28- and 36-bit assignments and their enclosing OUIs, or null if
+     * there are none
+     */
+    private final PrefixTrie _subBlocks;
+
+    /**
+     * Offsets into _pool of each assignment's manufacturer name.  In v2 files
+     * these are followed by one trailing offset marking the end of the last
+     * name; in v3 files each name is preceded by its length instead.
+     */
+    private final IntBuffer _nameOffsets;
+
+    /**
+     * Offsets into _pool of each distinct manufacturer name, in pool order,
+     * or null if the file is v2
+     */
+    private final int[] _nameStarts;
+
+    /**
+     * Distinct manufacturer names decoded so far, indexed as _nameStarts and
+     * shared by all the Oui objects that use them, or null if the file is v2
+     */
+    private final AtomicReferenceArray<String> _names;
+
+    /**
+     * UTF-8 manufacturer names
+     */
+    private final ByteBuffer _pool;
+
+    /**
+     * Index into _shortNameOffsets of each assignment's short name, or null if
+     * the file contains no short names
+     */
+    private final IntBuffer _shortNameIndexes;
+
+    /**
+     * Offsets into _shortNamePool of each distinct short name, plus one
+     * trailing offset marking the end of the last
+     */
+    private final IntBuffer _shortNameOffsets;
+
+    /**
+     * UTF-8 short names
+     */
+    private final ByteBuffer _shortNamePool;
+
+    /**
+     * Distinct short names decoded so far, shared by all the Oui objects
+     * that use them
+     */
+    private final AtomicReferenceArray<String> _shortNames;
+
+    /**
+     * Oui objects materialized so far
+     */
+    private final AtomicReferenceArray<Oui> _cache;
+
+    /**
+     * Creates a new BufferOuiTable over the specified buffer, which must
+     * contain a complete v2 or v3 data file starting at its current position.
+     *
+     * @param buf the buffer containing the data file
+     * @throws IOException if the buffer does not contain a valid v2 or v3
+     * data file
+     */
+    BufferOuiTable(ByteBuffer buf) throws IOException {
+        super(OuiDataFile.checkHeader(buf));
+        int base = buf.position();
+        boolean v3 = buf.getInt(base + OuiDataFile.V2_VERSION) == OuiDataFile.V3;
+        int count = buf.getInt(base + OuiDataFile.V2_COUNT);
+        int subCount = buf.getInt(base + OuiDataFile.V2_SUB_COUNT);
+        int poolSize = buf.getInt(base + OuiDataFile.V2_POOL_SIZE);
+        int nameCount = v3 ? buf.getInt(base + OuiDataFile.V3_NAME_COUNT) : 0;
+        if (count < 0 || subCount < 0 || poolSize < 0 || nameCount < 0) throw new IOException("Corrupt macnificent data file.");
+        long keysStart = base + (v3 ? OuiDataFile.V3_HEADER_SIZE : OuiDataFile.V2_HEADER_SIZE);
+        long subsStart = keysStart + 4L * count;
+        long offsetsStart = subsStart + 8L * subCount;
+        int offsetCount = v3 ? count + subCount : count + subCount + 1;
+        long poolStart = offsetsStart + 4L * offsetCount;
+        if (poolStart + poolSize > buf.limit()) {
+            throw new IOException("Truncated or corrupt macnificent data file.");
+        }
+
+        _keys = slice(buf, (int) keysStart, 4 * count).asIntBuffer();
+        _nameOffsets = slice(buf, (int) offsetsStart, 4 * offsetCount).asIntBuffer();
+        _pool = slice(buf, (int) poolStart, poolSize);
+        if (!v3 && !isValidOffsets(_nameOffsets, poolSize)) {
+            throw new IOException("Corrupt macnificent data file: bad name offsets.");
+        }
+        long end = poolStart + poolSize;
+
+        if ((buf.getInt(base + OuiDataFile.V2_FLAGS) & OuiDataFile.SHORT_NAMES) == 0) {
+            _shortNameIndexes = null;
+            _shortNameOffsets = null;
+            _shortNamePool = null;
+            _shortNames = null;
+        } else {
+            long shortStart = poolStart + poolSize + 3 - (poolStart + poolSize - base + 3) % 4;
+            int shortCount = shortStart + 4 > buf.limit() ? -1 : buf.getInt((int) shortStart);
+            long indexesStart = shortStart + 4;
+            long shortOffsetsStart = indexesStart + 4L * (count + subCount);
+            long shortPoolStart = shortOffsetsStart + 4L * (shortCount + 1);
+            if (shortCount < 0 || shortPoolStart > buf.limit()) {
+                throw new IOException("Truncated or corrupt macnificent data file.");
+            }
+            _shortNameIndexes = slice(buf, (int) indexesStart, 4 * (count + subCount)).asIntBuffer();
+            _shortNameOffsets = slice(buf, (int) shortOffsetsStart, 4 * (shortCount + 1)).asIntBuffer();
+            int shortPoolSize = _shortNameOffsets.get(shortCount);
+            if (shortPoolSize < 0 || shortPoolStart + shortPoolSize > buf.limit() || !isValidOffsets(_shortNameOffsets, shortPoolSize)) {
+                throw new IOException("Corrupt macnificent data file: bad short name offsets.");
+            }
+            for (int i = 0; i < count + subCount; ++i) {
+                int index = _shortNameIndexes.get(i);
+                if (index < 0 || index >= shortCount) {
+                    throw new IOException("Corrupt macnificent data file: bad short name index " + index);
+                }
+            }
+            _shortNamePool = slice(buf, (int) shortPoolStart, shortPoolSize);
+            _shortNames = new AtomicReferenceArray<String>(shortCount);
+            end = shortPoolStart + shortPoolSize;
+        }
+        if (v3) {
+            checkCrc(buf, base, (int) (end + 3 - (end - base + 3) % 4));
+            _nameStarts = nameStarts(_pool, nameCount);
+            for (int i = 0; i < offsetCount; ++i) {
+                int offset = _nameOffsets.get(i);
+                if (Arrays.binarySearch(_nameStarts, offset) < 0) {
+                    throw new IOException("Corrupt macnificent data file: bad name offset " + offset);
+                }
+            }
+            _names = new AtomicReferenceArray<String>(nameCount);
+        } else {
+            _nameStarts = null;
+            _names = null;
+        }
+
+        _subPrefixes = new long[subCount];
+        _subLengths = new byte[subCount];
+        _subBlocks = subCount == 0 ? null : new PrefixTrie(subCount);
+        for (int i = 0; i < subCount; ++i) {
+            long key = buf.getLong((int) subsStart + 8 * i);
+            int length = (int) (key >>> 48);
+            if (!PrefixTrie.isSupportedLength(length) || length == PrefixTrie.MA_L) {
+                throw new IOException("Corrupt macnificent data file: bad prefix length " + length);
+            }
+            _subPrefixes[i] = key & MacAddress.MAC_MASK;
+            _subLengths[i] = (byte) length;
+            _subBlocks.put(_subPrefixes[i], length, count + i);
+            int parent = search(MacAddress.oui(key));
+            if (parent != NOT_FOUND) _subBlocks.put(key, PrefixTrie.MA_L, parent);
+        }
+        _cache = new AtomicReferenceArray<Oui>(count + subCount);
+    }
+
+    /**
+     * Returns true if the specified offsets start at zero, never decrease,
+     * and end at the size of the pool they index
+     */
+    private static boolean isValidOffsets(IntBuffer offsets, int poolSize) {
+        int last = offsets.limit() - 1;
+        if (offsets.get(0) != 0 || offsets.get(last) != poolSize) return false;
+        for (int i = 0, prev = 0; i < last; ++i) {
+            int next = offsets.get(i + 1);
+            if (next < prev) return false;
+            prev = next;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the offset of each of the specified number of length-prefixed
+     * names in a v3 pool, verifying that they exactly fill it
+     */
+    private static int[] nameStarts(ByteBuffer pool, int nameCount) throws IOException {
+        // every name takes at least one byte
+        if (nameCount > pool.limit()) throw new IOException("Corrupt macnificent data file: bad name count " + nameCount);
+        int[] result = new int[nameCount];
+        int p = 0;
+        for (int k = 0; k < nameCount; ++k) {
+            result[k] = p;
+            p = nameEnd(pool, p);
+            if (p < 0) throw new IOException("Corrupt macnificent data file: bad name at offset " + result[k]);
+        }
+        if (p != pool.limit()) throw new IOException("Corrupt macnificent data file: bad name pool.");
+        return result;
+    }
+
+    /**
+     * Returns the end of the length-prefixed name at the specified offset in
+     * a v3 pool, or -1 if its length is malformed or it runs past the pool
+     */
+    private static int nameEnd(ByteBuffer pool, int offset) {
+        int length = 0, p = offset;
+        for (int shift = 0; ; shift += 7) {
+            if (p >= pool.limit()) return -1;
+            int b = pool.get(p++);
+            // a length is at most five bytes and less than 2^31
+            if (shift == 28 && (b & 0xf8) != 0) return -1;
+            length |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) break;
+        }
+        return length > pool.limit() - p ? -1 : p + length;
+    }
+
+    /**
+     * Verifies that the v3 checksum at the specified position covers the
+     * data file from base and is the last thing in the buffer
+     */
+    private static void checkCrc(ByteBuffer buf, int base, int crcStart) throws IOException {
+        if (crcStart + 4 != buf.limit()) {
+            throw new IOException(crcStart + 4 > buf.limit() ? "Truncated macnificent data file." : "Unexpected data after macnificent data file.");
+        }
+        int expected = buf.getInt(crcStart);
+        int actual = Crc32c.checksum(buf, base, crcStart - base);
+        if (actual != expected) {
+            throw new IOException(String.format("Corrupt macnificent data file: checksum is %08x, expected %08x.", actual, expected));
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buf, int offset, int length) {
+        ByteBuffer dup = buf.duplicate();
+        dup.limit(offset + length).position(offset);
+        return dup.slice();
+    }
+
+    @Override
+    int size() { return _keys.limit() + _subPrefixes.length; }
+
+    /**
+     * Returns the position of the specified 24-bit OUI, or NOT_FOUND
+     */
+    private int search(int oui) {
+        int lo = 0, hi = _keys.limit() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int k = _keys.get(mid) & 0xffffff;
+            if (k < oui) lo = mid + 1;
+            else if (k > oui) hi = mid - 1;
+            else return mid;
+        }
+        return NOT_FOUND;
+    }
+
+    @Override
+    int lookup(long mac) {
+        int i = search(MacAddress.oui(mac));
+        if (i != NOT_FOUND && (_keys.get(i) & OuiDataFile.HAS_SUB_BLOCKS) == 0) return i;
+        return _subBlocks == null ? i : _subBlocks.lookup(mac);
+    }
+
+    @Override
+    Oui ouiAt(int index) {
+        Oui result = _cache.get(index);
+        if (result == null) {
+            int count = _keys.limit();
+            if (index < count) {
+                int key = _keys.get(index);
+                result = new Oui((long) (key & 0xffffff) << 24, PrefixTrie.MA_L, name(index), shortName(index));
+            } else {
+                result = new Oui(_subPrefixes[index - count], _subLengths[index - count], name(index), shortName(index));
+            }
+            _cache.lazySet(index, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the manufacturer name of the assignment at the specified
+     * position
+     */
+    private String name(int index) {
+        if (_names == null) return decode(_pool, _nameOffsets, index);
+        int offset = _nameOffsets.get(index);
+        int k = Arrays.binarySearch(_nameStarts, offset);
+        String result = _names.get(k);
+        if (result == null) {
+            ByteBuffer dup = _pool.duplicate();
+            dup.position(offset);
+            int length = 0;
+            for (int shift = 0, b = 0x80; (b & 0x80) != 0; shift += 7) {
+                b = dup.get();
+                length |= (b & 0x7f) << shift;
+            }
+            byte[] bytes = new byte[length];
+            dup.get(bytes);
+            result = new String(bytes, StandardCharsets.UTF_8);
+            if (!_names.compareAndSet(k, null, result)) result = _names.get(k);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the short name of the assignment at the specified position, or
+     * null if the file contains no short names
+     */
+    private String shortName(int index) {
+        if (_shortNameIndexes == null) return null;
+        int i = _shortNameIndexes.get(index);
+        String result = _shortNames.get(i);
+        if (result == null) {
+            result = decode(_shortNamePool, _shortNameOffsets, i);
+            _shortNames.lazySet(i, result);
+        }
+        return result;
+    }
+
+    private static String decode(ByteBuffer pool, IntBuffer offsets, int index) {
+        int start = offsets.get(index);
+        byte[] b = new byte[offsets.get(index + 1) - start];
+        ByteBuffer dup = pool.duplicate();
+        dup.position(start);
+        dup.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,592 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Non-interactive bulk mode for OuiRegistry.main(), for use in shell
+ * pipelines over large files.  Reads one MAC address per line (or from a
+ * selected column of delimited input), looks each one up, and writes one
+ * TSV, CSV or JSON-lines record per MAC.
+ *
+ * Input is read in large chunks which are processed in parallel, and the
+ * results are written in input order through a single NIO channel.  At most
+ * a few chunks per thread are in memory at once, so input of any size can
+ * be processed.  Blank lines are ignored; lines without a valid MAC address
+ * are skipped, reported on stderr, or stop processing, as requested.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+final class BulkLookup {
+
+    static final String USAGE = "Usage: [--format tsv|csv|jsonl] [--fields FIELD,...] [--header]\n"
+            + "       [--column N [--delimiter C]] [--skip-header] [--invalid skip|report|fail]\n"
+            + "       [--style STYLE] [--threads N] [--data FILE] [--out FILE] [input...]\n"
+            + "Looks up one MAC address per line of each input (or stdin if none are named), writing one\n"
+            + "record per MAC.  FIELDs are " + fieldNames() + " (default mac,manufacturer,formatted).\n"
+            + "--column selects the 1-based column of delimited (default comma-separated) input that\n"
+            + "contains the MAC.  Invalid lines are reported on stderr by default.\n"
+            + "Run with --pcap --help to analyze pcap and pcapng capture files instead.";
+
+    /**
+     * Output formats
+     */
+    enum Format { TSV, CSV, JSONL }
+
+    /**
+     * Output fields
+     */
+    enum Field {
+        /** the MAC address as it appeared in the input */
+        INPUT,
+        /** the entire input line, unescaped in TSV and CSV so as to extend the input's columns */
+        LINE,
+        /** the MAC address in the output style */
+        MAC,
+        /** the manufacturer's full name, or empty/null if unknown */
+        MANUFACTURER,
+        /** the manufacturer's short name, or empty/null if unknown */
+        SHORT,
+        /** the MAC address as formatted by OuiRegistry */
+        FORMATTED,
+        /** true if the MAC is locally administered */
+        LOCAL,
+        /** true if the MAC is a multicast address */
+        MULTICAST;
+
+        String key() { return name().toLowerCase(Locale.ROOT); }
+    }
+
+    /**
+     * Handling of lines without a valid MAC address
+     */
+    enum Invalid { SKIP, REPORT, FAIL }
+
+    /**
+     * Size of each chunk of input processed as a unit
+     */
+    static final int CHUNK_SIZE = 1 << 20;
+
+    private OuiRegistry _registry;
+    private Format _format = Format.TSV;
+    private Field[] _fields = { Field.MAC, Field.MANUFACTURER, Field.FORMATTED };
+    private boolean _header, _skipHeader;
+    private int _column;
+    private byte _delimiter = ',';
+    private MacAddressStyle _style = MacAddressStyle.COLON;
+    private Invalid _invalid = Invalid.REPORT;
+    private int _threads = Runtime.getRuntime().availableProcessors();
+    private String _data, _out;
+    private final List<String> _inputs = new ArrayList<String>();
+
+    /**
+     * Escaped manufacturer names and short names for the output format, by
+     * OUI index, cached on first use
+     */
+    private AtomicReferenceArray<byte[]> _manufacturers, _shortNames;
+
+    private BulkLookup() {}
+
+    private static String fieldNames() {
+        StringBuilder buf = new StringBuilder();
+        for (Field f : Field.values()) buf.append(buf.length() == 0 ? "" : ",").append(f.key());
+        return buf.toString();
+    }
+
+    private static <E extends Enum<E>> E option(Class<E> type, String name, String value) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unrecognized " + name + ": " + value);
+        }
+    }
+
+    private static int positive(String name, String value) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result > 0) return result;
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new IllegalArgumentException(name + " must be a positive integer: " + value);
+    }
+
+    /**
+     * Parses command line arguments
+     *
+     * @return the parsed arguments, or null if --help was requested
+     * @throws IllegalArgumentException if the arguments are not valid
+     */
+    static BulkLookup fromArgs(String[] args) {
+        BulkLookup result = new BulkLookup();
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            boolean hasValue = i + 1 < args.length;
+            if (arg.equals("--header")) {
+                result._header = true;
+            } else if (arg.equals("--skip-header")) {
+                result._skipHeader = true;
+            } else if (arg.equals("--format") && hasValue) {
+                result._format = option(Format.class, "format", args[++i]);
+            } else if (arg.equals("--fields") && hasValue) {
+                String[] names = args[++i].split(",");
+                result._fields = new Field[names.length];
+                for (int f = 0; f < names.length; ++f) result._fields[f] = option(Field.class, "field", names[f].trim());
+            } else if (arg.equals("--column") && hasValue) {
+                result._column = positive("--column", args[++i]);
+            } else if (arg.equals("--delimiter") && hasValue) {
+                String d = args[++i].equals("\\t") ? "\t" : args[i];
+                if (d.length() != 1 || d.charAt(0) > 127) throw new IllegalArgumentException("--delimiter must be a single ASCII character");
+                result._delimiter = (byte) d.charAt(0);
+            } else if (arg.equals("--invalid") && hasValue) {
+                result._invalid = option(Invalid.class, "--invalid policy", args[++i]);
+            } else if (arg.equals("--style") && hasValue) {
+                result._style = option(MacAddressStyle.class, "style", args[++i]);
+            } else if (arg.equals("--threads") && hasValue) {
+                result._threads = positive("--threads", args[++i]);
+            } else if (arg.equals("--data") && hasValue) {
+                result._data = args[++i];
+            } else if (arg.equals("--out") && hasValue) {
+                result._out = args[++i];
+            } else if (arg.equals("--help")) {
+                return null;
+            } else if (arg.equals("--bulk")) {
+                // accepted for clarity; any argument selects bulk mode
+            } else if (arg.startsWith("--")) {
+                throw new IllegalArgumentException(USAGE);
+            } else {
+                result._inputs.add(arg);
+            }
+        }
+        if (result._inputs.isEmpty()) result._inputs.add("-");
+        return result;
+    }
+
+    /**
+     * Runs bulk mode from the command line, exiting with status 1 on bad
+     * arguments or (with --invalid fail) input.  With --help, prints the
+     * usage to stdout and exits normally.
+     *
+     * @param args the command line arguments
+     * @throws Exception if anything asplodes
+     */
+    static void main(String[] args) throws Exception {
+        BulkLookup bulk;
+        try {
+            bulk = fromArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (bulk == null) {
+            System.out.println(USAGE);
+            return;
+        }
+        OuiRegistry registry = bulk._data == null ? new OuiRegistry() : new OuiRegistry(new File(bulk._data));
+        PrintStream err = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.err), 1 << 16), false, "UTF-8");
+        int status;
+        try (WritableByteChannel out = bulk._out == null
+                ? new FileOutputStream(FileDescriptor.out).getChannel()
+                : FileChannel.open(Paths.get(bulk._out), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            status = bulk.run(registry, out, err);
+        } finally {
+            err.flush();
+        }
+        if (status != 0) System.exit(status);
+    }
+
+    /**
+     * Processes every input, writing records to out and reporting invalid
+     * lines to err.
+     *
+     * @return 0 on success, or 1 if an invalid line stopped processing
+     */
+    int run(OuiRegistry registry, WritableByteChannel out, PrintStream err) throws IOException, InterruptedException {
+        _registry = registry;
+        _manufacturers = new AtomicReferenceArray<byte[]>(registry.size());
+        _shortNames = new AtomicReferenceArray<byte[]>(registry.size());
+        if (_header && _format != Format.JSONL) {
+            Sink s = new Sink(256);
+            for (int f = 0; f < _fields.length; ++f) {
+                if (f > 0) s.put(separator());
+                s.put(_fields[f].key().getBytes(StandardCharsets.US_ASCII));
+            }
+            s.put((byte) '\n');
+            write(out, s);
+        }
+
+        ExecutorService pool = _threads > 1 ? Executors.newFixedThreadPool(_threads) : null;
+        ArrayDeque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+        Writer writer = new Writer(out, err);
+        try {
+            for (String input : _inputs) {
+                try (ReadableByteChannel in = input.equals("-") ? Channels.newChannel(new FileInputStream(FileDescriptor.in)) : FileChannel.open(Paths.get(input))) {
+                    byte[] carry = new byte[0];
+                    boolean first = true, eof = false;
+                    while (!eof) {
+                        byte[] buf = Arrays.copyOf(carry, Math.max(CHUNK_SIZE, 2 * carry.length));
+                        int len = carry.length;
+                        while (len < buf.length && !eof) {
+                            int n = in.read(ByteBuffer.wrap(buf, len, buf.length - len));
+                            if (n < 0) eof = true; else len += n;
+                        }
+                        int end = len;
+                        if (!eof) {
+                            while (end > 0 && buf[end - 1] != '\n') --end;
+                            if (end == 0) { // a single line longer than the buffer; keep reading it
+                                carry = buf;
+                                continue;
+                            }
+                        }
+                        carry = Arrays.copyOfRange(buf, end, len);
+                        if (end == 0) break;
+
+                        Chunk chunk = new Chunk(input, first, buf, end);
+                        first = false;
+                        if (pool == null) {
+                            if (!writer.write(chunk.call())) return 1;
+                        } else {
+                            pending.add(pool.submit(chunk));
+                            while (pending.size() >= 2 * _threads) {
+                                if (!writer.write(pending.remove().get())) return 1;
+                            }
+                        }
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    if (!writer.write(pending.remove().get())) return 1;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof IOException) throw (IOException) t;
+            if (t instanceof RuntimeException) throw (RuntimeException) t;
+            throw new IllegalStateException(t);
+        } finally {
+            if (pool != null) pool.shutdownNow();
+        }
+        if (writer._invalid > 0 && _invalid == Invalid.REPORT) err.format("Skipped %d invalid line(s).%n", writer._invalid);
+        return 0;
+    }
+
+    private static void write(WritableByteChannel out, Sink s) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(s._buf, 0, s._len);
+        while (buf.hasRemaining()) out.write(buf);
+    }
+
+    private byte separator() {
+        return _format == Format.CSV ? (byte) ',' : (byte) '\t';
+    }
+
+    /**
+     * Writes chunk results in order, tracking line numbers for reports
+     */
+    private final class Writer {
+        private final WritableByteChannel _out;
+        private final PrintStream _err;
+        private long _lineBase;
+        private long _invalid;
+
+        Writer(WritableByteChannel out, PrintStream err) {
+            _out = out;
+            _err = err;
+        }
+
+        /**
+         * Returns false if processing should stop
+         */
+        boolean write(Chunk c) throws IOException {
+            if (c._first) _lineBase = 0;
+            BulkLookup.write(_out, c._result);
+            for (int i = 0; i < c._invalidLines.size(); ++i) {
+                ++_invalid;
+                if (BulkLookup.this._invalid != Invalid.SKIP) {
+                    _err.format("%s:%d: not a MAC address: %s%n", c._name.equals("-") ? "stdin" : c._name, _lineBase + c._invalidLines.get(i), c._invalidText.get(i));
+                }
+            }
+            _lineBase += c._lines;
+            return !(BulkLookup.this._invalid == Invalid.FAIL && _invalid > 0);
+        }
+    }
+
+    /**
+     * A chunk of whole lines from one input, and the records produced from it
+     */
+    private final class Chunk implements Callable<Chunk> {
+        final String _name;
+        final boolean _first;
+        final byte[] _data;
+        final int _length;
+
+        Sink _result;
+        int _lines;
+        final List<Integer> _invalidLines = new ArrayList<Integer>();
+        final List<String> _invalidText = new ArrayList<String>();
+
+        Chunk(String name, boolean first, byte[] data, int length) {
+            _name = name;
+            _first = first;
+            _data = data;
+            _length = length;
+        }
+
+        @Override
+        public Chunk call() {
+            _result = new Sink(_length + (_length >>> 1));
+            byte[] scratch = new byte[256];
+            byte[] data = _data;
+            for (int s = 0; s < _length; ) {
+                int nl = s;
+                while (nl < _length && data[nl] != '\n') ++nl;
+                int e = nl > s && data[nl - 1] == '\r' ? nl - 1 : nl;
+                ++_lines;
+                if (!(_first && _skipHeader && _lines == 1) && !isBlank(data, s, e)) {
+                    int ts = s, te = e;
+                    if (_column > 0) {
+                        ts = fieldStart(data, s, e, _column);
+                        te = ts < 0 ? -1 : fieldEnd(data, ts, e);
+                        if (ts >= 0 && te - ts >= 2 && data[ts] == '"') { ++ts; --te; }
+                    }
+                    long mac = ts < 0 ? MacAddressParser.INVALID : MacAddressParser.parse(data, ts, te - ts);
+                    if (mac == MacAddressParser.INVALID) {
+                        _invalidLines.add(_lines);
+                        _invalidText.add(new String(data, s, e - s, StandardCharsets.UTF_8));
+                        if (_invalid == Invalid.FAIL) break;
+                    } else {
+                        scratch = record(_result, scratch, mac, data, ts, te, s, e);
+                    }
+                }
+                s = nl + 1;
+            }
+            return this;
+        }
+    }
+
+    private static boolean isBlank(byte[] data, int s, int e) {
+        for (int i = s; i < e; ++i) {
+            if (!MacAddressParser.isSpace(data[i])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index of the start of the specified 1-based column of the
+     * line [s, e), or -1 if there are fewer columns
+     */
+    private int fieldStart(byte[] data, int s, int e, int column) {
+        for (int c = 1; c < column; ++c) {
+            s = fieldEnd(data, s, e);
+            if (s >= e) return -1;
+            ++s; // the delimiter
+        }
+        return s;
+    }
+
+    /**
+     * Returns the index of the delimiter (or line end) after the field
+     * starting at s, skipping over quoted delimiters
+     */
+    private int fieldEnd(byte[] data, int s, int e) {
+        int i = s;
+        if (i < e && data[i] == '"') {
+            for (++i; i < e; ++i) {
+                if (data[i] == '"') {
+                    if (i + 1 < e && data[i + 1] == '"') ++i; else break;
+                }
+            }
+        }
+        while (i < e && data[i] != _delimiter) ++i;
+        return i;
+    }
+
+    /**
+     * Writes the record for mac, found at [ts, te) on the line [s, e).
+     * Returns scratch, which may have been replaced by a larger array.
+     */
+    private byte[] record(Sink out, byte[] scratch, long mac, byte[] data, int ts, int te, int s, int e) {
+        int index = _registry.indexOf(mac);
+        if (_format == Format.JSONL) out.put((byte) '{');
+        for (int f = 0; f < _fields.length; ++f) {
+            Field field = _fields[f];
+            if (_format == Format.JSONL) {
+                if (f > 0) out.put((byte) ',');
+                out.put((byte) '"');
+                out.put(field.key().getBytes(StandardCharsets.US_ASCII));
+                out.put((byte) '"').put((byte) ':');
+            } else if (f > 0) {
+                out.put(separator());
+            }
+            switch (field) {
+                case INPUT:
+                    escape(out, data, ts, te);
+                    break;
+                case LINE:
+                    if (_format == Format.JSONL) escape(out, data, s, e); else out.put(data, s, e - s);
+                    break;
+                case MAC:
+                    escape(out, scratch, 0, _style.writeTo(scratch, 0, mac, 0));
+                    break;
+                case MANUFACTURER:
+                case SHORT:
+                    out.put(name(index, field == Field.SHORT));
+                    break;
+                case FORMATTED:
+                    int formatted = _registry.lookup(mac);
+                    int length = _registry.formattedLength(formatted, _style);
+                    if (length > scratch.length) scratch = new byte[Math.max(length, 2 * scratch.length)];
+                    escape(out, scratch, 0, _registry.formatTo(formatted, mac, scratch, 0, _style));
+                    break;
+                case LOCAL:
+                    out.put(MacAddress.isLocal(mac) ? TRUE : FALSE);
+                    break;
+                case MULTICAST:
+                    out.put(MacAddress.isMulticast(mac) ? TRUE : FALSE);
+                    break;
+                default:
+                    throw new IllegalStateException(field.toString());
+            }
+        }
+        if (_format == Format.JSONL) out.put((byte) '}');
+        out.put((byte) '\n');
+        return scratch;
+    }
+
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * Returns the escaped manufacturer or short name of the OUI at index
+     */
+    private byte[] name(int index, boolean shortName) {
+        if (index == OuiRegistry.NOT_FOUND) return _format == Format.JSONL ? NULL : EMPTY;
+        AtomicReferenceArray<byte[]> cache = shortName ? _shortNames : _manufacturers;
+        byte[] result = cache.get(index);
+        if (result == null) {
+            Oui oui = _registry.getOuiByIndex(index);
+            byte[] raw = (shortName ? oui.getShortName() : oui.getManufacturer()).getBytes(StandardCharsets.UTF_8);
+            Sink s = new Sink(raw.length + 8);
+            escape(s, raw, 0, raw.length);
+            result = Arrays.copyOf(s._buf, s._len);
+            cache.lazySet(index, result);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the UTF-8 string [s, e) escaped as a field in the output format
+     */
+    private void escape(Sink out, byte[] b, int s, int e) {
+        switch (_format) {
+            case TSV:
+                for (int i = s; i < e; ++i) out.put(b[i] == '\t' || b[i] == '\n' || b[i] == '\r' ? (byte) ' ' : b[i]);
+                break;
+            case CSV:
+                boolean quote = false;
+                for (int i = s; i < e && !quote; ++i) quote = b[i] == ',' || b[i] == '"' || b[i] == '\n' || b[i] == '\r';
+                if (!quote) {
+                    out.put(b, s, e - s);
+                } else {
+                    out.put((byte) '"');
+                    for (int i = s; i < e; ++i) {
+                        if (b[i] == '"') out.put((byte) '"');
+                        out.put(b[i]);
+                    }
+                    out.put((byte) '"');
+                }
+                break;
+            default:
+                out.put((byte) '"');
+                for (int i = s; i < e; ++i) {
+                    byte c = b[i];
+                    if (c == '"' || c == '\\') {
+                        out.put((byte) '\\').put(c);
+                    } else if (c >= 0 && c < 0x20) {
+                        out.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0');
+                        out.put((byte) Hex.LOWER[c >>> 4]).put((byte) Hex.LOWER[c & 0xf]);
+                    } else {
+                        out.put(c);
+                    }
+                }
+                out.put((byte) '"');
+        }
+    }
+
+    /**
+     * A growable byte array
+     */
+    private static final class Sink {
+        byte[] _buf;
+        int _len;
+
+        Sink(int capacity) {
+            _buf = new byte[Math.max(16, capacity)];
+        }
+
+        private void ensure(int n) {
+            if (_len + n > _buf.length) _buf = Arrays.copyOf(_buf, Math.max(_buf.length * 2, _len + n));
+        }
+
+        Sink put(byte b) {
+            ensure(1);
+            _buf[_len++] = b;
+            return this;
+        }
+
+        Sink put(byte[] b) {
+            return put(b, 0, b.length);
+        }
+
+        Sink put(byte[] b, int off, int len) {
+            ensure(len);
+            System.arraycopy(b, off, _buf, _len, len);
+            _len += len;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,609 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Counts the packets and bytes sent and received by each manufacturer in
+ * pcap and pcapng capture files, answering "which vendors are talking on
+ * this segment?" without exporting packets through other tools.
+ *
+ * Capture files are memory-mapped and their records walked in place: each
+ * packet's Ethernet source and destination addresses are read directly
+ * from the mapping and looked up in an OuiRegistry, and nothing is
+ * allocated per packet.  A single pass over the record headers splits each
+ * file at record boundaries into chunks of about CHUNK_SIZE bytes, which
+ * are analyzed in parallel as soon as they are found, so multi-gigabyte
+ * captures use every core while their pages are still hot.
+ *
+ * Both byte orders and the microsecond and nanosecond variants of pcap are
+ * supported, as are pcapng files with any number of sections and
+ * interfaces.  Only packets captured on Ethernet (link type 1) interfaces
+ * are counted; others, and packets too short to hold an Ethernet header,
+ * are skipped.  A truncated final record, as left by an interrupted
+ * capture, is ignored.
+ *
+ * Addresses are matched as OuiRegistry.format() matches them: locally
+ * administered (e.g. randomized) and multicast addresses are counted as
+ * unknown rather than attributed to the vendor whose OUI they resemble.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public final class CaptureAnalyzer {
+
+    /**
+     * Approximate size of each chunk of a capture file analyzed as a unit
+     */
+    static final int CHUNK_SIZE = 64 << 20;
+
+    /**
+     * Size of the windows mapped while walking record headers
+     */
+    private static final int WINDOW_SIZE = 1 << 30;
+
+    /**
+     * Largest record accepted; larger lengths indicate a corrupt file
+     */
+    static final int MAX_RECORD = 1 << 28;
+
+    static final int LINKTYPE_ETHERNET = 1;
+
+    private static final int PCAP_MAGIC = 0xa1b2c3d4, PCAP_MAGIC_NANOS = 0xa1b23c4d;
+    private static final int PCAP_HEADER = 24, PCAP_RECORD_HEADER = 16;
+    private static final int PCAPNG_SHB = 0x0a0d0d0a, PCAPNG_BYTE_ORDER_MAGIC = 0x1a2b3c4d;
+    private static final int PCAPNG_IDB = 1, PCAPNG_OPB = 2, PCAPNG_SPB = 3, PCAPNG_EPB = 6;
+
+    private final OuiRegistry _registry;
+    private final int _chunkSize;
+
+    /**
+     * Creates a new CaptureAnalyzer that identifies manufacturers via the
+     * specified registry
+     *
+     * @param registry the registry to look up MAC addresses in
+     */
+    public CaptureAnalyzer(OuiRegistry registry) {
+        this(registry, CHUNK_SIZE);
+    }
+
+    CaptureAnalyzer(OuiRegistry registry, int chunkSize) {
+        _registry = registry;
+        _chunkSize = chunkSize;
+    }
+
+    /**
+     * Analyzes the specified capture files in parallel in the common
+     * ForkJoinPool, combining their counts.
+     *
+     * @param captures pcap or pcapng files
+     * @return the combined counts
+     * @throws IOException if a file cannot be read or is not a valid capture
+     */
+    public Result analyze(File... captures) throws IOException {
+        return analyze(ForkJoinPool.commonPool(), captures);
+    }
+
+    /**
+     * Analyzes the specified capture files, combining their counts.
+     *
+     * @param executor runs the analysis of each chunk, or null to analyze
+     * every file in the calling thread
+     * @param captures pcap or pcapng files
+     * @return the combined counts
+     * @throws IOException if a file cannot be read or is not a valid capture
+     */
+    public Result analyze(ExecutorService executor, File... captures) throws IOException {
+        ConcurrentHashMap<Thread, Counts> counts = new ConcurrentHashMap<Thread, Counts>();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        try {
+            for (File capture : captures) {
+                try (FileChannel channel = FileChannel.open(capture.toPath(), StandardOpenOption.READ)) {
+                    split(capture, channel, executor, counts, futures);
+                    // chunks map their own regions, but must finish before the channel closes
+                    for (Future<?> f : futures) f.get();
+                    futures.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while analyzing capture files", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } finally {
+            for (Future<?> f : futures) f.cancel(true);
+        }
+        Counts result = new Counts(_registry);
+        for (Counts c : counts.values()) result.add(c);
+        return new Result(result);
+    }
+
+    /**
+     * Analyzes a complete capture file held in a buffer, from its position
+     * to its limit, in the calling thread.  The buffer's position is
+     * unchanged.
+     *
+     * @param capture the capture
+     * @return the counts
+     * @throws IOException if the buffer does not hold a valid capture
+     */
+    public Result analyze(ByteBuffer capture) throws IOException {
+        ByteBuffer buf = capture.slice().order(ByteOrder.BIG_ENDIAN);
+        Cursor cursor = Cursor.open(buf);
+        Counts counts = new Counts(_registry);
+        cursor.walk(buf, cursor.start(), buf.limit(), counts);
+        return new Result(counts);
+    }
+
+    private static Counts countsFor(ConcurrentHashMap<Thread, Counts> counts, OuiRegistry registry) {
+        Thread t = Thread.currentThread();
+        Counts result = counts.get(t);
+        if (result == null) {
+            result = new Counts(registry);
+            counts.put(t, result);
+        }
+        return result;
+    }
+
+    /**
+     * Walks the record headers of a capture file, submitting each chunk to
+     * the executor as soon as its end is found, or analyzing the whole
+     * file in this thread if there is no executor
+     */
+    private void split(File capture, FileChannel channel, ExecutorService executor, ConcurrentHashMap<Thread, Counts> counts, List<Future<?>> futures) throws IOException {
+        long size = channel.size();
+        Cursor cursor = Cursor.open(channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, PCAP_HEADER)));
+        Counts inline = executor == null ? countsFor(counts, _registry) : null;
+        long pos = cursor.start(), chunkStart = pos;
+        Cursor chunkCursor = cursor.copy();
+        while (pos < size) {
+            ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(WINDOW_SIZE, size - pos));
+            int i = 0, limit = buf.limit();
+            for (;;) {
+                if (inline == null && pos + i - chunkStart >= _chunkSize) {
+                    futures.add(submit(executor, channel, capture, chunkStart, pos + i, chunkCursor, counts));
+                    chunkStart = pos + i;
+                    chunkCursor = cursor.copy();
+                }
+                int next = cursor.next(buf, i, limit, inline);
+                if (next < 0) break;
+                i = next;
+            }
+            if (pos + limit == size) { // any incomplete final record is ignored
+                pos += i;
+                break;
+            }
+            if (i == 0) throw new IOException(capture + ": corrupt record at offset " + pos);
+            pos += i;
+        }
+        if (inline == null && pos > chunkStart) futures.add(submit(executor, channel, capture, chunkStart, pos, chunkCursor, counts));
+    }
+
+    private Future<?> submit(ExecutorService executor, final FileChannel channel, final File capture, final long start, final long end, final Cursor cursor, final ConcurrentHashMap<Thread, Counts> counts) {
+        return executor.submit(() -> {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            int stop = cursor.walk(buf, 0, buf.limit(), countsFor(counts, _registry));
+            if (stop != buf.limit()) throw new IOException(capture + ": corrupt record at offset " + (start + stop));
+            return null;
+        });
+    }
+
+    /**
+     * The state needed to interpret records: the file format, its byte
+     * order, and the link type of each interface.  Mapped buffers are
+     * always read big-endian, and multi-byte header fields swapped as
+     * needed, so MAC addresses can be read with MacAddress.toLong()'s fast
+     * path.
+     */
+    static final class Cursor {
+        private final boolean _pcapng;
+        private boolean _swap;
+        private int[] _linkTypes;
+        private int _interfaces;
+
+        private Cursor(boolean pcapng, boolean swap, int[] linkTypes, int interfaces) {
+            _pcapng = pcapng;
+            _swap = swap;
+            _linkTypes = linkTypes;
+            _interfaces = interfaces;
+        }
+
+        /**
+         * Identifies the format of a capture from the start of its header
+         */
+        static Cursor open(ByteBuffer header) throws IOException {
+            header.order(ByteOrder.BIG_ENDIAN);
+            if (header.limit() < 12) throw new IOException("Not a pcap or pcapng capture file: too short");
+            int magic = header.getInt(0);
+            if (magic == PCAPNG_SHB) return new Cursor(true, false, new int[4], 0);
+            boolean swap = magic == Integer.reverseBytes(PCAP_MAGIC) || magic == Integer.reverseBytes(PCAP_MAGIC_NANOS);
+            if (!swap && magic != PCAP_MAGIC && magic != PCAP_MAGIC_NANOS) {
+                throw new IOException("Not a pcap or pcapng capture file: bad magic number " + Integer.toHexString(magic));
+            }
+            if (header.limit() < PCAP_HEADER) throw new IOException("Truncated pcap capture file header");
+            int linkType = swap ? Integer.reverseBytes(header.getInt(20)) : header.getInt(20);
+            return new Cursor(false, swap, new int[] { linkType & 0x0fffffff }, 1);
+        }
+
+        /**
+         * Returns the offset of the first record
+         */
+        int start() {
+            return _pcapng ? 0 : PCAP_HEADER;
+        }
+
+        Cursor copy() {
+            return new Cursor(_pcapng, _swap, _linkTypes.clone(), _interfaces);
+        }
+
+        private int getInt(ByteBuffer buf, int index) {
+            int result = buf.getInt(index);
+            return _swap ? Integer.reverseBytes(result) : result;
+        }
+
+        private int getShort(ByteBuffer buf, int index) {
+            short result = buf.getShort(index);
+            return (_swap ? Short.reverseBytes(result) : result) & 0xffff;
+        }
+
+        private static int length(int value, int limit) throws IOException {
+            if (value < 0 || value > limit) throw new IOException("Corrupt capture file: bad record length " + (value & 0xffffffffL));
+            return value;
+        }
+
+        /**
+         * Processes records from pos until one does not fit before limit
+         *
+         * @return the offset of the first unprocessed record
+         */
+        int walk(ByteBuffer buf, int pos, int limit, Counts counts) throws IOException {
+            for (int next; (next = next(buf, pos, limit, counts)) >= 0; ) pos = next;
+            return pos;
+        }
+
+        /**
+         * Processes the record at pos, counting it if it is an Ethernet
+         * packet and counts is not null
+         *
+         * @return the offset of the next record, or -1 if this record does
+         * not end before limit
+         */
+        int next(ByteBuffer buf, int pos, int limit, Counts counts) throws IOException {
+            return _pcapng ? nextBlock(buf, pos, limit, counts) : nextRecord(buf, pos, limit, counts);
+        }
+
+        private int nextRecord(ByteBuffer buf, int pos, int limit, Counts counts) throws IOException {
+            if (limit - pos < PCAP_RECORD_HEADER) return -1;
+            int captured = length(getInt(buf, pos + 8), MAX_RECORD);
+            int data = pos + PCAP_RECORD_HEADER;
+            if (limit - data < captured) return -1;
+            if (counts != null) packet(buf, data, captured, getInt(buf, pos + 12), 0, counts);
+            return data + captured;
+        }
+
+        private int nextBlock(ByteBuffer buf, int pos, int limit, Counts counts) throws IOException {
+            if (limit - pos < 12) return -1;
+            int type = getInt(buf, pos);
+            if (type == PCAPNG_SHB) {
+                int magic = buf.getInt(pos + 8);
+                if (magic != PCAPNG_BYTE_ORDER_MAGIC && magic != Integer.reverseBytes(PCAPNG_BYTE_ORDER_MAGIC)) {
+                    throw new IOException("Corrupt pcapng capture file: bad byte-order magic " + Integer.toHexString(magic));
+                }
+                boolean swap = magic != PCAPNG_BYTE_ORDER_MAGIC;
+                int length = swap ? Integer.reverseBytes(buf.getInt(pos + 4)) : buf.getInt(pos + 4);
+                if (length < 28 || (length & 3) != 0 || length > MAX_RECORD) throw new IOException("Corrupt pcapng capture file: bad section header length " + length);
+                if (limit - pos < length) return -1;
+                _swap = swap;
+                _interfaces = 0; // interfaces are numbered per section
+                return pos + length;
+            }
+
+            int length = length(getInt(buf, pos + 4), MAX_RECORD);
+            if (length < 12 || (length & 3) != 0) throw new IOException("Corrupt pcapng capture file: bad block length " + length);
+            if (limit - pos < length) return -1;
+            switch (type) {
+                case PCAPNG_IDB:
+                    if (length < 20) throw new IOException("Corrupt pcapng capture file: bad interface description length " + length);
+                    if (_interfaces == _linkTypes.length) _linkTypes = Arrays.copyOf(_linkTypes, 2 * _interfaces);
+                    _linkTypes[_interfaces++] = getShort(buf, pos + 8);
+                    break;
+                case PCAPNG_EPB:
+                    if (counts != null && length >= 32) packet(buf, pos + 28, Math.min(getInt(buf, pos + 20), length - 32), getInt(buf, pos + 24), getInt(buf, pos + 8), counts);
+                    break;
+                case PCAPNG_OPB:
+                    if (counts != null && length >= 32) packet(buf, pos + 28, Math.min(getInt(buf, pos + 20), length - 32), getInt(buf, pos + 24), getShort(buf, pos + 8), counts);
+                    break;
+                case PCAPNG_SPB:
+                    if (counts != null && length >= 16) {
+                        int original = getInt(buf, pos + 8);
+                        packet(buf, pos + 12, Math.min(original, length - 16), original, 0, counts);
+                    }
+                    break;
+                default: // other block types carry no packets
+            }
+            return pos + length;
+        }
+
+        private void packet(ByteBuffer buf, int data, int captured, int original, int iface, Counts counts) {
+            if (iface < 0 || iface >= _interfaces || _linkTypes[iface] != LINKTYPE_ETHERNET
+                    || captured < EthernetFrames.HEADER_LENGTH) {
+                counts._skipped++;
+                return;
+            }
+            counts.packet(MacAddress.toLong(buf, data + EthernetFrames.SOURCE_OFFSET),
+                          MacAddress.toLong(buf, data + EthernetFrames.DESTINATION_OFFSET),
+                          original & 0xffffffffL);
+        }
+    }
+
+    /**
+     * Counts accumulated by one thread.  Slot 0 counts unknown addresses
+     * and slot i + 1 counts the OUI at registry index i.
+     */
+    static final class Counts {
+        private final OuiTable _table;
+        private final long[] _sourcePackets, _sourceBytes, _destinationPackets, _destinationBytes;
+        private final MacAddressSet _sources = new MacAddressSet();
+        private long _packets, _bytes, _skipped;
+
+        Counts(OuiRegistry registry) {
+            _table = registry.table();
+            int slots = _table.size() + 1;
+            _sourcePackets = new long[slots];
+            _sourceBytes = new long[slots];
+            _destinationPackets = new long[slots];
+            _destinationBytes = new long[slots];
+        }
+
+        private int slot(long mac) {
+            return (mac & MacAddress.LONG_FLAGS) != 0 ? 0 : _table.lookup(mac) + 1; // NOT_FOUND + 1 == 0
+        }
+
+        void packet(long source, long destination, long bytes) {
+            int s = slot(source), d = slot(destination);
+            ++_sourcePackets[s];
+            _sourceBytes[s] += bytes;
+            ++_destinationPackets[d];
+            _destinationBytes[d] += bytes;
+            _sources.add(source);
+            ++_packets;
+            _bytes += bytes;
+        }
+
+        void add(Counts other) {
+            for (int i = 0; i < _sourcePackets.length; ++i) {
+                _sourcePackets[i] += other._sourcePackets[i];
+                _sourceBytes[i] += other._sourceBytes[i];
+                _destinationPackets[i] += other._destinationPackets[i];
+                _destinationBytes[i] += other._destinationBytes[i];
+            }
+            other._sources.forEach(_sources::add);
+            _packets += other._packets;
+            _bytes += other._bytes;
+            _skipped += other._skipped;
+        }
+    }
+
+    /**
+     * The packets and bytes sent and received by each manufacturer, as
+     * identified by its index in the registry, with NOT_FOUND standing for
+     * unknown, locally administered and multicast addresses.  Bytes are
+     * original (on the wire) packet lengths, even where the capture was
+     * truncated to a snap length.
+     */
+    public static final class Result {
+        private final Counts _counts;
+        private final int[] _stations;
+
+        Result(Counts counts) {
+            _counts = counts;
+            _stations = new int[counts._sourcePackets.length];
+            counts._sources.forEach(mac -> ++_stations[counts.slot(mac)]);
+        }
+
+        /**
+         * Returns the number of Ethernet packets counted
+         * @return the number of Ethernet packets counted
+         */
+        public long getPackets() { return _counts._packets; }
+
+        /**
+         * Returns the total original length of the Ethernet packets counted
+         * @return the total original length of the Ethernet packets counted
+         */
+        public long getBytes() { return _counts._bytes; }
+
+        /**
+         * Returns the number of packets skipped because they were not
+         * captured on an Ethernet interface or were too short to hold an
+         * Ethernet header
+         *
+         * @return the number of packets skipped
+         */
+        public long getSkippedPackets() { return _counts._skipped; }
+
+        private int slot(int index) {
+            if (index < OuiRegistry.NOT_FOUND || index >= _stations.length - 1) throw new IndexOutOfBoundsException("No OUI at index " + index);
+            return index + 1;
+        }
+
+        /**
+         * Returns the number of packets sent from addresses with the
+         * specified manufacturer
+         *
+         * @param index the registry index of the manufacturer, or NOT_FOUND
+         * @return the number of packets sent
+         */
+        public long getSourcePackets(int index) { return _counts._sourcePackets[slot(index)]; }
+
+        /**
+         * Returns the number of bytes sent from addresses with the
+         * specified manufacturer
+         *
+         * @param index the registry index of the manufacturer, or NOT_FOUND
+         * @return the number of bytes sent
+         */
+        public long getSourceBytes(int index) { return _counts._sourceBytes[slot(index)]; }
+
+        /**
+         * Returns the number of packets sent to addresses with the
+         * specified manufacturer
+         *
+         * @param index the registry index of the manufacturer, or NOT_FOUND
+         * @return the number of packets received
+         */
+        public long getDestinationPackets(int index) { return _counts._destinationPackets[slot(index)]; }
+
+        /**
+         * Returns the number of bytes sent to addresses with the specified
+         * manufacturer
+         *
+         * @param index the registry index of the manufacturer, or NOT_FOUND
+         * @return the number of bytes received
+         */
+        public long getDestinationBytes(int index) { return _counts._destinationBytes[slot(index)]; }
+
+        /**
+         * Returns the number of distinct source addresses with the
+         * specified manufacturer
+         *
+         * @param index the registry index of the manufacturer, or NOT_FOUND
+         * @return the number of distinct stations that sent packets
+         */
+        public int getSourceStations(int index) { return _stations[slot(index)]; }
+
+        /**
+         * Returns the registry indexes of the manufacturers that sent or
+         * received any packets, busiest first
+         *
+         * @return the indexes of the manufacturers seen
+         */
+        public int[] getManufacturers() {
+            final Counts c = _counts;
+            List<Integer> seen = new ArrayList<Integer>();
+            for (int i = 1; i < c._sourcePackets.length; ++i) {
+                if (c._sourcePackets[i] + c._destinationPackets[i] > 0) seen.add(i - 1);
+            }
+            seen.sort((a, b) -> {
+                int result = Long.compare(c._sourcePackets[b + 1] + c._destinationPackets[b + 1], c._sourcePackets[a + 1] + c._destinationPackets[a + 1]);
+                return result != 0 ? result : Integer.compare(a, b);
+            });
+            int[] result = new int[seen.size()];
+            for (int i = 0; i < result.length; ++i) result[i] = seen.get(i);
+            return result;
+        }
+
+        /**
+         * Writes a tab-separated report with one line per manufacturer,
+         * busiest first, followed by a line for unknown addresses
+         *
+         * @param out the destination
+         * @throws IOException if thrown by the Appendable
+         */
+        public void writeTo(Appendable out) throws IOException {
+            out.append("manufacturer\tshort\tstations\ttx_packets\ttx_bytes\trx_packets\trx_bytes\n");
+            OuiTable table = _counts._table;
+            for (int i : getManufacturers()) {
+                Oui oui = table.ouiAt(i);
+                row(out, oui.getManufacturer(), oui.getShortName(), i);
+            }
+            if (getSourcePackets(OuiRegistry.NOT_FOUND) + getDestinationPackets(OuiRegistry.NOT_FOUND) > 0) {
+                row(out, "(unknown, local or multicast)", "", OuiRegistry.NOT_FOUND);
+            }
+        }
+
+        private void row(Appendable out, String manufacturer, String shortName, int index) throws IOException {
+            out.append(manufacturer.replace('\t', ' ')).append('\t').append(shortName.replace('\t', ' '))
+               .append('\t').append(Integer.toString(getSourceStations(index)))
+               .append('\t').append(Long.toString(getSourcePackets(index)))
+               .append('\t').append(Long.toString(getSourceBytes(index)))
+               .append('\t').append(Long.toString(getDestinationPackets(index)))
+               .append('\t').append(Long.toString(getDestinationBytes(index))).append('\n');
+        }
+    }
+
+    static final String USAGE = "Usage: --pcap [--threads N] [--data FILE] capture...\n"
+            + "Counts the packets and bytes sent and received by each manufacturer in pcap and pcapng\n"
+            + "capture files, writing a tab-separated report to stdout, busiest manufacturers first.";
+
+    /**
+     * Runs a capture analysis from the command line, as
+     * OuiRegistry.main("--pcap", ...) does.  Exits with status 1 on bad
+     * arguments; with --help, prints the usage to stdout and exits normally.
+     *
+     * @param args options and capture files
+     * @throws Exception if anything goes wrong
+     */
+    static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        String data = null;
+        List<File> captures = new ArrayList<File>();
+        try {
+            for (int i = 0; i < args.length; ++i) {
+                String arg = args[i];
+                if (arg.equals("--threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                    if (threads < 1) throw new IllegalArgumentException(USAGE);
+                } else if (arg.equals("--data") && i + 1 < args.length) {
+                    data = args[++i];
+                } else if (arg.equals("--help")) {
+                    System.out.println(USAGE);
+                    return;
+                } else if (arg.startsWith("-")) {
+                    throw new IllegalArgumentException(USAGE);
+                } else {
+                    captures.add(new File(arg));
+                }
+            }
+            if (captures.isEmpty()) throw new IllegalArgumentException(USAGE);
+        } catch (IllegalArgumentException e) { // including NumberFormatException
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
+        OuiRegistry registry = data == null ? new OuiRegistry() : new OuiRegistry(new File(data));
+        ExecutorService executor = threads == 1 ? null : new ForkJoinPool(threads);
+        try {
+            StringBuilder out = new StringBuilder();
+            new CaptureAnalyzer(registry).analyze(executor, captures.toArray(new File[captures.size()])).writeTo(out);
+            PrintStream stdout = new PrintStream(System.out, false, "UTF-8");
+            stdout.print(out);
+            stdout.flush();
+        } finally {
+            if (executor != null) executor.shutdown();
+        }
+    }
+}
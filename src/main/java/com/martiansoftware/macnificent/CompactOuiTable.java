@@ -0,0 +1,312 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OuiTable for memory-constrained deployments, holding no per-assignment
+ * objects at all.
+ *
+ * 24-bit OUIs are stored as a rank/select bitmap over the 2^24 OUI space.
+ * Because assigned OUIs are sparse, the bitmap is itself two-level: a
+ * summary bitmap with one bit per 64-OUI word records which words are
+ * non-empty, and only the non-empty words are stored.  Each level keeps
+ * the cumulative number of set bits before every word, so the rank of an
+ * OUI (its position in the table) costs four array reads and two popcounts,
+ * and select (the OUI at a position) is two binary searches.
+ *
+ * Manufacturer and short names are deduplicated and front coded into one
+ * FrontCodedPool each.  Every assignment stores only the positions of its
+ * names in the pools, bit-packed to the minimum width.
+ *
+ * The comparatively few 28- and 36-bit assignments follow the 24-bit OUIs
+ * in position order and are located via a PrefixTrie, as in BufferOuiTable.
+ *
+ * Oui objects are created each time ouiAt() is called and not retained.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+final class CompactOuiTable extends OuiTable {
+
+    /**
+     * One bit per 64-OUI word of the 2^24 OUI space, set if any OUI in the
+     * word is assigned
+     */
+    private final long[] _summary;
+
+    /**
+     * Number of non-empty words before each long of _summary
+     */
+    private final int[] _summaryRanks;
+
+    /**
+     * The non-empty words of the OUI bitmap, in OUI order
+     */
+    private final long[] _words;
+
+    /**
+     * Number of OUIs before each of _words
+     */
+    private final int[] _wordRanks;
+
+    private final int _count;
+
+    /**
+     * Prefixes of the 28- and 36-bit assignments
+     */
+    private final long[] _subPrefixes;
+
+    /**
+     * Prefix lengths of the 28- and 36-bit assignments
+     */
+    private final byte[] _subLengths;
+
+    /**
+     * Locates 28- and 36-bit assignments and their enclosing OUIs, or null if
+     * there are none
+     */
+    private final PrefixTrie _subBlocks;
+
+    private final FrontCodedPool _names;
+    private final FrontCodedPool _shortNames;
+
+    /**
+     * Position in _names and in _shortNames of each assignment's names
+     */
+    private final PackedInts _nameIds, _shortNameIds;
+
+    /**
+     * Creates a new CompactOuiTable holding the same assignments as another
+     * OuiTable.  24-bit OUIs are renumbered into ascending order.
+     *
+     * @param source the table to copy
+     */
+    CompactOuiTable(OuiTable source) {
+        super(source.lastModified());
+        int size = source.size();
+        List<Oui> ouis = new ArrayList<Oui>(size), subs = new ArrayList<Oui>();
+        Map<String, Integer> names = new HashMap<String, Integer>(), shortNames = new HashMap<String, Integer>();
+        for (int i = 0; i < size; ++i) {
+            Oui oui = source.ouiAt(i);
+            (oui.getPrefixLength() == PrefixTrie.MA_L ? ouis : subs).add(oui);
+            names.put(oui.getManufacturer(), 0);
+            shortNames.put(oui.getShortName(), 0);
+        }
+        ouis.sort((a, b) -> Long.compare(a.getPrefix(), b.getPrefix()));
+        ouis.addAll(subs);
+
+        _names = new FrontCodedPool(number(names));
+        _shortNames = new FrontCodedPool(number(shortNames));
+        _nameIds = new PackedInts(size, _names.size());
+        _shortNameIds = new PackedInts(size, _shortNames.size());
+
+        // count the non-empty words, then fill both levels of the bitmap
+        _count = size - subs.size();
+        int words = 0, lastWord = -1;
+        for (int i = 0; i < _count; ++i) {
+            int word = MacAddress.oui(ouis.get(i).getPrefix()) >>> 6;
+            if (word != lastWord) ++words;
+            lastWord = word;
+        }
+        _summary = new long[1 << (24 - 12)];
+        _summaryRanks = new int[_summary.length];
+        _words = new long[words];
+        _wordRanks = new int[words];
+        int w = -1;
+        lastWord = -1;
+        for (int i = 0; i < _count; ++i) {
+            int oui = MacAddress.oui(ouis.get(i).getPrefix());
+            int word = oui >>> 6;
+            if (word != lastWord) {
+                _wordRanks[++w] = i;
+                _summary[word >>> 6] |= 1L << (word & 63);
+                lastWord = word;
+            }
+            _words[w] |= 1L << (oui & 63);
+        }
+        for (int i = 1; i < _summary.length; ++i) {
+            _summaryRanks[i] = _summaryRanks[i - 1] + Long.bitCount(_summary[i - 1]);
+        }
+
+        _subPrefixes = new long[subs.size()];
+        _subLengths = new byte[subs.size()];
+        _subBlocks = subs.isEmpty() ? null : new PrefixTrie(subs.size());
+        for (int i = 0; i < size; ++i) {
+            Oui oui = ouis.get(i);
+            _nameIds.set(i, names.get(oui.getManufacturer()));
+            _shortNameIds.set(i, shortNames.get(oui.getShortName()));
+            if (i < _count) continue;
+            _subPrefixes[i - _count] = oui.getPrefix();
+            _subLengths[i - _count] = (byte) oui.getPrefixLength();
+            _subBlocks.put(oui.getPrefix(), oui.getPrefixLength(), i);
+            int parent = rank(MacAddress.oui(oui.getPrefix()));
+            if (parent != NOT_FOUND) _subBlocks.put(oui.getPrefix(), PrefixTrie.MA_L, parent);
+        }
+    }
+
+    /**
+     * Replaces each value of the map with the position of its key in the
+     * sorted, distinct keys, which are returned
+     */
+    private static String[] number(Map<String, Integer> map) {
+        String[] result = FrontCodedPool.sortDistinct(map.keySet());
+        for (int i = 0; i < result.length; ++i) map.put(result[i], i);
+        return result;
+    }
+
+    @Override
+    int size() { return _count + _subPrefixes.length; }
+
+    /**
+     * Returns the position of the specified 24-bit OUI, or NOT_FOUND
+     */
+    int rank(int oui) {
+        int word = oui >>> 6;
+        long summary = _summary[word >>> 6];
+        long bit = 1L << (word & 63);
+        if ((summary & bit) == 0) return NOT_FOUND;
+        int w = _summaryRanks[word >>> 6] + Long.bitCount(summary & (bit - 1));
+        long bits = _words[w];
+        bit = 1L << (oui & 63);
+        if ((bits & bit) == 0) return NOT_FOUND;
+        return _wordRanks[w] + Long.bitCount(bits & (bit - 1));
+    }
+
+    /**
+     * Returns the 24-bit OUI at the specified position, which must be less
+     * than the number of 24-bit OUIs
+     */
+    int select(int index) {
+        int w = lastAtMost(_wordRanks, index);
+        int s = lastAtMost(_summaryRanks, w);
+        int word = (s << 6) | selectInWord(_summary[s], w - _summaryRanks[s]);
+        return (word << 6) | selectInWord(_words[w], index - _wordRanks[w]);
+    }
+
+    /**
+     * Returns the position of the last element of a sorted array that is
+     * not greater than value, preferring the last of equal elements
+     */
+    private static int lastAtMost(int[] a, int value) {
+        int lo = 0, hi = a.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (a[mid] <= value) lo = mid; else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the position of the (k + 1)th set bit of a word
+     */
+    private static int selectInWord(long bits, int k) {
+        for (int i = 0; i < k; ++i) bits &= bits - 1;
+        return Long.numberOfTrailingZeros(bits);
+    }
+
+    @Override
+    int lookup(long mac) {
+        if (_subBlocks != null) {
+            int result = _subBlocks.lookup(mac);
+            if (result != PrefixTrie.NOT_FOUND) return result;
+        }
+        return rank(MacAddress.oui(mac));
+    }
+
+    @Override
+    Oui ouiAt(int index) {
+        if (index < _count) {
+            return new Oui((long) select(index) << 24, PrefixTrie.MA_L, manufacturerAt(index), shortNameAt(index));
+        }
+        return new Oui(_subPrefixes[index - _count], _subLengths[index - _count], manufacturerAt(index), shortNameAt(index));
+    }
+
+    /**
+     * Returns the manufacturer of the assignment at the specified position
+     * without creating an Oui
+     */
+    String manufacturerAt(int index) {
+        return _names.get(_nameIds.get(index));
+    }
+
+    @Override
+    String shortNameAt(int index) {
+        return _shortNames.get(_shortNameIds.get(index));
+    }
+
+    /**
+     * Returns the number of bytes of heap used by this table, excluding the
+     * PrefixTrie for 28- and 36-bit assignments
+     *
+     * @return the approximate number of bytes of heap used by this table
+     */
+    long footprint() {
+        return 64 + 8L * (_summary.length + _words.length + _subPrefixes.length)
+                + 4L * (_summaryRanks.length + _wordRanks.length) + _subLengths.length + 5 * 16
+                + _names.footprint() + _shortNames.footprint() + _nameIds.footprint() + _shortNameIds.footprint();
+    }
+
+    /**
+     * A fixed-size array of non-negative ints, each stored in the minimum
+     * number of bits
+     */
+    static final class PackedInts {
+        private final long[] _bits;
+        private final int _width;
+        private final long _mask;
+
+        /**
+         * @param size the number of values
+         * @param limit one more than the largest value to be stored
+         */
+        PackedInts(int size, int limit) {
+            _width = Math.max(1, 32 - Integer.numberOfLeadingZeros(limit - 1));
+            _mask = (1L << _width) - 1;
+            _bits = new long[(int) (((long) size * _width + 63) >>> 6)];
+        }
+
+        int get(int index) {
+            long bit = (long) index * _width;
+            int word = (int) (bit >>> 6), shift = (int) bit & 63;
+            long result = _bits[word] >>> shift;
+            if (shift + _width > 64) result |= _bits[word + 1] << (64 - shift);
+            return (int) (result & _mask);
+        }
+
+        void set(int index, int value) {
+            long bit = (long) index * _width;
+            int word = (int) (bit >>> 6), shift = (int) bit & 63;
+            _bits[word] = (_bits[word] & ~(_mask << shift)) | ((long) value << shift);
+            if (shift + _width > 64) {
+                int spill = 64 - shift;
+                _bits[word + 1] = (_bits[word + 1] & ~(_mask >>> spill)) | ((long) value >>> spill);
+            }
+        }
+
+        long footprint() {
+            return 16 + 16 + 8L * _bits.length;
+        }
+    }
+}
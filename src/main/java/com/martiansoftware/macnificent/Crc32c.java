@@ -0,0 +1,159 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli) checksum, as used by iSCSI, ext4 and SSE4.2's crc32
+ * instruction.  Java 9 added java.util.zip.CRC32C, which HotSpot implements
+ * with that instruction; newChecksum() returns one of those when it is
+ * available, and an instance of this class (a portable slicing-by-8
+ * implementation) on Java 8.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+final class Crc32c implements Checksum {
+
+    /**
+     * The Castagnoli polynomial, bit-reversed
+     */
+    private static final int POLY = 0x82f63b78;
+
+    /**
+     * Eight 256-entry tables: the first is the usual byte-at-a-time table,
+     * and table k advances a CRC past a byte followed by k zero bytes
+     */
+    private static final int[] TABLE = new int[8 * 256];
+
+    static {
+        for (int n = 0; n < 256; ++n) {
+            int c = n;
+            for (int k = 0; k < 8; ++k) c = (c & 1) != 0 ? c >>> 1 ^ POLY : c >>> 1;
+            TABLE[n] = c;
+        }
+        for (int n = 0; n < 256; ++n) {
+            int c = TABLE[n];
+            for (int k = 1; k < 8; ++k) {
+                c = c >>> 8 ^ TABLE[c & 0xff];
+                TABLE[k * 256 + n] = c;
+            }
+        }
+    }
+
+    /**
+     * The JDK's implementation, or null if it is unavailable
+     */
+    private static final Class<?> JDK_CRC32C = jdkCrc32c();
+
+    /**
+     * Bytes copied at a time from buffers without an accessible array
+     */
+    private static final int COPY_SIZE = 8192;
+
+    /**
+     * The current CRC, inverted
+     */
+    private int _crc = ~0;
+
+    private static Class<?> jdkCrc32c() {
+        try {
+            return Class.forName("java.util.zip.CRC32C");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a new CRC-32C Checksum: the JDK's own if it provides one, or
+     * else an instance of this class.
+     *
+     * @return a new CRC-32C Checksum
+     */
+    static Checksum newChecksum() {
+        if (JDK_CRC32C != null) {
+            try {
+                return (Checksum) JDK_CRC32C.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                // fall through to the portable implementation
+            }
+        }
+        return new Crc32c();
+    }
+
+    /**
+     * Returns the CRC-32C of the specified bytes of a buffer.  The buffer's
+     * position and limit are not changed.
+     *
+     * @param buf the buffer containing the data
+     * @param offset the index of the first byte to checksum
+     * @param length the number of bytes to checksum
+     * @return the CRC-32C of the specified bytes
+     */
+    static int checksum(ByteBuffer buf, int offset, int length) {
+        Checksum crc = newChecksum();
+        if (buf.hasArray()) {
+            crc.update(buf.array(), buf.arrayOffset() + offset, length);
+        } else {
+            byte[] b = new byte[Math.min(length, COPY_SIZE)];
+            ByteBuffer dup = buf.duplicate();
+            dup.limit(offset + length).position(offset);
+            while (dup.hasRemaining()) {
+                int n = Math.min(b.length, dup.remaining());
+                dup.get(b, 0, n);
+                crc.update(b, 0, n);
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public void update(int b) {
+        _crc = _crc >>> 8 ^ TABLE[(_crc ^ b) & 0xff];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off > b.length - len) throw new ArrayIndexOutOfBoundsException();
+        int crc = _crc;
+        int end = off + len;
+        for (; off + 8 <= end; off += 8) {
+            int lo = crc ^ (b[off] & 0xff | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | b[off + 3] << 24);
+            int hi = b[off + 4] & 0xff | (b[off + 5] & 0xff) << 8 | (b[off + 6] & 0xff) << 16 | b[off + 7] << 24;
+            crc = TABLE[7 * 256 + (lo & 0xff)] ^ TABLE[6 * 256 + (lo >>> 8 & 0xff)]
+                ^ TABLE[5 * 256 + (lo >>> 16 & 0xff)] ^ TABLE[4 * 256 + (lo >>> 24)]
+                ^ TABLE[3 * 256 + (hi & 0xff)] ^ TABLE[2 * 256 + (hi >>> 8 & 0xff)]
+                ^ TABLE[256 + (hi >>> 16 & 0xff)] ^ TABLE[hi >>> 24];
+        }
+        for (; off < end; ++off) crc = crc >>> 8 ^ TABLE[(crc ^ b[off]) & 0xff];
+        _crc = crc;
+    }
+
+    @Override
+    public long getValue() {
+        return ~_crc & 0xffffffffL;
+    }
+
+    @Override
+    public void reset() {
+        _crc = ~0;
+    }
+}
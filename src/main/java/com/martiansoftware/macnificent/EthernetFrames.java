@@ -0,0 +1,212 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * Locates MAC addresses within Ethernet II frames held in ByteBuffers,
+ * without copying or allocating.  Each frame starts at its buffer's
+ * position and ends at its limit; the position is never changed.  Methods
+ * that locate a field return its absolute index in the buffer, suitable
+ * for MacAddressView.wrap() or OuiRegistry.getOui(ByteBuffer, int), or -1
+ * if the frame is too short or lacks the field.  Methods that read a MAC
+ * address return its 48-bit value or MacAddressParser.INVALID.
+ *
+ * 802.1Q and 802.1ad (Q-in-Q) VLAN tags are skipped when locating the
+ * EtherType and payload.  ARP is recognized only for Ethernet hardware
+ * addresses (hardware type 1, hardware address length 6).
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public final class EthernetFrames {
+
+    /**
+     * Offset of the destination MAC address within a frame
+     */
+    public static final int DESTINATION_OFFSET = 0;
+
+    /**
+     * Offset of the source MAC address within a frame
+     */
+    public static final int SOURCE_OFFSET = 6;
+
+    /**
+     * Offset of the EtherType (or first VLAN tag) within a frame
+     */
+    public static final int ETHERTYPE_OFFSET = 12;
+
+    /**
+     * Length of an untagged Ethernet II header
+     */
+    public static final int HEADER_LENGTH = 14;
+
+    /**
+     * EtherType of ARP
+     */
+    public static final int ETHERTYPE_ARP = 0x0806;
+
+    /**
+     * EtherTypes that introduce a 4-byte VLAN tag: 802.1Q, 802.1ad, and
+     * the pre-standard Q-in-Q value
+     */
+    public static final int ETHERTYPE_VLAN = 0x8100, ETHERTYPE_QINQ = 0x88a8, ETHERTYPE_QINQ_LEGACY = 0x9100;
+
+    /**
+     * Offset of the sender hardware address within an ARP packet
+     */
+    private static final int ARP_SHA = 8;
+
+    private EthernetFrames() {}
+
+    private static long read(ByteBuffer frame, int index) {
+        return index < 0 ? MacAddressParser.INVALID : MacAddress.toLong(frame, index);
+    }
+
+    private static int unsignedShort(ByteBuffer frame, int index) {
+        return ((frame.get(index) & 0xff) << 8) | (frame.get(index + 1) & 0xff);
+    }
+
+    private static boolean isVlanTag(int etherType) {
+        return etherType == ETHERTYPE_VLAN || etherType == ETHERTYPE_QINQ || etherType == ETHERTYPE_QINQ_LEGACY;
+    }
+
+    /**
+     * Returns the index of a frame's destination MAC address, or -1
+     * @param frame the frame, from its position to its limit
+     * @return the absolute index of the destination MAC address, or -1
+     */
+    public static int destinationOffset(ByteBuffer frame) {
+        return frame.remaining() < HEADER_LENGTH ? -1 : frame.position() + DESTINATION_OFFSET;
+    }
+
+    /**
+     * Returns the index of a frame's source MAC address, or -1
+     * @param frame the frame, from its position to its limit
+     * @return the absolute index of the source MAC address, or -1
+     */
+    public static int sourceOffset(ByteBuffer frame) {
+        return frame.remaining() < HEADER_LENGTH ? -1 : frame.position() + SOURCE_OFFSET;
+    }
+
+    /**
+     * Returns a frame's destination MAC address
+     * @param frame the frame, from its position to its limit
+     * @return the 48-bit destination MAC address, or MacAddressParser.INVALID
+     */
+    public static long destination(ByteBuffer frame) {
+        return read(frame, destinationOffset(frame));
+    }
+
+    /**
+     * Returns a frame's source MAC address
+     * @param frame the frame, from its position to its limit
+     * @return the 48-bit source MAC address, or MacAddressParser.INVALID
+     */
+    public static long source(ByteBuffer frame) {
+        return read(frame, sourceOffset(frame));
+    }
+
+    /**
+     * Returns the index of a frame's EtherType, after any VLAN tags
+     */
+    private static int etherTypeIndex(ByteBuffer frame) {
+        int i = frame.position() + ETHERTYPE_OFFSET, limit = frame.limit();
+        while (i + 2 <= limit) {
+            if (!isVlanTag(unsignedShort(frame, i))) return i;
+            i += 4;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a frame's EtherType, skipping any VLAN tags
+     * @param frame the frame, from its position to its limit
+     * @return the EtherType, or -1 if the frame is truncated
+     */
+    public static int etherType(ByteBuffer frame) {
+        int i = etherTypeIndex(frame);
+        return i < 0 ? -1 : unsignedShort(frame, i);
+    }
+
+    /**
+     * Returns the index of the first byte of a frame's payload, after any
+     * VLAN tags
+     *
+     * @param frame the frame, from its position to its limit
+     * @return the absolute index of the payload, or -1 if the frame is truncated
+     */
+    public static int payloadOffset(ByteBuffer frame) {
+        int i = etherTypeIndex(frame);
+        return i < 0 ? -1 : i + 2;
+    }
+
+    /**
+     * Returns the index of the ARP packet in a frame, or -1 if the frame
+     * does not hold a complete ARP packet with Ethernet hardware addresses
+     */
+    private static int arpOffset(ByteBuffer frame) {
+        int i = etherTypeIndex(frame);
+        if (i < 0 || unsignedShort(frame, i) != ETHERTYPE_ARP) return -1;
+        int arp = i + 2;
+        if (arp + ARP_SHA > frame.limit()) return -1;
+        if (unsignedShort(frame, arp) != 1 || frame.get(arp + 4) != MacAddress.ETH_ALEN) return -1;
+        int protocolLength = frame.get(arp + 5) & 0xff;
+        return arp + ARP_SHA + 2 * (MacAddress.ETH_ALEN + protocolLength) > frame.limit() ? -1 : arp;
+    }
+
+    /**
+     * Returns the index of the sender hardware address of an ARP frame, or -1
+     * @param frame the frame, from its position to its limit
+     * @return the absolute index of the ARP sender hardware address, or -1
+     */
+    public static int arpSenderOffset(ByteBuffer frame) {
+        int arp = arpOffset(frame);
+        return arp < 0 ? -1 : arp + ARP_SHA;
+    }
+
+    /**
+     * Returns the index of the target hardware address of an ARP frame, or -1
+     * @param frame the frame, from its position to its limit
+     * @return the absolute index of the ARP target hardware address, or -1
+     */
+    public static int arpTargetOffset(ByteBuffer frame) {
+        int arp = arpOffset(frame);
+        return arp < 0 ? -1 : arp + ARP_SHA + MacAddress.ETH_ALEN + (frame.get(arp + 5) & 0xff);
+    }
+
+    /**
+     * Returns the sender hardware address of an ARP frame
+     * @param frame the frame, from its position to its limit
+     * @return the 48-bit sender MAC address, or MacAddressParser.INVALID
+     */
+    public static long arpSender(ByteBuffer frame) {
+        return read(frame, arpSenderOffset(frame));
+    }
+
+    /**
+     * Returns the target hardware address of an ARP frame
+     * @param frame the frame, from its position to its limit
+     * @return the 48-bit target MAC address, or MacAddressParser.INVALID
+     */
+    public static long arpTarget(ByteBuffer frame) {
+        return read(frame, arpTargetOffset(frame));
+    }
+}
@@ -0,0 +1,180 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * An immutable list of distinct Strings, sorted by their UTF-8 encodings and
+ * front coded into a single byte array.  Strings are grouped into buckets
+ * of BUCKET_SIZE.  The first String of each bucket is stored whole; each of
+ * the others is stored as the length of the prefix it shares with its
+ * predecessor followed by the remaining bytes.  Sorted manufacturer names
+ * share long prefixes ("Cisco Systems, Inc", "Cisco Systems, Inc."), so
+ * the pool is considerably smaller than the names themselves, and far
+ * smaller than the equivalent String objects.
+ *
+ * Decoding a String walks at most BUCKET_SIZE - 1 entries of its bucket.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+final class FrontCodedPool {
+
+    /**
+     * Number of Strings per bucket
+     */
+    static final int BUCKET_SIZE = 16;
+
+    /**
+     * The front-coded Strings.  Lengths are unsigned LEB128 varints.
+     */
+    private final byte[] _pool;
+
+    /**
+     * Offset in _pool of the first String of each bucket
+     */
+    private final int[] _buckets;
+
+    private final int _size;
+
+    /**
+     * Length in bytes of the longest String, so decoding needs one buffer
+     */
+    private final int _maxLength;
+
+    /**
+     * Creates a new FrontCodedPool
+     *
+     * @param strings distinct Strings, in ascending order of their UTF-8
+     * encodings (see compare())
+     */
+    FrontCodedPool(String[] strings) {
+        _size = strings.length;
+        _buckets = new int[(_size + BUCKET_SIZE - 1) / BUCKET_SIZE];
+        byte[] pool = new byte[64];
+        int n = 0, maxLength = 0;
+        byte[] prev = null;
+        for (int i = 0; i < _size; ++i) {
+            byte[] b = strings[i].getBytes(StandardCharsets.UTF_8);
+            if (prev != null && compare(prev, b) >= 0) throw new IllegalArgumentException("FrontCodedPool strings must be distinct and sorted: \"" + strings[i] + "\"");
+            int shared = 0;
+            if (i % BUCKET_SIZE == 0) {
+                _buckets[i / BUCKET_SIZE] = n;
+            } else {
+                int max = Math.min(prev.length, b.length);
+                while (shared < max && prev[shared] == b[shared]) ++shared;
+            }
+            if (n + 10 + b.length - shared > pool.length) pool = Arrays.copyOf(pool, Math.max(2 * pool.length, n + 10 + b.length));
+            if (i % BUCKET_SIZE != 0) n = writeVarint(pool, n, shared);
+            n = writeVarint(pool, n, b.length - shared);
+            System.arraycopy(b, shared, pool, n, b.length - shared);
+            n += b.length - shared;
+            maxLength = Math.max(maxLength, b.length);
+            prev = b;
+        }
+        _pool = Arrays.copyOf(pool, n);
+        _maxLength = maxLength;
+    }
+
+    /**
+     * Orders byte arrays as unsigned bytes, which for UTF-8 is the same as
+     * ordering their Strings by code point
+     */
+    static int compare(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; ++i) {
+            if (a[i] != b[i]) return (a[i] & 0xff) - (b[i] & 0xff);
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * Sorts Strings into the order required by the constructor and removes
+     * duplicates
+     *
+     * @param strings the Strings to sort, which are left unchanged
+     * @return the distinct Strings in order
+     */
+    static String[] sortDistinct(Collection<String> strings) {
+        String[] result = new HashSet<String>(strings).toArray(new String[0]);
+        final byte[][] encoded = new byte[result.length][];
+        Integer[] order = new Integer[result.length];
+        for (int i = 0; i < result.length; ++i) {
+            encoded[i] = result[i].getBytes(StandardCharsets.UTF_8);
+            order[i] = i;
+        }
+        Arrays.sort(order, (x, y) -> compare(encoded[x], encoded[y]));
+        String[] sorted = new String[result.length];
+        for (int i = 0; i < result.length; ++i) sorted[i] = result[order[i]];
+        return sorted;
+    }
+
+    private static int writeVarint(byte[] b, int off, int value) {
+        while ((value & ~0x7f) != 0) {
+            b[off++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        b[off++] = (byte) value;
+        return off;
+    }
+
+    /**
+     * Returns the number of Strings in this pool
+     * @return the number of Strings in this pool
+     */
+    int size() { return _size; }
+
+    /**
+     * Returns the String at the specified position
+     *
+     * @param index a position from 0 to size() - 1
+     * @return the String at that position
+     */
+    String get(int index) {
+        if (index < 0 || index >= _size) throw new IndexOutOfBoundsException("No string at index " + index);
+        byte[] pool = _pool;
+        byte[] buf = new byte[_maxLength];
+        int p = _buckets[index / BUCKET_SIZE], length = 0;
+        for (int i = index - index % BUCKET_SIZE; i <= index; ++i) {
+            int shared = 0;
+            if (i % BUCKET_SIZE != 0) {
+                shared = pool[p] & 0x7f;
+                for (int shift = 7; pool[p++] < 0; shift += 7) shared |= (pool[p] & 0x7f) << shift;
+            }
+            int suffix = pool[p] & 0x7f;
+            for (int shift = 7; pool[p++] < 0; shift += 7) suffix |= (pool[p] & 0x7f) << shift;
+            System.arraycopy(pool, p, buf, shared, suffix);
+            p += suffix;
+            length = shared + suffix;
+        }
+        return new String(buf, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the approximate number of bytes of heap used by this pool.
+     * @return the approximate number of bytes of heap used by this pool
+     */
+    long footprint() {
+        return 32 + 16 + _pool.length + 16 + 4L * _buckets.length;
+    }
+}
@@ -19,87 +19,483 @@ package com.martiansoftware.macnificent;
  *
  */
 
-import java.io.DataOutput;
-import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.LineNumberReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.time.temporal.TemporalAccessor;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
- * Simple utility class that takes an IEEE MA-L data file (as obtained
- * canonically from http://standards-oui.ieee.org/oui/oui.txt) on stdin
- * and generates a binary data file suitable for use by OuiRegistry on
- * stdout.
+ * Simple utility class that takes IEEE registry listings (as obtained
+ * canonically from http://standards-oui.ieee.org/oui/oui.txt) and generates
+ * a binary data file suitable for use by OuiRegistry.
  * 
- * There is one optional command line argument, which is the date that will
- * be returned by the resulting OuiRegistry's getLastModified() method.  This
- * argument must be provided in ISO8601 format, e.g. as obtained on a *nix
- * command line via <code>date -Iseconds</code>
+ * Listings are read from the files named on the command line, or from stdin
+ * if none are named (or one is named "-").  Both the text (oui.txt) and CSV
+ * (oui.csv) listings are understood; see RegistryParser for details.  The
+ * MA-M, MA-S, IAB and CID registries (mam.txt, oui36.txt, iab.txt and cid.txt
+ * or their CSV equivalents in the same location) may be given along with
+ * the MA-L registry, or simply concatenated with oui.txt on stdin.  Their 28-
+ * and 36-bit assignments are only written to the v2 and v3 formats (see below).
+ * 
+ * Assignments are sorted by prefix before being written, and if the same
+ * prefix is listed more than once the last definition wins, so the same
+ * input always produces the same data file.
+ * 
+ * One optional command line argument is the date that will be returned by
+ * the resulting OuiRegistry's getLastModified() method.  This argument must
+ * be provided in ISO8601 format, e.g. as obtained on a *nix command line via
+ * <code>date -Iseconds</code>
+ * 
+ * Other options are:
+ * <ul>
+ * <li><code>--v2</code> writes the v2 format instead of the original (v1)
+ * format.  OuiRegistry can memory-map and search v2 files in place (see
+ * OuiRegistry(File)).</li>
+ * <li><code>--v3</code> writes the v3 format, which is the v2 format with
+ * each distinct manufacturer name stored only once and a checksum that is
+ * verified when the file is loaded.</li>
+ * <li><code>--out FILE</code> writes the data file to FILE rather than
+ * stdout.</li>
+ * <li><code>--parallel</code> splits large listings into chunks that are
+ * parsed on all available cores.</li>
+ * <li><code>--short-names FILE</code> overrides the short names that
+ * OuiRegistry.format() uses for matching manufacturers, according to the
+ * rules in FILE (see ShortNames for the format), e.g.
+ * <code>Hewlett Packard Enterprise = HPE</code>.  Short names are stored in
+ * v2 and v3 files, so this requires --v2 or --v3.</li>
+ * </ul>
+ * The time taken by each stage is reported on stderr.
+ * 
+ * Alternatively, <code>--diff base.dat target.dat</code> compares two
+ * existing data files (in any format) and writes a delta to stdout instead.
+ * OuiRegistry.applyDelta() turns a registry loaded from base.dat into one
+ * equivalent to target.dat, which is much cheaper to distribute than the
+ * whole of target.dat.
+ * 
+ * Or <code>--java CLASS data.dat</code> converts an existing data file (in
+ * any format) into the source of a Java class named CLASS, written to
+ * stdout or to the file given by <code>--out</code>.  The class holds the
+ * data in v3 format as string constants, and its <code>buffer()</code>
+ * method returns them as a ByteBuffer for OuiRegistry(ByteBuffer), so an
+ * application that compiles the class in can load its registry without
+ * locating or reading any resource.  The data is decoded into a static
+ * byte array when the class is initialized, and the resulting registry
+ * holds no files, mappings or threads.  It can therefore be built during
+ * GraalVM native-image build-time initialization and stored in the image
+ * heap, and the class itself can be stored in an AppCDS archive.
  * 
  * To run this, execute something along the lines of:
  * <code>cat oui.txt | mvn -q exec:java -Dexec.mainClass=com.martiansoftware.macnificent.GenerateDataFile > macnificent.dat</code>
  * <code>cat oui.txt | mvn -q exec:java -Dexec.mainClass=com.martiansoftware.macnificent.GenerateDataFile -Dexec.args="$(date -Iseconds)" > macnificent.dat</code>
+ * <code>mvn -q exec:java -Dexec.mainClass=com.martiansoftware.macnificent.GenerateDataFile -Dexec.args="--v3 --parallel --out macnificent.dat oui.csv mam.csv oui36.csv iab.csv cid.csv"</code>
+ * <code>mvn -q exec:java -Dexec.mainClass=com.martiansoftware.macnificent.GenerateDataFile -Dexec.args="--diff old.dat macnificent.dat" > macnificent.delta</code>
+ * <code>mvn -q exec:java -Dexec.mainClass=com.martiansoftware.macnificent.GenerateDataFile -Dexec.args="--java com.example.OuiData --out src/main/java/com/example/OuiData.java macnificent.dat"</code>
  *
  * @author <a href="http://martylamb.com">Marty Lamb</a>
  */
 public class GenerateDataFile {
-    
+
+    /**
+     * With --parallel, listings are split into chunks of at least this many bytes
+     */
+    static final int MIN_CHUNK_SIZE = 1 << 18;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final int MAX_LISTING_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * The most data held by each string constant in a class written by
+     * writeJava().  A class file stores constants in modified UTF-8, which
+     * needs up to two bytes per char and allows at most 65535 bytes.
+     */
+    static final int JAVA_CHUNK_SIZE = 32767;
+
+    /**
+     * Source characters in each line of string constant written by writeJava()
+     */
+    private static final int JAVA_LINE_LENGTH = 100;
+
     private static void usageAndExit(String msg) {
         System.err.println(msg);
         System.exit(1);        
     }
-    
-    private static void processOuiTxt(long lastModified) throws IOException {
-        Matcher m = Pattern.compile("^\\s*([0-9a-fA-f]{2})([0-9a-fA-f]{2})([0-9a-fA-f]{2})\\s+\\(base 16\\)\\s+(.*)$").matcher("");
-        byte[] oui = new byte[3];
-        int ouicount = 0;
-        LineNumberReader r = new LineNumberReader(new InputStreamReader(System.in));
-        DataOutput dout = new DataOutputStream(System.out);
-        dout.writeLong(lastModified);
-        String s = r.readLine();
-        while (s != null) {
-            m.reset(s);
-            if (m.matches()) {
-                for (int i = 0; i < 3; ++i) oui[i] = (byte) Integer.parseInt(m.group(i + 1), 16);
-                dout.write(oui, 0, 3);
-                dout.writeUTF(m.group(4));
-                ++ouicount;
+
+    /**
+     * Reads a channel to its end.  Each listing is held in memory whole so
+     * that it can be split into chunks for parsing, so none may be larger
+     * than the largest possible array.
+     */
+    private static byte[] readFully(ReadableByteChannel in, long sizeHint) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(MAX_LISTING_SIZE, Math.max(BUFFER_SIZE, sizeHint + 1)));
+        while (in.read(buf) >= 0) {
+            if (!buf.hasRemaining()) {
+                if (buf.capacity() == MAX_LISTING_SIZE) throw new IOException("Listing is larger than " + MAX_LISTING_SIZE + " bytes.");
+                ByteBuffer bigger = ByteBuffer.allocate((int) Math.min(MAX_LISTING_SIZE, 2L * buf.capacity()));
+                buf.flip();
+                buf = bigger.put(buf);
             }
-            s = r.readLine();
         }
-        System.err.format("Added %d OUIs.", ouicount);        
+        return Arrays.copyOf(buf.array(), buf.position());
     }
-    
+
     /**
-     * Utility for processing an IEEE MA-L data file (as obtained
-     * canonically from http://standards-oui.ieee.org/oui/oui.txt) on stdin
-     * and generating a binary data file suitable for use by OuiRegistry on
-     * stdout.
-     * @param args a single optional argument: the last modified time of the OUI database in ISO8601 format, e.g. as provided by 'date -Iseconds'.\n"
+     * Reads the named listing, or stdin if the name is "-"
      */
-    public static void main(String[] args) throws IOException {
-        long lastModified = System.currentTimeMillis();
-        
-        if (args.length > 0) {
-            if (args.length > 1) {
-                usageAndExit("Only one argument is supported: the last modified time of the OUI database in ISO8601 format, e.g. as provided by 'date -Iseconds'.\n"
-                            + "If omitted, the current time will be used as the last modified time of the OUI database.");
+    static byte[] readListing(String name) throws IOException {
+        if (name.equals("-")) return readFully(Channels.newChannel(System.in), 0);
+        try (FileChannel ch = FileChannel.open(Paths.get(name), StandardOpenOption.READ)) {
+            return readFully(ch, ch.size());
+        }
+    }
+
+    /**
+     * Parses the specified listings, splitting them into chunks that are
+     * parsed on the specified pool if it is not null.  Unrecognized
+     * assignments are reported on stderr.
+     *
+     * @param names the name of each listing, for use in warnings
+     * @param listings the contents of each listing
+     * @param pool the pool on which to parse chunks, or null to parse sequentially
+     * @return the assignments found, in the order in which they were listed
+     */
+    static List<Oui> parse(List<String> names, List<byte[]> listings, ForkJoinPool pool) throws IOException {
+        List<RegistryParser> parsers = new ArrayList<RegistryParser>();
+        List<Integer> owners = new ArrayList<Integer>();
+        for (int i = 0; i < listings.size(); ++i) {
+            byte[] data = listings.get(i);
+            boolean csv = RegistryParser.isCsv(data);
+            int chunks = pool == null ? 1 : Math.max(1, Math.min(pool.getParallelism(), data.length / MIN_CHUNK_SIZE));
+            int[] bounds = RegistryParser.split(data, chunks, csv);
+            for (int j = 0; j + 1 < bounds.length; ++j) {
+                parsers.add(new RegistryParser(data, bounds[j], bounds[j + 1], csv));
+                owners.add(i);
             }
+        }
+
+        if (pool == null) {
+            for (RegistryParser p : parsers) p.call();
+        } else {
             try {
-                TemporalAccessor ta = DateTimeFormatter.ISO_INSTANT.parse(args[0]);
-                Instant i = Instant.from(ta);
-                lastModified = i.toEpochMilli();
-            } catch (DateTimeParseException e) {
-                usageAndExit("Not a valid ISO8601 date/time: " + e.getMessage());
+                for (Future<RegistryParser> f : pool.invokeAll(parsers)) f.get();
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted while parsing.", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Unable to parse listing.", e.getCause());
+            }
+        }
+
+        List<Oui> result = new ArrayList<Oui>();
+        int line = 0;
+        for (int i = 0; i < parsers.size(); ++i) {
+            RegistryParser p = parsers.get(i);
+            if (i > 0 && owners.get(i) != owners.get(i - 1).intValue()) line = 0;
+            for (int j = 0; j < p.warnings().size(); ++j) {
+                System.err.format("Ignoring unrecognized assignment on line %d of %s: %s%n", line + p.warningLines().get(j), names.get(owners.get(i)), p.warnings().get(j));
+            }
+            line += p.lines();
+            result.addAll(p.ouis());
+        }
+        return result;
+    }
+
+    /**
+     * Sorts assignments by prefix length and then prefix, keeping only the
+     * last definition of any prefix that is listed more than once.
+     *
+     * @param ouis the assignments to sort
+     * @return the sorted assignments
+     */
+    static List<Oui> sortAndDedupe(List<Oui> ouis) {
+        TreeMap<Long, Oui> sorted = new TreeMap<Long, Oui>();
+        for (Oui oui : ouis) sorted.put(OuiDataFile.subBlockKey(oui), oui);
+        return new ArrayList<Oui>(sorted.values());
+    }
+
+    private static long millisSince(long nanos) {
+        return (System.nanoTime() - nanos) / 1000000;
+    }
+
+    private static void generate(List<String> names, String out, long lastModified, int version, boolean parallel, ShortNames rules) throws IOException {
+        long t = System.nanoTime();
+        List<byte[]> listings = new ArrayList<byte[]>();
+        long bytes = 0;
+        for (String name : names) {
+            byte[] data = readListing(name);
+            listings.add(data);
+            bytes += data.length;
+        }
+        System.err.format("Read %d bytes from %d listing(s) in %d ms.%n", bytes, names.size(), millisSince(t));
+
+        t = System.nanoTime();
+        List<Oui> parsed = parse(names, listings, parallel ? ForkJoinPool.commonPool() : null);
+        listings = null;
+        System.err.format("Parsed %d assignments in %d ms.%n", parsed.size(), millisSince(t));
+
+        t = System.nanoTime();
+        List<Oui> ouis = sortAndDedupe(parsed);
+        System.err.format("Sorted %d assignments (%d duplicates removed) in %d ms.%n", ouis.size(), parsed.size() - ouis.size(), millisSince(t));
+
+        if (rules != null) {
+            t = System.nanoTime();
+            List<Oui> overridden = rules.apply(ouis);
+            int changed = 0;
+            for (int i = 0; i < ouis.size(); ++i) if (overridden.get(i) != ouis.get(i)) ++changed;
+            ouis = overridden;
+            System.err.format("Applied %d short name rules to %d assignments in %d ms.%n", rules.size(), changed, millisSince(t));
+        }
+
+        t = System.nanoTime();
+        OutputStream os = out == null ? System.out : Files.newOutputStream(Paths.get(out));
+        try {
+            OutputStream bout = new BufferedOutputStream(os, BUFFER_SIZE);
+            if (version == OuiDataFile.V3) {
+                OuiDataFile.writeV3(bout, lastModified, ouis);
+            } else if (version == OuiDataFile.V2) {
+                OuiDataFile.writeV2(bout, lastModified, ouis);
+            } else {
+                OuiDataFile.writeV1(bout, lastModified, ouis);
+            }
+            bout.flush();
+        } finally {
+            if (out != null) os.close();
+        }
+        System.err.format("Wrote %d %s assignments in %d ms.%n", ouis.size(), "v" + version, millisSince(t));
+
+        if (version == 1) {
+            int subBlocks = 0;
+            for (Oui oui : ouis) if (oui.getPrefixLength() != PrefixTrie.MA_L) ++subBlocks;
+            if (subBlocks > 0) System.err.format("%d MA-M/MA-S/IAB assignments were omitted; use --v3 to include them.%n", subBlocks);
+        }
+    }
+
+    private static void diff(String base, String target) throws IOException {
+        OuiTable from = OuiDataFile.map(new File(base));
+        OuiTable to = OuiDataFile.map(new File(target));
+        OutputStream out = new BufferedOutputStream(System.out);
+        int count = OuiDataFile.writeDelta(out, from, to);
+        out.flush();
+        System.err.format("Wrote %d changes.", count);
+    }
+
+    /**
+     * Returns true if the specified name is a valid fully qualified Java
+     * class name
+     */
+    static boolean isClassName(String name) {
+        for (String part : name.split("\\.", -1)) {
+            if (part.isEmpty() || !Character.isJavaIdentifierStart(part.charAt(0))) return false;
+            for (int i = 1; i < part.length(); ++i) {
+                if (!Character.isJavaIdentifierPart(part.charAt(i))) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the source of a Java class that holds the specified data file.
+     * Each byte of the data is stored as one char of a string constant, and
+     * the constants are decoded into a byte array when the class is
+     * initialized.  Initializing the class allocates a byte array and a
+     * temporary copy of each constant, and nothing else.
+     *
+     * @param out the destination
+     * @param className the fully qualified name of the class to write
+     * @param table the OUIs in data, for the class's documentation
+     * @param data a data file, normally in v3 format
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeJava(Appendable out, String className, OuiTable table, byte[] data) throws IOException {
+        int dot = className.lastIndexOf('.');
+        String simpleName = className.substring(dot + 1);
+        String nl = "\n";
+
+        out.append("// Generated by ").append(GenerateDataFile.class.getName()).append(" --java; do not edit.").append(nl);
+        if (dot > 0) out.append(nl).append("package ").append(className, 0, dot).append(';').append(nl);
+        out.append(nl);
+        out.append("/**").append(nl);
+        out.append(" * ").append(Integer.toString(table.size())).append(" IEEE OUI assignments, last modified ").append(Instant.ofEpochMilli(table.lastModified()).toString()).append(", in macnificent's").append(nl);
+        out.append(" * binary format.  Pass buffer() to OuiRegistry(ByteBuffer) to load them").append(nl);
+        out.append(" * without any I/O.").append(nl);
+        out.append(" */").append(nl);
+        out.append("public final class ").append(simpleName).append(" {").append(nl);
+        out.append(nl);
+        out.append("    /**").append(nl);
+        out.append("     * The timestamp of the data, in milliseconds since the epoch").append(nl);
+        out.append("     */").append(nl);
+        out.append("    public static final long LAST_MODIFIED = ").append(Long.toString(table.lastModified())).append("L;").append(nl);
+        out.append(nl);
+        out.append("    private static final byte[] DATA = decode(").append(Integer.toString(data.length)).append(", new String[] {").append(nl);
+        for (int start = 0; start < data.length; start += JAVA_CHUNK_SIZE) {
+            int end = Math.min(data.length, start + JAVA_CHUNK_SIZE);
+            StringBuilder line = new StringBuilder("        \"");
+            for (int i = start; i < end; ++i) {
+                int b = data[i] & 0xff;
+                if (b == '"' || b == '\\') {
+                    line.append('\\').append((char) b);
+                } else if (b >= 0x20 && b < 0x7f) {
+                    line.append((char) b);
+                } else {
+                    // always three octal digits, so a following digit is never part of the escape
+                    line.append('\\').append((char) ('0' + (b >> 6))).append((char) ('0' + (b >> 3 & 7))).append((char) ('0' + (b & 7)));
+                }
+                if (line.length() >= JAVA_LINE_LENGTH && i + 1 < end) {
+                    out.append(line).append("\" +").append(nl);
+                    line.setLength(0);
+                    line.append("        \"");
+                }
             }
+            out.append(line).append(end < data.length ? "\"," : "\"").append(nl);
         }
-        
-        processOuiTxt(lastModified);
+        out.append("    });").append(nl);
+        out.append(nl);
+        out.append("    private ").append(simpleName).append("() {}").append(nl);
+        out.append(nl);
+        out.append("    /**").append(nl);
+        out.append("     * Returns a read-only buffer over the data").append(nl);
+        out.append("     *").append(nl);
+        out.append("     * @return a read-only buffer over the data").append(nl);
+        out.append("     */").append(nl);
+        out.append("    public static java.nio.ByteBuffer buffer() {").append(nl);
+        out.append("        return java.nio.ByteBuffer.wrap(DATA).asReadOnlyBuffer();").append(nl);
+        out.append("    }").append(nl);
+        out.append(nl);
+        out.append("    private static byte[] decode(int size, String[] chunks) {").append(nl);
+        out.append("        byte[] result = new byte[size];").append(nl);
+        out.append("        int off = 0;").append(nl);
+        out.append("        for (String chunk : chunks) {").append(nl);
+        out.append("            byte[] b = chunk.getBytes(java.nio.charset.StandardCharsets.ISO_8859_1);").append(nl);
+        out.append("            System.arraycopy(b, 0, result, off, b.length);").append(nl);
+        out.append("            off += b.length;").append(nl);
+        out.append("        }").append(nl);
+        out.append("        return result;").append(nl);
+        out.append("    }").append(nl);
+        out.append("}").append(nl);
+    }
+
+    private static void java(String className, String out, String data) throws IOException {
+        long t = System.nanoTime();
+        OuiTable table = OuiDataFile.map(new File(data));
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OuiDataFile.writeV3(bout, table.lastModified(), table.ouis());
+        byte[] v3 = bout.toByteArray();
+        Writer w = new OutputStreamWriter(out == null ? System.out : Files.newOutputStream(Paths.get(out)), StandardCharsets.US_ASCII);
+        try {
+            Writer bw = new BufferedWriter(w, BUFFER_SIZE);
+            writeJava(bw, className, table, v3);
+            bw.flush();
+        } finally {
+            if (out != null) w.close();
+        }
+        System.err.format("Wrote %d assignments (%d bytes of v3 data) as %s in %d ms.%n", table.size(), v3.length, className, millisSince(t));
+    }
+
+    /**
+     * Returns the specified ISO8601 date as milliseconds since the epoch, or -1
+     * if it's not a valid date
+     */
+    private static long parseDate(String date) {
+        try {
+            return Instant.from(DateTimeFormatter.ISO_INSTANT.parse(date)).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Utility for processing IEEE registry listings (as obtained
+     * canonically from http://standards-oui.ieee.org/oui/oui.txt) and
+     * generating a binary data file suitable for use by OuiRegistry.
+     * @param args an optional "--v2" or "--v3" to write the v2 or v3 data file format, an
+     * optional "--parallel" to parse on all cores, an optional "--out" followed
+     * by the file to write (rather than stdout), an optional "--short-names"
+     * followed by a short name rules file, an optional last modified time
+     * of the OUI database in ISO8601 format, e.g. as provided by 'date -Iseconds',
+     * and the listings to read (rather than stdin).
+     * Alternatively, "--diff" followed by the paths of two data files to write a delta between them.
+     * Or "--java" followed by a class name, an optional "--out" and file, and the path of a data file to
+     * write as Java source.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--diff")) {
+            if (args.length != 3) usageAndExit("Usage: --diff base.dat target.dat");
+            diff(args[1], args[2]);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--java")) {
+            String usage = "Usage: --java CLASS [--out FILE] data.dat";
+            if (args.length != 3 && args.length != 5) usageAndExit(usage);
+            String out = null;
+            if (args.length == 5) {
+                if (!args[2].equals("--out")) usageAndExit(usage);
+                out = args[3];
+            }
+            if (!isClassName(args[1])) usageAndExit("Not a valid Java class name: " + args[1]);
+            java(args[1], out, args[args.length - 1]);
+            return;
+        }
+
+        long lastModified = System.currentTimeMillis();
+        int version = 1;
+        boolean parallel = false, dated = false;
+        String out = null;
+        ShortNames rules = null;
+        List<String> names = new ArrayList<String>();
+
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            if (arg.equals("--v2")) {
+                version = OuiDataFile.V2;
+            } else if (arg.equals("--v3")) {
+                version = OuiDataFile.V3;
+            } else if (arg.equals("--parallel")) {
+                parallel = true;
+            } else if (arg.equals("--out") && i + 1 < args.length) {
+                out = args[++i];
+            } else if (arg.equals("--short-names") && i + 1 < args.length) {
+                try (Reader r = Files.newBufferedReader(Paths.get(args[++i]), StandardCharsets.UTF_8)) {
+                    rules = ShortNames.read(r);
+                }
+            } else if (arg.startsWith("--")) {
+                usageAndExit("Usage: [--v2 | --v3] [--parallel] [--out FILE] [--short-names FILE] [ISO8601 date, e.g. as provided by 'date -Iseconds'] [listing...]\n"
+                            + "   or: --diff base.dat target.dat\n"
+                            + "   or: --java CLASS [--out FILE] data.dat\n"
+                            + "Listings are read from stdin if none are named.  If no date is given, the current time will be\n"
+                            + "used as the last modified time of the OUI database.");
+            } else if (!dated && !arg.equals("-") && !new File(arg).exists()) {
+                lastModified = parseDate(arg);
+                if (lastModified < 0) usageAndExit("Not a valid ISO8601 date/time or listing: " + arg);
+                dated = true;
+            } else {
+                names.add(arg);
+            }
+        }
+        if (names.isEmpty()) names.add("-");
+        if (rules != null && version == 1) usageAndExit("--short-names requires --v2 or --v3; v1 data files cannot store short names.");
+
+        generate(names, out, lastModified, version, parallel, rules);
     }
 }
@@ -0,0 +1,72 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.Collection;
+
+/**
+ * OuiTable that holds fully materialized Oui objects on the heap, located
+ * via a PrefixTrie.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+final class HeapOuiTable extends OuiTable {
+
+    private final Oui[] _ouis;
+
+    /**
+     * Maps each assigned prefix to its position in _ouis
+     */
+    private final PrefixTrie _trie;
+
+    /**
+     * Creates a new HeapOuiTable.  If the same prefix appears more than once,
+     * the last definition wins but keeps the position of the first.
+     *
+     * @param lastModified the timestamp of the data being loaded
+     * @param ouis the OUIs to include
+     */
+    HeapOuiTable(long lastModified, Collection<Oui> ouis) {
+        super(lastModified);
+        Oui[] result = new Oui[ouis.size()];
+        PrefixTrie trie = new PrefixTrie(ouis.size());
+        int n = 0;
+        for (Oui oui : ouis) {
+            int i = trie.put(oui.getPrefix(), oui.getPrefixLength(), n);
+            if (i == PrefixTrie.NOT_FOUND) {
+                result[n++] = oui;
+            } else {
+                trie.put(oui.getPrefix(), oui.getPrefixLength(), i);
+                result[i] = oui; // later definitions replace earlier ones
+            }
+        }
+        _ouis = n == result.length ? result : java.util.Arrays.copyOf(result, n);
+        _trie = trie;
+    }
+
+    @Override
+    int size() { return _ouis.length; }
+
+    @Override
+    int lookup(long mac) { return _trie.lookup(mac); }
+
+    @Override
+    Oui ouiAt(int index) { return _ouis[index]; }
+}
@@ -0,0 +1,90 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.IOException;
+
+/**
+ * Table-driven hexadecimal formatting, used in place of String.format() on
+ * hot paths.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+final class Hex {
+
+    static final char[] LOWER = "0123456789abcdef".toCharArray();
+    static final char[] UPPER = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * The two hex digits of every byte value: byte b is at [2b] and [2b + 1]
+     */
+    private static final char[] LOWER_PAIRS = pairs(LOWER), UPPER_PAIRS = pairs(UPPER);
+
+    private Hex() {}
+
+    private static char[] pairs(char[] digits) {
+        char[] result = new char[512];
+        for (int b = 0; b < 256; ++b) {
+            result[2 * b] = digits[b >>> 4];
+            result[2 * b + 1] = digits[b & 0xf];
+        }
+        return result;
+    }
+
+    /**
+     * Appends the low 8 bits of b as two lowercase hex digits
+     *
+     * @param out the destination
+     * @param b the byte to append
+     * @throws IOException if thrown by the Appendable
+     */
+    static void appendByte(Appendable out, int b) throws IOException {
+        appendByte(out, b, false);
+    }
+
+    /**
+     * Appends the low 8 bits of b as two hex digits
+     *
+     * @param out the destination
+     * @param b the byte to append
+     * @param upper true for uppercase digits
+     * @throws IOException if thrown by the Appendable
+     */
+    static void appendByte(Appendable out, int b, boolean upper) throws IOException {
+        char[] pairs = upper ? UPPER_PAIRS : LOWER_PAIRS;
+        int i = 2 * (b & 0xff);
+        out.append(pairs[i]).append(pairs[i + 1]);
+    }
+
+    /**
+     * Writes the low 8 bits of b as two ASCII hex digits
+     *
+     * @param dst the destination
+     * @param off the position in dst at which to write
+     * @param b the byte to write
+     * @param upper true for uppercase digits
+     */
+    static void writeByte(byte[] dst, int off, int b, boolean upper) {
+        char[] pairs = upper ? UPPER_PAIRS : LOWER_PAIRS;
+        int i = 2 * (b & 0xff);
+        dst[off] = (byte) pairs[i];
+        dst[off + 1] = (byte) pairs[i + 1];
+    }
+}
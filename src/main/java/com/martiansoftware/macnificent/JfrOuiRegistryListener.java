@@ -0,0 +1,121 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import jdk.jfr.Timestamp;
+
+/**
+ * An OuiRegistryListener that records a JDK Flight Recorder event each time
+ * a registry is loaded or reloaded, and otherwise forwards to an optional
+ * delegate (e.g. an OuiRegistryMetrics).  Lookups are not recorded as events;
+ * use a delegate to count them.
+ *
+ * The events are named "com.martiansoftware.macnificent.RegistryLoad" and
+ * are enabled in recordings by default.  This is the only class in
+ * macnificent that depends on the jdk.jfr module, which it requires at
+ * runtime.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class JfrOuiRegistryListener implements OuiRegistryListener {
+
+    @Name("com.martiansoftware.macnificent.RegistryLoad")
+    @Label("OUI Registry Load")
+    @Category({ "Macnificent" })
+    @Description("An OuiRegistry was loaded or reloaded")
+    @StackTrace(false)
+    static final class RegistryLoadEvent extends Event {
+
+        @Label("Load Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long loadTime;
+
+        @Label("Size")
+        @Description("The number of assignments in the registry")
+        int size;
+
+        @Label("Reload")
+        @Description("Whether the registry replaced an earlier one")
+        boolean reload;
+
+        @Label("Last Modified")
+        @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+        long lastModified;
+    }
+
+    private final OuiRegistryListener _delegate;
+
+    /**
+     * Creates a new JfrOuiRegistryListener that only records events.
+     */
+    public JfrOuiRegistryListener() {
+        this(null);
+    }
+
+    /**
+     * Creates a new JfrOuiRegistryListener that records events and forwards
+     * all notifications to the specified delegate.
+     *
+     * @param delegate the listener to forward to (may be null)
+     */
+    public JfrOuiRegistryListener(OuiRegistryListener delegate) {
+        _delegate = delegate;
+    }
+
+    @Override
+    public void hit(long mac, int index) {
+        if (_delegate != null) _delegate.hit(mac, index);
+    }
+
+    @Override
+    public void fallback(long mac, int index) {
+        if (_delegate != null) _delegate.fallback(mac, index);
+    }
+
+    @Override
+    public void miss(long mac) {
+        if (_delegate != null) _delegate.miss(mac);
+    }
+
+    @Override
+    public void parseFailure(CharSequence s) {
+        if (_delegate != null) _delegate.parseFailure(s);
+    }
+
+    @Override
+    public void loaded(OuiRegistry registry, long nanos, boolean reload) {
+        RegistryLoadEvent event = new RegistryLoadEvent();
+        if (event.isEnabled()) {
+            event.loadTime = nanos;
+            event.size = registry.size();
+            event.reload = reload;
+            event.lastModified = registry.getLastModified().getTime();
+            event.commit();
+        }
+        if (_delegate != null) _delegate.loaded(registry, nanos, reload);
+    }
+}
@@ -19,10 +19,11 @@ package com.martiansoftware.macnificent;
  *
  */
 
+import java.io.IOException;
 import java.net.NetworkInterface;
-import java.util.Arrays;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Parses, encapsulates, formats, and represents a 6-byte MAC address.
@@ -36,11 +37,6 @@ public class MacAddress implements Comparable<MacAddress> {
      */
     public static final int ETH_ALEN = 6;
 
-    /**
-     * regex used to parse MAC addresses
-     */
-    private static final Pattern MACREGEX;
-    
     /**
      * Multicast bit in first byte of MAC.
      */
@@ -52,28 +48,20 @@ public class MacAddress implements Comparable<MacAddress> {
     static final byte FLAG_LOCAL = 0x02;
 
     /**
-     * Build the MACREGEX pattern.  Allow whitespace or any of '-' ':' '.' or '_'
-     * to separate _bytes in the MAC.  MAC byte separation is not required.
-     * Each byte of the MAC is captured in its own group.
+     * Mask covering the 48 bits of a MAC address stored in a long.
      */
-    static {
-        StringBuilder buf = new StringBuilder("^\\s*");
-        for (int i = 0; i < ETH_ALEN; ++i) {
-            buf.append("([0-9a-fA-F]{2})"); // a MAC byte with a capturing group
-            if (i == 0) {
-                buf.append("([\\s-:._]?)");  // ignored chars that may separate MAC _bytes
-            } else if (i < ETH_ALEN - 1) {
-                buf.append("\\2"); // backreference for whatever the separator is (if any)
-            }
-        }
-        buf.append("\\s*$");
-        MACREGEX = Pattern.compile(buf.toString());
-    }
-            
+    public static final long MAC_MASK = 0xffffffffffffL;
+
     /**
-     * The _bytes comprising this MacAddress.
+     * Multicast and local bits of the first MAC byte, positioned within a
+     * 48-bit MAC stored in a long.
      */
-    private final byte[] _bytes = new byte[ETH_ALEN];
+    static final long LONG_FLAGS = (long) (FLAG_MCAST | FLAG_LOCAL) << 40;
+
+    /**
+     * The 48-bit value of this MacAddress, in network byte order.
+     */
+    private final long _value;
 
     /**
      * Creates a new MacAddress by copying the specified byte array (which must
@@ -83,7 +71,11 @@ public class MacAddress implements Comparable<MacAddress> {
      */
     public MacAddress(byte[] bytes) {
         if (bytes.length != ETH_ALEN) throw new IllegalArgumentException("MacAddress bytes array must contain exactly " + ETH_ALEN + " bytes.  Instead received " + bytes.length + " (" + hexString(bytes, bytes.length) + ")");
-        System.arraycopy(bytes, 0, this._bytes, 0, ETH_ALEN);
+        _value = toLong(bytes, 0);
+    }
+
+    private MacAddress(long value) {
+        _value = value;
     }
 
     /**
@@ -117,35 +109,149 @@ public class MacAddress implements Comparable<MacAddress> {
      * <li>FFFFFFFFFFF (not long enough)</li>
      * <li>FFFFFFFFFFFFF (too long)</li>
      * </ul>
+     *
+     * Use MacAddressParser directly to parse without allocating or throwing.
+     *
      * @param s
      */
     public MacAddress(String s) {
-        Matcher m = MACREGEX.matcher(s);
-        if (!m.matches()) throw new IllegalArgumentException("Invalid MacAddress string: \"" + s + "\"");
-        int groupIndex;
-        for (int i = 0; i < ETH_ALEN; ++i) {
-            groupIndex = i + 1;
-            if (i > 0) ++groupIndex;
-            _bytes[i] = (byte) Integer.parseInt(m.group(groupIndex), 16);
+        long value = MacAddressParser.parse(s);
+        if (value == MacAddressParser.INVALID) throw new IllegalArgumentException("Invalid MacAddress string: \"" + s + "\"");
+        _value = value;
+    }
+
+    /**
+     * Returns a MacAddress for the specified 48-bit value, as produced by
+     * toLong().
+     *
+     * @param mac the 48-bit MAC address value, in network byte order
+     * @return the corresponding MacAddress
+     */
+    public static MacAddress fromLong(long mac) {
+        if ((mac & ~MAC_MASK) != 0) throw new IllegalArgumentException("MacAddress value must fit within 48 bits: " + Long.toHexString(mac));
+        return new MacAddress(mac);
+    }
+
+    /**
+     * Reads a 48-bit MAC address value from ETH_ALEN bytes of the specified
+     * array, starting at the specified offset.
+     *
+     * @param bytes the array containing the MAC address
+     * @param offset the offset of the first byte of the MAC address
+     * @return the 48-bit MAC address value, in network byte order
+     */
+    public static long toLong(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xffL) << 40)
+                | ((bytes[offset + 1] & 0xffL) << 32)
+                | ((bytes[offset + 2] & 0xffL) << 24)
+                | ((bytes[offset + 3] & 0xffL) << 16)
+                | ((bytes[offset + 4] & 0xffL) << 8)
+                | (bytes[offset + 5] & 0xffL);
+    }
+
+    /**
+     * Reads a 48-bit MAC address value from ETH_ALEN bytes of the specified
+     * buffer, starting at the specified absolute index.  The bytes are read
+     * in network byte order whatever the buffer's byte order, and the
+     * buffer's position is unchanged.  Nothing is copied or allocated, so
+     * this works directly on frames in direct buffers.
+     *
+     * @param buf the buffer containing the MAC address
+     * @param offset the index of the first byte of the MAC address
+     * @return the 48-bit MAC address value, in network byte order
+     * @throws IndexOutOfBoundsException if fewer than ETH_ALEN bytes
+     * follow offset within the buffer's limit
+     */
+    public static long toLong(ByteBuffer buf, int offset) {
+        if (buf.order() == ByteOrder.BIG_ENDIAN) {
+            return ((buf.getShort(offset) & 0xffffL) << 32) | (buf.getInt(offset + 2) & 0xffffffffL);
         }
+        return ((buf.get(offset) & 0xffL) << 40)
+                | ((buf.get(offset + 1) & 0xffL) << 32)
+                | ((buf.get(offset + 2) & 0xffL) << 24)
+                | ((buf.get(offset + 3) & 0xffL) << 16)
+                | ((buf.get(offset + 4) & 0xffL) << 8)
+                | (buf.get(offset + 5) & 0xffL);
     }
 
     /**
-     * Returns the internal byte array storing this MAC address.  
-     * <b>NOTE:</b> This is NOT a copy of the array.  Modifying the array
-     * returned may yield unexpected behavior (e.g., changing the hashCode).
-     * 
-     * @return the internal byte array storing this MAC address.  
+     * Writes the ETH_ALEN bytes of a 48-bit MAC address value to the specified
+     * buffer, starting at the specified absolute index, in network byte
+     * order.  The buffer's position is unchanged.
+     *
+     * @param mac the 48-bit MAC address value, in network byte order
+     * @param buf the destination buffer
+     * @param offset the index in the buffer at which to write
+     */
+    public static void toBytes(long mac, ByteBuffer buf, int offset) {
+        for (int i = ETH_ALEN - 1; i >= 0; --i) {
+            buf.put(offset + i, (byte) mac);
+            mac >>>= 8;
+        }
+    }
+
+    /**
+     * Writes the ETH_ALEN bytes of a 48-bit MAC address value to the specified
+     * array, starting at the specified offset.
+     *
+     * @param mac the 48-bit MAC address value, in network byte order
+     * @param dest the destination array
+     * @param offset the offset in the destination array at which to write
+     */
+    public static void toBytes(long mac, byte[] dest, int offset) {
+        for (int i = ETH_ALEN - 1; i >= 0; --i) {
+            dest[offset + i] = (byte) mac;
+            mac >>>= 8;
+        }
+    }
+
+    /**
+     * Indicates whether the specified 48-bit MAC address has its multicast bit set
+     * @param mac the 48-bit MAC address value, in network byte order
+     * @return true if the MAC address has its multicast bit set
+     */
+    public static boolean isMulticast(long mac) {
+        return ((mac >>> 40) & FLAG_MCAST) == FLAG_MCAST;
+    }
+
+    /**
+     * Indicates whether the specified 48-bit MAC address has its local bit set
+     * @param mac the 48-bit MAC address value, in network byte order
+     * @return true if the MAC address has its local bit set
+     */
+    public static boolean isLocal(long mac) {
+        return ((mac >>> 40) & FLAG_LOCAL) == FLAG_LOCAL;
+    }
+
+    /**
+     * Returns the 24-bit OUI portion of the specified 48-bit MAC address.  This
+     * is the same value returned by Oui.hashCode() for the matching Oui.
+     *
+     * @param mac the 48-bit MAC address value, in network byte order
+     * @return the unsigned 24-bit OUI of the MAC address
+     */
+    public static int oui(long mac) {
+        return (int) (mac >>> 24) & 0xffffff;
+    }
+
+    /**
+     * Returns the 48-bit value of this MacAddress, in network byte order.
+     *
+     * @return the 48-bit value of this MacAddress
      */
-    byte[] getInternalBytes() { return _bytes; }
+    public long toLong() {
+        return _value;
+    }
 
     /**
-     * Returns a copy of the internal byte array storing this MAC address.
+     * Returns a copy of the bytes comprising this MAC address.
      * 
-     * @return a copy of the internal byte array storing this MAC address.
+     * @return a copy of the bytes comprising this MAC address.
      */
     public byte[] getBytes() {
-        return Arrays.copyOf(_bytes, ETH_ALEN);
+        byte[] result = new byte[ETH_ALEN];
+        toBytes(_value, result, 0);
+        return result;
     }
 
     /**
@@ -153,7 +259,7 @@ public class MacAddress implements Comparable<MacAddress> {
      * @return true if this MacAddress has its multicast bit set
      */
     public boolean isMulticast() {
-        return (_bytes[0] & FLAG_MCAST) == FLAG_MCAST;
+        return isMulticast(_value);
     }
 
     /**
@@ -161,21 +267,121 @@ public class MacAddress implements Comparable<MacAddress> {
      * @return true if this MacAddress has its local bit set
      */
     public boolean isLocal() {
-        return (_bytes[0] & FLAG_LOCAL) == FLAG_LOCAL;
+        return isLocal(_value);
     }
 
-    private String hexString(byte[] b, int len) {
+    private static String hexString(byte[] b, int len) {
         StringBuilder buf = new StringBuilder();
-        for (int i = 0; i < len; ++i) {
-            if (i != 0) buf.append(":");
-            buf.append(String.format("%02x", b[i]));
+        try {
+            for (int i = 0; i < len; ++i) {
+                if (i != 0) buf.append(":");
+                Hex.appendByte(buf, b[i]);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringBuilder doesn't throw
         }
         return buf.toString();        
     }
     
+    /**
+     * Appends a 48-bit MAC address to an Appendable in the specified style,
+     * without allocating.
+     *
+     * @param mac the 48-bit MAC address value, in network byte order
+     * @param out the destination
+     * @param style the style in which to format the MAC address
+     * @throws IOException if thrown by the Appendable
+     */
+    public static void formatTo(long mac, Appendable out, MacAddressStyle style) throws IOException {
+        style.appendTo(out, mac, 0);
+    }
+
+    /**
+     * Writes a 48-bit MAC address to a byte array as ASCII in the specified
+     * style, without allocating.  The array must have room for
+     * style.length() bytes.
+     *
+     * @param mac the 48-bit MAC address value, in network byte order
+     * @param dst the destination
+     * @param off the position in dst at which to write
+     * @param style the style in which to format the MAC address
+     * @return the number of bytes written
+     */
+    public static int formatTo(long mac, byte[] dst, int off, MacAddressStyle style) {
+        return style.writeTo(dst, off, mac, 0);
+    }
+
+    /**
+     * Formats a 48-bit MAC address in the specified style.
+     *
+     * @param mac the 48-bit MAC address value, in network byte order
+     * @param style the style in which to format the MAC address
+     * @return the formatted MAC address
+     */
+    public static String toString(long mac, MacAddressStyle style) {
+        byte[] b = new byte[style.length()];
+        style.writeTo(b, 0, mac, 0);
+        return new String(b, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Appends this MacAddress to an Appendable in the same style as toString().
+     *
+     * @param out the destination
+     * @throws IOException if thrown by the Appendable
+     */
+    public void formatTo(Appendable out) throws IOException {
+        formatTo(_value, out, MacAddressStyle.COLON);
+    }
+
+    /**
+     * Appends this MacAddress to an Appendable in the specified style.
+     *
+     * @param out the destination
+     * @param style the style in which to format this MacAddress
+     * @throws IOException if thrown by the Appendable
+     */
+    public void formatTo(Appendable out, MacAddressStyle style) throws IOException {
+        formatTo(_value, out, style);
+    }
+
+    /**
+     * Writes this MacAddress to a byte array as ASCII in the same style as
+     * toString().
+     *
+     * @param dst the destination
+     * @param off the position in dst at which to write
+     * @return the number of bytes written
+     */
+    public int formatTo(byte[] dst, int off) {
+        return formatTo(_value, dst, off, MacAddressStyle.COLON);
+    }
+
+    /**
+     * Writes this MacAddress to a byte array as ASCII in the specified style.
+     *
+     * @param dst the destination
+     * @param off the position in dst at which to write
+     * @param style the style in which to format this MacAddress
+     * @return the number of bytes written
+     */
+    public int formatTo(byte[] dst, int off, MacAddressStyle style) {
+        return formatTo(_value, dst, off, style);
+    }
+
+    /**
+     * Formats this MacAddress in the specified style.
+     *
+     * @param style the style in which to format this MacAddress
+     * @return the formatted MacAddress
+     */
+    public String toString(MacAddressStyle style) {
+        return toString(_value, style);
+    }
+
     @Override
     public String toString() {
-        return hexString(_bytes, ETH_ALEN);
+        return toString(_value, MacAddressStyle.COLON);
     }
 
     @Override
@@ -187,27 +393,27 @@ public class MacAddress implements Comparable<MacAddress> {
             return false;
         }
         final MacAddress other = (MacAddress) obj;
-        if (!Arrays.equals(this._bytes, other._bytes)) {
-            return false;
-        }
-        return true;
+        return this._value == other._value;
     }
 
     @Override
     public int hashCode() {
-        int hash = 5;
-        hash = 97 * hash + Arrays.hashCode(this._bytes);
-        return hash;
+        return (int) (_value ^ (_value >>> 32));
     }
 
+    /**
+     * Orders MacAddresses by their unsigned 48-bit values, so that
+     * 00:00:00:00:00:00 sorts first, ff:ff:ff:ff:ff:ff sorts last, and the
+     * range views of a sorted collection (e.g. TreeSet.subSet()) contain
+     * exactly the addresses of the corresponding MacRange.
+     *
+     * @param o the MacAddress to compare with
+     * @return a negative value, zero, or a positive value as this MacAddress
+     * is less than, equal to, or greater than o
+     */
     @Override
     public int compareTo(MacAddress o) {
-        int r;
-        for (int i = 0; i < ETH_ALEN; ++i) {
-            r = _bytes[i] - o._bytes[i];
-            if (r != 0) return r;
-        }
-        return 0;
+        return Long.compare(_value, o._value); // 48-bit values are never negative
     }
 
 }
@@ -0,0 +1,118 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+/**
+ * Hashing and sizing shared by the open-addressing MAC address collections
+ * (MacAddressSet, MacAddressLongMap and MacAddressObjectMap).  Those
+ * collections store 48-bit MAC addresses (as returned by MacAddress.toLong())
+ * directly in long arrays, using EMPTY to mark unused slots, with linear
+ * probing and backward-shift deletion so that no tombstones accumulate.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+final class MacAddressHashing {
+
+    /**
+     * Marks an unused slot.  Never a valid 48-bit MAC address.
+     */
+    static final long EMPTY = -1L;
+
+    /**
+     * Smallest table capacity
+     */
+    static final int MIN_CAPACITY = 16;
+
+    /**
+     * Largest table capacity (a power of two that fits an array index)
+     */
+    static final int MAX_CAPACITY = 1 << 30;
+
+    private MacAddressHashing() {}
+
+    /**
+     * Mixes all 48 bits of a MAC address into a well-distributed hash using
+     * the MurmurHash3 64-bit finalizer, so that sequential addresses (as
+     * are common within a single manufacturer's OUI) do not cluster.
+     */
+    static int mix(long mac) {
+        return (int) mix64(mac);
+    }
+
+    /**
+     * Returns all 64 bits of mix(mac), for tables that need more than 32
+     * well-distributed bits (e.g. to select both a segment and a slot)
+     */
+    static long mix64(long mac) {
+        mac ^= mac >>> 33;
+        mac *= 0xff51afd7ed558ccdL;
+        mac ^= mac >>> 33;
+        mac *= 0xc4ceb9fe1a85ec53L;
+        mac ^= mac >>> 33;
+        return mac;
+    }
+
+    /**
+     * Returns the table capacity needed to hold the specified number of
+     * entries without exceeding the maximum load factor of 0.75
+     */
+    static int capacityFor(int expectedSize) {
+        return capacityFor(expectedSize, MAX_CAPACITY);
+    }
+
+    /**
+     * Returns the table capacity needed to hold the specified number of
+     * entries without exceeding the maximum load factor of 0.75, for a table
+     * whose capacity may not exceed maxCapacity
+     */
+    static int capacityFor(int expectedSize, int maxCapacity) {
+        if (expectedSize < 0) throw new IllegalArgumentException("Expected size may not be negative: " + expectedSize);
+        long needed = (4L * expectedSize + 2) / 3 + 1;
+        if (needed > maxCapacity) throw new IllegalStateException("Too many entries: " + expectedSize);
+        int result = MIN_CAPACITY;
+        while (result < needed) result <<= 1;
+        return result;
+    }
+
+    /**
+     * Returns the number of entries a table of the specified capacity may
+     * hold before it must grow
+     */
+    static int maxFill(int capacity) {
+        return capacity - (capacity >>> 2);
+    }
+
+    /**
+     * Throws IllegalArgumentException if mac is not a 48-bit MAC address
+     */
+    static long check(long mac) {
+        if ((mac & ~MacAddress.MAC_MASK) != 0) throw new IllegalArgumentException("Not a 48-bit MAC address: 0x" + Long.toHexString(mac));
+        return mac;
+    }
+
+    /**
+     * Returns true if an entry probed for at slot j but whose hash selects
+     * slot home can be moved back into the empty slot i, i.e. if i lies
+     * cyclically within [home, j)
+     */
+    static boolean canShift(int home, int i, int j, int mask) {
+        return ((j - home) & mask) >= ((j - i) & mask);
+    }
+}
@@ -0,0 +1,389 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.Arrays;
+
+import static com.martiansoftware.macnificent.MacAddressHashing.EMPTY;
+
+/**
+ * A map from 48-bit MAC addresses (as returned by MacAddress.toLong()) to
+ * long values, e.g. for per-device packet or byte counters.  Keys and values
+ * are interleaved in a single open-addressing long array so that a lookup
+ * usually touches a single cache line, and nothing is boxed or allocated.
+ *
+ * Since values are primitive, a configurable missing value is returned
+ * by get(), put() and remove() when a key is not present.
+ *
+ * A map holds at most 402,653,184 entries; adding more throws
+ * IllegalStateException.
+ *
+ * Not thread-safe.  The map must not be modified while it is being
+ * iterated.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class MacAddressLongMap {
+
+    /**
+     * Receives the entries of a MacAddressLongMap
+     */
+    public interface EntryConsumer {
+        /**
+         * Accepts a single entry
+         * @param mac the 48-bit MAC address
+         * @param value the value associated with mac
+         */
+        void accept(long mac, long value);
+    }
+
+    /**
+     * Iterates over the entries of a MacAddressLongMap without allocating.
+     * Call next() before reading each entry.
+     */
+    public final class Cursor {
+        private int _slot = -2;
+
+        private Cursor() {}
+
+        /**
+         * Advances to the next entry
+         * @return true if there was another entry
+         */
+        public boolean next() {
+            long[] slots = _slots;
+            do {
+                _slot += 2;
+            } while (_slot < slots.length && slots[_slot] == EMPTY);
+            return _slot < slots.length;
+        }
+
+        /**
+         * Returns the current entry's MAC address
+         * @return the current entry's MAC address
+         */
+        public long mac() { return _slots[_slot]; }
+
+        /**
+         * Returns the current entry's value
+         * @return the current entry's value
+         */
+        public long value() { return _slots[_slot + 1]; }
+
+        /**
+         * Replaces the current entry's value
+         * @param value the new value
+         */
+        public void setValue(long value) { _slots[_slot + 1] = value; }
+    }
+
+    /**
+     * Largest table capacity.  Each slot takes two array elements, so this
+     * is half of MacAddressHashing.MAX_CAPACITY.
+     */
+    private static final int MAX_CAPACITY = MacAddressHashing.MAX_CAPACITY >>> 1;
+
+    private final long _missingValue;
+
+    /**
+     * Interleaved key/value pairs: the key for slot i is at [2i], its value at [2i + 1].
+     */
+    private long[] _slots;
+    private int _mask;
+    private int _maxFill;
+    private int _size;
+
+    /**
+     * Creates a new, empty MacAddressLongMap whose missing value is zero.
+     */
+    public MacAddressLongMap() {
+        this(0, 0);
+    }
+
+    /**
+     * Creates a new, empty MacAddressLongMap that can hold the specified
+     * number of entries without growing.
+     *
+     * @param expectedSize the number of entries expected
+     * @param missingValue the value returned for keys that are not present
+     */
+    public MacAddressLongMap(int expectedSize, long missingValue) {
+        _missingValue = missingValue;
+        allocate(MacAddressHashing.capacityFor(expectedSize, MAX_CAPACITY));
+    }
+
+    private void allocate(int capacity) {
+        _slots = new long[2 * capacity];
+        for (int i = 0; i < _slots.length; i += 2) _slots[i] = EMPTY;
+        _mask = capacity - 1;
+        _maxFill = MacAddressHashing.maxFill(capacity);
+    }
+
+    /**
+     * Returns the value returned for keys that are not present
+     * @return the value returned for keys that are not present
+     */
+    public long getMissingValue() { return _missingValue; }
+
+    /**
+     * Returns the number of entries in this map
+     * @return the number of entries in this map
+     */
+    public int size() { return _size; }
+
+    /**
+     * Returns true if this map contains no entries
+     * @return true if this map contains no entries
+     */
+    public boolean isEmpty() { return _size == 0; }
+
+    /**
+     * Returns the slot containing mac, or -1
+     */
+    private int find(long mac) {
+        if ((mac & ~MacAddress.MAC_MASK) != 0) return -1;
+        long[] slots = _slots;
+        int mask = _mask;
+        for (int i = MacAddressHashing.mix(mac) & mask; ; i = (i + 1) & mask) {
+            long k = slots[2 * i];
+            if (k == mac) return i;
+            if (k == EMPTY) return -1;
+        }
+    }
+
+    /**
+     * Returns the slot containing mac, adding it with the missing value if
+     * it is not present
+     */
+    private int insert(long mac) {
+        MacAddressHashing.check(mac);
+        if (_size >= _maxFill) {
+            if (_mask + 1 >= MAX_CAPACITY) throw new IllegalStateException("map is full");
+            rehash((_mask + 1) << 1);
+        }
+        long[] slots = _slots;
+        int mask = _mask;
+        for (int i = MacAddressHashing.mix(mac) & mask; ; i = (i + 1) & mask) {
+            long k = slots[2 * i];
+            if (k == mac) return i;
+            if (k == EMPTY) {
+                slots[2 * i] = mac;
+                slots[2 * i + 1] = _missingValue;
+                ++_size;
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Returns true if this map contains the specified MAC address.
+     *
+     * @param mac the 48-bit MAC address
+     * @return true if this map contains mac
+     */
+    public boolean containsKey(long mac) {
+        return find(mac) >= 0;
+    }
+
+    /**
+     * Returns the value associated with the specified MAC address.
+     *
+     * @param mac the 48-bit MAC address
+     * @return the value associated with mac, or the missing value
+     */
+    public long get(long mac) {
+        int i = find(mac);
+        return i < 0 ? _missingValue : _slots[2 * i + 1];
+    }
+
+    /**
+     * Returns the value associated with the specified MacAddress.
+     *
+     * @param mac the MacAddress
+     * @return the value associated with mac, or the missing value
+     */
+    public long get(MacAddress mac) {
+        return get(mac.toLong());
+    }
+
+    /**
+     * Associates a value with a MAC address, replacing any previous value.
+     *
+     * @param mac the 48-bit MAC address
+     * @param value the value
+     * @return the previous value associated with mac, or the missing value
+     * @throws IllegalArgumentException if mac is not a 48-bit value
+     */
+    public long put(long mac, long value) {
+        int i = insert(mac);
+        long result = _slots[2 * i + 1];
+        _slots[2 * i + 1] = value;
+        return result;
+    }
+
+    /**
+     * Associates a value with a MacAddress, replacing any previous value.
+     *
+     * @param mac the MacAddress
+     * @param value the value
+     * @return the previous value associated with mac, or the missing value
+     */
+    public long put(MacAddress mac, long value) {
+        return put(mac.toLong(), value);
+    }
+
+    /**
+     * Adds delta to the value associated with a MAC address, starting from
+     * the missing value if it is not present.
+     *
+     * @param mac the 48-bit MAC address
+     * @param delta the amount to add
+     * @return the new value associated with mac
+     * @throws IllegalArgumentException if mac is not a 48-bit value
+     */
+    public long addTo(long mac, long delta) {
+        int i = insert(mac);
+        return _slots[2 * i + 1] += delta;
+    }
+
+    /**
+     * Associates each MAC address in the specified array with the value at
+     * the same index in values, growing the map at most once.
+     *
+     * @param macs the 48-bit MAC addresses
+     * @param values the values
+     * @throws IllegalArgumentException if the arrays differ in length or any
+     * address is not a 48-bit value, in which case the entries before it
+     * have been added
+     */
+    public void putAll(long[] macs, long[] values) {
+        if (macs.length != values.length) throw new IllegalArgumentException("Got " + macs.length + " MAC addresses but " + values.length + " values");
+        ensureCapacity((int) Math.min(Integer.MAX_VALUE, (long) _size + macs.length));
+        for (int i = 0; i < macs.length; ++i) put(macs[i], values[i]);
+    }
+
+    /**
+     * Grows this map if necessary so that it can hold the specified number
+     * of entries without growing again.
+     *
+     * @param size the number of entries expected
+     */
+    public void ensureCapacity(int size) {
+        if (size > _maxFill) rehash(MacAddressHashing.capacityFor(size, MAX_CAPACITY));
+    }
+
+    /**
+     * Removes a MAC address from this map.
+     *
+     * @param mac the 48-bit MAC address
+     * @return the value that was associated with mac, or the missing value
+     */
+    public long remove(long mac) {
+        int i = find(mac);
+        if (i < 0) return _missingValue;
+        long result = _slots[2 * i + 1];
+        removeAt(i);
+        return result;
+    }
+
+    /**
+     * Empties slot i, shifting back any later entries in its probe sequence
+     */
+    private void removeAt(int i) {
+        long[] slots = _slots;
+        int mask = _mask;
+        for (int j = (i + 1) & mask; slots[2 * j] != EMPTY; j = (j + 1) & mask) {
+            if (MacAddressHashing.canShift(MacAddressHashing.mix(slots[2 * j]) & mask, i, j, mask)) {
+                slots[2 * i] = slots[2 * j];
+                slots[2 * i + 1] = slots[2 * j + 1];
+                i = j;
+            }
+        }
+        slots[2 * i] = EMPTY;
+        slots[2 * i + 1] = 0;
+        --_size;
+    }
+
+    /**
+     * Removes all entries from this map, keeping its capacity.
+     */
+    public void clear() {
+        Arrays.fill(_slots, 0);
+        for (int i = 0; i < _slots.length; i += 2) _slots[i] = EMPTY;
+        _size = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = _slots;
+        allocate(capacity);
+        long[] slots = _slots;
+        int mask = _mask;
+        for (int j = 0; j < old.length; j += 2) {
+            long k = old[j];
+            if (k == EMPTY) continue;
+            int i = MacAddressHashing.mix(k) & mask;
+            while (slots[2 * i] != EMPTY) i = (i + 1) & mask;
+            slots[2 * i] = k;
+            slots[2 * i + 1] = old[j + 1];
+        }
+    }
+
+    /**
+     * Performs the specified action for each entry in this map, in no
+     * particular order.
+     *
+     * @param action the action to perform
+     */
+    public void forEach(EntryConsumer action) {
+        long[] slots = _slots;
+        for (int i = 0; i < slots.length; i += 2) {
+            if (slots[i] != EMPTY) action.accept(slots[i], slots[i + 1]);
+        }
+    }
+
+    /**
+     * Returns a cursor over the entries in this map, in no particular order
+     * @return a cursor over the entries in this map
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Returns the MAC addresses in this map, in no particular order
+     * @return a new array containing the MAC addresses in this map
+     */
+    public long[] keys() {
+        long[] result = new long[_size];
+        int n = 0;
+        for (int i = 0; i < _slots.length; i += 2) {
+            if (_slots[i] != EMPTY) result[n++] = _slots[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the approximate number of bytes of heap used by this map.
+     * @return the approximate number of bytes of heap used by this map
+     */
+    public long footprint() {
+        return 40 + 16 + 8L * _slots.length;
+    }
+}
@@ -0,0 +1,363 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.Arrays;
+
+import static com.martiansoftware.macnificent.MacAddressHashing.EMPTY;
+
+/**
+ * A map from 48-bit MAC addresses (as returned by MacAddress.toLong()) to
+ * objects.  Keys are stored unboxed in an open-addressing long array, with
+ * values in a parallel array, so the only per-entry objects are the values
+ * themselves.  Null values are not permitted; get() and remove() return
+ * null when a key is not present.
+ *
+ * A map holds at most 805,306,368 entries; adding more throws
+ * IllegalStateException.
+ *
+ * Not thread-safe.  The map must not be modified while it is being
+ * iterated.
+ *
+ * @param <V> the type of values in the map
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class MacAddressObjectMap<V> {
+
+    /**
+     * Receives the entries of a MacAddressObjectMap
+     * @param <V> the type of values in the map
+     */
+    public interface EntryConsumer<V> {
+        /**
+         * Accepts a single entry
+         * @param mac the 48-bit MAC address
+         * @param value the value associated with mac
+         */
+        void accept(long mac, V value);
+    }
+
+    /**
+     * Iterates over the entries of a MacAddressObjectMap without allocating.
+     * Call next() before reading each entry.
+     */
+    public final class Cursor {
+        private int _slot = -1;
+
+        private Cursor() {}
+
+        /**
+         * Advances to the next entry
+         * @return true if there was another entry
+         */
+        public boolean next() {
+            long[] keys = _keys;
+            do {
+                ++_slot;
+            } while (_slot < keys.length && keys[_slot] == EMPTY);
+            return _slot < keys.length;
+        }
+
+        /**
+         * Returns the current entry's MAC address
+         * @return the current entry's MAC address
+         */
+        public long mac() { return _keys[_slot]; }
+
+        /**
+         * Returns the current entry's value
+         * @return the current entry's value
+         */
+        @SuppressWarnings("unchecked")
+        public V value() { return (V) _values[_slot]; }
+
+        /**
+         * Replaces the current entry's value
+         * @param value the new (non-null) value
+         */
+        public void setValue(V value) {
+            if (value == null) throw new NullPointerException("MacAddressObjectMap values may not be null");
+            _values[_slot] = value;
+        }
+    }
+
+    private long[] _keys;
+    private Object[] _values;
+    private int _mask;
+    private int _maxFill;
+    private int _size;
+
+    /**
+     * Creates a new, empty MacAddressObjectMap.
+     */
+    public MacAddressObjectMap() {
+        this(0);
+    }
+
+    /**
+     * Creates a new, empty MacAddressObjectMap that can hold the specified
+     * number of entries without growing.
+     *
+     * @param expectedSize the number of entries expected
+     */
+    public MacAddressObjectMap(int expectedSize) {
+        allocate(MacAddressHashing.capacityFor(expectedSize));
+    }
+
+    private void allocate(int capacity) {
+        _keys = new long[capacity];
+        Arrays.fill(_keys, EMPTY);
+        _values = new Object[capacity];
+        _mask = capacity - 1;
+        _maxFill = MacAddressHashing.maxFill(capacity);
+    }
+
+    /**
+     * Returns the number of entries in this map
+     * @return the number of entries in this map
+     */
+    public int size() { return _size; }
+
+    /**
+     * Returns true if this map contains no entries
+     * @return true if this map contains no entries
+     */
+    public boolean isEmpty() { return _size == 0; }
+
+    /**
+     * Returns the slot containing mac, or -1
+     */
+    private int find(long mac) {
+        if ((mac & ~MacAddress.MAC_MASK) != 0) return -1;
+        long[] keys = _keys;
+        int mask = _mask;
+        for (int i = MacAddressHashing.mix(mac) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == mac) return i;
+            if (k == EMPTY) return -1;
+        }
+    }
+
+    /**
+     * Returns true if this map contains the specified MAC address.
+     *
+     * @param mac the 48-bit MAC address
+     * @return true if this map contains mac
+     */
+    public boolean containsKey(long mac) {
+        return find(mac) >= 0;
+    }
+
+    /**
+     * Returns the value associated with the specified MAC address.
+     *
+     * @param mac the 48-bit MAC address
+     * @return the value associated with mac, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long mac) {
+        int i = find(mac);
+        return i < 0 ? null : (V) _values[i];
+    }
+
+    /**
+     * Returns the value associated with the specified MacAddress.
+     *
+     * @param mac the MacAddress
+     * @return the value associated with mac, or null
+     */
+    public V get(MacAddress mac) {
+        return get(mac.toLong());
+    }
+
+    /**
+     * Associates a value with a MAC address, replacing any previous value.
+     *
+     * @param mac the 48-bit MAC address
+     * @param value the (non-null) value
+     * @return the previous value associated with mac, or null
+     * @throws IllegalArgumentException if mac is not a 48-bit value
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long mac, V value) {
+        MacAddressHashing.check(mac);
+        if (value == null) throw new NullPointerException("MacAddressObjectMap values may not be null");
+        if (_size >= _maxFill) {
+            if (_keys.length >= MacAddressHashing.MAX_CAPACITY) throw new IllegalStateException("map is full");
+            rehash(_keys.length << 1);
+        }
+        long[] keys = _keys;
+        int mask = _mask;
+        for (int i = MacAddressHashing.mix(mac) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == mac) {
+                V result = (V) _values[i];
+                _values[i] = value;
+                return result;
+            }
+            if (k == EMPTY) {
+                keys[i] = mac;
+                _values[i] = value;
+                ++_size;
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Associates a value with a MacAddress, replacing any previous value.
+     *
+     * @param mac the MacAddress
+     * @param value the (non-null) value
+     * @return the previous value associated with mac, or null
+     */
+    public V put(MacAddress mac, V value) {
+        return put(mac.toLong(), value);
+    }
+
+    /**
+     * Associates each MAC address in the specified array with the value at
+     * the same index in values, growing the map at most once.
+     *
+     * @param macs the 48-bit MAC addresses
+     * @param values the (non-null) values
+     * @throws IllegalArgumentException if the arrays differ in length or any
+     * address is not a 48-bit value, in which case the entries before it
+     * have been added
+     */
+    public void putAll(long[] macs, V[] values) {
+        if (macs.length != values.length) throw new IllegalArgumentException("Got " + macs.length + " MAC addresses but " + values.length + " values");
+        ensureCapacity((int) Math.min(Integer.MAX_VALUE, (long) _size + macs.length));
+        for (int i = 0; i < macs.length; ++i) put(macs[i], values[i]);
+    }
+
+    /**
+     * Grows this map if necessary so that it can hold the specified number
+     * of entries without growing again.
+     *
+     * @param size the number of entries expected
+     */
+    public void ensureCapacity(int size) {
+        if (size > _maxFill) rehash(MacAddressHashing.capacityFor(size));
+    }
+
+    /**
+     * Removes a MAC address from this map.
+     *
+     * @param mac the 48-bit MAC address
+     * @return the value that was associated with mac, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long mac) {
+        int i = find(mac);
+        if (i < 0) return null;
+        V result = (V) _values[i];
+        removeAt(i);
+        return result;
+    }
+
+    /**
+     * Empties slot i, shifting back any later entries in its probe sequence
+     */
+    private void removeAt(int i) {
+        long[] keys = _keys;
+        Object[] values = _values;
+        int mask = _mask;
+        for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            if (MacAddressHashing.canShift(MacAddressHashing.mix(keys[j]) & mask, i, j, mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = EMPTY;
+        values[i] = null;
+        --_size;
+    }
+
+    /**
+     * Removes all entries from this map, keeping its capacity.
+     */
+    public void clear() {
+        Arrays.fill(_keys, EMPTY);
+        Arrays.fill(_values, null);
+        _size = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = _keys;
+        Object[] oldValues = _values;
+        allocate(capacity);
+        long[] keys = _keys;
+        int mask = _mask;
+        for (int j = 0; j < oldKeys.length; ++j) {
+            long k = oldKeys[j];
+            if (k == EMPTY) continue;
+            int i = MacAddressHashing.mix(k) & mask;
+            while (keys[i] != EMPTY) i = (i + 1) & mask;
+            keys[i] = k;
+            _values[i] = oldValues[j];
+        }
+    }
+
+    /**
+     * Performs the specified action for each entry in this map, in no
+     * particular order.
+     *
+     * @param action the action to perform
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+        long[] keys = _keys;
+        for (int i = 0; i < keys.length; ++i) {
+            if (keys[i] != EMPTY) action.accept(keys[i], (V) _values[i]);
+        }
+    }
+
+    /**
+     * Returns a cursor over the entries in this map, in no particular order
+     * @return a cursor over the entries in this map
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Returns the MAC addresses in this map, in no particular order
+     * @return a new array containing the MAC addresses in this map
+     */
+    public long[] keys() {
+        long[] result = new long[_size];
+        int n = 0;
+        for (long k : _keys) {
+            if (k != EMPTY) result[n++] = k;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the approximate number of bytes of heap used by this map,
+     * excluding the values themselves.
+     * @return the approximate number of bytes of heap used by this map
+     */
+    public long footprint() {
+        return 32 + 16 + 8L * _keys.length + 16 + 4L * _values.length;
+    }
+}
@@ -0,0 +1,239 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocation-free parser for MAC address strings.  Accepts exactly the same
+ * input as MacAddress(String): ETH_ALEN hexadecimal-encoded bytes, optionally
+ * separated by any whitespace or any of '-', ':', '.', or '_', used
+ * consistently, with leading and trailing whitespace ignored.
+ *
+ * Rather than throwing on bad input, every parse method returns the 48-bit
+ * MAC address value (as used by MacAddress.toLong()) or INVALID.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public final class MacAddressParser {
+
+    /**
+     * Returned by the parse methods when the input is not a valid MAC address.
+     * Valid results never have any of the upper 16 bits set.
+     */
+    public static final long INVALID = -1L;
+
+    /**
+     * Length of an unseparated MAC string, e.g. "001122334455"
+     */
+    private static final int BARE_LEN = 2 * MacAddress.ETH_ALEN;
+
+    /**
+     * Length of a separated MAC string, e.g. "00:11:22:33:44:55"
+     */
+    private static final int SEPARATED_LEN = 3 * MacAddress.ETH_ALEN - 1;
+
+    /**
+     * Hex digit values for ASCII characters, or -1 for non-hex characters.
+     */
+    private static final byte[] HEX = new byte[128];
+
+    static {
+        java.util.Arrays.fill(HEX, (byte) -1);
+        for (int i = 0; i < 10; ++i) HEX['0' + i] = (byte) i;
+        for (int i = 0; i < 6; ++i) {
+            HEX['a' + i] = (byte) (10 + i);
+            HEX['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private MacAddressParser() {}
+
+    /**
+     * Indicates whether c is whitespace, using the same definition as
+     * java.util.regex's \s
+     */
+    static boolean isSpace(int c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    /**
+     * Indicates whether c may separate the bytes of a MAC address
+     */
+    static boolean isSeparator(int c) {
+        return c == ':' || c == '-' || c == '.' || c == '_' || isSpace(c);
+    }
+
+    /**
+     * Returns the value of the hex digit c, or -1 if c is not a hex digit
+     */
+    static int hexValue(int c) {
+        return c < 128 ? HEX[c] : -1;
+    }
+
+    /**
+     * Combines two hex digits into a byte value, or a negative value if
+     * either is not a hex digit
+     */
+    private static int hexByte(int hi, int lo) {
+        return (hexValue(hi) << 4) | hexValue(lo);
+    }
+
+    /**
+     * Parses a MAC address from the specified CharSequence.
+     *
+     * @param s the MAC address string (null is treated as invalid)
+     * @return the 48-bit MAC address value, or INVALID
+     */
+    public static long parse(CharSequence s) {
+        return s == null ? INVALID : parse(s, 0, s.length());
+    }
+
+    /**
+     * Parses a MAC address from a range of the specified CharSequence.
+     *
+     * @param s the CharSequence containing the MAC address
+     * @param offset the index of the first character to parse
+     * @param length the number of characters to parse
+     * @return the 48-bit MAC address value, or INVALID
+     */
+    public static long parse(CharSequence s, int offset, int length) {
+        int start = offset, end = offset + length;
+        while (start < end && isSpace(s.charAt(start))) ++start;
+        while (end > start && isSpace(s.charAt(end - 1))) --end;
+
+        int stride;
+        switch (end - start) {
+            case BARE_LEN: stride = 2; break;
+            case SEPARATED_LEN: stride = 3; break;
+            default: return INVALID;
+        }
+
+        long result = 0;
+        int sep = stride == 3 ? s.charAt(start + 2) : 0;
+        if (stride == 3 && !isSeparator(sep)) return INVALID;
+        for (int i = start; i < end; i += stride) {
+            if (i > start && stride == 3 && s.charAt(i - 1) != sep) return INVALID;
+            int b = hexByte(s.charAt(i), s.charAt(i + 1));
+            if (b < 0) return INVALID;
+            result = (result << 8) | b;
+        }
+        return result;
+    }
+
+    /**
+     * Parses a MAC address from a range of the specified char array.
+     *
+     * @param s the array containing the MAC address
+     * @param offset the index of the first character to parse
+     * @param length the number of characters to parse
+     * @return the 48-bit MAC address value, or INVALID
+     */
+    public static long parse(char[] s, int offset, int length) {
+        int start = offset, end = offset + length;
+        while (start < end && isSpace(s[start])) ++start;
+        while (end > start && isSpace(s[end - 1])) --end;
+
+        int stride;
+        switch (end - start) {
+            case BARE_LEN: stride = 2; break;
+            case SEPARATED_LEN: stride = 3; break;
+            default: return INVALID;
+        }
+
+        long result = 0;
+        int sep = stride == 3 ? s[start + 2] : 0;
+        if (stride == 3 && !isSeparator(sep)) return INVALID;
+        for (int i = start; i < end; i += stride) {
+            if (i > start && stride == 3 && s[i - 1] != sep) return INVALID;
+            int b = hexByte(s[i], s[i + 1]);
+            if (b < 0) return INVALID;
+            result = (result << 8) | b;
+        }
+        return result;
+    }
+
+    /**
+     * Parses a MAC address from a range of the specified ASCII (or UTF-8)
+     * byte array.
+     *
+     * @param s the array containing the MAC address
+     * @param offset the index of the first byte to parse
+     * @param length the number of bytes to parse
+     * @return the 48-bit MAC address value, or INVALID
+     */
+    public static long parse(byte[] s, int offset, int length) {
+        int start = offset, end = offset + length;
+        while (start < end && isSpace(s[start])) ++start;
+        while (end > start && isSpace(s[end - 1])) --end;
+
+        int stride;
+        switch (end - start) {
+            case BARE_LEN: stride = 2; break;
+            case SEPARATED_LEN: stride = 3; break;
+            default: return INVALID;
+        }
+
+        long result = 0;
+        int sep = stride == 3 ? s[start + 2] : 0;
+        if (stride == 3 && !isSeparator(sep)) return INVALID;
+        for (int i = start; i < end; i += stride) {
+            if (i > start && stride == 3 && s[i - 1] != sep) return INVALID;
+            int b = hexByte(s[i] & 0xff, s[i + 1] & 0xff);
+            if (b < 0) return INVALID;
+            result = (result << 8) | b;
+        }
+        return result;
+    }
+
+    /**
+     * Parses a MAC address from a range of the specified ASCII (or UTF-8)
+     * ByteBuffer, using absolute indices so the buffer's position is
+     * unchanged.
+     *
+     * @param s the buffer containing the MAC address
+     * @param offset the index of the first byte to parse
+     * @param length the number of bytes to parse
+     * @return the 48-bit MAC address value, or INVALID
+     */
+    public static long parse(ByteBuffer s, int offset, int length) {
+        int start = offset, end = offset + length;
+        while (start < end && isSpace(s.get(start))) ++start;
+        while (end > start && isSpace(s.get(end - 1))) --end;
+
+        int stride;
+        switch (end - start) {
+            case BARE_LEN: stride = 2; break;
+            case SEPARATED_LEN: stride = 3; break;
+            default: return INVALID;
+        }
+
+        long result = 0;
+        int sep = stride == 3 ? s.get(start + 2) : 0;
+        if (stride == 3 && !isSeparator(sep)) return INVALID;
+        for (int i = start; i < end; i += stride) {
+            if (i > start && stride == 3 && s.get(i - 1) != sep) return INVALID;
+            int b = hexByte(s.get(i) & 0xff, s.get(i + 1) & 0xff);
+            if (b < 0) return INVALID;
+            result = (result << 8) | b;
+        }
+        return result;
+    }
+}
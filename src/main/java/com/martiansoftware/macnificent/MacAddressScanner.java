@@ -0,0 +1,454 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Finds MAC addresses embedded in arbitrary text, such as syslog, DHCP or
+ * RADIUS log lines, in a single pass and without allocating.
+ *
+ * A MAC address token is anything MacAddressParser accepts without
+ * surrounding whitespace: twelve hex digits, or six pairs of hex digits
+ * consistently separated by one of ':', '-', '.', '_' or a whitespace
+ * character.  To avoid matching pieces of longer identifiers, a token must
+ * not be immediately preceded or followed by an ASCII letter or digit, nor
+ * by another pair of hex digits with the same separator (so neither
+ * "00:11:22:33:44:55:66" nor "ab001122334455" contains a MAC address).
+ *
+ * Byte input is treated as UTF-8 (or any ASCII-compatible encoding);
+ * non-ASCII characters never form part of a token.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public final class MacAddressScanner {
+
+    /**
+     * Receives each MAC address found by a scan
+     */
+    public interface Listener {
+        /**
+         * Called for each MAC address found, in order
+         * @param mac the 48-bit MAC address
+         * @param start the index of the token's first character or byte
+         * @param end the index after the token's last character or byte
+         */
+        void found(long mac, int start, int end);
+    }
+
+    /**
+     * Length of an unseparated MAC token, e.g. "001122334455"
+     */
+    private static final int BARE_LEN = 2 * MacAddress.ETH_ALEN;
+
+    /**
+     * Length of a separated MAC token, e.g. "00:11:22:33:44:55"
+     */
+    private static final int SEPARATED_LEN = 3 * MacAddress.ETH_ALEN - 1;
+
+    /**
+     * Number of characters either side of a token needed to decide whether
+     * it is a MAC address: a separator, two hex digits and a boundary
+     */
+    private static final int CONTEXT = 4;
+
+    /**
+     * Number of bytes past a token's start needed to decide whether it is a
+     * MAC address: the longest token plus its trailing context
+     */
+    public static final int LOOKAHEAD = SEPARATED_LEN + CONTEXT;
+
+    /**
+     * Mask for the characters packed into a context window.  Windows hold
+     * the CONTEXT characters before the current one, 16 bits each, with the
+     * nearest in the low bits and 0 for characters before the start.
+     */
+    private static final int CHAR_MASK = 0xffff;
+
+    private MacAddressScanner() {}
+
+    private static boolean isHex(int c) {
+        return MacAddressParser.hexValue(c) >= 0;
+    }
+
+    private static boolean isAlnum(int c) {
+        int lower = c | 0x20;
+        return (c >= '0' && c <= '9') || (lower >= 'a' && lower <= 'z');
+    }
+
+    /**
+     * Returns true if c1 .. c4 (in order of increasing distance from a
+     * token) are another separated pair of hex digits
+     */
+    private static boolean isGroup(int sep, int c1, int c2, int c3, int c4) {
+        return c1 == sep && isHex(c2) && isHex(c3) && !isAlnum(c4);
+    }
+
+    private static int at(long window, int distance) {
+        return (int) (window >>> (16 * (distance - 1))) & CHAR_MASK;
+    }
+
+    private static long push(long window, int c) {
+        return (window << 16) | c;
+    }
+
+    /**
+     * Returns the length of the token starting at i, assuming that it is a
+     * MAC address
+     */
+    private static int tokenLength(int thirdChar) {
+        return MacAddressParser.isSeparator(thirdChar) ? SEPARATED_LEN : BARE_LEN;
+    }
+
+    /**
+     * Returns the MAC address in the token starting at i, or INVALID.  The
+     * caller has checked that s[i] is a hex digit and that the character
+     * before it is not a letter or digit; before is the context window at i.
+     */
+    private static long match(CharSequence s, int i, int end, long before) {
+        if (i + BARE_LEN > end || !isHex(s.charAt(i + 1))) return MacAddressParser.INVALID;
+        int sep = s.charAt(i + 2);
+        int len = tokenLength(sep);
+        if (len == BARE_LEN) {
+            sep = -1;
+        } else if (i + len > end || isGroup(sep, at(before, 1), at(before, 2), at(before, 3), at(before, 4))) {
+            return MacAddressParser.INVALID;
+        }
+        long result = MacAddressParser.parse(s, i, len);
+        if (result == MacAddressParser.INVALID) return result;
+        int e = i + len;
+        int a1 = e < end ? s.charAt(e) : 0;
+        if (isAlnum(a1)) return MacAddressParser.INVALID;
+        if (a1 == sep
+                && isGroup(sep, a1, e + 1 < end ? s.charAt(e + 1) : 0, e + 2 < end ? s.charAt(e + 2) : 0, e + 3 < end ? s.charAt(e + 3) : 0)) {
+            return MacAddressParser.INVALID;
+        }
+        return result;
+    }
+
+    /**
+     * ByteBuffer equivalent of match(CharSequence, ...), using absolute
+     * indices
+     */
+    private static long match(ByteBuffer s, int i, int end, long before) {
+        if (i + BARE_LEN > end || !isHex(s.get(i + 1) & 0xff)) return MacAddressParser.INVALID;
+        int sep = s.get(i + 2) & 0xff;
+        int len = tokenLength(sep);
+        if (len == BARE_LEN) {
+            sep = -1;
+        } else if (i + len > end || isGroup(sep, at(before, 1), at(before, 2), at(before, 3), at(before, 4))) {
+            return MacAddressParser.INVALID;
+        }
+        long result = MacAddressParser.parse(s, i, len);
+        if (result == MacAddressParser.INVALID) return result;
+        int e = i + len;
+        int a1 = e < end ? s.get(e) & 0xff : 0;
+        if (isAlnum(a1)) return MacAddressParser.INVALID;
+        if (a1 == sep
+                && isGroup(sep, a1, e + 1 < end ? s.get(e + 1) & 0xff : 0, e + 2 < end ? s.get(e + 2) & 0xff : 0, e + 3 < end ? s.get(e + 3) & 0xff : 0)) {
+            return MacAddressParser.INVALID;
+        }
+        return result;
+    }
+
+    /**
+     * Finds every MAC address in the specified CharSequence.
+     *
+     * @param s the text to scan
+     * @param listener receives each MAC address found
+     * @return the number of MAC addresses found
+     */
+    public static int scan(CharSequence s, Listener listener) {
+        return scan(s, 0, s.length(), listener);
+    }
+
+    /**
+     * Finds every MAC address in a range of the specified CharSequence.
+     * Characters outside the range are ignored, so a token may begin at
+     * offset or end at offset + length.
+     *
+     * @param s the text to scan
+     * @param offset the index of the first character to scan
+     * @param length the number of characters to scan
+     * @param listener receives each MAC address found, with indices into s
+     * @return the number of MAC addresses found
+     */
+    public static int scan(CharSequence s, int offset, int length, Listener listener) {
+        int end = offset + length, count = 0;
+        long before = 0;
+        for (int i = offset; i < end; ) {
+            int c = s.charAt(i);
+            if (!isAlnum(at(before, 1)) && isHex(c)) {
+                long mac = match(s, i, end, before);
+                if (mac != MacAddressParser.INVALID) {
+                    int len = tokenLength(s.charAt(i + 2));
+                    listener.found(mac, i, i + len);
+                    ++count;
+                    i += len;
+                    before = 0;
+                    for (int j = i - CONTEXT; j < i; ++j) before = push(before, s.charAt(j));
+                    continue;
+                }
+            }
+            before = push(before, c);
+            ++i;
+        }
+        return count;
+    }
+
+    /**
+     * Finds every MAC address in a range of the specified UTF-8 byte array.
+     *
+     * @param b the text to scan
+     * @param offset the index of the first byte to scan
+     * @param length the number of bytes to scan
+     * @param listener receives each MAC address found, with indices into b
+     * @return the number of MAC addresses found
+     */
+    public static int scan(byte[] b, int offset, int length, Listener listener) {
+        return scan(ByteBuffer.wrap(b, offset, length), listener);
+    }
+
+    /**
+     * Finds every MAC address between the position and limit of the
+     * specified UTF-8 ByteBuffer.  The buffer's position is unchanged.
+     *
+     * @param b the text to scan
+     * @param listener receives each MAC address found, with absolute indices into b
+     * @return the number of MAC addresses found
+     */
+    public static int scan(ByteBuffer b, Listener listener) {
+        int end = b.limit(), count = 0;
+        long before = 0;
+        for (int i = b.position(); i < end; ) {
+            int c = b.get(i) & 0xff;
+            if (!isAlnum(at(before, 1)) && isHex(c)) {
+                long mac = match(b, i, end, before);
+                if (mac != MacAddressParser.INVALID) {
+                    int len = tokenLength(b.get(i + 2) & 0xff);
+                    listener.found(mac, i, i + len);
+                    ++count;
+                    i += len;
+                    before = 0;
+                    for (int j = i - CONTEXT; j < i; ++j) before = push(before, b.get(j) & 0xff);
+                    continue;
+                }
+            }
+            before = push(before, c);
+            ++i;
+        }
+        return count;
+    }
+
+    /**
+     * Copies text to an Appendable, replacing each MAC address with its
+     * vendor-prefixed format as OuiRegistry.format(long) would produce.
+     *
+     * @param s the text to rewrite
+     * @param registry the registry used to format each MAC address
+     * @param out the destination
+     * @return the number of MAC addresses replaced
+     * @throws IOException if thrown by the Appendable
+     */
+    public static int rewrite(CharSequence s, OuiRegistry registry, Appendable out) throws IOException {
+        return rewrite(s, registry, MacAddressStyle.COLON, out);
+    }
+
+    /**
+     * Copies text to an Appendable, replacing each MAC address with its
+     * vendor-prefixed format as OuiRegistry.formatTo(long, Appendable,
+     * MacAddressStyle) would produce.
+     *
+     * @param s the text to rewrite
+     * @param registry the registry used to format each MAC address
+     * @param style the style in which to format the non-OUI portion of each MAC
+     * @param out the destination
+     * @return the number of MAC addresses replaced
+     * @throws IOException if thrown by the Appendable
+     */
+    public static int rewrite(CharSequence s, OuiRegistry registry, MacAddressStyle style, Appendable out) throws IOException {
+        int end = s.length(), copied = 0, count = 0;
+        long before = 0;
+        for (int i = 0; i < end; ) {
+            int c = s.charAt(i);
+            if (!isAlnum(at(before, 1)) && isHex(c)) {
+                long mac = match(s, i, end, before);
+                if (mac != MacAddressParser.INVALID) {
+                    out.append(s, copied, i);
+                    registry.formatTo(mac, out, style);
+                    ++count;
+                    i += tokenLength(s.charAt(i + 2));
+                    copied = i;
+                    before = 0;
+                    for (int j = i - CONTEXT; j < i; ++j) before = push(before, s.charAt(j));
+                    continue;
+                }
+            }
+            before = push(before, c);
+            ++i;
+        }
+        out.append(s, copied, end);
+        return count;
+    }
+
+    /**
+     * Rewrites a stream of UTF-8 text from one ByteBuffer to another,
+     * replacing each MAC address with its vendor-prefixed format, in the
+     * manner of a java.nio.charset.CharsetEncoder.  Input may be supplied in
+     * arbitrary chunks; a Rewriter remembers enough context to find MAC
+     * addresses that span them.  Nothing is allocated per MAC address.
+     *
+     * Not thread-safe; use one Rewriter per stream.
+     */
+    public static final class Rewriter {
+
+        private final OuiRegistry _registry;
+        private final MacAddressStyle _style;
+
+        /**
+         * Context window of the bytes before the input buffer's position
+         */
+        private long _before;
+
+        /**
+         * Holds the formatted form of each MAC address
+         */
+        private byte[] _scratch = new byte[128];
+
+        private int _count;
+
+        /**
+         * Creates a new Rewriter that formats as OuiRegistry.format(long) does.
+         *
+         * @param registry the registry used to format each MAC address
+         */
+        public Rewriter(OuiRegistry registry) {
+            this(registry, MacAddressStyle.COLON);
+        }
+
+        /**
+         * Creates a new Rewriter.
+         *
+         * @param registry the registry used to format each MAC address
+         * @param style the style in which to format the non-OUI portion of each MAC
+         */
+        public Rewriter(OuiRegistry registry, MacAddressStyle style) {
+            _registry = registry;
+            _style = style;
+        }
+
+        /**
+         * Returns the number of MAC addresses replaced so far
+         * @return the number of MAC addresses replaced so far
+         */
+        public int getCount() { return _count; }
+
+        /**
+         * Prepares this Rewriter for a new stream.
+         */
+        public void reset() {
+            _before = 0;
+            _count = 0;
+        }
+
+        /**
+         * Rewrites as much input as possible from in to out, advancing both
+         * buffers' positions.
+         *
+         * If endOfInput is false, up to LOOKAHEAD bytes that might begin a
+         * MAC address are left in the input; the caller should compact in,
+         * add more input and call this again.  Input buffers must therefore
+         * be larger than LOOKAHEAD.  Once all input has been supplied, call
+         * this with endOfInput true until it returns true.
+         *
+         * @param in the input text
+         * @param out the output buffer, which must have room for at least one
+         * formatted MAC address
+         * @param endOfInput whether in contains the last of the input
+         * @return true if all available input was consumed, or false if out
+         * filled up and must be drained before calling again
+         */
+        public boolean rewrite(ByteBuffer in, ByteBuffer out, boolean endOfInput) {
+            int start = in.position(), limit = in.limit(), copied = start;
+            int decidable = endOfInput ? limit : limit - LOOKAHEAD;
+            long before = _before;
+            int i = start;
+            while (i < decidable) {
+                int c = in.get(i) & 0xff;
+                if (!isAlnum(at(before, 1)) && isHex(c)) {
+                    long mac = match(in, i, limit, before);
+                    if (mac != MacAddressParser.INVALID) {
+                        int n = format(mac);
+                        if (out.remaining() < i - copied + n) {
+                            int partial = Math.min(i - copied, out.remaining());
+                            copy(in, copied, partial, out);
+                            stop(in, copied + partial, start);
+                            return false;
+                        }
+                        copy(in, copied, i - copied, out);
+                        out.put(_scratch, 0, n);
+                        ++_count;
+                        i += tokenLength(in.get(i + 2) & 0xff);
+                        copied = i;
+                        before = 0;
+                        for (int j = i - CONTEXT; j < i; ++j) before = push(before, in.get(j) & 0xff);
+                        continue;
+                    }
+                }
+                before = push(before, c);
+                ++i;
+            }
+            int n = Math.min(i - copied, out.remaining());
+            copy(in, copied, n, out);
+            stop(in, copied + n, start);
+            return copied + n == i;
+        }
+
+        /**
+         * Formats mac into _scratch, growing it if necessary, and returns its length
+         */
+        private int format(long mac) {
+            int index = _registry.lookup(mac);
+            int length = _registry.formattedLength(index, _style);
+            if (length > _scratch.length) _scratch = new byte[Math.max(length, 2 * _scratch.length)];
+            return _registry.formatTo(index, mac, _scratch, 0, _style);
+        }
+
+        private static void copy(ByteBuffer in, int from, int length, ByteBuffer out) {
+            if (in.hasArray() && out.hasArray()) {
+                System.arraycopy(in.array(), in.arrayOffset() + from, out.array(), out.arrayOffset() + out.position(), length);
+                out.position(out.position() + length);
+            } else {
+                for (int i = from; i < from + length; ++i) out.put(in.get(i));
+            }
+        }
+
+        /**
+         * Sets the input position to q, remembering the bytes before it
+         */
+        private void stop(ByteBuffer in, int q, int start) {
+            long before = q - start >= CONTEXT ? 0 : _before;
+            for (int j = Math.max(start, q - CONTEXT); j < q; ++j) before = push(before, in.get(j) & 0xff);
+            _before = before;
+            in.position(q);
+        }
+    }
+}
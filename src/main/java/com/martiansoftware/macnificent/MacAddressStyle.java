@@ -0,0 +1,126 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.IOException;
+
+/**
+ * The textual styles in which MacAddress and OuiRegistry can format MAC
+ * addresses without allocating.  Examples are shown for 00:21:9b:07:20:74.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public enum MacAddressStyle {
+
+    /** 00:21:9b:07:20:74 */
+    COLON(':', 1, false),
+
+    /** 00:21:9B:07:20:74 */
+    COLON_UPPER(':', 1, true),
+
+    /** 00-21-9b-07-20-74 */
+    DASH('-', 1, false),
+
+    /** 00-21-9B-07-20-74 */
+    DASH_UPPER('-', 1, true),
+
+    /** 0021.9b07.2074 (Cisco style) */
+    DOTTED('.', 2, false),
+
+    /** 0021.9B07.2074 */
+    DOTTED_UPPER('.', 2, true),
+
+    /** 00219b072074 */
+    BARE((char) 0, MacAddress.ETH_ALEN, false),
+
+    /** 00219B072074 */
+    BARE_UPPER((char) 0, MacAddress.ETH_ALEN, true);
+
+    private final char _separator;
+    private final int _bytesPerGroup;
+    private final boolean _upper;
+
+    private MacAddressStyle(char separator, int bytesPerGroup, boolean upper) {
+        _separator = separator;
+        _bytesPerGroup = bytesPerGroup;
+        _upper = upper;
+    }
+
+    /**
+     * Returns the number of characters needed to format bytes firstByte
+     * through ETH_ALEN - 1 of a MAC in this style
+     * @param firstByte the first byte of the MAC to format
+     * @return the formatted length
+     */
+    int length(int firstByte) {
+        int n = MacAddress.ETH_ALEN - firstByte;
+        // separators fall where they would in the complete address
+        return 2 * n + (_separator == 0 ? 0 : (MacAddress.ETH_ALEN - 1) / _bytesPerGroup - firstByte / _bytesPerGroup);
+    }
+
+    /**
+     * Returns the number of characters needed to format a complete MAC
+     * address in this style
+     * @return the formatted length of a MAC address
+     */
+    public int length() {
+        return length(0);
+    }
+
+    /**
+     * Indicates whether this style uses uppercase hex digits
+     * @return true if this style uses uppercase hex digits
+     */
+    boolean isUpperCase() { return _upper; }
+
+    /**
+     * Appends bytes firstByte through ETH_ALEN - 1 of a MAC in this style
+     *
+     * @param out the destination
+     * @param mac the 48-bit MAC address
+     * @param firstByte the first byte of the MAC to format
+     * @throws IOException if thrown by the Appendable
+     */
+    void appendTo(Appendable out, long mac, int firstByte) throws IOException {
+        for (int i = firstByte; i < MacAddress.ETH_ALEN; ++i) {
+            if (i > firstByte && _separator != 0 && i % _bytesPerGroup == 0) out.append(_separator);
+            Hex.appendByte(out, (int) (mac >>> (8 * (MacAddress.ETH_ALEN - 1 - i))), _upper);
+        }
+    }
+
+    /**
+     * Writes bytes firstByte through ETH_ALEN - 1 of a MAC in this style as ASCII
+     *
+     * @param dst the destination
+     * @param off the position in dst at which to write
+     * @param mac the 48-bit MAC address
+     * @param firstByte the first byte of the MAC to format
+     * @return the number of bytes written
+     */
+    int writeTo(byte[] dst, int off, long mac, int firstByte) {
+        int p = off;
+        for (int i = firstByte; i < MacAddress.ETH_ALEN; ++i) {
+            if (i > firstByte && _separator != 0 && i % _bytesPerGroup == 0) dst[p++] = (byte) _separator;
+            Hex.writeByte(dst, p, (int) (mac >>> (8 * (MacAddress.ETH_ALEN - 1 - i))), _upper);
+            p += 2;
+        }
+        return p - off;
+    }
+}
@@ -0,0 +1,165 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A reusable, mutable view of a 6-byte MAC address within a ByteBuffer,
+ * such as the source or destination of an Ethernet frame.  wrap() points
+ * the view at a new location without copying or allocating, and every
+ * method reads the address from the buffer in network byte order, so a
+ * single view can be reused for every frame a thread processes.
+ *
+ * A view reflects later changes to the bytes it wraps.  Use toLong() or
+ * toMacAddress() to keep an address beyond the lifetime of the buffer.
+ *
+ * Not thread-safe.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public final class MacAddressView {
+
+    private ByteBuffer _buf;
+    private int _offset;
+
+    /**
+     * Creates a new MacAddressView, which must be wrapped around a buffer
+     * before use.
+     */
+    public MacAddressView() {
+    }
+
+    /**
+     * Creates a new MacAddressView of the MAC address at the specified
+     * absolute index of a buffer.
+     *
+     * @param buf the buffer containing the MAC address
+     * @param offset the index of the first byte of the MAC address
+     */
+    public MacAddressView(ByteBuffer buf, int offset) {
+        wrap(buf, offset);
+    }
+
+    /**
+     * Points this view at the MAC address at the specified absolute index
+     * of a buffer.  The buffer's position is ignored and left unchanged.
+     *
+     * @param buf the buffer containing the MAC address
+     * @param offset the index of the first byte of the MAC address
+     * @return this view
+     * @throws IndexOutOfBoundsException if fewer than ETH_ALEN bytes follow
+     * offset within the buffer's limit
+     */
+    public MacAddressView wrap(ByteBuffer buf, int offset) {
+        if (offset < 0 || offset > buf.limit() - MacAddress.ETH_ALEN) {
+            throw new IndexOutOfBoundsException("No MAC address at offset " + offset + " of a buffer with limit " + buf.limit());
+        }
+        _buf = buf;
+        _offset = offset;
+        return this;
+    }
+
+    /**
+     * Returns the buffer this view reads from
+     * @return the buffer this view reads from, or null if not yet wrapped
+     */
+    public ByteBuffer getBuffer() { return _buf; }
+
+    /**
+     * Returns the index within the buffer of the first byte of the MAC address
+     * @return the index within the buffer of the first byte of the MAC address
+     */
+    public int getOffset() { return _offset; }
+
+    /**
+     * Returns the 48-bit value of the MAC address currently in view
+     * @return the 48-bit MAC address value, in network byte order
+     */
+    public long toLong() {
+        return MacAddress.toLong(_buf, _offset);
+    }
+
+    /**
+     * Returns the 24-bit OUI of the MAC address currently in view
+     * @return the unsigned 24-bit OUI of the MAC address
+     */
+    public int oui() {
+        return MacAddress.oui(toLong());
+    }
+
+    /**
+     * Indicates whether the MAC address in view has its multicast bit set
+     * @return true if the MAC address has its multicast bit set
+     */
+    public boolean isMulticast() {
+        return (_buf.get(_offset) & MacAddress.FLAG_MCAST) != 0;
+    }
+
+    /**
+     * Indicates whether the MAC address in view has its local bit set
+     * @return true if the MAC address has its local bit set
+     */
+    public boolean isLocal() {
+        return (_buf.get(_offset) & MacAddress.FLAG_LOCAL) != 0;
+    }
+
+    /**
+     * Copies the bytes of the MAC address in view to an array
+     *
+     * @param dest the destination array
+     * @param offset the offset in the destination array at which to write
+     */
+    public void copyBytes(byte[] dest, int offset) {
+        MacAddress.toBytes(toLong(), dest, offset);
+    }
+
+    /**
+     * Returns a new, immutable MacAddress holding the address in view
+     * @return a new MacAddress holding the address in view
+     */
+    public MacAddress toMacAddress() {
+        return MacAddress.fromLong(toLong());
+    }
+
+    /**
+     * Appends the MAC address in view to an Appendable in the specified
+     * style, without allocating.
+     *
+     * @param out the destination
+     * @param style the style in which to format the MAC address
+     * @throws IOException if thrown by the Appendable
+     */
+    public void formatTo(Appendable out, MacAddressStyle style) throws IOException {
+        MacAddress.formatTo(toLong(), out, style);
+    }
+
+    /**
+     * Returns the MAC address in view in the same style as
+     * MacAddress.toString()
+     *
+     * @return the MAC address in view
+     */
+    @Override
+    public String toString() {
+        return _buf == null ? "(unwrapped)" : MacAddress.toString(toLong(), MacAddressStyle.COLON);
+    }
+}
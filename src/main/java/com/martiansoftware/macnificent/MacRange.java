@@ -0,0 +1,323 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.NavigableSet;
+
+/**
+ * An inclusive range of 48-bit MAC addresses, such as a vendor block
+ * (00:1b:63:00:00:00/24) or an arbitrary span of addresses
+ * (00:1b:63:00:00:10-00:1b:63:00:00:1f).  A range whose size is a power of
+ * two and whose first address is aligned to that size is also a prefix, and
+ * contains exactly the addresses that equal its first address under its
+ * mask.
+ *
+ * MacRanges are immutable.  To classify addresses against many ranges, use
+ * a MacRangeMatcher.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public final class MacRange {
+
+    /**
+     * Number of bits in a MAC address
+     */
+    private static final int BITS = 8 * MacAddress.ETH_ALEN;
+
+    /**
+     * The range containing every MAC address
+     */
+    public static final MacRange ALL = new MacRange(0, MacAddress.MAC_MASK);
+
+    private final long _first;
+    private final long _last;
+
+    private MacRange(long first, long last) {
+        _first = first;
+        _last = last;
+    }
+
+    /**
+     * Returns the range of addresses from first to last, inclusive.
+     *
+     * @param first the first 48-bit MAC address in the range
+     * @param last the last 48-bit MAC address in the range
+     * @return the range
+     */
+    public static MacRange of(long first, long last) {
+        check(first);
+        check(last);
+        if (first > last) throw new IllegalArgumentException("MacRange start " + MacAddress.toString(first, MacAddressStyle.COLON) + " is after its end " + MacAddress.toString(last, MacAddressStyle.COLON));
+        return new MacRange(first, last);
+    }
+
+    /**
+     * Returns the range of addresses from first to last, inclusive.
+     *
+     * @param first the first MAC address in the range
+     * @param last the last MAC address in the range
+     * @return the range
+     */
+    public static MacRange of(MacAddress first, MacAddress last) {
+        return of(first.toLong(), last.toLong());
+    }
+
+    /**
+     * Returns the range of addresses that share the specified number of
+     * leading bits with the specified address.  Bits beyond the prefix
+     * length are ignored.
+     *
+     * @param mac the 48-bit MAC address supplying the prefix
+     * @param length the prefix length in bits, from 0 to 48
+     * @return the range
+     */
+    public static MacRange prefix(long mac, int length) {
+        check(mac);
+        if (length < 0 || length > BITS) throw new IllegalArgumentException("MacRange prefix length must be between 0 and " + BITS + ": " + length);
+        long mask = PrefixTrie.mask(length);
+        return new MacRange(mac & mask, (mac & mask) | (~mask & MacAddress.MAC_MASK));
+    }
+
+    /**
+     * Returns the range of addresses that equal the specified address under
+     * the specified mask.  The mask's set bits must be contiguous and start
+     * with the first bit of the address (e.g. ff:ff:ff:f0:00:00).
+     *
+     * @param mac the 48-bit MAC address supplying the prefix
+     * @param mask the 48-bit prefix mask
+     * @return the range
+     */
+    public static MacRange masked(long mac, long mask) {
+        check(mask);
+        int length = BITS - Long.numberOfTrailingZeros(mask | (1L << BITS));
+        if (mask != PrefixTrie.mask(length)) throw new IllegalArgumentException("MacRange mask is not a prefix mask: " + MacAddress.toString(mask, MacAddressStyle.COLON));
+        return prefix(mac, length);
+    }
+
+    /**
+     * Parses a range in any of the following forms, where each MAC address
+     * is in any form accepted by MacAddress(String):
+     * <ul>
+     * <li>00:1b:63:00:00:00/24 (address and prefix length)</li>
+     * <li>00:1b:63:00:00:00/ff:ff:ff:00:00:00 (address and prefix mask)</li>
+     * <li>00:1b:63:00:00:10-00:1b:63:00:00:1f (first and last address)</li>
+     * <li>00:1b:63:00:00:10 (a single address)</li>
+     * </ul>
+     *
+     * @param s the range to parse
+     * @return the range
+     * @throws IllegalArgumentException if s is not a valid range
+     */
+    public static MacRange parse(String s) {
+        int slash = s.indexOf('/');
+        if (slash >= 0) {
+            long mac = MacAddressParser.parse(s, 0, slash);
+            String suffix = s.substring(slash + 1).trim();
+            if (mac != MacAddressParser.INVALID && !suffix.isEmpty()) {
+                if (suffix.length() <= 2 && Character.isDigit(suffix.charAt(0))) {
+                    try {
+                        return prefix(mac, Integer.parseInt(suffix));
+                    } catch (NumberFormatException e) {
+                        // fall through to report the whole string
+                    }
+                } else {
+                    long mask = MacAddressParser.parse(suffix);
+                    if (mask != MacAddressParser.INVALID) return masked(mac, mask);
+                }
+            }
+            throw new IllegalArgumentException("Invalid MacRange string: \"" + s + "\"");
+        }
+
+        long mac = MacAddressParser.parse(s);
+        if (mac != MacAddressParser.INVALID) return new MacRange(mac, mac);
+
+        // dash-separated addresses contain dashes of their own, so try each
+        for (int i = s.indexOf('-'); i >= 0; i = s.indexOf('-', i + 1)) {
+            long first = MacAddressParser.parse(s, 0, i);
+            if (first == MacAddressParser.INVALID) continue;
+            long last = MacAddressParser.parse(s, i + 1, s.length() - i - 1);
+            if (last != MacAddressParser.INVALID) return of(first, last);
+        }
+        throw new IllegalArgumentException("Invalid MacRange string: \"" + s + "\"");
+    }
+
+    private static void check(long mac) {
+        if ((mac & ~MacAddress.MAC_MASK) != 0) throw new IllegalArgumentException("MacAddress value must fit within 48 bits: " + Long.toHexString(mac));
+    }
+
+    /**
+     * Returns the first address in this range
+     * @return the first 48-bit MAC address in this range
+     */
+    public long first() { return _first; }
+
+    /**
+     * Returns the last address in this range
+     * @return the last 48-bit MAC address in this range
+     */
+    public long last() { return _last; }
+
+    /**
+     * Returns the number of addresses in this range
+     * @return the number of addresses in this range, from 1 to 2^48
+     */
+    public long size() { return _last - _first + 1; }
+
+    /**
+     * Returns the length of the prefix this range represents, or -1 if it
+     * is not a prefix.
+     *
+     * @return the prefix length in bits, or -1
+     */
+    public int prefixLength() {
+        long size = size();
+        if (Long.bitCount(size) != 1 || (_first & (size - 1)) != 0) return -1;
+        return BITS - Long.numberOfTrailingZeros(size);
+    }
+
+    /**
+     * Indicates whether this range is a prefix, i.e. can be expressed as an
+     * address and mask.
+     *
+     * @return true if this range is a prefix
+     */
+    public boolean isPrefix() {
+        return prefixLength() >= 0;
+    }
+
+    /**
+     * Returns the mask of the prefix this range represents.
+     *
+     * @return the 48-bit prefix mask
+     * @throws IllegalStateException if this range is not a prefix
+     */
+    public long mask() {
+        int length = prefixLength();
+        if (length < 0) throw new IllegalStateException("MacRange " + this + " is not a prefix");
+        return PrefixTrie.mask(length);
+    }
+
+    /**
+     * Indicates whether this range contains the specified address.  Values
+     * that are not 48-bit MAC addresses are never contained.
+     *
+     * @param mac a 48-bit MAC address
+     * @return true if this range contains mac
+     */
+    public boolean contains(long mac) {
+        return mac >= _first && mac <= _last;
+    }
+
+    /**
+     * Indicates whether this range contains the specified address
+     * @param mac a MAC address
+     * @return true if this range contains mac
+     */
+    public boolean contains(MacAddress mac) {
+        return contains(mac.toLong());
+    }
+
+    /**
+     * Indicates whether this range contains every address of another range
+     * @param range the other range
+     * @return true if this range contains every address in range
+     */
+    public boolean contains(MacRange range) {
+        return range._first >= _first && range._last <= _last;
+    }
+
+    /**
+     * Indicates whether this range has any address in common with another
+     * @param range the other range
+     * @return true if the ranges overlap
+     */
+    public boolean overlaps(MacRange range) {
+        return range._first <= _last && range._last >= _first;
+    }
+
+    /**
+     * Returns the index of the first address in a sorted array that is not
+     * below this range, or the array's length if there is none.  Together
+     * with endIndexOf() this locates the slice of the array within this
+     * range in O(log n).
+     *
+     * @param sorted 48-bit MAC addresses in ascending order
+     * @return the index of the first element &gt;= first()
+     */
+    public int indexOf(long[] sorted) {
+        return lowerBound(sorted, _first);
+    }
+
+    /**
+     * Returns the index just past the last address in a sorted array that
+     * is within this range.
+     *
+     * @param sorted 48-bit MAC addresses in ascending order
+     * @return the index of the first element &gt; last()
+     */
+    public int endIndexOf(long[] sorted) {
+        return _last == MacAddress.MAC_MASK ? sorted.length : lowerBound(sorted, _last + 1);
+    }
+
+    private static int lowerBound(long[] a, long key) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Returns a view of the addresses of a sorted set that fall within this
+     * range.  The set must use MacAddress's natural ordering.
+     *
+     * @param set the set to view
+     * @return a live view of the portion of set within this range
+     */
+    public NavigableSet<MacAddress> subSet(NavigableSet<MacAddress> set) {
+        return set.subSet(MacAddress.fromLong(_first), true, MacAddress.fromLong(_last), true);
+    }
+
+    /**
+     * Returns this range as "address/length" if it is a prefix, or as
+     * "first-last" otherwise.
+     *
+     * @return a String representation of this range
+     */
+    @Override
+    public String toString() {
+        int length = prefixLength();
+        String first = MacAddress.toString(_first, MacAddressStyle.COLON);
+        return length >= 0 ? first + "/" + length : first + "-" + MacAddress.toString(_last, MacAddressStyle.COLON);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof MacRange)) return false;
+        MacRange other = (MacRange) obj;
+        return _first == other._first && _last == other._last;
+    }
+
+    @Override
+    public int hashCode() {
+        return MacAddressHashing.mix(_first ^ (_last << 16));
+    }
+}
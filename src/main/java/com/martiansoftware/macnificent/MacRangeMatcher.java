@@ -0,0 +1,189 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.PriorityQueue;
+
+/**
+ * Classifies MAC addresses against a fixed set of (possibly overlapping)
+ * MacRanges, such as the device rules of a policy engine.  Each address is
+ * matched to the most specific range that contains it: the smallest, or,
+ * among ranges of equal size, the one supplied first.  For prefixes this is
+ * the usual longest-prefix match.
+ *
+ * The ranges are compiled once into a sorted array of disjoint intervals,
+ * each labelled with its winning range, so a lookup is a single binary
+ * search over at most 2n + 1 longs however much the ranges overlap, and
+ * allocates nothing.
+ *
+ * MacRangeMatchers are immutable and may be shared between threads.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public final class MacRangeMatcher {
+
+    /**
+     * Returned by match() when no range contains an address.
+     */
+    public static final int NOT_FOUND = -1;
+
+    private final MacRange[] _ranges;
+
+    /**
+     * The first address of each interval, in ascending order.  _starts[0]
+     * is always 0, so every 48-bit address falls within some interval.
+     */
+    private final long[] _starts;
+
+    /**
+     * The index of the range matching each interval, or NOT_FOUND.
+     */
+    private final int[] _matches;
+
+    /**
+     * Creates a new MacRangeMatcher for the specified ranges.  The ranges
+     * are identified by their positions in the array.
+     *
+     * @param ranges the ranges to match against
+     */
+    public MacRangeMatcher(MacRange... ranges) {
+        _ranges = ranges.clone();
+        for (MacRange range : _ranges) {
+            if (range == null) throw new NullPointerException("MacRangeMatcher ranges may not be null");
+        }
+
+        // every range contributes at most two boundaries: its first address
+        // and the address just past its last
+        int n = _ranges.length;
+        Integer[] byFirst = new Integer[n];
+        long[] bounds = new long[2 * n + 1];
+        for (int i = 0; i < n; ++i) {
+            byFirst[i] = i;
+            bounds[2 * i] = _ranges[i].first();
+            bounds[2 * i + 1] = _ranges[i].last() + 1;
+        }
+        bounds[2 * n] = 0;
+        Arrays.sort(bounds);
+        Arrays.sort(byFirst, (a, b) -> Long.compare(_ranges[a].first(), _ranges[b].first()));
+
+        // sweep the boundaries, keeping every range that has started in a
+        // queue ordered by specificity and discarding ended ones lazily
+        PriorityQueue<Integer> active = new PriorityQueue<Integer>(Math.max(1, n), (a, b) -> {
+            int result = Long.compare(_ranges[a].size(), _ranges[b].size());
+            return result != 0 ? result : Integer.compare(a, b);
+        });
+        long[] starts = new long[bounds.length];
+        int[] matches = new int[bounds.length];
+        int intervals = 0, next = 0;
+        for (int b = 0; b < bounds.length; ++b) {
+            long start = bounds[b];
+            if (start > MacAddress.MAC_MASK || (b > 0 && start == bounds[b - 1])) continue;
+            while (next < n && _ranges[byFirst[next]].first() == start) active.add(byFirst[next++]);
+            while (!active.isEmpty() && _ranges[active.peek()].last() < start) active.poll();
+            int match = active.isEmpty() ? NOT_FOUND : active.peek();
+            if (intervals > 0 && matches[intervals - 1] == match) continue;
+            starts[intervals] = start;
+            matches[intervals++] = match;
+        }
+        _starts = Arrays.copyOf(starts, intervals);
+        _matches = Arrays.copyOf(matches, intervals);
+    }
+
+    /**
+     * Creates a new MacRangeMatcher for the specified ranges.  The ranges
+     * are identified by their positions in iteration order.
+     *
+     * @param ranges the ranges to match against
+     */
+    public MacRangeMatcher(Collection<MacRange> ranges) {
+        this(ranges.toArray(new MacRange[ranges.size()]));
+    }
+
+    /**
+     * Returns the number of ranges this matcher matches against
+     * @return the number of ranges
+     */
+    public int size() {
+        return _ranges.length;
+    }
+
+    /**
+     * Returns the range at the specified index, as returned by match()
+     * @param index the index of the range
+     * @return the range
+     */
+    public MacRange getRange(int index) {
+        return _ranges[index];
+    }
+
+    /**
+     * Returns the index of the most specific range containing the specified
+     * address, or NOT_FOUND.  Values that are not 48-bit MAC addresses
+     * (including MacAddressParser.INVALID) are never matched.
+     *
+     * @param mac a 48-bit MAC address
+     * @return the index of the matching range, or NOT_FOUND
+     */
+    public int match(long mac) {
+        if ((mac & ~MacAddress.MAC_MASK) != 0) return NOT_FOUND;
+        long[] starts = _starts;
+        int lo = 1, hi = starts.length; // find the last interval starting at or before mac
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] <= mac) lo = mid + 1; else hi = mid;
+        }
+        return _matches[lo - 1];
+    }
+
+    /**
+     * Returns the index of the most specific range containing the specified
+     * address, or NOT_FOUND.
+     *
+     * @param mac a MAC address
+     * @return the index of the matching range, or NOT_FOUND
+     */
+    public int match(MacAddress mac) {
+        return match(mac.toLong());
+    }
+
+    /**
+     * Returns the most specific range containing the specified address, or
+     * null.
+     *
+     * @param mac a 48-bit MAC address
+     * @return the matching range, or null
+     */
+    public MacRange getMatch(long mac) {
+        int index = match(mac);
+        return index == NOT_FOUND ? null : _ranges[index];
+    }
+
+    /**
+     * Returns the number of disjoint intervals the ranges compiled into,
+     * each costing 12 bytes.
+     *
+     * @return the number of intervals
+     */
+    int intervals() {
+        return _starts.length;
+    }
+}
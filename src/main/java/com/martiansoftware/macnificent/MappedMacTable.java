@@ -0,0 +1,598 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A persistent, off-heap table of MAC addresses seen on a network, holding
+ * the first- and last-seen times and OuiRegistry index of each.  The table
+ * lives in a memory-mapped file, so it costs nothing on the Java heap, and
+ * reopening it after a clean close() only maps the file rather than
+ * rebuilding anything.
+ *
+ * The file is an open-addressing hash table of fixed-size records divided
+ * into independently locked segments, so writers to different segments
+ * never contend and readers usually take no lock at all.  Each record is
+ * RECORD_SIZE bytes:
+ *
+ * <pre>
+ *   long key         the 6-byte MAC address plus 2 bytes of flags (0 if empty)
+ *   long firstSeen   earliest timestamp passed to seen() or put()
+ *   long lastSeen    latest timestamp passed to seen() or put()
+ *   int  ouiIndex    OuiRegistry index, or OuiRegistry.NOT_FOUND
+ *   int  reserved
+ * </pre>
+ *
+ * preceded by a HEADER_SIZE byte header holding the table geometry, a
+ * clean-shutdown flag and the number of entries in each segment.  When the
+ * table fills it is rebuilt at twice the size in a temporary file which
+ * then atomically replaces the original, so a crash during a resize leaves
+ * either the old table or the new one, never a mixture.  If the table was
+ * not closed cleanly the segment sizes are recounted when it is reopened.
+ *
+ * Writes reach the file whenever the operating system flushes the mapping,
+ * which survives a crash of the JVM; call force() to also survive a crash
+ * of the operating system.  Entries are never removed.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public final class MappedMacTable implements Closeable {
+
+    /**
+     * Returned by ouiIndexOf() for MAC addresses that are not in the table.
+     * Distinct from OuiRegistry.NOT_FOUND, which is stored for MAC addresses
+     * with no known manufacturer.
+     */
+    public static final int ABSENT = -2;
+
+    /**
+     * Returned by firstSeen() and lastSeen() for MAC addresses that are not
+     * in the table.
+     */
+    public static final long NEVER = Long.MIN_VALUE;
+
+    /**
+     * Size in bytes of each record
+     */
+    public static final int RECORD_SIZE = 32;
+
+    /**
+     * Size in bytes of the file header
+     */
+    public static final int HEADER_SIZE = 4096;
+
+    /**
+     * Number of segments used for new tables
+     */
+    public static final int DEFAULT_SEGMENTS = 64;
+
+    /**
+     * Receives the entries of a MappedMacTable
+     */
+    public interface Visitor {
+        /**
+         * Accepts a single entry
+         * @param mac the 48-bit MAC address
+         * @param firstSeen the earliest time mac was seen
+         * @param lastSeen the latest time mac was seen
+         * @param ouiIndex the OuiRegistry index of mac's manufacturer, or OuiRegistry.NOT_FOUND
+         */
+        void visit(long mac, long firstSeen, long lastSeen, int ouiIndex);
+    }
+
+    static final int MAGIC = 0x4d414354; // "MACT"
+    static final int VERSION = 1;
+
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_SEGMENTS = 8;
+    private static final int HEADER_SEGMENT_CAPACITY = 12;
+    private static final int HEADER_CLEAN = 16;
+    private static final int HEADER_SIZES = 64;
+
+    private static final int MAX_SEGMENTS = (HEADER_SIZE - HEADER_SIZES) / 8;
+
+    /**
+     * Largest number of records per segment, so that each segment can be
+     * mapped as a single buffer
+     */
+    private static final int MAX_SEGMENT_CAPACITY = 1 << 25;
+
+    private static final int KEY = 0;
+    private static final int FIRST_SEEN = 8;
+    private static final int LAST_SEEN = 16;
+    private static final int OUI_INDEX = 24;
+
+    /**
+     * Set in the flag bytes of every occupied record's key
+     */
+    private static final long OCCUPIED = 1L << 48;
+
+    private final Path _path;
+    private final StampedLock[] _locks;
+    private final int _segmentShift;
+
+    /**
+     * Guarded by all of _locks: replaced only by resize(), which holds every
+     * write lock
+     */
+    private FileChannel _channel;
+    private MappedByteBuffer _header;
+    private final MappedByteBuffer[] _segments;
+    private int _segmentCapacity;
+
+    private MappedMacTable(Path path, FileChannel channel, MappedByteBuffer header) throws IOException {
+        _path = path;
+        _channel = channel;
+        _header = header;
+        int segments = header.getInt(HEADER_SEGMENTS);
+        _segmentCapacity = header.getInt(HEADER_SEGMENT_CAPACITY);
+        _segmentShift = 64 - Integer.numberOfTrailingZeros(segments);
+        _locks = new StampedLock[segments];
+        for (int i = 0; i < segments; ++i) _locks[i] = new StampedLock();
+        _segments = new MappedByteBuffer[segments];
+        mapSegments(channel, _segments, _segmentCapacity);
+    }
+
+    /**
+     * Opens the table stored in the specified file, creating it if it does
+     * not exist.
+     *
+     * @param file the table file
+     * @return the opened table
+     * @throws IOException if the file cannot be read or is not a valid table
+     */
+    public static MappedMacTable open(File file) throws IOException {
+        return open(file, 0);
+    }
+
+    /**
+     * Opens the table stored in the specified file, creating it with room
+     * for the specified number of entries if it does not exist.
+     *
+     * @param file the table file
+     * @param expectedSize the number of entries a new table should hold
+     * without resizing (ignored if the file exists)
+     * @return the opened table
+     * @throws IOException if the file cannot be read or is not a valid table
+     */
+    public static MappedMacTable open(File file, long expectedSize) throws IOException {
+        Path path = file.toPath();
+        Files.deleteIfExists(resizePath(path)); // left behind by a crash during resize
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (ch.size() == 0) {
+                long perSegment = Math.max(0, expectedSize) / DEFAULT_SEGMENTS + 1;
+                if (perSegment > MacAddressHashing.maxFill(MAX_SEGMENT_CAPACITY)
+                        || MacAddressHashing.capacityFor((int) perSegment) > MAX_SEGMENT_CAPACITY) {
+                    throw new IllegalArgumentException("Too many entries: " + expectedSize);
+                }
+                initialize(ch, DEFAULT_SEGMENTS, MacAddressHashing.capacityFor((int) perSegment));
+            }
+            MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (header.getInt(HEADER_MAGIC) != MAGIC) throw new IOException(file + " is not a MappedMacTable");
+            if (header.getInt(HEADER_VERSION) != VERSION) throw new IOException("Unsupported MappedMacTable version: " + header.getInt(HEADER_VERSION));
+            int segments = header.getInt(HEADER_SEGMENTS);
+            int capacity = header.getInt(HEADER_SEGMENT_CAPACITY);
+            if (segments <= 0 || segments > MAX_SEGMENTS || Integer.bitCount(segments) != 1
+                    || capacity <= 0 || capacity > MAX_SEGMENT_CAPACITY || Integer.bitCount(capacity) != 1
+                    || ch.size() != fileSize(segments, capacity)) {
+                throw new IOException("Corrupt MappedMacTable: " + file);
+            }
+
+            MappedMacTable result = new MappedMacTable(path, ch, header);
+            if (header.getInt(HEADER_CLEAN) == 0) result.recount();
+            header.putInt(HEADER_CLEAN, 0);
+            header.force();
+            return result;
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    private static Path resizePath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".resize");
+    }
+
+    /**
+     * Forces the entries of a directory (e.g. a file just moved into it) to
+     * disk.  Does nothing on platforms that cannot open a directory, such
+     * as Windows.
+     */
+    private static void forceDirectory(Path dir) throws IOException {
+        FileChannel ch;
+        try {
+            ch = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try {
+            ch.force(true);
+        } finally {
+            ch.close();
+        }
+    }
+
+    private static long fileSize(int segments, int segmentCapacity) {
+        return HEADER_SIZE + (long) segments * segmentCapacity * RECORD_SIZE;
+    }
+
+    /**
+     * Writes the header of a new, empty table to ch and extends it to its
+     * full (sparse) size
+     */
+    private static void initialize(FileChannel ch, int segments, int segmentCapacity) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(HEADER_MAGIC, MAGIC);
+        header.putInt(HEADER_VERSION, VERSION);
+        header.putInt(HEADER_SEGMENTS, segments);
+        header.putInt(HEADER_SEGMENT_CAPACITY, segmentCapacity);
+        header.putInt(HEADER_CLEAN, 1);
+        ch.write(header, 0);
+        ch.write(ByteBuffer.allocate(1), fileSize(segments, segmentCapacity) - 1);
+    }
+
+    private static void mapSegments(FileChannel ch, MappedByteBuffer[] segments, int segmentCapacity) throws IOException {
+        long bytes = (long) segmentCapacity * RECORD_SIZE;
+        for (int i = 0; i < segments.length; ++i) {
+            segments[i] = ch.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + i * bytes, bytes);
+        }
+    }
+
+    /**
+     * Recomputes the size of each segment after an unclean shutdown
+     */
+    private void recount() {
+        for (int s = 0; s < _segments.length; ++s) {
+            ByteBuffer seg = _segments[s];
+            long n = 0;
+            for (int off = 0; off < seg.capacity(); off += RECORD_SIZE) {
+                if (seg.getLong(off + KEY) != 0) ++n;
+            }
+            _header.putLong(HEADER_SIZES + 8 * s, n);
+        }
+    }
+
+    private int segmentOf(long hash) {
+        return (int) (hash >>> _segmentShift) & (_locks.length - 1);
+    }
+
+    /**
+     * Returns the offset within seg of the record for mac, or the bitwise
+     * complement of the offset of the empty record where it belongs.  Gives
+     * up after visiting every record, which only happens when racing a
+     * writer during an optimistic read.
+     */
+    private static int find(ByteBuffer seg, long hash, long key) {
+        int mask = seg.capacity() / RECORD_SIZE - 1;
+        int i = (int) hash & mask;
+        for (int n = 0; n <= mask; ++n, i = (i + 1) & mask) {
+            long k = seg.getLong(i * RECORD_SIZE + KEY);
+            if (k == key) return i * RECORD_SIZE;
+            if (k == 0) return ~(i * RECORD_SIZE);
+        }
+        return ~0;
+    }
+
+    /**
+     * Returns the table file
+     * @return the table file
+     */
+    public File getFile() { return _path.toFile(); }
+
+    /**
+     * Returns the number of entries in this table
+     * @return the number of entries in this table
+     */
+    public long size() {
+        long result = 0;
+        for (int s = 0; s < _segments.length; ++s) result += _header.getLong(HEADER_SIZES + 8 * s);
+        return result;
+    }
+
+    /**
+     * Returns the number of records in this table's file, which is always
+     * at least 4/3 of its size
+     * @return the number of records in this table's file
+     */
+    public long capacity() {
+        long stamp = _locks[0].readLock();
+        try {
+            return (long) _segments.length * _segmentCapacity;
+        } finally {
+            _locks[0].unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Reads a single field of the record for mac, or returns missing
+     */
+    private long read(long mac, int field, long missing) {
+        if ((mac & ~MacAddress.MAC_MASK) != 0) return missing;
+        long hash = MacAddressHashing.mix64(mac);
+        int s = segmentOf(hash);
+        StampedLock lock = _locks[s];
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            long result = read(_segments[s], hash, mac, field, missing);
+            if (lock.validate(stamp)) return result;
+        }
+        stamp = lock.readLock();
+        try {
+            return read(_segments[s], hash, mac, field, missing);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static long read(ByteBuffer seg, long hash, long mac, int field, long missing) {
+        int off = find(seg, hash, mac | OCCUPIED);
+        if (off < 0) return missing;
+        return field == OUI_INDEX ? seg.getInt(off + OUI_INDEX) : seg.getLong(off + field);
+    }
+
+    /**
+     * Returns true if this table contains the specified MAC address.
+     *
+     * @param mac the 48-bit MAC address
+     * @return true if this table contains mac
+     */
+    public boolean contains(long mac) {
+        return read(mac, KEY, 0) != 0;
+    }
+
+    /**
+     * Returns the OuiRegistry index stored for the specified MAC address.
+     *
+     * @param mac the 48-bit MAC address
+     * @return the OuiRegistry index of mac's manufacturer, OuiRegistry.NOT_FOUND
+     * if it has none, or ABSENT if mac is not in this table
+     */
+    public int ouiIndexOf(long mac) {
+        return (int) read(mac, OUI_INDEX, ABSENT);
+    }
+
+    /**
+     * Returns the earliest time the specified MAC address was seen.
+     *
+     * @param mac the 48-bit MAC address
+     * @return the earliest time mac was seen, or NEVER
+     */
+    public long firstSeen(long mac) {
+        return read(mac, FIRST_SEEN, NEVER);
+    }
+
+    /**
+     * Returns the latest time the specified MAC address was seen.
+     *
+     * @param mac the 48-bit MAC address
+     * @return the latest time mac was seen, or NEVER
+     */
+    public long lastSeen(long mac) {
+        return read(mac, LAST_SEEN, NEVER);
+    }
+
+    /**
+     * Records a sighting of the specified MAC address, adding it (with its
+     * index in registry) if it is new and otherwise widening its first- and
+     * last-seen times to include timestamp.
+     *
+     * @param mac the 48-bit MAC address
+     * @param timestamp the time mac was seen, e.g. System.currentTimeMillis()
+     * @param registry the registry used to look up new MAC addresses
+     * @return the OuiRegistry index of mac's manufacturer, or OuiRegistry.NOT_FOUND
+     * @throws IOException if the table needed to grow and could not
+     */
+    public int seen(long mac, long timestamp, OuiRegistry registry) throws IOException {
+        return (int) (update(mac, timestamp, timestamp, OuiRegistry.NOT_FOUND, registry) >> 1);
+    }
+
+    /**
+     * Adds or updates an entry, widening the first- and last-seen times of
+     * any existing entry to include those specified and replacing its OUI
+     * index.
+     *
+     * @param mac the 48-bit MAC address
+     * @param firstSeen the earliest time mac was seen
+     * @param lastSeen the latest time mac was seen
+     * @param ouiIndex the OuiRegistry index of mac's manufacturer, or OuiRegistry.NOT_FOUND
+     * @return true if mac was not already in this table
+     * @throws IOException if the table needed to grow and could not
+     */
+    public boolean put(long mac, long firstSeen, long lastSeen, int ouiIndex) throws IOException {
+        if (ouiIndex < OuiRegistry.NOT_FOUND) throw new IllegalArgumentException("Invalid OUI index: " + ouiIndex);
+        return (update(mac, firstSeen, lastSeen, ouiIndex, null) & 1) != 0;
+    }
+
+    /**
+     * Adds or updates an entry.  If registry is non-null the OUI index of an
+     * existing entry is kept and that of a new one is looked up; otherwise
+     * ouiIndex is stored.  Returns the entry's OUI index shifted left by one,
+     * with the low bit set if the entry was added.
+     */
+    private long update(long mac, long firstSeen, long lastSeen, int ouiIndex, OuiRegistry registry) throws IOException {
+        MacAddressHashing.check(mac);
+        long hash = MacAddressHashing.mix64(mac);
+        long key = mac | OCCUPIED;
+        int s = segmentOf(hash);
+        StampedLock lock = _locks[s];
+        while (true) {
+            int capacity;
+            long stamp = lock.writeLock();
+            try {
+                ByteBuffer seg = _segments[s];
+                int off = find(seg, hash, key);
+                if (off >= 0) {
+                    if (firstSeen < seg.getLong(off + FIRST_SEEN)) seg.putLong(off + FIRST_SEEN, firstSeen);
+                    if (lastSeen > seg.getLong(off + LAST_SEEN)) seg.putLong(off + LAST_SEEN, lastSeen);
+                    if (registry == null) seg.putInt(off + OUI_INDEX, ouiIndex);
+                    return (long) seg.getInt(off + OUI_INDEX) << 1;
+                }
+                capacity = _segmentCapacity;
+                long size = _header.getLong(HEADER_SIZES + 8 * s);
+                if (size < MacAddressHashing.maxFill(capacity)) {
+                    if (registry != null) ouiIndex = registry.indexOf(mac);
+                    off = ~off;
+                    seg.putLong(off + FIRST_SEEN, firstSeen);
+                    seg.putLong(off + LAST_SEEN, lastSeen);
+                    seg.putInt(off + OUI_INDEX, ouiIndex);
+                    seg.putLong(off + KEY, key);
+                    _header.putLong(HEADER_SIZES + 8 * s, size + 1);
+                    return (long) ouiIndex << 1 | 1;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Doubles the capacity of every segment, unless another thread already
+     * has.  The new table is built and forced to disk in a temporary file
+     * which then atomically replaces the original.
+     */
+    private void resize(int fromCapacity) throws IOException {
+        long[] stamps = new long[_locks.length];
+        for (int s = 0; s < _locks.length; ++s) stamps[s] = _locks[s].writeLock();
+        try {
+            if (_segmentCapacity != fromCapacity) return;
+            if (fromCapacity >= MAX_SEGMENT_CAPACITY) throw new IOException("MappedMacTable is full: " + _path);
+            int capacity = fromCapacity << 1;
+
+            Path tmp = resizePath(_path);
+            FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                initialize(ch, _segments.length, capacity);
+                MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                MappedByteBuffer[] segments = new MappedByteBuffer[_segments.length];
+                mapSegments(ch, segments, capacity);
+                for (int s = 0; s < segments.length; ++s) {
+                    header.putLong(HEADER_SIZES + 8 * s, _header.getLong(HEADER_SIZES + 8 * s));
+                    rehash(_segments[s], segments[s]);
+                    segments[s].force();
+                }
+                header.force();
+                Files.move(tmp, _path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+                header.putInt(HEADER_CLEAN, 0);
+                header.force();
+                FileChannel old = _channel;
+                _channel = ch;
+                _header = header;
+                System.arraycopy(segments, 0, _segments, 0, segments.length);
+                _segmentCapacity = capacity;
+                old.close();
+                forceDirectory(_path.toAbsolutePath().getParent());
+            } catch (IOException | RuntimeException e) {
+                if (ch != _channel) {
+                    ch.close();
+                    Files.deleteIfExists(tmp);
+                }
+                throw e;
+            }
+        } finally {
+            for (int s = 0; s < _locks.length; ++s) _locks[s].unlockWrite(stamps[s]);
+        }
+    }
+
+    private static void rehash(ByteBuffer from, ByteBuffer to) {
+        int mask = to.capacity() / RECORD_SIZE - 1;
+        for (int off = 0; off < from.capacity(); off += RECORD_SIZE) {
+            long key = from.getLong(off + KEY);
+            if (key == 0) continue;
+            int i = (int) MacAddressHashing.mix64(key & MacAddress.MAC_MASK) & mask;
+            while (to.getLong(i * RECORD_SIZE + KEY) != 0) i = (i + 1) & mask;
+            for (int b = 0; b < RECORD_SIZE; b += 8) to.putLong(i * RECORD_SIZE + b, from.getLong(off + b));
+        }
+    }
+
+    /**
+     * Calls visitor for each entry in this table, one segment at a time and
+     * in no particular order.  Each segment is read-locked while it is
+     * visited, so visitor must not modify this table.
+     *
+     * @param visitor receives each entry
+     */
+    public void forEach(Visitor visitor) {
+        for (int s = 0; s < _segments.length; ++s) {
+            long stamp = _locks[s].readLock();
+            try {
+                ByteBuffer seg = _segments[s];
+                for (int off = 0; off < seg.capacity(); off += RECORD_SIZE) {
+                    long key = seg.getLong(off + KEY);
+                    if (key != 0) {
+                        visitor.visit(key & MacAddress.MAC_MASK, seg.getLong(off + FIRST_SEEN), seg.getLong(off + LAST_SEEN), seg.getInt(off + OUI_INDEX));
+                    }
+                }
+            } finally {
+                _locks[s].unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Forces all changes to this table to be written to disk.
+     */
+    public void force() {
+        for (int s = 0; s < _segments.length; ++s) {
+            long stamp = _locks[s].readLock();
+            try {
+                _segments[s].force();
+            } finally {
+                _locks[s].unlockRead(stamp);
+            }
+        }
+        _header.force();
+    }
+
+    /**
+     * Writes all changes to disk, marks the file as cleanly closed and
+     * closes it.  The table must not be used afterwards.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        long[] stamps = new long[_locks.length];
+        for (int s = 0; s < _locks.length; ++s) stamps[s] = _locks[s].writeLock();
+        try {
+            if (!_channel.isOpen()) return;
+            for (MappedByteBuffer seg : _segments) seg.force();
+            _header.putInt(HEADER_CLEAN, 1);
+            _header.force();
+            _channel.close();
+        } finally {
+            for (int s = 0; s < _locks.length; ++s) _locks[s].unlockWrite(stamps[s]);
+        }
+    }
+}
@@ -29,6 +29,12 @@ import java.util.Arrays;
  * _manufacturer.  Most programmers won't have create these directly, but will
  * instead obtain them from an OUIRegistry.
  *
+ * An Oui may also represent a smaller block within an OUI that IEEE has
+ * assigned to a _manufacturer: a 28-bit MA-M assignment, or a 36-bit MA-S
+ * (OUI-36) or IAB assignment.  In that case getBytes() still returns the
+ * enclosing 24-bit OUI, and getPrefix() and getPrefixLength() describe the
+ * actual assignment.
+ *
  * @author <a href="http://martylamb.com">Marty Lamb</a>
  */
 public class Oui {
@@ -36,18 +42,29 @@ public class Oui {
     /**
      * The three-byte OUI
      */
-    private byte[] _bytes;
+    private final byte[] _bytes;
 
     /**
      * The full _manufacturer name as listed by the IEEE
      */
-    private String _manufacturer;
+    private final String _manufacturer;
 
     /**
-     * A "short name" automatically generated from the _manufacturer name by
-     * macnificent.
+     * The assigned prefix, as a 48-bit MAC address with all bits beyond
+     * _prefixLength cleared
      */
-    private transient String _shortName;
+    private final long _prefix;
+
+    /**
+     * The number of bits in the assigned prefix: 24, 28, or 36
+     */
+    private final int _prefixLength;
+
+    /**
+     * A "short name" for the _manufacturer, either automatically generated
+     * from the _manufacturer name or specified when the data file was built
+     */
+    private final String _shortName;
 
     /**
      * Creates a new Oui
@@ -60,6 +77,41 @@ public class Oui {
         this._bytes = new byte[3];
         System.arraycopy(bytes, 0, this._bytes, 0, 3);
         this._manufacturer = manufacturer;
+        this._prefix = (long) hashCode(bytes) << 24;
+        this._prefixLength = PrefixTrie.MA_L;
+        this._shortName = ShortNames.derive(manufacturer, hashCode(bytes));
+    }
+
+    /**
+     * Creates a new Oui for an assignment of 24, 28, or 36 bits
+     * @param prefix the assigned prefix, as a 48-bit MAC address (bits beyond
+     * the prefix length are ignored)
+     * @param prefixLength the number of bits in the assigned prefix: 24, 28, or 36
+     * @param manufacturer the full _manufacturer name as listed by IEEE
+     */
+    public Oui(long prefix, int prefixLength, String manufacturer) {
+        this(prefix, prefixLength, manufacturer, null);
+    }
+
+    /**
+     * Creates a new Oui for an assignment of 24, 28, or 36 bits with the
+     * specified short name
+     * @param prefix the assigned prefix, as a 48-bit MAC address (bits beyond
+     * the prefix length are ignored)
+     * @param prefixLength the number of bits in the assigned prefix: 24, 28, or 36
+     * @param manufacturer the full _manufacturer name as listed by IEEE
+     * @param shortName the short name to use, or null to generate one from
+     * the _manufacturer name as described in getShortName()
+     */
+    public Oui(long prefix, int prefixLength, String manufacturer, String shortName) {
+        if (!PrefixTrie.isSupportedLength(prefixLength)) throw new IllegalArgumentException("OUI prefix length must be 24, 28, or 36 bits.");
+        if (manufacturer == null) throw new NullPointerException("OUI manufacturer may not be null.");
+        this._prefix = prefix & PrefixTrie.mask(prefixLength);
+        this._prefixLength = prefixLength;
+        int oui = MacAddress.oui(prefix);
+        this._bytes = new byte[] { (byte) (oui >>> 16), (byte) (oui >>> 8), (byte) oui };
+        this._manufacturer = manufacturer;
+        this._shortName = shortName == null ? ShortNames.derive(manufacturer, oui) : shortName;
     }
 
     /**
@@ -70,6 +122,9 @@ public class Oui {
         _bytes = new byte[3];
         in.readFully(_bytes);
         _manufacturer = in.readUTF();
+        _prefix = (long) hashCode(_bytes) << 24;
+        _prefixLength = PrefixTrie.MA_L;
+        _shortName = ShortNames.derive(_manufacturer, hashCode(_bytes));
     }
 
     /**
@@ -78,6 +133,20 @@ public class Oui {
      */
     public String getManufacturer() { return _manufacturer; }
 
+    /**
+     * Returns the assigned prefix, as a 48-bit MAC address with all bits
+     * beyond getPrefixLength() cleared
+     * @return the assigned prefix
+     */
+    public long getPrefix() { return _prefix; }
+
+    /**
+     * Returns the number of bits in the assigned prefix: 24 for an ordinary
+     * (MA-L) OUI, 28 for an MA-M assignment, or 36 for an MA-S or IAB assignment.
+     * @return the number of bits in the assigned prefix
+     */
+    public int getPrefixLength() { return _prefixLength; }
+
     /**
      * Returns a copy of the 3-byte identifier assigned by IEEE
      * @return a copy of the 3-byte identifier assigned by IEEE
@@ -97,28 +166,19 @@ public class Oui {
     }
 
     /**
-     * Returns an automatically-generated "short name" based upon the full
-     * _manufacturer name.  The short name is generated by taking the first
-     * word of the _manufacturer name (ignoring "The"), removing any trailing
-     * characters that are not letters, and then removing any periods to
-     * collapse acronyms.
+     * Returns a "short name" for the _manufacturer.  Unless a different one
+     * was specified when the data file was built (see GenerateDataFile), the
+     * short name is generated by taking the first word of the _manufacturer
+     * name (ignoring "The"), removing any trailing characters that are not
+     * letters, and then removing any periods to collapse acronyms.
      *
      * If a short name cannot be determined based upon the _manufacturer name,
      * the name "Unknown-AA-BB-CC" will be returned, where "AA-BB-CC" is the
      * OUI ID in hexadecimal form.
      *
-     * @return an automatically-generated "short name" based upon the full
-     * _manufacturer name.
-     */
-    public String getShortName() {
-        if (_shortName == null) {
-            String[] words = _manufacturer.split("\\s+", 3);
-            int i = (words[0].equalsIgnoreCase("The")) ? 1 : 0;
-            _shortName = words[i].replaceAll("[^a-zA-Z]*$", "").replaceAll("\\.", "");
-        }
-        if (_shortName == null || _shortName.length() == 0) _shortName = String.format("Unknown-%02x-%02x-%02x", _bytes[0], _bytes[1], _bytes[2]);
-        return _shortName;
-    }
+     * @return a "short name" for the _manufacturer
+     */
+    public String getShortName() { return _shortName; }
 
     /**
      * Returns a hash code for the OUI represented by the specified _bytes.  The
@@ -136,12 +196,20 @@ public class Oui {
 
     @Override
     public String toString() {
-        return String.format("%02x-%02x-%02x: [%s] %s", _bytes[0], _bytes[1], _bytes[2], getShortName(), _manufacturer);
+        if (_prefixLength == PrefixTrie.MA_L) {
+            return String.format("%02x-%02x-%02x: [%s] %s", _bytes[0], _bytes[1], _bytes[2], getShortName(), _manufacturer);
+        }
+        return String.format("%s/%d: [%s] %s", MacAddress.fromLong(_prefix).toString().replace(':', '-'), _prefixLength, getShortName(), _manufacturer);
     }
     
+    /**
+     * Returns a hash code for this Oui.  For an ordinary 24-bit OUI this is
+     * the same value as hashCode(getBytes()).
+     */
     @Override
     public int hashCode() {
-        return hashCode(_bytes);
+        int h = hashCode(_bytes);
+        return _prefixLength == PrefixTrie.MA_L ? h : 31 * h + (int) (_prefix & 0xffffff) + _prefixLength;
     }
 
     @Override
@@ -153,9 +221,6 @@ public class Oui {
             return false;
         }
         final Oui other = (Oui) obj;
-        if (!Arrays.equals(this._bytes, other._bytes)) {
-            return false;
-        }
-        return true;
+        return this._prefix == other._prefix && this._prefixLength == other._prefixLength;
     }
 }
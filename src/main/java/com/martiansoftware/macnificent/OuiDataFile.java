@@ -0,0 +1,544 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Checksum;
+
+/**
+ * Reads and writes macnificent's binary data file formats.
+ *
+ * <b>Version 1</b> is a big-endian long timestamp (milliseconds since the
+ * epoch) followed by any number of records, each consisting of a 3-byte OUI
+ * and a manufacturer name as written by DataOutput.writeUTF().  It has no
+ * header and must be parsed sequentially.
+ *
+ * <b>Version 2</b> is laid out so that it can be memory-mapped and searched
+ * in place, and also holds MA-M, MA-S and IAB assignments.  All values are
+ * big-endian:
+ * <pre>
+ *   int    magic ("MACN")
+ *   int    version (2)
+ *   int    flags (SHORT_NAMES, or 0)
+ *   long   timestamp
+ *   int    count
+ *   int    subCount
+ *   int    poolSize
+ *   int[count]      24-bit OUIs, sorted ascending with no duplicates; bit 24 (HAS_SUB_BLOCKS)
+ *                   is set if smaller assignments exist within the OUI
+ *   long[subCount]  28- and 36-bit assignments: the prefix length in the top 16 bits and the
+ *                   48-bit prefix below, sorted ascending with no duplicates
+ *   int[count + subCount + 1]  offset into the pool of each manufacturer name (OUIs, then
+ *                   smaller assignments), plus the end of the last
+ *   byte[poolSize]  UTF-8 manufacturer names
+ * </pre>
+ * If the SHORT_NAMES flag is set, the short name of every assignment
+ * follows, padded to a multiple of four bytes from the start of the file:
+ * <pre>
+ *   int    shortCount
+ *   int[count + subCount]  index of each assignment's short name (OUIs, then
+ *                   smaller assignments)
+ *   int[shortCount + 1]  offset into the short name pool of each distinct short
+ *                   name, plus the end of the last
+ *   byte[]          UTF-8 short names
+ * </pre>
+ * Files without short names derive them from the manufacturer names when
+ * they are loaded.
+ *
+ * <b>Version 3</b> is version 2 with each distinct manufacturer name stored
+ * only once, and with a checksum so that truncated or corrupt files are
+ * rejected rather than silently yielding a partial registry.  The header
+ * gains a nameCount field, and each assignment refers to its manufacturer
+ * name by its offset in the pool rather than having its own copy:
+ * <pre>
+ *   int    magic ("MACN")
+ *   int    version (3)
+ *   int    flags (SHORT_NAMES, or 0)
+ *   long   timestamp
+ *   int    count
+ *   int    subCount
+ *   int    poolSize
+ *   int    nameCount
+ *   int[count]      24-bit OUIs, as in version 2
+ *   long[subCount]  28- and 36-bit assignments, as in version 2
+ *   int[count + subCount]  offset into the pool of each assignment's manufacturer name
+ *                   (OUIs, then smaller assignments)
+ *   byte[poolSize]  nameCount distinct manufacturer names, each an unsigned LEB128
+ *                   varint byte length followed by that many bytes of UTF-8
+ * </pre>
+ * followed by the short names exactly as in version 2 if the SHORT_NAMES
+ * flag is set, then padding to a multiple of four bytes from the start of
+ * the file, then:
+ * <pre>
+ *   int    CRC-32C of everything before it
+ * </pre>
+ * The checksum must be the last four bytes of the file.
+ *
+ * Version 1 cannot represent assignments smaller than 24 bits; writeV1()
+ * silently omits them.
+ *
+ * A <b>delta</b> records the changes between two data files so that a
+ * registry can be brought up to date without shipping and loading a whole
+ * new file.  It is only valid against the exact data it was generated from,
+ * identified by that data's timestamp.  All values are big-endian:
+ * <pre>
+ *   int    magic ("MACD")
+ *   int    version (1)
+ *   long   timestamp of the data the delta applies to
+ *   long   timestamp of the data resulting from the delta
+ *   int    count
+ *   count records, each:
+ *     byte   operation (DELTA_ADD, DELTA_REMOVE or DELTA_RENAME)
+ *     byte   prefix length
+ *     byte[6] prefix
+ *     UTF    manufacturer name, as written by DataOutput.writeUTF() (not present for DELTA_REMOVE)
+ *     UTF    short name (not present for DELTA_REMOVE)
+ * </pre>
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+final class OuiDataFile {
+
+    /**
+     * First four bytes of every data file other than version 1: "MACN"
+     */
+    static final int MAGIC = 0x4d41434e;
+
+    static final int V2 = 2;
+
+    static final int V3 = 3;
+
+    /**
+     * Offsets of the v2 header fields
+     */
+    static final int V2_VERSION = 4, V2_FLAGS = 8, V2_TIMESTAMP = 12, V2_COUNT = 20, V2_SUB_COUNT = 24, V2_POOL_SIZE = 28, V2_HEADER_SIZE = 32;
+
+    /**
+     * Offsets of the v3 header fields that follow those shared with v2
+     */
+    static final int V3_NAME_COUNT = 32, V3_HEADER_SIZE = 36;
+
+    /**
+     * Set in a v2 OUI key if smaller assignments exist within the OUI
+     */
+    static final int HAS_SUB_BLOCKS = 1 << 24;
+
+    /**
+     * Set in the v2 flags if the file contains short names
+     */
+    static final int SHORT_NAMES = 1;
+
+    /**
+     * First four bytes of a delta: "MACD"
+     */
+    static final int DELTA_MAGIC = 0x4d414344;
+
+    static final int DELTA_V1 = 1;
+
+    /**
+     * Delta record operations
+     */
+    static final int DELTA_ADD = 1, DELTA_REMOVE = 2, DELTA_RENAME = 3;
+
+    private OuiDataFile() {}
+
+    /**
+     * Reads a data file in any supported format from the specified stream.
+     * The stream is read to its end but not closed.
+     *
+     * @param in the data source
+     * @return an OuiTable containing the data read
+     * @throws IOException if the data cannot be read or is not valid
+     */
+    static OuiTable read(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        long first = din.readLong();
+        if ((int) (first >>> 32) == MAGIC) {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(1 << 20);
+            new DataOutputStream(bout).writeLong(first);
+            byte[] buf = new byte[8192];
+            for (int n = din.read(buf); n >= 0; n = din.read(buf)) bout.write(buf, 0, n);
+            return new BufferOuiTable(ByteBuffer.wrap(bout.toByteArray()));
+        }
+        return new HeapOuiTable(first, readV1Records(din));
+    }
+
+    /**
+     * Memory-maps the specified data file.  Version 2 and 3 files are searched in
+     * place; older files are read onto the heap.
+     *
+     * @param f the data file
+     * @return an OuiTable containing the data in the file
+     * @throws IOException if the data cannot be read or is not valid
+     */
+    static OuiTable map(File f) throws IOException {
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.limit() >= 4 && buf.getInt(0) == MAGIC) return new BufferOuiTable(buf);
+        }
+        try (InputStream in = new java.io.BufferedInputStream(new java.io.FileInputStream(f))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Wraps the data file between the specified buffer's position and limit.
+     * Version 2 and 3 data is searched in place; older data is read onto the heap.
+     * The buffer's position and limit are not changed.
+     *
+     * @param buf the buffer containing the data file
+     * @return an OuiTable containing the data in the buffer
+     * @throws IOException if the data is not valid
+     */
+    static OuiTable wrap(ByteBuffer buf) throws IOException {
+        ByteBuffer dup = buf.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (dup.remaining() >= 4 && dup.getInt(dup.position()) == MAGIC) return new BufferOuiTable(dup);
+        byte[] b = new byte[dup.remaining()];
+        dup.get(b);
+        return read(new ByteArrayInputStream(b));
+    }
+
+    /**
+     * Reads v1 records until the end of the stream
+     */
+    private static List<Oui> readV1Records(DataInputStream din) throws IOException {
+        List<Oui> result = new ArrayList<Oui>();
+        byte[] b = new byte[3];
+        for (int c = din.read(); c >= 0; c = din.read()) {
+            b[0] = (byte) c;
+            din.readFully(b, 1, 2);
+            result.add(new Oui(b, din.readUTF()));
+        }
+        return result;
+    }
+
+    /**
+     * Validates the v2 or v3 header at the buffer's current position.
+     *
+     * @param buf the buffer containing the data file
+     * @return the timestamp from the header
+     * @throws IOException if the header is not a supported v2 or v3 header
+     */
+    static long checkHeader(ByteBuffer buf) throws IOException {
+        int base = buf.position();
+        if (buf.limit() - base < V2_HEADER_SIZE || buf.getInt(base) != MAGIC) {
+            throw new IOException("Not a macnificent v2 or v3 data file.");
+        }
+        int version = buf.getInt(base + V2_VERSION);
+        if (version != V2 && version != V3) throw new IOException("Unsupported macnificent data file version: " + version);
+        if (version == V3 && buf.limit() - base < V3_HEADER_SIZE) throw new IOException("Truncated macnificent data file.");
+        int flags = buf.getInt(base + V2_FLAGS);
+        if ((flags & ~SHORT_NAMES) != 0) throw new IOException("Unsupported macnificent data file flags: 0x" + Integer.toHexString(flags));
+        return buf.getLong(base + V2_TIMESTAMP);
+    }
+
+    /**
+     * Writes the specified OUIs in v1 format, in the order given.  Any
+     * assignments smaller than 24 bits are omitted.
+     *
+     * @param out the destination
+     * @param lastModified the timestamp to write
+     * @param ouis the OUIs to write
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeV1(OutputStream out, long lastModified, Collection<Oui> ouis) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeLong(lastModified);
+        byte[] b = new byte[3];
+        for (Oui oui : ouis) {
+            if (oui.getPrefixLength() != PrefixTrie.MA_L) continue;
+            oui.copyBytes(b, 0);
+            dout.write(b);
+            dout.writeUTF(oui.getManufacturer());
+        }
+        dout.flush();
+    }
+
+    /**
+     * Writes the specified OUIs in v2 format.  If the same prefix appears more
+     * than once, the last definition wins.
+     *
+     * @param out the destination
+     * @param lastModified the timestamp to write
+     * @param ouis the OUIs to write
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeV2(OutputStream out, long lastModified, Collection<Oui> ouis) throws IOException {
+        write(out, V2, lastModified, ouis);
+    }
+
+    /**
+     * Writes the specified OUIs in v3 format.  If the same prefix appears more
+     * than once, the last definition wins.
+     *
+     * @param out the destination
+     * @param lastModified the timestamp to write
+     * @param ouis the OUIs to write
+     * @throws IOException if an I/O error occurs
+     */
+    static void writeV3(OutputStream out, long lastModified, Collection<Oui> ouis) throws IOException {
+        write(out, V3, lastModified, ouis);
+    }
+
+    private static void write(OutputStream out, int version, long lastModified, Collection<Oui> ouis) throws IOException {
+        TreeMap<Integer, Oui> sorted = new TreeMap<Integer, Oui>();
+        TreeMap<Long, Oui> subs = new TreeMap<Long, Oui>();
+        Set<Integer> parents = new HashSet<Integer>();
+        for (Oui oui : ouis) {
+            if (oui.getPrefixLength() == PrefixTrie.MA_L) {
+                sorted.put(oui.hashCode(), oui);
+            } else {
+                subs.put(subBlockKey(oui), oui);
+                parents.add(MacAddress.oui(oui.getPrefix()));
+            }
+        }
+
+        List<Oui> all = new ArrayList<Oui>(sorted.values());
+        all.addAll(subs.values());
+        ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        Map<String, Integer> nameOffsets = new HashMap<String, Integer>();
+        int[] offsets = new int[all.size() + 1];
+        ByteArrayOutputStream shortPool = new ByteArrayOutputStream();
+        Map<String, Integer> shortIndexes = new HashMap<String, Integer>();
+        List<Integer> shortOffsets = new ArrayList<Integer>();
+        int[] shortNames = new int[all.size()];
+        for (int i = 0; i < all.size(); ++i) {
+            Oui oui = all.get(i);
+            if (version == V2) {
+                offsets[i] = pool.size();
+                pool.write(oui.getManufacturer().getBytes(StandardCharsets.UTF_8));
+            } else {
+                // each distinct name is written once, preceded by its length
+                Integer offset = nameOffsets.get(oui.getManufacturer());
+                if (offset == null) {
+                    offset = pool.size();
+                    nameOffsets.put(oui.getManufacturer(), offset);
+                    byte[] b = oui.getManufacturer().getBytes(StandardCharsets.UTF_8);
+                    writeVarint(pool, b.length);
+                    pool.write(b);
+                }
+                offsets[i] = offset;
+            }
+            shortNames[i] = addName(shortIndexes, shortOffsets, shortPool, oui.getShortName());
+        }
+        offsets[all.size()] = pool.size();
+        shortOffsets.add(shortPool.size());
+
+        Checksum crc = Crc32c.newChecksum();
+        DataOutputStream dout = new DataOutputStream(version == V2 ? out : new CheckedOutputStream(out, crc));
+        dout.writeInt(MAGIC);
+        dout.writeInt(version);
+        dout.writeInt(SHORT_NAMES);
+        dout.writeLong(lastModified);
+        dout.writeInt(sorted.size());
+        dout.writeInt(subs.size());
+        dout.writeInt(pool.size());
+        if (version == V3) dout.writeInt(nameOffsets.size());
+        for (int key : sorted.keySet()) dout.writeInt(parents.contains(key) ? key | HAS_SUB_BLOCKS : key);
+        for (long key : subs.keySet()) dout.writeLong(key);
+        // v2 ends with the end of the last name, which v3's lengths make unnecessary
+        for (int i = 0; i < (version == V2 ? offsets.length : all.size()); ++i) dout.writeInt(offsets[i]);
+        pool.writeTo(dout);
+        while (dout.size() % 4 != 0) dout.write(0);
+        dout.writeInt(shortOffsets.size() - 1);
+        for (int index : shortNames) dout.writeInt(index);
+        for (int offset : shortOffsets) dout.writeInt(offset);
+        shortPool.writeTo(dout);
+        if (version == V3) {
+            while (dout.size() % 4 != 0) dout.write(0);
+            dout.flush();
+            new DataOutputStream(out).writeInt((int) crc.getValue());
+        }
+        dout.flush();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write(value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Returns the index of the specified name in a pool of distinct names,
+     * adding it to the pool if necessary
+     */
+    private static int addName(Map<String, Integer> indexes, List<Integer> offsets, ByteArrayOutputStream pool, String name) throws IOException {
+        Integer result = indexes.get(name);
+        if (result == null) {
+            result = offsets.size();
+            indexes.put(name, result);
+            offsets.add(pool.size());
+            pool.write(name.getBytes(StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the v2 representation of an assignment smaller than 24 bits
+     */
+    static long subBlockKey(Oui oui) {
+        return (long) oui.getPrefixLength() << 48 | oui.getPrefix();
+    }
+
+    /**
+     * Writes a delta that transforms the base table into the target table.
+     *
+     * @param out the destination
+     * @param base the data the delta will be applied to
+     * @param target the data that applying the delta should produce
+     * @return the number of changes written
+     * @throws IOException if an I/O error occurs
+     */
+    static int writeDelta(OutputStream out, OuiTable base, OuiTable target) throws IOException {
+        TreeMap<Long, Oui> from = byKey(base), to = byKey(target);
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream rout = new DataOutputStream(records);
+        int count = 0;
+        for (Oui oui : from.values()) {
+            if (!to.containsKey(subBlockKey(oui))) {
+                writeDeltaRecord(rout, DELTA_REMOVE, oui);
+                ++count;
+            }
+        }
+        for (Oui oui : to.values()) {
+            Oui old = from.get(subBlockKey(oui));
+            if (old == null) {
+                writeDeltaRecord(rout, DELTA_ADD, oui);
+                ++count;
+            } else if (!old.getManufacturer().equals(oui.getManufacturer()) || !old.getShortName().equals(oui.getShortName())) {
+                writeDeltaRecord(rout, DELTA_RENAME, oui);
+                ++count;
+            }
+        }
+
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(DELTA_MAGIC);
+        dout.writeInt(DELTA_V1);
+        dout.writeLong(base.lastModified());
+        dout.writeLong(target.lastModified());
+        dout.writeInt(count);
+        records.writeTo(dout);
+        dout.flush();
+        return count;
+    }
+
+    private static TreeMap<Long, Oui> byKey(OuiTable table) {
+        TreeMap<Long, Oui> result = new TreeMap<Long, Oui>();
+        for (int i = 0; i < table.size(); ++i) {
+            Oui oui = table.ouiAt(i);
+            result.put(subBlockKey(oui), oui);
+        }
+        return result;
+    }
+
+    private static void writeDeltaRecord(DataOutputStream out, int op, Oui oui) throws IOException {
+        long prefix = oui.getPrefix();
+        out.writeByte(op);
+        out.writeByte(oui.getPrefixLength());
+        out.writeShort((int) (prefix >>> 32));
+        out.writeInt((int) prefix);
+        if (op != DELTA_REMOVE) {
+            out.writeUTF(oui.getManufacturer());
+            out.writeUTF(oui.getShortName());
+        }
+    }
+
+    /**
+     * Reads a delta from the specified stream and applies it to the base
+     * table, returning a new table.  The base table is not modified.
+     *
+     * @param base the data to apply the delta to
+     * @param in the delta source
+     * @return a new OuiTable containing the result of applying the delta
+     * @throws IOException if the delta cannot be read, is not valid, or was
+     * not generated against the base table's data
+     */
+    static OuiTable applyDelta(OuiTable base, InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        if (din.readInt() != DELTA_MAGIC) throw new IOException("Not a macnificent delta.");
+        int version = din.readInt();
+        if (version != DELTA_V1) throw new IOException("Unsupported macnificent delta version: " + version);
+        long baseLastModified = din.readLong();
+        if (baseLastModified != base.lastModified()) {
+            throw new IOException(String.format("Delta applies to data from %tFT%<tT%<tz, not %tFT%<tT%<tz.",
+                    new Date(baseLastModified), new Date(base.lastModified())));
+        }
+        long lastModified = din.readLong();
+
+        // keeps existing entries in their current order, so positions mostly survive
+        LinkedHashMap<Long, Oui> ouis = new LinkedHashMap<Long, Oui>();
+        for (int i = 0; i < base.size(); ++i) {
+            Oui oui = base.ouiAt(i);
+            ouis.put(subBlockKey(oui), oui);
+        }
+        for (int i = din.readInt(); i > 0; --i) {
+            int op = din.readUnsignedByte();
+            int length = din.readUnsignedByte();
+            long prefix = (long) din.readUnsignedShort() << 32 | (din.readInt() & 0xffffffffL);
+            if (!PrefixTrie.isSupportedLength(length) || (prefix & ~PrefixTrie.mask(length)) != 0) {
+                throw new IOException("Invalid prefix in delta: " + Long.toHexString(prefix) + "/" + length);
+            }
+            Long key = (long) length << 48 | prefix;
+            switch (op) {
+                case DELTA_REMOVE:
+                    if (ouis.remove(key) == null) throw new IOException("Delta removes missing prefix " + Long.toHexString(prefix) + "/" + length);
+                    break;
+                case DELTA_ADD:
+                case DELTA_RENAME:
+                    String manufacturer = din.readUTF();
+                    String shortName = din.readUTF();
+                    boolean present = ouis.containsKey(key);
+                    if (present != (op == DELTA_RENAME)) {
+                        throw new IOException("Delta " + (present ? "adds existing" : "renames missing") + " prefix " + Long.toHexString(prefix) + "/" + length);
+                    }
+                    ouis.put(key, new Oui(prefix, length, manufacturer, shortName));
+                    break;
+                default:
+                    throw new IOException("Unsupported macnificent delta operation: " + op);
+            }
+        }
+        return new HeapOuiTable(lastModified, ouis.values());
+    }
+}
@@ -0,0 +1,150 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+/**
+ * A primitive open-addressing map from non-negative int keys (in practice,
+ * 24-bit OUIs as returned by Oui.hashCode()) to non-negative int values.
+ * Keys and values are interleaved in a single int array so that a lookup
+ * usually touches a single cache line, and nothing is boxed or allocated.
+ *
+ * Not thread-safe for writers; once populated, any number of threads may
+ * read concurrently provided the index was safely published.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+final class OuiIndex {
+
+    /**
+     * Returned by get() and put() when a key is not present.
+     */
+    static final int NOT_FOUND = -1;
+
+    /**
+     * Marks an unused slot.  Valid keys are never negative.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * Golden-ratio multiplier used to spread keys across the table.
+     */
+    private static final int PHI = 0x9e3779b9;
+
+    /**
+     * Interleaved key/value pairs: the key for slot i is at [2i], its value at [2i + 1].
+     */
+    private int[] _slots;
+
+    /**
+     * Number of bits used to index the table, i.e. log2(capacity).
+     */
+    private int _bits;
+
+    private int _size;
+
+    /**
+     * Creates a new, empty OuiIndex sized to hold the specified number of
+     * entries without rehashing.
+     *
+     * @param expectedSize the number of entries expected
+     */
+    OuiIndex(int expectedSize) {
+        int bits = 4;
+        while ((1 << bits) < 2 * expectedSize) ++bits; // keep load factor <= 0.5
+        allocate(bits);
+    }
+
+    private void allocate(int bits) {
+        _bits = bits;
+        _slots = new int[2 << bits];
+        java.util.Arrays.fill(_slots, EMPTY);
+    }
+
+    private int slot(int key) {
+        return (key * PHI) >>> (32 - _bits);
+    }
+
+    /**
+     * Returns the number of entries in this index.
+     * @return the number of entries in this index
+     */
+    int size() { return _size; }
+
+    /**
+     * Returns the value associated with the specified key, or NOT_FOUND.
+     *
+     * @param key the (non-negative) key to look up
+     * @return the value associated with the key, or NOT_FOUND
+     */
+    int get(int key) {
+        int[] slots = _slots;
+        int mask = (1 << _bits) - 1;
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            int k = slots[2 * i];
+            if (k == key) return slots[2 * i + 1];
+            if (k == EMPTY) return NOT_FOUND;
+        }
+    }
+
+    /**
+     * Associates a value with a key, replacing any previous value.
+     *
+     * @param key the (non-negative) key
+     * @param value the (non-negative) value
+     * @return the previous value associated with the key, or NOT_FOUND
+     */
+    int put(int key, int value) {
+        if (key < 0) throw new IllegalArgumentException("OuiIndex keys may not be negative: " + key);
+        if (value < 0) throw new IllegalArgumentException("OuiIndex values may not be negative: " + value);
+        if (2 * (_size + 1) > (1 << _bits)) rehash();
+        int mask = (1 << _bits) - 1;
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            int k = _slots[2 * i];
+            if (k == key) {
+                int result = _slots[2 * i + 1];
+                _slots[2 * i + 1] = value;
+                return result;
+            }
+            if (k == EMPTY) {
+                _slots[2 * i] = key;
+                _slots[2 * i + 1] = value;
+                ++_size;
+                return NOT_FOUND;
+            }
+        }
+    }
+
+    private void rehash() {
+        int[] old = _slots;
+        allocate(_bits + 1);
+        _size = 0;
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != EMPTY) put(old[i], old[i + 1]);
+        }
+    }
+
+    /**
+     * Returns the approximate number of bytes of heap used by this index.
+     * @return the approximate number of bytes of heap used by this index
+     */
+    long footprint() {
+        return 16 + 4L * _slots.length;
+    }
+}
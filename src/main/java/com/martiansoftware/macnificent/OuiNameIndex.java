@@ -0,0 +1,239 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Indexes an OuiTable by manufacturer name, short name, and the words
+ * (tokens) within manufacturer names.  Names are normalized to lower case
+ * with each run of punctuation and whitespace replaced by a single space,
+ * so "Cisco Systems, Inc" is indexed as "cisco systems inc".
+ *
+ * Each index is a sorted array of distinct normalized keys with a parallel
+ * postings list of ascending OUI indexes (as used by OuiRegistry.indexOf()),
+ * stored contiguously in key order.  Queries binary search the keys, so
+ * their cost depends on the size of the result rather than of the table.
+ *
+ * Immutable and thread-safe once constructed.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+final class OuiNameIndex {
+
+    /**
+     * Distinct normalized keys in sorted order, each with a postings list
+     */
+    private static final class Postings {
+        private final String[] _keys;
+
+        /**
+         * The postings for _keys[i] are _values[_offsets[i]] to _values[_offsets[i + 1] - 1]
+         */
+        private final int[] _offsets;
+        private final int[] _values;
+
+        Postings(TreeMap<String, List<Integer>> map) {
+            _keys = map.keySet().toArray(new String[map.size()]);
+            _offsets = new int[_keys.length + 1];
+            int n = 0;
+            for (List<Integer> v : map.values()) n += v.size();
+            _values = new int[n];
+            int k = 0, p = 0;
+            for (Map.Entry<String, List<Integer>> e : map.entrySet()) {
+                _offsets[k++] = p;
+                for (int v : e.getValue()) _values[p++] = v;
+            }
+            _offsets[k] = p;
+        }
+
+        /**
+         * Returns the index of the first key not less than s
+         */
+        private int lowerBound(String s) {
+            int lo = 0, hi = _keys.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (_keys[mid].compareTo(s) < 0) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        /**
+         * Returns the postings for key, or an empty array
+         */
+        int[] get(String key) {
+            int i = lowerBound(key);
+            if (i == _keys.length || !_keys[i].equals(key)) return EMPTY;
+            return Arrays.copyOfRange(_values, _offsets[i], _offsets[i + 1]);
+        }
+
+        /**
+         * Returns the sorted union of the postings of every key starting with prefix
+         */
+        int[] withPrefix(String prefix) {
+            int lo = lowerBound(prefix), hi = lo;
+            while (hi < _keys.length && _keys[hi].startsWith(prefix)) ++hi;
+            // a prefix ending in a word break also matches the word alone, which sorts just before it
+            if (prefix.endsWith(" ") && lo > 0 && _keys[lo - 1].length() == prefix.length() - 1 && prefix.startsWith(_keys[lo - 1])) --lo;
+            int[] result = Arrays.copyOfRange(_values, _offsets[lo], _offsets[hi]);
+            Arrays.sort(result);
+            return result;
+        }
+
+        long footprint() {
+            long result = 16 + 4L * _offsets.length + 16 + 4L * _values.length + 16 + 4L * _keys.length;
+            for (String k : _keys) result += 40 + k.length();
+            return result;
+        }
+    }
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Postings _manufacturers;
+    private final Postings _shortNames;
+    private final Postings _tokens;
+
+    /**
+     * Builds an index of every OUI in the specified table
+     *
+     * @param table the table to index
+     */
+    OuiNameIndex(OuiTable table) {
+        TreeMap<String, List<Integer>> manufacturers = new TreeMap<String, List<Integer>>();
+        TreeMap<String, List<Integer>> shortNames = new TreeMap<String, List<Integer>>();
+        TreeMap<String, List<Integer>> tokens = new TreeMap<String, List<Integer>>();
+        for (int i = 0; i < table.size(); ++i) {
+            Oui oui = table.ouiAt(i);
+            String name = normalize(oui.getManufacturer());
+            add(manufacturers, name, i);
+            add(shortNames, normalize(oui.getShortName()), i);
+            for (int s = 0; s < name.length(); ) {
+                int e = name.indexOf(' ', s);
+                if (e < 0) e = name.length();
+                add(tokens, name.substring(s, e), i);
+                s = e + 1;
+            }
+        }
+        _manufacturers = new Postings(manufacturers);
+        _shortNames = new Postings(shortNames);
+        _tokens = new Postings(tokens);
+    }
+
+    private static void add(TreeMap<String, List<Integer>> map, String key, int index) {
+        List<Integer> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<Integer>(1);
+            map.put(key, list);
+        }
+        // indexes arrive in ascending order, so a repeated token is always last
+        if (list.isEmpty() || list.get(list.size() - 1) != index) list.add(index);
+    }
+
+    /**
+     * Lower-cases s and replaces each run of characters other than letters
+     * and digits with a single space, trimming leading and trailing spaces.
+     * A trailing separator is kept if keepTrailing, so that a prefix query
+     * for "Cisco " does not match "Ciscom".
+     */
+    static String normalize(String s, boolean keepTrailing) {
+        StringBuilder buf = new StringBuilder(s.length());
+        boolean space = false;
+        for (int i = 0; i < s.length(); ) {
+            int c = s.codePointAt(i);
+            i += Character.charCount(c);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && buf.length() > 0) buf.append(' ');
+                space = false;
+                buf.appendCodePoint(c);
+            } else {
+                space = true;
+            }
+        }
+        if (keepTrailing && space && buf.length() > 0) buf.append(' ');
+        return buf.toString().toLowerCase(Locale.ROOT);
+    }
+
+    static String normalize(String s) {
+        return normalize(s, false);
+    }
+
+    /**
+     * Returns the indexes of OUIs whose normalized manufacturer name starts
+     * with the normalized prefix, in ascending order.
+     */
+    int[] findByManufacturerPrefix(String prefix) {
+        return _manufacturers.withPrefix(normalize(prefix, true));
+    }
+
+    /**
+     * Returns the indexes of OUIs whose short name matches the specified one,
+     * ignoring case and punctuation, in ascending order.
+     */
+    int[] findByShortName(String shortName) {
+        return _shortNames.get(normalize(shortName));
+    }
+
+    /**
+     * Returns the indexes of OUIs whose manufacturer name contains every word
+     * in the query as a whole word, in ascending order.
+     */
+    int[] findByTokens(String query) {
+        String q = normalize(query);
+        if (q.isEmpty()) return EMPTY;
+        String[] words = q.split(" ");
+        int[][] postings = new int[words.length][];
+        for (int i = 0; i < words.length; ++i) postings[i] = _tokens.get(words[i]);
+        // intersect the shortest postings first so that the work is bounded by the rarest word
+        Arrays.sort(postings, (a, b) -> Integer.compare(a.length, b.length));
+        int[] result = postings[0];
+        for (int i = 1; i < postings.length && result.length > 0; ++i) result = intersect(result, postings[i]);
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                ++i;
+            } else if (a[i] > b[j]) {
+                ++j;
+            } else {
+                result[n++] = a[i];
+                ++i;
+                ++j;
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Returns the approximate number of bytes of heap used by this index.
+     */
+    long footprint() {
+        return _manufacturers.footprint() + _shortNames.footprint() + _tokens.footprint();
+    }
+}
@@ -19,11 +19,23 @@ package com.martiansoftware.macnificent;
  *
  */
 
-import java.io.DataInputStream;
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Class that encapsulates an entire IEEE OUI registry, provides a means to
@@ -40,10 +52,27 @@ public class OuiRegistry {
      */
     public static final String DEFAULT_RESOURCE = "macnificent.dat";
 
+    /**
+     * Returned by indexOf() and written by lookupAll() for MAC addresses
+     * with no known OUI.
+     */
+    public static final int NOT_FOUND = OuiTable.NOT_FOUND;
+
+    /**
+     * Batches larger than this are split when processed in a ForkJoinPool.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    /**
+     * ASCII "Unknown", the start of the prefix used when formatting a MAC
+     * with no known OUI
+     */
+    private static final byte[] UNKNOWN = "Unknown".getBytes(StandardCharsets.US_ASCII);
+
     /**
      * The actual OUI data
      */
-    private final Map<Integer, Oui> _byHashCode = new java.util.HashMap<Integer, Oui>();
+    private final OuiTable _table;
 
     /**
      * The timestamp of when the OUI data was posted to the IEEE website or
@@ -51,15 +80,45 @@ public class OuiRegistry {
      */
     private final Date _lastModified;
 
+    /**
+     * UTF-8 encoded "ShortName-" prefixes used by formatTo(byte[]), built as
+     * they are needed
+     */
+    private final AtomicReferenceArray<byte[]> _formatPrefixes;
+
+    /**
+     * Notified of lookups, or null
+     */
+    private final OuiRegistryListener _listener;
+
+    /**
+     * Time taken to load this registry
+     */
+    private final long _loadNanos;
+
+    /**
+     * Index by manufacturer and short name, built on first use
+     */
+    private volatile OuiNameIndex _nameIndex;
+
     /**
      * Creates a new OUIRegistry by reading the IEEE OUI data from the
      * classpath resource DEFAULT_RESOURCE ("macnificent.dat").  This requires a
      * Macnificent data jar file in the application's classpath.
      */
     public OuiRegistry() throws IOException {
-        InputStream in = OuiRegistry.class.getClassLoader().getResourceAsStream(DEFAULT_RESOURCE);
-        if (in == null) throw new IOException(DEFAULT_RESOURCE + " not found in classpath.");
-        _lastModified = init(in);
+        this((OuiRegistryListener) null);
+    }
+
+    /**
+     * Creates a new OUIRegistry as OuiRegistry() does, which notifies the
+     * specified listener of its load and of every lookup.
+     *
+     * @param listener the listener to notify (may be null)
+     */
+    public OuiRegistry(OuiRegistryListener listener) throws IOException {
+        // arguments are evaluated left to right, so the load is timed
+        this(System.nanoTime(), readDefaultResource(), listener, false);
     }
 
     /**
@@ -71,7 +130,202 @@ public class OuiRegistry {
      * @param ouiData the IEEE OUI data source in macnificent's binary format
      */
     public OuiRegistry(InputStream ouiData) throws IOException {
-        _lastModified = init(ouiData);
+        this(ouiData, null);
+    }
+
+    /**
+     * Creates a new OUIRegistry as OuiRegistry(InputStream) does, which
+     * notifies the specified listener of its load and of every lookup.
+     *
+     * @param ouiData the IEEE OUI data source in macnificent's binary format
+     * @param listener the listener to notify (may be null)
+     */
+    public OuiRegistry(InputStream ouiData, OuiRegistryListener listener) throws IOException {
+        this(System.nanoTime(), OuiDataFile.read(ouiData), listener, false);
+    }
+
+    /**
+     * Creates a new OUIRegistry by memory-mapping the specified data file
+     * in Macnificent's binary format.  Version 2 and 3 data files (as
+     * written by GenerateDataFile --v2 or --v3) are searched directly within
+     * the mapped file, so the registry is available almost immediately and
+     * manufacturer names are only decoded as they are needed.  The checksum
+     * of a version 3 file is verified first, so a truncated or corrupt file
+     * is rejected.  Older data files are loaded onto the heap as with the
+     * InputStream constructor.
+     *
+     * @param ouiDataFile the IEEE OUI data file in macnificent's binary format
+     */
+    public OuiRegistry(File ouiDataFile) throws IOException {
+        this(ouiDataFile, null);
+    }
+
+    /**
+     * Creates a new OUIRegistry as OuiRegistry(File) does, which notifies
+     * the specified listener of its load and of every lookup.
+     *
+     * @param ouiDataFile the IEEE OUI data file in macnificent's binary format
+     * @param listener the listener to notify (may be null)
+     */
+    public OuiRegistry(File ouiDataFile, OuiRegistryListener listener) throws IOException {
+        this(System.nanoTime(), OuiDataFile.map(ouiDataFile), listener, false);
+    }
+
+    /**
+     * Creates a new OUIRegistry that searches the IEEE OUI data in the
+     * specified buffer, from its position to its limit, in Macnificent's
+     * binary format.  Version 2 and 3 data is searched directly within the
+     * buffer without copying it; older data is loaded onto the heap as with
+     * the InputStream constructor.  The buffer's position and limit are not
+     * changed, and its contents must not change while the registry is in use.
+     *
+     * A buffer over a class generated by GenerateDataFile --java lets an
+     * application load the registry without any I/O, e.g. during GraalVM
+     * native-image build-time initialization.
+     *
+     * @param ouiData the IEEE OUI data in macnificent's binary format
+     */
+    public OuiRegistry(ByteBuffer ouiData) throws IOException {
+        this(ouiData, null);
+    }
+
+    /**
+     * Creates a new OUIRegistry as OuiRegistry(ByteBuffer) does, which
+     * notifies the specified listener of its load and of every lookup.
+     *
+     * @param ouiData the IEEE OUI data in macnificent's binary format
+     * @param listener the listener to notify (may be null)
+     */
+    public OuiRegistry(ByteBuffer ouiData, OuiRegistryListener listener) throws IOException {
+        this(System.nanoTime(), OuiDataFile.wrap(ouiData), listener, false);
+    }
+
+    OuiRegistry(OuiTable table) {
+        this(System.nanoTime(), table, null, false);
+    }
+
+    /**
+     * Loads a new OUIRegistry as OuiRegistry() does, on the specified
+     * executor rather than the calling thread.  If loading fails, the
+     * returned future completes exceptionally with the IOException (or
+     * other exception) thrown by the constructor.
+     *
+     * @param executor the executor on which to load the registry
+     * @return a future that completes with the loaded registry
+     */
+    public static CompletableFuture<OuiRegistry> loadAsync(Executor executor) {
+        return loadAsync(executor, (OuiRegistryListener) null);
+    }
+
+    /**
+     * Loads a new OUIRegistry as OuiRegistry(OuiRegistryListener) does, on
+     * the specified executor rather than the calling thread.
+     *
+     * @param executor the executor on which to load the registry
+     * @param listener the listener to notify (may be null)
+     * @return a future that completes with the loaded registry
+     */
+    public static CompletableFuture<OuiRegistry> loadAsync(Executor executor, final OuiRegistryListener listener) {
+        return loadAsync(executor, new Loader() {
+            @Override
+            public OuiRegistry load() throws IOException {
+                return new OuiRegistry(listener);
+            }
+        });
+    }
+
+    /**
+     * Loads a new OUIRegistry as OuiRegistry(File) does, on the specified
+     * executor rather than the calling thread.
+     *
+     * @param ouiDataFile the IEEE OUI data file in macnificent's binary format
+     * @param executor the executor on which to load the registry
+     * @return a future that completes with the loaded registry
+     */
+    public static CompletableFuture<OuiRegistry> loadAsync(File ouiDataFile, Executor executor) {
+        return loadAsync(ouiDataFile, executor, null);
+    }
+
+    /**
+     * Loads a new OUIRegistry as OuiRegistry(File, OuiRegistryListener)
+     * does, on the specified executor rather than the calling thread.
+     *
+     * @param ouiDataFile the IEEE OUI data file in macnificent's binary format
+     * @param executor the executor on which to load the registry
+     * @param listener the listener to notify (may be null)
+     * @return a future that completes with the loaded registry
+     */
+    public static CompletableFuture<OuiRegistry> loadAsync(final File ouiDataFile, Executor executor, final OuiRegistryListener listener) {
+        return loadAsync(executor, new Loader() {
+            @Override
+            public OuiRegistry load() throws IOException {
+                return new OuiRegistry(ouiDataFile, listener);
+            }
+        });
+    }
+
+    /**
+     * Creates a registry on the specified executor.  Anonymous classes rather
+     * than lambdas keep the cost of bootstrapping the first lambda in the JVM
+     * off the caller's startup path.
+     */
+    private static CompletableFuture<OuiRegistry> loadAsync(Executor executor, final Loader loader) {
+        final CompletableFuture<OuiRegistry> result = new CompletableFuture<OuiRegistry>();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result.complete(loader.load());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Creates a registry, possibly throwing an IOException
+     */
+    private interface Loader {
+        OuiRegistry load() throws IOException;
+    }
+
+    /**
+     * Returns a registry with no OUIs, which formats every MAC address as
+     * "Unknown-".
+     *
+     * @return a registry with no OUIs
+     */
+    static OuiRegistry empty() {
+        return new OuiRegistry(new HeapOuiTable(0, Collections.<Oui>emptyList()));
+    }
+
+    /**
+     * Creates a new OuiRegistry, notifying the listener (if any) of its load
+     *
+     * @param startNanos the value of System.nanoTime() when loading began
+     * @param table the OUI data
+     * @param listener the listener to notify, or null
+     * @param reload true if this registry replaces an earlier one
+     */
+    OuiRegistry(long startNanos, OuiTable table, OuiRegistryListener listener, boolean reload) {
+        _table = table;
+        _lastModified = new Date(table.lastModified());
+        _formatPrefixes = new AtomicReferenceArray<byte[]>(table.size());
+        _listener = listener;
+        _loadNanos = System.nanoTime() - startNanos;
+        if (listener != null) listener.loaded(this, _loadNanos, reload);
+    }
+
+    private static OuiTable readDefaultResource() throws IOException {
+        InputStream in = OuiRegistry.class.getClassLoader().getResourceAsStream(DEFAULT_RESOURCE);
+        if (in == null) throw new IOException(DEFAULT_RESOURCE + " not found in classpath.");
+        try {
+            return OuiDataFile.read(new BufferedInputStream(in));
+        } finally {
+            in.close();
+        }
     }
 
     /**
@@ -87,45 +341,357 @@ public class OuiRegistry {
     }
 
     /**
-     * Performs the actual loading of the registry data.
+     * Returns the number of OUIs contained by this registry
+     * @return the number of OUIs contained by this registry
+     */
+    public int size() { return _table.size(); }
+
+    /**
+     * Returns the time taken to load this registry's data, in nanoseconds.
+     * For a memory-mapped registry this is only the time taken to map and
+     * validate the data file.
      *
-     * @param ouiData the IEEE OUI data source in macnificent's binary format
-     * @return the timestamp of the data file's creation
-     * @throws IOException
+     * @return the time taken to load this registry, in nanoseconds
      */
-    private Date init(InputStream ouiData) throws IOException {
-        DataInputStream din = new DataInputStream(ouiData);
-        Date result = new Date(din.readLong());
-        while (din.available() > 0) {
-            Oui oui = new Oui(din);
-            _byHashCode.put(oui.hashCode(), oui);
-        }
-        return result;
+    public long getLoadNanos() { return _loadNanos; }
+
+    /**
+     * Returns the listener notified by this registry, if any.
+     *
+     * @return the listener notified by this registry, or null
+     */
+    public OuiRegistryListener getListener() { return _listener; }
+
+    /**
+     * Provides access to the underlying OUI data
+     */
+    OuiTable table() { return _table; }
+
+    /**
+     * Returns a new OuiRegistry containing the result of applying a delta
+     * (as written by GenerateDataFile --diff) to this registry.  This
+     * registry is not modified, and the new registry notifies the same
+     * listener as this one.
+     *
+     * @param delta the delta source, which is read but not closed
+     * @return the updated registry
+     * @throws IOException if the delta cannot be read or was not generated
+     * against this registry's data (as identified by getLastModified())
+     */
+    public OuiRegistry applyDelta(InputStream delta) throws IOException {
+        long start = System.nanoTime();
+        OuiTable table = OuiDataFile.applyDelta(_table, delta);
+        if (_table instanceof CompactOuiTable) table = new CompactOuiTable(table);
+        return new OuiRegistry(start, table, _listener, true);
     }
 
     /**
-     * Returns the number of OUIs contained by this registry
-     * @return the number of OUIs contained by this registry
+     * Returns a new OuiRegistry containing the same assignments as this one
+     * in a compact representation for memory-constrained deployments.  The
+     * compact registry holds no Oui objects: OUIs are located via a
+     * rank/select bitmap, and manufacturer and short names are
+     * deduplicated and front coded into shared byte arrays.  It typically
+     * uses a small fraction of the heap of a registry loaded from an
+     * InputStream, at the cost of creating a new Oui each time one is
+     * requested.  Lookups by MAC address and formatting are about as fast
+     * as in any other registry.
+     *
+     * Indexes (as returned by indexOf() and accepted by getOuiByIndex())
+     * differ between the two registries: the compact registry numbers
+     * 24-bit OUIs in ascending order.  The new registry notifies the same
+     * listener as this one.  Registries created by applyDelta() on a
+     * compact registry are also compact.
+     *
+     * @return a compact copy of this registry, or this registry if it is
+     * already compact
      */
-    public int size() { return _byHashCode.size(); }
+    public OuiRegistry compact() {
+        if (_table instanceof CompactOuiTable) return this;
+        return new OuiRegistry(System.nanoTime(), new CompactOuiTable(_table), _listener, false);
+    }
+
+    /**
+     * Indicates whether this registry uses the compact representation
+     * returned by compact()
+     *
+     * @return true if this registry is compact
+     */
+    public boolean isCompact() {
+        return _table instanceof CompactOuiTable;
+    }
 
     /**
      * Returns the OUI associated with the specified MAC address, or null
-     * if no such OUI exists in this registry.
+     * if no such OUI exists in this registry.  If the registry contains
+     * MA-M, MA-S or IAB assignments, the most specific assignment containing
+     * the MAC address is returned.
      * 
      * @param mac the MacAddress providing the OUI to retrieve
      * @return the requested OUI, or null if not found
      */
     public Oui getOui(MacAddress mac) {
-        Oui result = _byHashCode.get(Oui.hashCode(mac.getInternalBytes()));
-        if (result == null && (mac.isLocal() || mac.isMulticast())) {
-            byte[] b = mac.getBytes();
-            b[0] &= ~(MacAddress.FLAG_LOCAL | MacAddress.FLAG_MCAST);
-            result = _byHashCode.get(Oui.hashCode(b));
+        return getOui(mac.toLong());
+    }
+
+    /**
+     * Returns the OUI associated with the specified 48-bit MAC address (as
+     * returned by MacAddress.toLong()), or null if no such OUI exists in
+     * this registry.
+     *
+     * @param mac the 48-bit MAC address providing the OUI to retrieve
+     * @return the requested OUI, or null if not found
+     */
+    public Oui getOui(long mac) {
+        int i = indexOf(mac);
+        return i == NOT_FOUND ? null : _table.ouiAt(i);
+    }
+
+    /**
+     * Returns the OUI associated with the 6-byte MAC address at the
+     * specified absolute index of a buffer, such as the source or
+     * destination of an Ethernet frame (see EthernetFrames).  The MAC
+     * address is read in place, in network byte order, without copying or
+     * allocating, and the buffer's position is unchanged.
+     *
+     * @param buf the buffer containing the MAC address
+     * @param offset the index of the first byte of the MAC address
+     * @return the requested OUI, or null if not found
+     */
+    public Oui getOui(ByteBuffer buf, int offset) {
+        return getOui(MacAddress.toLong(buf, offset));
+    }
+
+    /**
+     * Returns the index of the OUI associated with the 6-byte MAC address at
+     * the specified absolute index of a buffer, or NOT_FOUND, as
+     * getOui(ByteBuffer, int) does.
+     *
+     * @param buf the buffer containing the MAC address
+     * @param offset the index of the first byte of the MAC address
+     * @return the index of the requested OUI, or NOT_FOUND
+     */
+    public int indexOf(ByteBuffer buf, int offset) {
+        return indexOf(MacAddress.toLong(buf, offset));
+    }
+
+    /**
+     * Returns the index within this registry of the OUI associated with the
+     * specified 48-bit MAC address, or NOT_FOUND.  This finds the same OUI as
+     * getOui(mac), which is available via getOuiByIndex().  Indexes range
+     * from 0 to size() - 1 and are only meaningful within this registry.
+     *
+     * @param mac the 48-bit MAC address providing the OUI to retrieve
+     * @return the index of the requested OUI, or NOT_FOUND
+     */
+    public int indexOf(long mac) {
+        int result = _table.lookup(mac);
+        if (result == NOT_FOUND && (mac & MacAddress.LONG_FLAGS) != 0) {
+            result = _table.lookup(mac & ~MacAddress.LONG_FLAGS);
+            if (result != NOT_FOUND) {
+                if (_listener != null) _listener.fallback(mac, result);
+                return result;
+            }
+        }
+        if (_listener != null) notify(mac, result);
+        return result;
+    }
+
+    /**
+     * Looks up a MAC without the local/multicast fallback, as format() does
+     */
+    int lookup(long mac) {
+        int result = _table.lookup(mac);
+        if (_listener != null) notify(mac, result);
+        return result;
+    }
+
+    private void notify(long mac, int index) {
+        if (index == NOT_FOUND) {
+            _listener.miss(mac);
+        } else {
+            _listener.hit(mac, index);
+        }
+    }
+
+    /**
+     * Returns the OUI at the specified index within this registry, as
+     * returned by indexOf() or lookupAll().
+     *
+     * @param index an index from 0 to size() - 1
+     * @return the OUI at the specified index
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public Oui getOuiByIndex(int index) {
+        if (index < 0 || index >= _table.size()) throw new IndexOutOfBoundsException("No OUI at index " + index);
+        return _table.ouiAt(index);
+    }
+
+    private OuiNameIndex nameIndex() {
+        OuiNameIndex result = _nameIndex;
+        if (result == null) {
+            synchronized (this) {
+                result = _nameIndex;
+                if (result == null) {
+                    result = new OuiNameIndex(_table);
+                    _nameIndex = result;
+                }
+            }
         }
         return result;
     }
 
+    /**
+     * Finds the OUIs whose manufacturer name starts with the specified
+     * prefix, ignoring case, punctuation and spacing.  For example, "cisco"
+     * matches "Cisco Systems, Inc" and "Cisco SPVTG".  The first call to any
+     * of the find methods builds an index of the registry; later calls cost
+     * O(log(size()) + number of results).
+     *
+     * @param prefix the start of the manufacturer name
+     * @return the indexes (as used by getOuiByIndex()) of the matching OUIs,
+     * in ascending order
+     */
+    public int[] findByManufacturerPrefix(String prefix) {
+        return nameIndex().findByManufacturerPrefix(prefix);
+    }
+
+    /**
+     * Finds the OUIs with the specified short name (as used by format()),
+     * ignoring case and punctuation.
+     *
+     * @param shortName the short name, e.g. "Espressif"
+     * @return the indexes (as used by getOuiByIndex()) of the matching OUIs,
+     * in ascending order
+     */
+    public int[] findByShortName(String shortName) {
+        return nameIndex().findByShortName(shortName);
+    }
+
+    /**
+     * Finds the OUIs whose manufacturer name contains every word of the
+     * query as a whole word, ignoring case and punctuation.  For example,
+     * "apple inc" matches "Apple, Inc." but not "Pineapple Inc".
+     *
+     * @param query one or more words
+     * @return the indexes (as used by getOuiByIndex()) of the matching OUIs,
+     * in ascending order
+     */
+    public int[] findByTokens(String query) {
+        return nameIndex().findByTokens(query);
+    }
+
+    /**
+     * Looks up the OUI index (as returned by indexOf()) of every MAC address
+     * in an array.
+     *
+     * @param macs the 48-bit MAC addresses to look up
+     * @param ouiIndexOut receives the OUI index or NOT_FOUND for each MAC
+     * address, at the same position as in macs
+     */
+    public void lookupAll(long[] macs, int[] ouiIndexOut) {
+        lookupAll(macs, 0, ouiIndexOut, 0, macs.length);
+    }
+
+    /**
+     * Looks up the OUI index (as returned by indexOf()) of every MAC address
+     * in a range of an array.
+     *
+     * @param macs the 48-bit MAC addresses to look up
+     * @param macsOffset the position in macs of the first MAC to look up
+     * @param ouiIndexOut receives the OUI index or NOT_FOUND for each MAC address
+     * @param outOffset the position in ouiIndexOut of the first result
+     * @param length the number of MAC addresses to look up
+     */
+    public void lookupAll(long[] macs, int macsOffset, int[] ouiIndexOut, int outOffset, int length) {
+        if (macsOffset < 0 || outOffset < 0 || length < 0 || macsOffset > macs.length - length || outOffset > ouiIndexOut.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        for (int i = 0; i < length; ++i) {
+            ouiIndexOut[outOffset + i] = indexOf(macs[macsOffset + i]);
+        }
+    }
+
+    /**
+     * Looks up the OUI index (as returned by indexOf()) of every MAC address
+     * in an array, splitting large arrays into tasks run in the specified pool.
+     *
+     * @param macs the 48-bit MAC addresses to look up
+     * @param ouiIndexOut receives the OUI index or NOT_FOUND for each MAC
+     * address, at the same position as in macs
+     * @param pool the pool in which to run the lookups
+     */
+    public void lookupAll(long[] macs, int[] ouiIndexOut, ForkJoinPool pool) {
+        if (ouiIndexOut.length < macs.length) throw new IndexOutOfBoundsException();
+        pool.invoke(new LookupTask(macs, ouiIndexOut, 0, macs.length));
+    }
+
+    /**
+     * Looks up the OUI index (as returned by indexOf()) of every MAC address
+     * remaining in a LongBuffer, advancing the positions of both buffers.
+     *
+     * @param macs the 48-bit MAC addresses to look up
+     * @param ouiIndexOut receives the OUI index or NOT_FOUND for each MAC address
+     * @throws BufferOverflowException if ouiIndexOut has fewer remaining
+     * elements than macs
+     */
+    public void lookupAll(LongBuffer macs, IntBuffer ouiIndexOut) {
+        int n = macs.remaining();
+        if (ouiIndexOut.remaining() < n) throw new BufferOverflowException();
+        int in = macs.position(), out = ouiIndexOut.position();
+        for (int i = 0; i < n; ++i) {
+            ouiIndexOut.put(out + i, indexOf(macs.get(in + i)));
+        }
+        macs.position(in + n);
+        ouiIndexOut.position(out + n);
+    }
+
+    /**
+     * Looks up the OUI index (as returned by indexOf()) of every MAC address
+     * remaining in a ByteBuffer, advancing the positions of both buffers.
+     * The ByteBuffer must contain packed 6-byte MAC addresses in network
+     * byte order (regardless of the buffer's byte order); any trailing partial
+     * MAC address is left in the buffer.
+     *
+     * @param macs packed 6-byte MAC addresses
+     * @param ouiIndexOut receives the OUI index or NOT_FOUND for each MAC address
+     * @throws BufferOverflowException if ouiIndexOut has too few elements remaining
+     */
+    public void lookupAll(ByteBuffer macs, IntBuffer ouiIndexOut) {
+        int n = macs.remaining() / MacAddress.ETH_ALEN;
+        if (ouiIndexOut.remaining() < n) throw new BufferOverflowException();
+        int in = macs.position(), out = ouiIndexOut.position();
+        for (int i = 0; i < n; ++i) {
+            ouiIndexOut.put(out + i, indexOf(MacAddress.toLong(macs, in + i * MacAddress.ETH_ALEN)));
+        }
+        macs.position(in + n * MacAddress.ETH_ALEN);
+        ouiIndexOut.position(out + n);
+    }
+
+    private final class LookupTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final long[] _macs;
+        private final int[] _out;
+        private final int _offset, _length;
+
+        LookupTask(long[] macs, int[] out, int offset, int length) {
+            _macs = macs;
+            _out = out;
+            _offset = offset;
+            _length = length;
+        }
+
+        @Override
+        protected void compute() {
+            if (_length <= PARALLEL_THRESHOLD) {
+                lookupAll(_macs, _offset, _out, _offset, _length);
+            } else {
+                int half = _length >>> 1;
+                invokeAll(new LookupTask(_macs, _out, _offset, half),
+                          new LookupTask(_macs, _out, _offset + half, _length - half));
+            }
+        }
+    }
+
     /**
      * Formats a MacAddress as a String, replacing the OUI portion of the
      * MAC with the short name of the manufacturer.
@@ -137,23 +703,327 @@ public class OuiRegistry {
      * @return the reformatted MacAddress using the manufacturer's short name
      */
     public String format(MacAddress mac) {
-        byte[] b = mac.getInternalBytes();
-        Oui oui = _byHashCode.get(Oui.hashCode(mac.getInternalBytes()));
-        StringBuilder buf = new StringBuilder();
+        return format(mac.toLong());
+    }
+
+    /**
+     * Formats a 48-bit MAC address (as returned by MacAddress.toLong()) as a
+     * String, replacing the OUI portion of the MAC with the short name of the
+     * manufacturer.
+     *
+     * @param mac the 48-bit MAC address to format
+     * @return the reformatted MAC address using the manufacturer's short name
+     */
+    public String format(long mac) {
+        StringBuilder buf = new StringBuilder(24);
+        try {
+            formatTo(mac, buf, MacAddressStyle.COLON);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringBuilder doesn't throw
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Formats the 6-byte MAC address at the specified absolute index of a
+     * buffer as format(long) does, reading it in place.
+     *
+     * @param buf the buffer containing the MAC address
+     * @param offset the index of the first byte of the MAC address
+     * @return the reformatted MAC address using the manufacturer's short name
+     */
+    public String format(ByteBuffer buf, int offset) {
+        return format(MacAddress.toLong(buf, offset));
+    }
+
+    /**
+     * Appends the 6-byte MAC address at the specified absolute index of a
+     * buffer to an Appendable as formatTo(long, Appendable, MacAddressStyle)
+     * does, reading it in place and without allocating.
+     *
+     * @param buf the buffer containing the MAC address
+     * @param offset the index of the first byte of the MAC address
+     * @param out the destination
+     * @param style the style in which to format the non-OUI portion of the MAC
+     * @throws IOException if thrown by the Appendable
+     */
+    public void formatTo(ByteBuffer buf, int offset, Appendable out, MacAddressStyle style) throws IOException {
+        formatTo(MacAddress.toLong(buf, offset), out, style);
+    }
+
+    /**
+     * Appends a MacAddress to an Appendable as format(MacAddress) does,
+     * without allocating.
+     *
+     * @param mac the MacAddress to format
+     * @param out the destination
+     * @throws IOException if thrown by the Appendable
+     */
+    public void formatTo(MacAddress mac, Appendable out) throws IOException {
+        formatTo(mac.toLong(), out, MacAddressStyle.COLON);
+    }
 
-        if (oui == null) {
-            buf.append(String.format("Unknown-%02x-%02x-%02x", b[0], b[1], b[2]));
+    /**
+     * Appends a 48-bit MAC address to an Appendable as format(long) does,
+     * without allocating.
+     *
+     * @param mac the 48-bit MAC address to format
+     * @param out the destination
+     * @throws IOException if thrown by the Appendable
+     */
+    public void formatTo(long mac, Appendable out) throws IOException {
+        formatTo(mac, out, MacAddressStyle.COLON);
+    }
+
+    /**
+     * Appends a 48-bit MAC address to an Appendable as format(long) does,
+     * but with the non-OUI portion of the MAC in the specified style.  For
+     * example, 00:21:9b:07:20:74 is formatted as "Dell-07-20-74" in the
+     * DASH style.  Nothing is allocated once each OUI's short name is known.
+     *
+     * @param mac the 48-bit MAC address to format
+     * @param out the destination
+     * @param style the style in which to format the non-OUI portion of the MAC
+     * @throws IOException if thrown by the Appendable
+     */
+    public void formatTo(long mac, Appendable out, MacAddressStyle style) throws IOException {
+        int i = lookup(mac);
+        if (i == NOT_FOUND) {
+            out.append("Unknown");
+            for (int shift = 40; shift >= 24; shift -= 8) {
+                out.append('-');
+                Hex.appendByte(out, (int) (mac >>> shift));
+            }
+            out.append('-');
         } else {
-            buf.append(oui.getShortName());
+            appendPrefix(out, i);
         }
-        buf.append('-');
+        style.appendTo(out, mac, 3);
+    }
 
-        for (int i = 3; i < MacAddress.ETH_ALEN; ++i) {
-            if (i > 3) buf.append(':');
-            buf.append(String.format("%02x", b[i]));
+    /**
+     * Appends the "ShortName-" prefix for the OUI at the specified index,
+     * from the same cache as formatTo(long, byte[], int, MacAddressStyle)
+     * so that compact tables need not decode the short name each time
+     */
+    private void appendPrefix(Appendable out, int index) throws IOException {
+        byte[] prefix = formatPrefix(index);
+        int n = prefix.length;
+        for (int k = 0; k < n; ++k) {
+            if (prefix[k] < 0) { // not ASCII
+                out.append(_table.shortNameAt(index)).append('-');
+                return;
+            }
         }
+        for (int k = 0; k < n; ++k) out.append((char) prefix[k]);
+    }
 
-        return buf.toString();
+    /**
+     * Writes a MacAddress to a byte array as UTF-8, formatted as
+     * format(MacAddress) does.
+     *
+     * @param mac the MacAddress to format
+     * @param dst the destination
+     * @param off the position in dst at which to write
+     * @return the number of bytes written
+     * @throws ArrayIndexOutOfBoundsException if dst is too small
+     */
+    public int formatTo(MacAddress mac, byte[] dst, int off) {
+        return formatTo(mac.toLong(), dst, off, MacAddressStyle.COLON);
+    }
+
+    /**
+     * Writes a 48-bit MAC address to a byte array as UTF-8, formatted as
+     * format(long) does.
+     *
+     * @param mac the 48-bit MAC address to format
+     * @param dst the destination
+     * @param off the position in dst at which to write
+     * @return the number of bytes written
+     * @throws ArrayIndexOutOfBoundsException if dst is too small
+     */
+    public int formatTo(long mac, byte[] dst, int off) {
+        return formatTo(mac, dst, off, MacAddressStyle.COLON);
+    }
+
+    /**
+     * Writes a 48-bit MAC address to a byte array as UTF-8, formatted as
+     * formatTo(long, Appendable, MacAddressStyle) does.  The UTF-8 encoding
+     * of each OUI's short name is cached, so nothing is allocated in steady
+     * state.
+     *
+     * @param mac the 48-bit MAC address to format
+     * @param dst the destination
+     * @param off the position in dst at which to write
+     * @param style the style in which to format the non-OUI portion of the MAC
+     * @return the number of bytes written
+     * @throws ArrayIndexOutOfBoundsException if dst is too small
+     */
+    public int formatTo(long mac, byte[] dst, int off, MacAddressStyle style) {
+        return formatTo(lookup(mac), mac, dst, off, style);
+    }
+
+    /**
+     * Writes a MAC address whose index (as returned by lookup()) is already
+     * known, as formatTo(long, byte[], int, MacAddressStyle) does
+     */
+    int formatTo(int i, long mac, byte[] dst, int off, MacAddressStyle style) {
+        int p = off;
+        if (i == NOT_FOUND) {
+            System.arraycopy(UNKNOWN, 0, dst, p, UNKNOWN.length);
+            p += UNKNOWN.length;
+            for (int shift = 40; shift >= 24; shift -= 8) {
+                dst[p++] = '-';
+                Hex.writeByte(dst, p, (int) (mac >>> shift), false);
+                p += 2;
+            }
+            dst[p++] = '-';
+        } else {
+            byte[] prefix = formatPrefix(i);
+            System.arraycopy(prefix, 0, dst, p, prefix.length);
+            p += prefix.length;
+        }
+        return p - off + style.writeTo(dst, p, mac, 3);
+    }
+
+    /**
+     * Returns the number of bytes formatTo(int, long, byte[], int,
+     * MacAddressStyle) writes for a MAC address with the specified index
+     */
+    int formattedLength(int i, MacAddressStyle style) {
+        int prefix = i == NOT_FOUND ? UNKNOWN.length + 3 * 3 + 1 : formatPrefix(i).length;
+        return prefix + style.length(3);
+    }
+
+    /**
+     * Returns the UTF-8 encoded "ShortName-" prefix for the OUI at the specified index
+     */
+    private byte[] formatPrefix(int index) {
+        byte[] result = _formatPrefixes.get(index);
+        if (result == null) {
+            result = (_table.shortNameAt(index) + "-").getBytes(StandardCharsets.UTF_8);
+            _formatPrefixes.lazySet(index, result);
+        }
+        return result;
+    }
+
+    /**
+     * Formats every MAC address in an array as format(long) does, appending
+     * each one to an Appendable followed by a newline.
+     *
+     * @param macs the 48-bit MAC addresses to format
+     * @param out the destination
+     * @throws IOException if thrown by the Appendable
+     */
+    public void formatAll(long[] macs, Appendable out) throws IOException {
+        formatAll(macs, 0, macs.length, out);
+    }
+
+    /**
+     * Formats every MAC address in a range of an array as format(long) does,
+     * appending each one to an Appendable followed by a newline.
+     *
+     * @param macs the 48-bit MAC addresses to format
+     * @param offset the position in macs of the first MAC to format
+     * @param length the number of MAC addresses to format
+     * @param out the destination
+     * @throws IOException if thrown by the Appendable
+     */
+    public void formatAll(long[] macs, int offset, int length, Appendable out) throws IOException {
+        if (offset < 0 || length < 0 || offset > macs.length - length) throw new IndexOutOfBoundsException();
+        for (int i = offset; i < offset + length; ++i) {
+            formatTo(macs[i], out, MacAddressStyle.COLON);
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Formats every MAC address in an array as format(long) does, appending
+     * each one to an Appendable followed by a newline.  Large arrays are
+     * split into tasks that format into separate buffers in the specified
+     * pool; the results are appended to out in order.
+     *
+     * @param macs the 48-bit MAC addresses to format
+     * @param out the destination
+     * @param pool the pool in which to format
+     * @throws IOException if thrown by the Appendable
+     */
+    public void formatAll(long[] macs, Appendable out, ForkJoinPool pool) throws IOException {
+        if (macs.length <= PARALLEL_THRESHOLD) {
+            formatAll(macs, out);
+            return;
+        }
+        int chunks = (macs.length + PARALLEL_THRESHOLD - 1) / PARALLEL_THRESHOLD;
+        StringBuilder[] results = new StringBuilder[chunks];
+        pool.invoke(new FormatTask(macs, results, 0, chunks));
+        for (StringBuilder result : results) out.append(result);
+    }
+
+    /**
+     * Formats every MAC address remaining in a LongBuffer as format(long)
+     * does, appending each one to an Appendable followed by a newline.  The
+     * buffer's position is advanced past the formatted MACs.
+     *
+     * @param macs the 48-bit MAC addresses to format
+     * @param out the destination
+     * @throws IOException if thrown by the Appendable
+     */
+    public void formatAll(LongBuffer macs, Appendable out) throws IOException {
+        while (macs.hasRemaining()) {
+            formatTo(macs.get(), out, MacAddressStyle.COLON);
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Formats every MAC address remaining in a ByteBuffer of packed 6-byte
+     * MACs in network byte order as format(long) does, appending each one to
+     * an Appendable followed by a newline.  The buffer's position is advanced
+     * past the formatted MACs; any trailing partial MAC is left in the buffer.
+     *
+     * @param macs packed 6-byte MAC addresses
+     * @param out the destination
+     * @throws IOException if thrown by the Appendable
+     */
+    public void formatAll(ByteBuffer macs, Appendable out) throws IOException {
+        while (macs.remaining() >= MacAddress.ETH_ALEN) {
+            formatTo(MacAddress.toLong(macs, macs.position()), out, MacAddressStyle.COLON);
+            out.append('\n');
+            macs.position(macs.position() + MacAddress.ETH_ALEN);
+        }
+    }
+
+    private final class FormatTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final long[] _macs;
+        private final StringBuilder[] _results;
+        private final int _firstChunk, _chunks;
+
+        FormatTask(long[] macs, StringBuilder[] results, int firstChunk, int chunks) {
+            _macs = macs;
+            _results = results;
+            _firstChunk = firstChunk;
+            _chunks = chunks;
+        }
+
+        @Override
+        protected void compute() {
+            if (_chunks == 1) {
+                int offset = _firstChunk * PARALLEL_THRESHOLD;
+                int length = Math.min(PARALLEL_THRESHOLD, _macs.length - offset);
+                StringBuilder buf = new StringBuilder(length * 24);
+                try {
+                    formatAll(_macs, offset, length, buf);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e); // StringBuilder doesn't throw
+                }
+                _results[_firstChunk] = buf;
+            } else {
+                int half = _chunks >>> 1;
+                invokeAll(new FormatTask(_macs, _results, _firstChunk, half),
+                          new FormatTask(_macs, _results, _firstChunk + half, _chunks - half));
+            }
+        }
     }
 
     /**
@@ -168,20 +1038,33 @@ public class OuiRegistry {
      * or the original, unmodified macString if it's not actually a valid MAC.
      */
     public String format(String macString) {
-        try {
-            return format(new MacAddress(macString));
-        } catch (Exception e) {
+        long mac = MacAddressParser.parse(macString);
+        if (mac == MacAddressParser.INVALID) {
+            if (_listener != null) _listener.parseFailure(macString);
             return macString;
         }
+        return format(mac);
     }
 
     /**
-     * Provides a simple interactive tester of this class.
+     * Provides a simple interactive tester of this class.  If any arguments
+     * are given, runs a non-interactive bulk lookup instead; run with
+     * "--help" for its options.  If the first argument is "--pcap", analyzes
+     * capture files with CaptureAnalyzer instead.
      *
-     * @param args ignored
+     * @param args bulk lookup options, or none for interactive mode
      * @throws Exception if anything asplodes
      */
     public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--pcap")) {
+            CaptureAnalyzer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0) {
+            BulkLookup.main(args);
+            return;
+        }
+
         OuiRegistry reg = new OuiRegistry();
         System.out.println("OuiRegistry loaded with " + reg.size() + " entries.");
         System.out.println("Enter MAC addresses (one per line) to try it out.");
@@ -189,13 +1072,18 @@ public class OuiRegistry {
         java.io.LineNumberReader in = new java.io.LineNumberReader(new java.io.InputStreamReader(System.in));
         String s = in.readLine();
         while (s != null) {
-            MacAddress mac = new MacAddress(s); // can also create from byte[] or NetworkInterface
-            Oui oui = reg.getOui(mac);
-            System.out.println("   MAC Address:  " + mac);
-            System.out.println("   isMulticast:  " + mac.isMulticast());
-            System.out.println("       isLocal:  " + mac.isLocal());
-            System.out.println("  Manufacturer:  " + (oui == null ? "Unknown" : oui.getManufacturer()));
-            System.out.println("   Reformatted:  " + reg.format(mac));
+            long l = MacAddressParser.parse(s);
+            if (l == MacAddressParser.INVALID) {
+                System.out.println("   Not a MAC address: " + s);
+            } else {
+                MacAddress mac = MacAddress.fromLong(l); // can also create from String, byte[] or NetworkInterface
+                Oui oui = reg.getOui(mac);
+                System.out.println("   MAC Address:  " + mac);
+                System.out.println("   isMulticast:  " + mac.isMulticast());
+                System.out.println("       isLocal:  " + mac.isLocal());
+                System.out.println("  Manufacturer:  " + (oui == null ? "Unknown" : oui.getManufacturer()));
+                System.out.println("   Reformatted:  " + reg.format(mac));
+            }
             System.out.println();
             s = in.readLine();
         }
@@ -0,0 +1,79 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+/**
+ * Receives notification of OuiRegistry activity, e.g. to collect metrics
+ * (see OuiRegistryMetrics) or record Flight Recorder events (see
+ * JfrOuiRegistryListener).  A listener is supplied when a registry is
+ * created; registries without one skip notification entirely, so there is
+ * no cost when it is not needed.
+ *
+ * Lookup notifications are made on the caller's thread, in the middle of
+ * the lookup, by every thread using the registry.  Implementations must be
+ * thread-safe and should be as cheap as possible.  Every method does nothing
+ * by default.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public interface OuiRegistryListener {
+
+    /**
+     * Called when a lookup finds the OUI of a MAC address.
+     *
+     * @param mac the 48-bit MAC address looked up
+     * @param index the registry index of its OUI
+     */
+    default void hit(long mac, int index) {}
+
+    /**
+     * Called when a lookup finds the OUI of a locally administered or
+     * multicast MAC address only after clearing those bits.
+     *
+     * @param mac the 48-bit MAC address looked up
+     * @param index the registry index of its OUI
+     */
+    default void fallback(long mac, int index) {}
+
+    /**
+     * Called when a lookup finds no OUI for a MAC address.
+     *
+     * @param mac the 48-bit MAC address looked up
+     */
+    default void miss(long mac) {}
+
+    /**
+     * Called when OuiRegistry.format(String) is given something that is not
+     * a MAC address.
+     *
+     * @param s the string that could not be parsed
+     */
+    default void parseFailure(CharSequence s) {}
+
+    /**
+     * Called when a registry has been loaded, before it is made available.
+     *
+     * @param registry the registry
+     * @param nanos the time taken to load the registry, in nanoseconds
+     * @param reload true if the registry replaces an earlier one (e.g. it
+     * was loaded by ReloadableOuiRegistry.reload() or OuiRegistry.applyDelta())
+     */
+    default void loaded(OuiRegistry registry, long nanos, boolean reload) {}
+}
@@ -0,0 +1,129 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An OuiRegistryListener that counts lookup outcomes and records registry
+ * loads.  Counters are striped LongAdders, so threads performing lookups
+ * concurrently do not contend with one another.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class OuiRegistryMetrics implements OuiRegistryListener {
+
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _fallbacks = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _parseFailures = new LongAdder();
+    private final LongAdder _loads = new LongAdder();
+    private final LongAdder _loadNanos = new LongAdder();
+
+    private volatile long _lastLoadNanos;
+    private volatile int _size;
+
+    @Override
+    public void hit(long mac, int index) { _hits.increment(); }
+
+    @Override
+    public void fallback(long mac, int index) { _fallbacks.increment(); }
+
+    @Override
+    public void miss(long mac) { _misses.increment(); }
+
+    @Override
+    public void parseFailure(CharSequence s) { _parseFailures.increment(); }
+
+    @Override
+    public void loaded(OuiRegistry registry, long nanos, boolean reload) {
+        _lastLoadNanos = nanos;
+        _size = registry.size();
+        _loadNanos.add(nanos);
+        _loads.increment();
+    }
+
+    /**
+     * Returns the number of lookups that found an OUI directly
+     * @return the number of lookups that found an OUI directly
+     */
+    public long getHits() { return _hits.sum(); }
+
+    /**
+     * Returns the number of lookups that found an OUI only after clearing
+     * the locally administered and multicast bits
+     * @return the number of lookups that found an OUI after clearing the local and multicast bits
+     */
+    public long getFallbacks() { return _fallbacks.sum(); }
+
+    /**
+     * Returns the number of lookups that found no OUI
+     * @return the number of lookups that found no OUI
+     */
+    public long getMisses() { return _misses.sum(); }
+
+    /**
+     * Returns the number of strings given to OuiRegistry.format(String) that
+     * were not MAC addresses
+     * @return the number of strings that could not be parsed
+     */
+    public long getParseFailures() { return _parseFailures.sum(); }
+
+    /**
+     * Returns the number of registries loaded, including reloads
+     * @return the number of registries loaded
+     */
+    public long getLoads() { return _loads.sum(); }
+
+    /**
+     * Returns the total time spent loading registries, in nanoseconds
+     * @return the total time spent loading registries, in nanoseconds
+     */
+    public long getTotalLoadNanos() { return _loadNanos.sum(); }
+
+    /**
+     * Returns the time taken by the most recent load, in nanoseconds
+     * @return the time taken by the most recent load, in nanoseconds
+     */
+    public long getLastLoadNanos() { return _lastLoadNanos; }
+
+    /**
+     * Returns the size of the most recently loaded registry
+     * @return the size of the most recently loaded registry
+     */
+    public int getSize() { return _size; }
+
+    /**
+     * Resets the lookup and parse failure counts to zero.  Lookups
+     * performed concurrently with reset() may or may not be counted.
+     */
+    public void reset() {
+        _hits.reset();
+        _fallbacks.reset();
+        _misses.reset();
+        _parseFailures.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d fallbacks=%d misses=%d parseFailures=%d loads=%d lastLoadMillis=%.3f size=%d",
+                getHits(), getFallbacks(), getMisses(), getParseFailures(), getLoads(), getLastLoadNanos() / 1e6, getSize());
+    }
+}
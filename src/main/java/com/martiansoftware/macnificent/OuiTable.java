@@ -0,0 +1,96 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Storage behind an OuiRegistry: a fixed set of OUIs, each identified by a
+ * dense position from 0 to size() - 1, plus the timestamp of the data they
+ * were loaded from.  Implementations are immutable once constructed and
+ * must be safe for concurrent readers.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+abstract class OuiTable {
+
+    /**
+     * Returned by lookup() when an OUI is not present.
+     */
+    static final int NOT_FOUND = -1;
+
+    private final long _lastModified;
+
+    OuiTable(long lastModified) {
+        _lastModified = lastModified;
+    }
+
+    /**
+     * Returns the timestamp of the data this table was loaded from
+     * @return the timestamp of the data this table was loaded from
+     */
+    final long lastModified() { return _lastModified; }
+
+    /**
+     * Returns the number of OUIs in this table
+     * @return the number of OUIs in this table
+     */
+    abstract int size();
+
+    /**
+     * Returns the position of the OUI with the longest prefix matching the
+     * specified MAC address, or NOT_FOUND.
+     *
+     * @param mac a 48-bit MAC address
+     * @return the position of the matching OUI, or NOT_FOUND
+     */
+    abstract int lookup(long mac);
+
+    /**
+     * Returns the Oui at the specified position.
+     *
+     * @param index a position from 0 to size() - 1
+     * @return the Oui at the specified position
+     */
+    abstract Oui ouiAt(int index);
+
+    /**
+     * Returns the short name of the Oui at the specified position.
+     * Implementations that do not hold Oui objects may override this to
+     * avoid creating one.
+     *
+     * @param index a position from 0 to size() - 1
+     * @return the short name of the Oui at the specified position
+     */
+    String shortNameAt(int index) {
+        return ouiAt(index).getShortName();
+    }
+
+    /**
+     * Returns all of the OUIs in this table, in position order.
+     * @return all of the OUIs in this table
+     */
+    List<Oui> ouis() {
+        List<Oui> result = new ArrayList<Oui>(size());
+        for (int i = 0; i < size(); ++i) result.add(ouiAt(i));
+        return result;
+    }
+}
@@ -0,0 +1,193 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+/**
+ * A compact multibit trie for longest-prefix matching of MAC addresses
+ * against IEEE assignments of 24 (MA-L, CID), 28 (MA-M) and 36 (MA-S, IAB)
+ * bits.  The first 24 bits are located via an OuiIndex; the next 4 and 8
+ * bits index directly into small child nodes.  A lookup therefore costs
+ * one hash probe plus at most four array reads, however many assignments
+ * are present.
+ *
+ * Each assignment is identified by a non-negative entry number supplied by
+ * the caller.  Values stored in the root index and in node slots are either
+ * a leaf (entry &lt;&lt; 1) or a reference to a child node ((offset &lt;&lt; 1) | 1).
+ * The first int of every node holds the entry for the node's own prefix, or
+ * NOT_FOUND.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+final class PrefixTrie {
+
+    static final int NOT_FOUND = -1;
+
+    /**
+     * Supported prefix lengths, in bits
+     */
+    static final int MA_L = 24, MA_M = 28, MA_S = 36;
+
+    /**
+     * Number of slots in a node below the 24-bit and 28-bit levels
+     */
+    private static final int SLOTS_24 = 1 << (MA_M - MA_L), SLOTS_28 = 1 << (MA_S - MA_M);
+
+    /**
+     * Maps each 24-bit OUI to a leaf or node value
+     */
+    private final OuiIndex _roots;
+
+    private int[] _nodes = new int[64];
+    private int _nodesUsed = 0;
+
+    /**
+     * Creates a new, empty PrefixTrie
+     * @param expectedSize the number of distinct 24-bit prefixes expected
+     */
+    PrefixTrie(int expectedSize) {
+        _roots = new OuiIndex(expectedSize);
+    }
+
+    /**
+     * Indicates whether the specified prefix length is supported
+     * @param length a prefix length in bits
+     * @return true if the prefix length is supported
+     */
+    static boolean isSupportedLength(int length) {
+        return length == MA_L || length == MA_M || length == MA_S;
+    }
+
+    /**
+     * Returns a mask with the specified number of high bits of a 48-bit MAC set
+     * @param length the prefix length in bits
+     * @return the prefix mask
+     */
+    static long mask(int length) {
+        return MacAddress.MAC_MASK & ~(MacAddress.MAC_MASK >>> length);
+    }
+
+    private static boolean isNode(int value) { return (value & 1) != 0; }
+    private static int leaf(int entry) { return entry << 1; }
+    private static int node(int offset) { return (offset << 1) | 1; }
+
+    private int newNode(int slots, int self) {
+        if (_nodesUsed + 1 + slots > _nodes.length) {
+            _nodes = java.util.Arrays.copyOf(_nodes, Math.max(2 * _nodes.length, _nodesUsed + 1 + slots));
+        }
+        int result = _nodesUsed;
+        _nodes[result] = self;
+        java.util.Arrays.fill(_nodes, result + 1, result + 1 + slots, NOT_FOUND);
+        _nodesUsed += 1 + slots;
+        return result;
+    }
+
+    /**
+     * Returns the offset of the node below the specified 24-bit OUI, creating it if needed
+     */
+    private int rootNode(int oui) {
+        int v = _roots.get(oui);
+        if (v != OuiIndex.NOT_FOUND && isNode(v)) return v >>> 1;
+        int result = newNode(SLOTS_24, v == OuiIndex.NOT_FOUND ? NOT_FOUND : v >>> 1);
+        _roots.put(oui, node(result));
+        return result;
+    }
+
+    /**
+     * Adds an assignment, replacing any existing assignment of the same
+     * prefix and length.
+     *
+     * @param prefix the 48-bit prefix; bits beyond the prefix length are ignored
+     * @param length the prefix length: 24, 28 or 36
+     * @param entry the (non-negative) entry number to associate with the prefix
+     * @return the entry previously associated with the prefix, or NOT_FOUND
+     */
+    int put(long prefix, int length, int entry) {
+        int oui = MacAddress.oui(prefix);
+        if (length == MA_L) {
+            int v = _roots.get(oui);
+            if (v != OuiIndex.NOT_FOUND && isNode(v)) {
+                int result = _nodes[v >>> 1];
+                _nodes[v >>> 1] = entry;
+                return result;
+            }
+            int result = _roots.put(oui, leaf(entry));
+            return result == OuiIndex.NOT_FOUND ? NOT_FOUND : result >>> 1;
+        }
+
+        int slot = rootNode(oui) + 1 + nibble(prefix);
+        int v = _nodes[slot];
+        if (length == MA_M) {
+            if (v != NOT_FOUND && isNode(v)) {
+                int result = _nodes[v >>> 1];
+                _nodes[v >>> 1] = entry;
+                return result;
+            }
+            _nodes[slot] = leaf(entry);
+            return v == NOT_FOUND ? NOT_FOUND : v >>> 1;
+        }
+
+        if (length != MA_S) throw new IllegalArgumentException("Unsupported prefix length: " + length);
+        if (v == NOT_FOUND || !isNode(v)) {
+            int n = newNode(SLOTS_28, v == NOT_FOUND ? NOT_FOUND : v >>> 1);
+            _nodes[slot] = node(n); // note newNode may have reallocated _nodes
+            v = _nodes[slot];
+        }
+        slot = (v >>> 1) + 1 + octet(prefix);
+        int result = _nodes[slot];
+        _nodes[slot] = leaf(entry);
+        return result == NOT_FOUND ? NOT_FOUND : result >>> 1;
+    }
+
+    /**
+     * Bits 24-27 of a 48-bit MAC
+     */
+    private static int nibble(long mac) {
+        return (int) (mac >>> 20) & 0xf;
+    }
+
+    /**
+     * Bits 28-35 of a 48-bit MAC
+     */
+    private static int octet(long mac) {
+        return (int) (mac >>> 12) & 0xff;
+    }
+
+    /**
+     * Returns the entry for the longest prefix matching the specified MAC
+     * address, or NOT_FOUND.
+     *
+     * @param mac a 48-bit MAC address
+     * @return the entry of the longest matching prefix, or NOT_FOUND
+     */
+    int lookup(long mac) {
+        int v = _roots.get(MacAddress.oui(mac));
+        if (v == OuiIndex.NOT_FOUND || !isNode(v)) return v >> 1; // -1 >> 1 == NOT_FOUND
+        int[] nodes = _nodes;
+        int n = v >>> 1;
+        int best = nodes[n];
+        v = nodes[n + 1 + nibble(mac)];
+        if (v == NOT_FOUND) return best;
+        if (!isNode(v)) return v >>> 1;
+        n = v >>> 1;
+        if (nodes[n] != NOT_FOUND) best = nodes[n];
+        v = nodes[n + 1 + octet(mac)];
+        return v == NOT_FOUND ? best : v >>> 1;
+    }
+}
@@ -0,0 +1,359 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Parses the IEEE registry listings used by GenerateDataFile directly from
+ * their UTF-8 bytes, without regular expressions or intermediate Strings
+ * other than the manufacturer names themselves.
+ *
+ * Two formats are understood.  The <b>text</b> format is that of oui.txt,
+ * mam.txt, oui36.txt, iab.txt and cid.txt, in which each assignment is a
+ * blank-line-separated record such as:
+ * <pre>
+ *   00-22-72   (hex)		American Micro-Fuel Device Corp.
+ *   002272     (base 16)		American Micro-Fuel Device Corp.
+ *   				2181 Buchanan Loop
+ * </pre>
+ * or, for assignments smaller than an OUI, a "(hex)" line giving the OUI
+ * followed by a range such as "F2F000-F2FFFF (base 16)".  The <b>CSV</b>
+ * format is that of oui.csv, mam.csv, oui36.csv and so on, whose header
+ * begins "Registry," and in which the number of hex digits in the
+ * Assignment column gives the prefix length.  CSV records may not span lines.
+ *
+ * Because records never span a blank line (text) or a line (CSV), large
+ * inputs can be split into chunks with split() and parsed independently.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+final class RegistryParser implements Callable<RegistryParser> {
+
+    private static final byte[] BASE16 = ascii("(base 16)");
+    private static final byte[] HEX = ascii("(hex)");
+    private static final byte[] CSV_HEADER = ascii("Registry,");
+
+    private final byte[] _data;
+    private final int _start, _end;
+    private final boolean _csv;
+
+    /**
+     * Scratch space for csvField()
+     */
+    private final int[] _field = new int[3];
+
+    private final List<Oui> _ouis = new ArrayList<Oui>();
+    private final List<String> _warnings = new ArrayList<String>();
+    private final List<Integer> _warningLines = new ArrayList<Integer>();
+    private int _lines;
+
+    /**
+     * Creates a new RegistryParser for the specified range of data.  The
+     * range should begin at the start of the data or at a boundary returned
+     * by split().
+     *
+     * @param data the registry data
+     * @param start the offset of the first byte to parse
+     * @param end the offset after the last byte to parse
+     * @param csv true if the data is in CSV format rather than text
+     */
+    RegistryParser(byte[] data, int start, int end, boolean csv) {
+        _data = data;
+        _start = start;
+        _end = end;
+        _csv = csv;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Indicates whether the specified data is in CSV format, i.e. begins
+     * with the IEEE CSV header (after an optional UTF-8 byte order mark)
+     */
+    static boolean isCsv(byte[] data) {
+        return startsWith(data, skipBom(data), data.length, CSV_HEADER);
+    }
+
+    private static int skipBom(byte[] data) {
+        return data.length >= 3 && (data[0] & 0xff) == 0xef && (data[1] & 0xff) == 0xbb && (data[2] & 0xff) == 0xbf ? 3 : 0;
+    }
+
+    /**
+     * Splits data into at most the specified number of roughly equal ranges
+     * that can be parsed independently.
+     *
+     * @param data the registry data
+     * @param chunks the desired number of ranges
+     * @param csv true if the data is in CSV format rather than text
+     * @return the range boundaries: range i runs from result[i] to result[i + 1]
+     */
+    static int[] split(byte[] data, int chunks, boolean csv) {
+        int[] result = new int[chunks + 1];
+        int n = 0;
+        result[n++] = 0;
+        for (int i = 1; i < chunks; ++i) {
+            int b = csv ? nextLine(data, (int) ((long) data.length * i / chunks)) : nextRecord(data, (int) ((long) data.length * i / chunks));
+            if (b > result[n - 1] && b < data.length) result[n++] = b;
+        }
+        result[n++] = data.length;
+        return java.util.Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Returns the start of the line following pos
+     */
+    private static int nextLine(byte[] data, int pos) {
+        while (pos < data.length && data[pos++] != '\n') {}
+        return pos;
+    }
+
+    /**
+     * Returns the start of the first line at or after pos that follows a blank line
+     */
+    private static int nextRecord(byte[] data, int pos) {
+        pos = nextLine(data, pos);
+        while (pos < data.length) {
+            int eol = nextLine(data, pos);
+            boolean blank = true;
+            for (int i = pos; i < eol && blank; ++i) blank = MacAddressParser.isSpace(data[i]);
+            pos = eol;
+            if (blank) return pos;
+        }
+        return pos;
+    }
+
+    /**
+     * Parses the data range, returning this parser for access to the results.
+     *
+     * @return this RegistryParser
+     */
+    @Override
+    public RegistryParser call() {
+        int currentOui = -1; // from the most recent "(hex)" line
+        int pos = _start == 0 ? skipBom(_data) : _start;
+        while (pos < _end) {
+            int eol = pos;
+            while (eol < _end && _data[eol] != '\n') ++eol;
+            int next = eol + 1;
+            if (eol > pos && _data[eol - 1] == '\r') --eol;
+            ++_lines;
+            if (_csv) {
+                parseCsvLine(pos, eol);
+            } else {
+                currentOui = parseTextLine(pos, eol, currentOui);
+            }
+            pos = next;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the assignments found, in the order they were found
+     */
+    List<Oui> ouis() { return _ouis; }
+
+    /**
+     * Returns the lines containing unrecognized assignments
+     */
+    List<String> warnings() { return _warnings; }
+
+    /**
+     * Returns the line number of each warning within the range parsed,
+     * starting at 1
+     */
+    List<Integer> warningLines() { return _warningLines; }
+
+    /**
+     * Returns the number of lines parsed
+     */
+    int lines() { return _lines; }
+
+    private void warn(int start, int end) {
+        _warnings.add(utf8(start, end));
+        _warningLines.add(_lines);
+    }
+
+    /**
+     * Parses a single line of the text format, returning the new current OUI
+     */
+    private int parseTextLine(int start, int end, int currentOui) {
+        int i = skipSpace(start, end);
+        int digits = hexDigits(i, end);
+        if (digits == 6 && (i + 6 == end || _data[i + 6] != '-')) {
+            // "002272     (base 16)		American Micro-Fuel Device Corp."
+            int name = afterLabel(i + 6, end, BASE16);
+            if (name >= 0) _ouis.add(new Oui(hex(i, 6) << 24, PrefixTrie.MA_L, utf8(name, end)));
+        } else if (digits == 2 && isHexPair(i + 3, end) && isHexPair(i + 6, end) && _data[i + 2] == '-' && _data[i + 5] == '-') {
+            // "00-22-72   (hex)		American Micro-Fuel Device Corp."
+            if (afterLabel(i + 8, end, HEX) >= 0) currentOui = (int) (hex(i, 2) << 16 | hex(i + 3, 2) << 8 | hex(i + 6, 2));
+        } else if (digits == 6 && hexDigits(i + 7, end) == 6) {
+            // "F2F000-F2FFFF     (base 16)		Elsist Srl"
+            int name = afterLabel(i + 13, end, BASE16);
+            if (name >= 0) {
+                Oui block = currentOui < 0 ? null : parseRange(currentOui, hex(i, 6), hex(i + 7, 6), utf8(name, end));
+                if (block == null) {
+                    warn(start, end);
+                } else {
+                    _ouis.add(block);
+                }
+            }
+        }
+        return currentOui;
+    }
+
+    /**
+     * Parses a single line of the CSV format
+     */
+    private void parseCsvLine(int start, int end) {
+        if (start == end || startsWith(_data, start, end, CSV_HEADER)) return;
+        int[] field = _field;
+        int i = csvField(start, end, field); // Registry
+        if (i >= 0) i = csvField(i, end, field); // Assignment
+        int from = field[0], digits = field[1] - field[0], length = digits * 4;
+        if (i < 0 || hexDigits(from, field[1]) != digits || !PrefixTrie.isSupportedLength(length)) {
+            warn(start, end);
+            return;
+        }
+        csvField(i, end, field); // Organization Name
+        if (field[2] < 0) {
+            warn(start, end);
+            return;
+        }
+        long prefix = hex(from, digits) << (48 - length);
+        _ouis.add(new Oui(prefix, length, csvValue(field)));
+    }
+
+    /**
+     * Locates the CSV field starting at i, storing its content bounds in
+     * field[0] and field[1] and whether it contains escaped quotes in
+     * field[2] (1, or 0 if not, or -1 if the field is malformed).  Returns the
+     * start of the next field, or -1 if this is the last field on the line.
+     */
+    private int csvField(int i, int end, int[] field) {
+        if (i < end && _data[i] == '"') {
+            field[0] = ++i;
+            field[2] = 0;
+            while (true) {
+                if (i >= end) {
+                    field[1] = end;
+                    field[2] = -1;
+                    return -1;
+                }
+                if (_data[i] == '"') {
+                    if (i + 1 < end && _data[i + 1] == '"') {
+                        field[2] = 1;
+                        i += 2;
+                        continue;
+                    }
+                    field[1] = i++;
+                    return i < end && _data[i] == ',' ? i + 1 : -1;
+                }
+                ++i;
+            }
+        }
+        field[0] = i;
+        field[2] = 0;
+        while (i < end && _data[i] != ',') ++i;
+        field[1] = i;
+        return i < end ? i + 1 : -1;
+    }
+
+    private String csvValue(int[] field) {
+        String s = utf8(field[0], field[1]).trim();
+        return field[2] == 1 ? s.replace("\"\"", "\"") : s;
+    }
+
+    /**
+     * Parses the low 24 bits of an assignment range such as F2F000-F2FFFF
+     * (which follows a "(hex)" line giving the enclosing OUI) into a prefix
+     * within that OUI, or returns null if the range is not a valid block.
+     *
+     * @param oui the enclosing 24-bit OUI
+     * @param lo the first address in the range
+     * @param hi the last address in the range
+     * @param manufacturer the manufacturer name
+     * @return the assignment, or null if the range is not a valid block
+     */
+    static Oui parseRange(int oui, long lo, long hi, String manufacturer) {
+        long size = hi - lo + 1;
+        if (size <= 0 || (size & (size - 1)) != 0 || (lo & (size - 1)) != 0) return null;
+        int length = 48 - Long.numberOfTrailingZeros(size);
+        if (!PrefixTrie.isSupportedLength(length)) return null;
+        return new Oui(((long) oui << 24) | lo, length, manufacturer);
+    }
+
+    private int skipSpace(int i, int end) {
+        while (i < end && MacAddressParser.isSpace(_data[i])) ++i;
+        return i;
+    }
+
+    /**
+     * Returns the number of consecutive hex digits starting at i
+     */
+    private int hexDigits(int i, int end) {
+        int start = i;
+        while (i < end && MacAddressParser.hexValue(_data[i] & 0xff) >= 0) ++i;
+        return i - start;
+    }
+
+    private boolean isHexPair(int i, int end) {
+        return i + 2 <= end && hexDigits(i, i + 2) == 2 && (i + 2 == end || MacAddressParser.hexValue(_data[i + 2] & 0xff) < 0);
+    }
+
+    /**
+     * Returns the value of the specified number of hex digits starting at i,
+     * which the caller has already checked
+     */
+    private long hex(int i, int digits) {
+        long result = 0;
+        for (int end = i + digits; i < end; ++i) result = result << 4 | MacAddressParser.hexValue(_data[i] & 0xff);
+        return result;
+    }
+
+    /**
+     * If the bytes at i are whitespace followed by the label and more
+     * whitespace, returns the position after that whitespace; otherwise -1.
+     */
+    private int afterLabel(int i, int end, byte[] label) {
+        int j = skipSpace(i, end);
+        if (j == i || !startsWith(_data, j, end, label)) return -1;
+        i = j + label.length;
+        j = skipSpace(i, end);
+        return j == i ? -1 : j;
+    }
+
+    private static boolean startsWith(byte[] data, int i, int end, byte[] prefix) {
+        if (end - i < prefix.length) return false;
+        for (int j = 0; j < prefix.length; ++j) {
+            if (data[i + j] != prefix[j]) return false;
+        }
+        return true;
+    }
+
+    private String utf8(int start, int end) {
+        return new String(_data, start, end - start, StandardCharsets.UTF_8);
+    }
+}
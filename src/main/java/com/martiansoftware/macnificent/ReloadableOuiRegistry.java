@@ -0,0 +1,309 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An OuiRegistry facade that can pick up a new data file without
+ * restarting the application.  The current registry is held as an immutable
+ * snapshot behind a single volatile reference; reloading builds a complete
+ * new snapshot and then swaps it in, so readers never block and never see
+ * a partially loaded registry.
+ *
+ * Reloads happen on an explicit call to reload() or, after startWatching()
+ * has been called, on a background thread whenever the data file changes.
+ * If a reload fails (e.g. because the file is only partly written) the
+ * previous snapshot remains in place and the failure is available from
+ * getLastError().
+ *
+ * Data files are read onto the heap rather than memory-mapped, so that
+ * rewriting the file in place cannot disturb a snapshot in use.  Callers
+ * that need several consistent answers (e.g. an index from indexOf() and
+ * the Oui from getOuiByIndex()) should obtain a snapshot via current() and
+ * use it throughout.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class ReloadableOuiRegistry implements Closeable {
+
+    /**
+     * How long the data file must go unmodified before a watched change is
+     * reloaded, so that a file being written is not loaded piecemeal.
+     */
+    static final long SETTLE_MILLIS = 250;
+
+    private final File _dataFile;
+
+    private final OuiRegistryListener _listener;
+
+    private volatile OuiRegistry _current;
+
+    private volatile Exception _lastError;
+
+    private WatchService _watchService;
+
+    /**
+     * Creates a new ReloadableOuiRegistry and loads the specified data file,
+     * which may be in any format accepted by OuiRegistry(InputStream).
+     *
+     * @param dataFile the data file to load
+     * @throws IOException if the data file cannot be loaded
+     */
+    public ReloadableOuiRegistry(File dataFile) throws IOException {
+        this(dataFile, null);
+    }
+
+    /**
+     * Creates a new ReloadableOuiRegistry as ReloadableOuiRegistry(File)
+     * does, whose snapshots all notify the specified listener.
+     *
+     * @param dataFile the data file to load
+     * @param listener the listener to notify (may be null)
+     * @throws IOException if the data file cannot be loaded
+     */
+    public ReloadableOuiRegistry(File dataFile, OuiRegistryListener listener) throws IOException {
+        _dataFile = dataFile.getAbsoluteFile();
+        _listener = listener;
+        _current = load(false);
+    }
+
+    private OuiRegistry load(boolean reload) throws IOException {
+        long start = System.nanoTime();
+        InputStream in = new BufferedInputStream(new FileInputStream(_dataFile));
+        try {
+            return new OuiRegistry(start, OuiDataFile.read(in), _listener, reload);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the current registry snapshot.  The snapshot never changes,
+     * though later calls may return a newer one.
+     *
+     * @return the current registry snapshot
+     */
+    public OuiRegistry current() {
+        return _current;
+    }
+
+    /**
+     * Reloads the data file and, if successful, makes it the current snapshot.
+     *
+     * @return the new snapshot
+     * @throws IOException if the data file cannot be loaded, in which case
+     * the current snapshot is unchanged
+     */
+    public synchronized OuiRegistry reload() throws IOException {
+        try {
+            OuiRegistry result = load(true);
+            _current = result;
+            _lastError = null;
+            return result;
+        } catch (IOException e) {
+            _lastError = e;
+            throw e;
+        } catch (RuntimeException e) {
+            _lastError = e;
+            throw e;
+        }
+    }
+
+    /**
+     * Applies a delta (as written by GenerateDataFile --diff) to the current
+     * snapshot and, if successful, makes the result the current snapshot.
+     * Note that a later reload() will replace the result with the contents
+     * of the data file.
+     *
+     * @param delta the delta source, which is read but not closed
+     * @return the new snapshot
+     * @throws IOException if the delta cannot be read or does not apply to
+     * the current snapshot, in which case the current snapshot is unchanged
+     */
+    public synchronized OuiRegistry applyDelta(InputStream delta) throws IOException {
+        try {
+            OuiRegistry result = _current.applyDelta(delta);
+            _current = result;
+            _lastError = null;
+            return result;
+        } catch (IOException e) {
+            _lastError = e;
+            throw e;
+        } catch (RuntimeException e) {
+            _lastError = e;
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the exception that caused the most recent reload or delta to
+     * fail, or null if the most recent one succeeded.
+     *
+     * @return the exception from the most recent failed reload or delta, or
+     * null
+     */
+    public Exception getLastError() {
+        return _lastError;
+    }
+
+    /**
+     * Starts watching the data file for changes on a daemon thread,
+     * reloading it each time it changes.  Has no effect if already watching.
+     *
+     * @return this ReloadableOuiRegistry
+     * @throws IOException if the file cannot be watched
+     */
+    public synchronized ReloadableOuiRegistry startWatching() throws IOException {
+        if (_watchService != null) return this;
+        Path dir = _dataFile.getParentFile().toPath();
+        final WatchService ws = dir.getFileSystem().newWatchService();
+        dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        _watchService = ws;
+
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch(ws);
+            }
+        }, "macnificent-watcher: " + _dataFile.getName());
+        t.setDaemon(true);
+        t.start();
+        return this;
+    }
+
+    private void watch(WatchService ws) {
+        Path name = _dataFile.toPath().getFileName();
+        try {
+            while (true) {
+                if (!isDataFileEvent(ws.take(), name)) continue;
+                // wait for the file to settle before reloading
+                for (WatchKey k = ws.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS); k != null; k = ws.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) {
+                    isDataFileEvent(k, name);
+                }
+                try {
+                    reload();
+                } catch (Exception e) {
+                    // recorded by reload(); keep the previous snapshot and wait for the next change
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // stopped
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+
+    /**
+     * Consumes a WatchKey's events, returning true if any concern the data file
+     */
+    private static boolean isDataFileEvent(WatchKey key, Path name) {
+        boolean result = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            result |= event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context());
+        }
+        key.reset();
+        return result;
+    }
+
+    /**
+     * Stops watching the data file, if startWatching() was called.  The
+     * current snapshot remains usable.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (_watchService != null) {
+            _watchService.close();
+            _watchService = null;
+        }
+    }
+
+    /**
+     * See OuiRegistry.getLastModified()
+     * @return a Date representing the last change to the current OUI registry data
+     */
+    public Date getLastModified() { return _current.getLastModified(); }
+
+    /**
+     * See OuiRegistry.size()
+     * @return the number of OUIs contained by the current registry
+     */
+    public int size() { return _current.size(); }
+
+    /**
+     * See OuiRegistry.getOui(MacAddress)
+     * @param mac the MacAddress providing the OUI to retrieve
+     * @return the requested OUI, or null if not found
+     */
+    public Oui getOui(MacAddress mac) { return _current.getOui(mac); }
+
+    /**
+     * See OuiRegistry.getOui(long)
+     * @param mac the 48-bit MAC address providing the OUI to retrieve
+     * @return the requested OUI, or null if not found
+     */
+    public Oui getOui(long mac) { return _current.getOui(mac); }
+
+    /**
+     * See OuiRegistry.format(MacAddress)
+     * @param mac the MacAddress to format
+     * @return the reformatted MacAddress using the manufacturer's short name
+     */
+    public String format(MacAddress mac) { return _current.format(mac); }
+
+    /**
+     * See OuiRegistry.format(long)
+     * @param mac the 48-bit MAC address to format
+     * @return the reformatted MAC address using the manufacturer's short name
+     */
+    public String format(long mac) { return _current.format(mac); }
+
+    /**
+     * See OuiRegistry.format(String)
+     * @param macString the MacAddress to format
+     * @return the reformatted macString using the manufacturer's short name,
+     * or the original, unmodified macString if it's not actually a valid MAC.
+     */
+    public String format(String macString) { return _current.format(macString); }
+
+    /**
+     * See OuiRegistry.formatTo(long, Appendable, MacAddressStyle)
+     * @param mac the 48-bit MAC address to format
+     * @param out the destination
+     * @param style the style in which to format the non-OUI portion of the MAC
+     * @throws IOException if thrown by the Appendable
+     */
+    public void formatTo(long mac, Appendable out, MacAddressStyle style) throws IOException {
+        _current.formatTo(mac, out, style);
+    }
+}
@@ -0,0 +1,189 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Derives the short manufacturer names used by OuiRegistry.format(), and
+ * applies operator-supplied overrides to them when GenerateDataFile builds a
+ * data file.
+ *
+ * Overrides are read from a rules file in which each line has the form
+ * <pre>
+ *   Hewlett Packard Enterprise = HPE
+ *   Cisco Systems* = Cisco
+ * </pre>
+ * The left-hand side is matched against the full manufacturer name, ignoring
+ * case; if it ends in '*' it matches any name that starts with the rest of
+ * it.  The first matching rule wins.  Blank lines and lines starting with '#'
+ * are ignored.
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+final class ShortNames {
+
+    private final List<String> _patterns = new ArrayList<String>();
+    private final List<Boolean> _wildcards = new ArrayList<Boolean>();
+    private final List<String> _shortNames = new ArrayList<String>();
+
+    /**
+     * Creates a new ShortNames with no rules.
+     */
+    ShortNames() {}
+
+    /**
+     * Reads rules from the specified source.
+     *
+     * @param in the rules source, which is read but not closed
+     * @return the rules
+     * @throws IOException if the rules cannot be read or are not valid
+     */
+    static ShortNames read(Reader in) throws IOException {
+        ShortNames result = new ShortNames();
+        BufferedReader r = new BufferedReader(in);
+        int lineNumber = 0;
+        for (String line = r.readLine(); line != null; line = r.readLine()) {
+            ++lineNumber;
+            String s = line.trim();
+            if (s.isEmpty() || s.startsWith("#")) continue;
+            int eq = s.lastIndexOf('=');
+            String pattern = eq < 0 ? "" : s.substring(0, eq).trim();
+            String shortName = eq < 0 ? "" : s.substring(eq + 1).trim();
+            if (pattern.isEmpty() || shortName.isEmpty()) {
+                throw new IOException("Invalid short name rule on line " + lineNumber + ": " + line);
+            }
+            result.add(pattern, shortName);
+        }
+        return result;
+    }
+
+    /**
+     * Adds a rule.
+     *
+     * @param pattern the manufacturer name to match, ending in '*' to match
+     * any name starting with the rest of it
+     * @param shortName the short name to use for matching manufacturers
+     */
+    void add(String pattern, String shortName) {
+        boolean wildcard = pattern.endsWith("*");
+        if (wildcard) pattern = pattern.substring(0, pattern.length() - 1);
+        _patterns.add(pattern.toLowerCase(Locale.ROOT));
+        _wildcards.add(wildcard);
+        _shortNames.add(shortName);
+    }
+
+    /**
+     * Returns the number of rules
+     */
+    int size() { return _patterns.size(); }
+
+    /**
+     * Returns the short name given by the first rule that matches the
+     * specified manufacturer, or null if none match.
+     *
+     * @param manufacturer the full manufacturer name
+     * @return the short name given by the first matching rule, or null
+     */
+    String override(String manufacturer) {
+        String m = manufacturer.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < _patterns.size(); ++i) {
+            if (_wildcards.get(i) ? m.startsWith(_patterns.get(i)) : m.equals(_patterns.get(i))) return _shortNames.get(i);
+        }
+        return null;
+    }
+
+    /**
+     * Applies the rules to the specified assignments.
+     *
+     * @param ouis the assignments
+     * @return the assignments, with matching ones replaced by copies that
+     * have the overriding short name
+     */
+    List<Oui> apply(List<Oui> ouis) {
+        List<Oui> result = new ArrayList<Oui>(ouis.size());
+        for (Oui oui : ouis) {
+            String shortName = override(oui.getManufacturer());
+            result.add(shortName == null || shortName.equals(oui.getShortName()) ? oui
+                    : new Oui(oui.getPrefix(), oui.getPrefixLength(), oui.getManufacturer(), shortName));
+        }
+        return result;
+    }
+
+    /**
+     * Derives a short name from a manufacturer name by taking its first word
+     * (ignoring "The"), removing any trailing characters that are not ASCII
+     * letters, and then removing any periods to collapse acronyms.  If that
+     * leaves nothing, returns "Unknown-aa-bb-cc" where aa-bb-cc is the OUI.
+     *
+     * @param manufacturer the full manufacturer name
+     * @param oui the 24-bit OUI
+     * @return the derived short name
+     */
+    static String derive(String manufacturer, int oui) {
+        int n = manufacturer.length();
+        int start = 0, end = wordEnd(manufacturer, 0);
+        if (end - start == 3 && manufacturer.regionMatches(true, 0, "The", 0, 3)) {
+            start = end;
+            while (start < n && MacAddressParser.isSpace(manufacturer.charAt(start))) ++start;
+            end = wordEnd(manufacturer, start);
+        }
+        while (end > start && !isAsciiLetter(manufacturer.charAt(end - 1))) --end;
+
+        StringBuilder result = null;
+        for (int i = start; i < end; ++i) {
+            if (manufacturer.charAt(i) == '.') {
+                if (result == null) result = new StringBuilder(manufacturer.substring(start, i));
+            } else if (result != null) {
+                result.append(manufacturer.charAt(i));
+            }
+        }
+        String s = result == null ? manufacturer.substring(start, end) : result.toString();
+        return s.isEmpty() ? unknown(oui) : s;
+    }
+
+    private static int wordEnd(String s, int i) {
+        while (i < s.length() && !MacAddressParser.isSpace(s.charAt(i))) ++i;
+        return i;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * Returns the short name used for an OUI whose manufacturer name yields
+     * none, e.g. "Unknown-00-21-9b"
+     */
+    static String unknown(int oui) {
+        StringBuilder buf = new StringBuilder("Unknown");
+        try {
+            for (int shift = 16; shift >= 0; shift -= 8) Hex.appendByte(buf.append('-'), oui >>> shift);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringBuilder doesn't throw
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,136 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class AsyncOuiRegistryTest extends TestCase {
+
+    public AsyncOuiRegistryTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Tests that the facade answers "Unknown" until loading completes, and
+     * from the loaded registry afterwards.
+     */
+    public void testBeforeAndAfterLoad() throws Exception {
+        System.out.println("beforeAndAfterLoad");
+        CompletableFuture<OuiRegistry> loading = new CompletableFuture<OuiRegistry>();
+        AsyncOuiRegistry reg = new AsyncOuiRegistry(loading);
+        CompletableFuture<OuiRegistry> ready = reg.whenReady();
+
+        assertFalse(reg.isReady());
+        assertNull(reg.getLastError());
+        assertEquals(0, reg.size());
+        assertNull(reg.getOui(new MacAddress(TestConstants.TEST_MAC)));
+        assertNull(reg.getOui(TestConstants.TEST_MAC_LONG));
+        assertEquals("Unknown-00-21-9b-07:20:74", reg.format(TestConstants.TEST_MAC_LONG));
+        assertEquals("Unknown-00-21-9b-07:20:74", reg.format(new MacAddress(TestConstants.TEST_MAC)));
+        assertEquals("not a mac", reg.format("not a mac"));
+        assertFalse(reg.awaitReady(10, TimeUnit.MILLISECONDS));
+        assertFalse(ready.isDone());
+
+        // completing a future returned by whenReady() doesn't affect the facade
+        reg.whenReady().complete(null);
+        assertFalse(reg.isReady());
+
+        OuiRegistry loaded = new OuiRegistry();
+        loading.complete(loaded);
+        assertTrue(reg.isReady());
+        assertTrue(reg.awaitReady(0, TimeUnit.MILLISECONDS));
+        assertSame(loaded, ready.get());
+        assertSame(loaded, reg.current());
+        assertEquals(TestConstants.TEST_REGISTRY_SIZE, reg.size());
+        assertEquals(loaded.getLastModified(), reg.getLastModified());
+        assertEquals(loaded.getOui(new MacAddress(TestConstants.TEST_MAC)), reg.getOui(new MacAddress(TestConstants.TEST_MAC)));
+        assertEquals(TestConstants.TEST_MAC_FORMATTED, reg.format(new MacAddress(TestConstants.TEST_MAC)));
+        StringBuilder buf = new StringBuilder();
+        reg.formatTo(TestConstants.TEST_MAC_LONG, buf, MacAddressStyle.COLON);
+        assertEquals(TestConstants.TEST_MAC_FORMATTED, buf.toString());
+    }
+
+    /**
+     * Tests that a failed load leaves the facade answering "Unknown" and
+     * reports the failure.
+     */
+    public void testFailedLoad() throws Exception {
+        System.out.println("failedLoad");
+        CompletableFuture<OuiRegistry> loading = new CompletableFuture<OuiRegistry>();
+        AsyncOuiRegistry reg = new AsyncOuiRegistry(loading);
+        IOException failure = new IOException("no data");
+        loading.completeExceptionally(failure);
+
+        assertFalse(reg.isReady());
+        assertSame(failure, reg.getLastError());
+        assertEquals("Unknown-00-21-9b-07:20:74", reg.format(TestConstants.TEST_MAC_LONG));
+        try {
+            reg.awaitReady(1, TimeUnit.SECONDS);
+            fail("Loading failure not reported.");
+        } catch (IOException e) {
+            assertSame(failure, e);
+        }
+
+        loading = new CompletableFuture<OuiRegistry>();
+        reg = new AsyncOuiRegistry(loading);
+        loading.completeExceptionally(new IllegalStateException("broken"));
+        try {
+            reg.awaitReady(1, TimeUnit.SECONDS);
+            fail("Loading failure not reported.");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertTrue(reg.getLastError() instanceof IllegalStateException);
+    }
+
+    /**
+     * Test of the executor constructors, of class AsyncOuiRegistry.
+     */
+    public void testExecutor() throws Exception {
+        System.out.println("executor");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            AsyncOuiRegistry reg = new AsyncOuiRegistry(executor);
+            assertTrue(reg.awaitReady(30, TimeUnit.SECONDS));
+            assertEquals(TestConstants.TEST_REGISTRY_SIZE, reg.size());
+            assertEquals(TestConstants.TEST_MAC_FORMATTED, reg.format(new MacAddress(TestConstants.TEST_MAC)));
+
+            reg = new AsyncOuiRegistry(new File("no-such-file.dat"), executor);
+            try {
+                reg.awaitReady(30, TimeUnit.SECONDS);
+                fail("Loaded a missing file.");
+            } catch (IOException expected) {
+            }
+            assertEquals(0, reg.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
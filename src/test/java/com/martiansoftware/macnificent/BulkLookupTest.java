@@ -0,0 +1,161 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class BulkLookupTest extends TestCase {
+
+    private static OuiRegistry registry;
+
+    private String _err;
+
+    public BulkLookupTest(String testName) {
+        super(testName);
+    }
+
+    private static synchronized OuiRegistry registry() throws IOException {
+        if (registry == null) registry = new OuiRegistry();
+        return registry;
+    }
+
+    private static File tempInput(String content) throws IOException {
+        File f = File.createTempFile("macnificent", ".txt");
+        f.deleteOnExit();
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+
+    /**
+     * Runs a bulk lookup over content with the specified arguments,
+     * returning stdout and leaving stderr in _err
+     */
+    private String run(String content, int expectedStatus, String... args) throws Exception {
+        return run(registry(), content, expectedStatus, args);
+    }
+
+    private String run(OuiRegistry reg, String content, int expectedStatus, String... args) throws Exception {
+        String[] all = new String[args.length + 1];
+        System.arraycopy(args, 0, all, 0, args.length);
+        all[args.length] = tempInput(content).getPath();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(), err = new ByteArrayOutputStream();
+        PrintStream errStream = new PrintStream(err, true, "UTF-8");
+        assertEquals(expectedStatus, BulkLookup.fromArgs(all).run(reg, Channels.newChannel(out), errStream));
+        _err = new String(err.toByteArray(), StandardCharsets.UTF_8);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    public void testTsv() throws Exception {
+        System.out.println("tsv");
+        String out = run(TestConstants.TEST_MAC + "\n\n  not a mac\r\n0a:00:00:11:22:33\r\n", 0);
+        assertEquals("00:21:9b:07:20:74\tDell Inc\t" + TestConstants.TEST_MAC_FORMATTED + "\n"
+                   + "0a:00:00:11:22:33\t\t" + registry().format(0x0a0000112233L) + "\n", out);
+        assertTrue(_err, _err.contains(":3: not a MAC address:   not a mac"));
+        assertTrue(_err, _err.contains("Skipped 1 invalid line(s)."));
+    }
+
+    public void testCsvColumns() throws Exception {
+        System.out.println("csv columns");
+        String in = "host,mac,seen\n"
+                  + "\"laptop, mine\",\"" + TestConstants.TEST_MAC + "\",1\n"
+                  + "printer,00-21-9B-07-20-75\n"
+                  + "short\n";
+        String out = run(in, 0, "--format", "csv", "--column", "2", "--skip-header", "--header",
+                         "--fields", "input,short,local,multicast,line", "--style", "dash_upper");
+        assertEquals("input,short,local,multicast,line\n"
+                   + TestConstants.TEST_MAC + ",Dell,false,false,\"laptop, mine\",\"" + TestConstants.TEST_MAC + "\",1\n"
+                   + "00-21-9B-07-20-75,Dell,false,false,printer,00-21-9B-07-20-75\n", out);
+        assertTrue(_err, _err.contains(":4: not a MAC address: short"));
+    }
+
+    public void testJsonLines() throws Exception {
+        System.out.println("json lines");
+        String out = run("x\t" + TestConstants.TEST_MAC + "\n\"quoted\"\t0a0000112233\n", 0,
+                         "--format", "jsonl", "--column", "2", "--delimiter", "\\t", "--fields", "mac,manufacturer,formatted,line", "--invalid", "skip");
+        assertEquals("{\"mac\":\"00:21:9b:07:20:74\",\"manufacturer\":\"Dell Inc\",\"formatted\":\"" + TestConstants.TEST_MAC_FORMATTED
+                   + "\",\"line\":\"x\\u0009" + TestConstants.TEST_MAC + "\"}\n"
+                   + "{\"mac\":\"0a:00:00:11:22:33\",\"manufacturer\":null,\"formatted\":\"" + registry().format(0x0a0000112233L)
+                   + "\",\"line\":\"\\\"quoted\\\"\\u00090a0000112233\"}\n", out);
+        assertEquals("", _err);
+    }
+
+    public void testParallel() throws Exception {
+        System.out.println("parallel");
+        StringBuilder in = new StringBuilder();
+        int lines = 300000;
+        for (int i = 1; i <= lines; ++i) {
+            if (i % 99991 == 0) {
+                in.append("bad line ").append(i).append('\n');
+            } else {
+                in.append(String.format("%012x%n", (TestConstants.TEST_MAC_LONG + 0x10000000L * (i % 4096) + i) & MacAddress.MAC_MASK));
+            }
+        }
+        assertTrue(in.length() > 3 * BulkLookup.CHUNK_SIZE);
+        String sequential = run(in.toString(), 0, "--threads", "1");
+        String sequentialErr = _err.replaceAll("(?m)^.*?\\.txt:", "");
+        String parallel = run(in.toString(), 0, "--threads", "4");
+        assertEquals(sequential, parallel);
+        assertEquals(sequentialErr, _err.replaceAll("(?m)^.*?\\.txt:", ""));
+        assertEquals(lines - 3, sequential.split("\n").length);
+        for (int i = 99991; i <= lines; i += 99991) assertTrue(_err, _err.contains(":" + i + ": not a MAC address: bad line " + i));
+    }
+
+    public void testLongName() throws Exception {
+        System.out.println("long name");
+        char[] name = new char[1000];
+        Arrays.fill(name, 'x');
+        OuiRegistry reg = new OuiRegistry(new HeapOuiTable(0, Arrays.asList(new Oui(TestConstants.TEST_MAC_LONG, 24, "Long", new String(name)))));
+        String out = run(reg, TestConstants.TEST_MAC + "\n" + TestConstants.TEST_MAC + "\n", 0, "--fields", "formatted");
+        String expected = reg.format(TestConstants.TEST_MAC_LONG);
+        assertTrue(expected.length() > 1000);
+        assertEquals(expected + "\n" + expected + "\n", out);
+    }
+
+    public void testFail() throws Exception {
+        System.out.println("fail");
+        String out = run(TestConstants.TEST_MAC + "\nbad\n" + TestConstants.TEST_MAC + "\n", 1, "--invalid", "fail", "--fields", "mac");
+        assertEquals("00:21:9b:07:20:74\n", out);
+        assertTrue(_err, _err.contains(":2: not a MAC address: bad"));
+    }
+
+    public void testBadArgs() {
+        System.out.println("bad args");
+        assertNull(BulkLookup.fromArgs(new String[] { "--format", "csv", "--help" }));
+        String[][] bad = { { "--nope" }, { "--format", "xml" }, { "--fields", "mac,nope" }, { "--column", "0" }, { "--delimiter", "::" }, { "--threads" } };
+        for (String[] args : bad) {
+            try {
+                BulkLookup.fromArgs(args);
+                fail("Accepted " + Arrays.toString(args));
+            } catch (IllegalArgumentException expected) {}
+        }
+    }
+}
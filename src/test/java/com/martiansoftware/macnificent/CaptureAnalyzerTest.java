@@ -0,0 +1,316 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class CaptureAnalyzerTest extends TestCase {
+
+    private static OuiRegistry registry;
+
+    public CaptureAnalyzerTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        if (registry == null) registry = new OuiRegistry();
+    }
+
+    /**
+     * A packet in a generated capture
+     */
+    private static final class Packet {
+        final long src, dst;
+        final int captured, original, iface;
+
+        Packet(long src, long dst, int captured, int original, int iface) {
+            this.src = src;
+            this.dst = dst;
+            this.captured = captured;
+            this.original = original;
+            this.iface = iface;
+        }
+
+        byte[] data() {
+            byte[] result = new byte[captured];
+            if (captured >= 12) {
+                MacAddress.toBytes(dst, result, 0);
+                MacAddress.toBytes(src, result, 6);
+            }
+            for (int i = 12; i < captured; ++i) result[i] = (byte) (i * 31);
+            return result;
+        }
+    }
+
+    /**
+     * Generates packets between known, unknown, local and broadcast
+     * addresses, some truncated to a snap length, a few too short for an
+     * Ethernet header, and some on a second (non-Ethernet) interface if
+     * interfaces is 2
+     */
+    private static List<Packet> packets(Random r, int n, int interfaces) {
+        long[] macs = new long[40];
+        for (int i = 0; i < macs.length; ++i) {
+            switch (i % 4) {
+                case 0: macs[i] = registry.getOuiByIndex(r.nextInt(registry.size())).getPrefix() | r.nextInt(1 << 24); break;
+                case 1: macs[i] = 0xf0f0f0000000L | r.nextInt(1 << 24); break;
+                case 2: macs[i] = (r.nextLong() & MacAddress.MAC_MASK) | (0x02L << 40); break;
+                default: macs[i] = TestConstants.TEST_MAC_LONG + i;
+            }
+        }
+        macs[3] = MacAddress.MAC_MASK;
+        List<Packet> result = new ArrayList<Packet>();
+        for (int i = 0; i < n; ++i) {
+            int original = 60 + r.nextInt(1455);
+            int captured = r.nextInt(20) == 0 ? r.nextInt(14) : Math.min(original, 96);
+            result.add(new Packet(macs[r.nextInt(macs.length)], macs[r.nextInt(macs.length)], captured, original, r.nextInt(interfaces)));
+        }
+        return result;
+    }
+
+    private static byte[] pcap(List<Packet> packets, ByteOrder order, boolean nanos) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer header = ByteBuffer.allocate(24).order(order);
+        header.putInt(nanos ? 0xa1b23c4d : 0xa1b2c3d4).putShort((short) 2).putShort((short) 4)
+              .putInt(0).putInt(0).putInt(65535).putInt(1);
+        out.write(header.array(), 0, 24);
+        int t = 0;
+        for (Packet p : packets) {
+            ByteBuffer record = ByteBuffer.allocate(16).order(order);
+            record.putInt(t++).putInt(0).putInt(p.captured).putInt(p.original);
+            out.write(record.array(), 0, 16);
+            out.write(p.data(), 0, p.captured);
+        }
+        return out.toByteArray();
+    }
+
+    private static void block(ByteArrayOutputStream out, ByteOrder order, int type, byte[] body) {
+        int padded = (body.length + 3) & ~3;
+        ByteBuffer b = ByteBuffer.allocate(12 + padded).order(order);
+        b.putInt(type).putInt(12 + padded).put(body);
+        b.position(8 + padded);
+        b.putInt(12 + padded);
+        out.write(b.array(), 0, b.capacity());
+    }
+
+    /**
+     * Writes a section header and an Ethernet interface, plus a raw IP
+     * interface if interfaces is 2, followed by each packet as an enhanced
+     * packet block (or, rotating, a simple or obsolete packet block), with
+     * unknown blocks mixed in
+     */
+    private static void pcapngSection(ByteArrayOutputStream out, List<Packet> packets, ByteOrder order, int interfaces) {
+        block(out, order, 0x0a0d0d0a, ByteBuffer.allocate(16).order(order).putInt(0x1a2b3c4d).putShort((short) 1).putShort((short) 0).putLong(-1).array());
+        block(out, order, 1, ByteBuffer.allocate(8).order(order).putShort((short) 1).putShort((short) 0).putInt(65535).array());
+        if (interfaces == 2) block(out, order, 1, ByteBuffer.allocate(8).order(order).putShort((short) 101).putShort((short) 0).putInt(65535).array());
+        int n = 0;
+        for (Packet p : packets) {
+            byte[] data = p.data();
+            int kind = n++ % 5;
+            if (kind == 3 && p.iface == 0 && p.captured == Math.min(p.original, 96)) {
+                // simple packet blocks hold min(original, snaplen) bytes, here with a snaplen of 96
+                ByteBuffer b = ByteBuffer.allocate(4 + data.length).order(order);
+                b.putInt(p.original).put(data);
+                block(out, order, 3, b.array());
+            } else if (kind == 4) {
+                ByteBuffer b = ByteBuffer.allocate(20 + data.length).order(order);
+                b.putShort((short) p.iface).putShort((short) 0).putInt(0).putInt(n).putInt(p.captured).putInt(p.original).put(data);
+                block(out, order, 2, b.array());
+            } else {
+                ByteBuffer b = ByteBuffer.allocate(20 + data.length).order(order);
+                b.putInt(p.iface).putInt(0).putInt(n).putInt(p.captured).putInt(p.original).put(data);
+                block(out, order, 6, b.array());
+            }
+            if (n % 7 == 0) block(out, order, 5, new byte[] { 1, 2, 3, 4, 5 }); // interface statistics
+        }
+    }
+
+    /**
+     * Counts packets the slow way: [src packets, src bytes, dst packets, dst bytes] by index
+     */
+    private static Map<Integer, long[]> expected(List<Packet> packets, Set<Long> sources, long[] totals) {
+        Map<Integer, long[]> result = new HashMap<Integer, long[]>();
+        for (Packet p : packets) {
+            if (p.iface != 0 || p.captured < 14) {
+                ++totals[2];
+                continue;
+            }
+            ++totals[0];
+            totals[1] += p.original;
+            sources.add(p.src);
+            long[] s = counts(result, p.src), d = counts(result, p.dst);
+            ++s[0];
+            s[1] += p.original;
+            ++d[2];
+            d[3] += p.original;
+        }
+        return result;
+    }
+
+    private static long[] counts(Map<Integer, long[]> map, long mac) {
+        int index = MacAddress.isLocal(mac) || MacAddress.isMulticast(mac) ? OuiRegistry.NOT_FOUND : registry.indexOf(mac);
+        long[] result = map.get(index);
+        if (result == null) map.put(index, result = new long[4]);
+        return result;
+    }
+
+    private static void assertResult(List<Packet> packets, CaptureAnalyzer.Result result) {
+        Set<Long> sources = new HashSet<Long>();
+        long[] totals = new long[3];
+        Map<Integer, long[]> expected = expected(packets, sources, totals);
+        assertEquals(totals[0], result.getPackets());
+        assertEquals(totals[1], result.getBytes());
+        assertEquals(totals[2], result.getSkippedPackets());
+        int stations = 0;
+        for (Map.Entry<Integer, long[]> e : expected.entrySet()) {
+            int i = e.getKey();
+            long[] c = e.getValue();
+            assertEquals(c[0], result.getSourcePackets(i));
+            assertEquals(c[1], result.getSourceBytes(i));
+            assertEquals(c[2], result.getDestinationPackets(i));
+            assertEquals(c[3], result.getDestinationBytes(i));
+            stations += result.getSourceStations(i);
+        }
+        assertEquals(sources.size(), stations);
+        int[] manufacturers = result.getManufacturers();
+        assertEquals(expected.size() - (expected.containsKey(OuiRegistry.NOT_FOUND) ? 1 : 0), manufacturers.length);
+        for (int i = 1; i < manufacturers.length; ++i) {
+            assertTrue(result.getSourcePackets(manufacturers[i - 1]) + result.getDestinationPackets(manufacturers[i - 1])
+                    >= result.getSourcePackets(manufacturers[i]) + result.getDestinationPackets(manufacturers[i]));
+        }
+    }
+
+    private static File tempFile(byte[] contents) throws IOException {
+        File f = File.createTempFile("macnificent", ".pcap");
+        f.deleteOnExit();
+        OutputStream out = new FileOutputStream(f);
+        try {
+            out.write(contents);
+        } finally {
+            out.close();
+        }
+        return f;
+    }
+
+    /**
+     * Analyzes a capture sequentially, in parallel in small chunks, and from
+     * a buffer, checking each against the expected counts
+     */
+    private static void assertAnalyzes(List<Packet> packets, byte[] capture) throws Exception {
+        File f = tempFile(capture);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertResult(packets, new CaptureAnalyzer(registry).analyze((ExecutorService) null, f));
+            assertResult(packets, new CaptureAnalyzer(registry, 1000).analyze(executor, f));
+            assertResult(packets, new CaptureAnalyzer(registry, 1).analyze(executor, f));
+            ByteBuffer buf = ByteBuffer.allocateDirect(capture.length + 5);
+            buf.position(5);
+            buf.put(capture).position(5);
+            assertResult(packets, new CaptureAnalyzer(registry).analyze(buf));
+            assertEquals(5, buf.position());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testPcap() throws Exception {
+        System.out.println("pcap");
+        Random r = new Random(0x5eed);
+        for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+            for (boolean nanos : new boolean[] { false, true }) {
+                List<Packet> packets = packets(r, 2000, 1);
+                assertAnalyzes(packets, pcap(packets, order, nanos));
+            }
+        }
+    }
+
+    public void testPcapng() throws Exception {
+        System.out.println("pcapng");
+        Random r = new Random(42);
+        List<Packet> first = packets(r, 1000, 2), second = packets(r, 1000, 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pcapngSection(out, first, ByteOrder.LITTLE_ENDIAN, 2);
+        pcapngSection(out, second, ByteOrder.BIG_ENDIAN, 1);
+        List<Packet> all = new ArrayList<Packet>(first);
+        all.addAll(second);
+        assertAnalyzes(all, out.toByteArray());
+    }
+
+    public void testTruncated() throws Exception {
+        System.out.println("truncated");
+        List<Packet> packets = packets(new Random(7), 100, 1);
+        byte[] capture = pcap(packets, ByteOrder.LITTLE_ENDIAN, false);
+        byte[] cut = java.util.Arrays.copyOf(capture, capture.length - 5); // interrupted mid-record
+        assertAnalyzes(packets.subList(0, packets.size() - 1), cut);
+        assertAnalyzes(new ArrayList<Packet>(), java.util.Arrays.copyOf(capture, 24));
+    }
+
+    public void testInvalid() throws Exception {
+        System.out.println("invalid");
+        byte[][] bad = {
+            new byte[0],
+            "not a capture file at all".getBytes("US-ASCII"),
+            java.util.Arrays.copyOf(pcap(new ArrayList<Packet>(), ByteOrder.BIG_ENDIAN, false), 20),
+        };
+        byte[] hugeRecord = pcap(packets(new Random(1), 3, 1), ByteOrder.BIG_ENDIAN, false);
+        ByteBuffer.wrap(hugeRecord).putInt(24 + 8, 0x7fffffff);
+        for (byte[] b : new byte[][] { bad[0], bad[1], bad[2], hugeRecord }) {
+            try {
+                new CaptureAnalyzer(registry).analyze(tempFile(b));
+                fail("Accepted an invalid capture");
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    public void testReport() throws Exception {
+        System.out.println("report");
+        List<Packet> packets = new ArrayList<Packet>();
+        packets.add(new Packet(TestConstants.TEST_MAC_LONG, MacAddress.MAC_MASK, 60, 60, 0));
+        packets.add(new Packet(TestConstants.TEST_MAC_LONG + 1, TestConstants.TEST_MAC_LONG, 60, 1514, 0));
+        CaptureAnalyzer.Result result = new CaptureAnalyzer(registry).analyze(ByteBuffer.wrap(pcap(packets, ByteOrder.BIG_ENDIAN, false)));
+        StringBuilder out = new StringBuilder();
+        result.writeTo(out);
+        assertEquals("manufacturer\tshort\tstations\ttx_packets\ttx_bytes\trx_packets\trx_bytes\n"
+                + TestConstants.TEST_MAC_MFG + "\t" + TestConstants.TEST_MAC_SHORTNAME + "\t2\t2\t1574\t1\t1514\n"
+                + "(unknown, local or multicast)\t\t0\t0\t0\t1\t60\n", out.toString());
+    }
+}
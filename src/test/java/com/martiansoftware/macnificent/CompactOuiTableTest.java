@@ -0,0 +1,147 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class CompactOuiTableTest extends TestCase {
+
+    public CompactOuiTableTest(String testName) {
+        super(testName);
+    }
+
+    private static void assertSameOui(Oui expected, Oui actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertEquals(expected.getPrefix(), actual.getPrefix());
+        assertEquals(expected.getPrefixLength(), actual.getPrefixLength());
+        assertEquals(expected.getManufacturer(), actual.getManufacturer());
+        assertEquals(expected.getShortName(), actual.getShortName());
+    }
+
+    private static void assertEquivalent(OuiRegistry expected, OuiRegistry actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getLastModified(), actual.getLastModified());
+        long lastPrefix = -1;
+        for (int i = 0; i < actual.size(); ++i) {
+            Oui oui = actual.getOuiByIndex(i);
+            assertSameOui(expected.getOui(oui.getPrefix()), oui);
+            assertEquals(i, actual.indexOf(oui.getPrefix()));
+            if (oui.getPrefixLength() == PrefixTrie.MA_L) {
+                assertTrue(oui.getPrefix() > lastPrefix);
+                lastPrefix = oui.getPrefix();
+            }
+        }
+        Random r = new Random(0x5eed);
+        for (int n = 0; n < 100000; ++n) {
+            long mac = r.nextLong() & MacAddress.MAC_MASK;
+            if (n % 2 == 0) mac = expected.getOuiByIndex(r.nextInt(expected.size())).getPrefix() | (mac & 0xfffffL);
+            assertSameOui(expected.getOui(mac), actual.getOui(mac));
+            assertEquals(expected.format(mac), actual.format(mac));
+        }
+    }
+
+    public void testRegistry() throws Exception {
+        System.out.println("registry");
+        OuiRegistry heap = new OuiRegistry();
+        OuiRegistry compact = heap.compact();
+        assertFalse(heap.isCompact());
+        assertTrue(compact.isCompact());
+        assertSame(compact, compact.compact());
+        assertEquivalent(heap, compact);
+        assertEquals(TestConstants.TEST_MAC_FORMATTED, compact.format(TestConstants.TEST_MAC));
+        assertEquals(TestConstants.TEST_MAC_MFG, compact.getOui(new MacAddress(TestConstants.TEST_MAC)).getManufacturer());
+    }
+
+    public void testSubBlocks() throws Exception {
+        System.out.println("sub-blocks");
+        List<Oui> ouis = new ArrayList<Oui>(new OuiRegistry().table().ouis());
+        ouis.add(new Oui(0x70b3d5000000L, 24, "IEEE Registration Authority"));
+        ouis.add(new Oui(0x70b3d51ff000L, 36, "Small Block Inc."));
+        ouis.add(new Oui(0x70b3d5100000L, 28, "Medium Block Co."));
+        ouis.add(new Oui(0xf0f0f0123000L, 36, "Orphan IAB Ltd"));
+        ouis.add(new Oui(0xfffffe000000L, 24, "Last"));
+        ouis.add(new Oui(0x000000000000L, 24, "First"));
+        OuiRegistry heap = new OuiRegistry(new HeapOuiTable(0, ouis));
+        OuiRegistry compact = heap.compact();
+        assertEquivalent(heap, compact);
+        assertEquals("Small Block Inc.", compact.getOui(0x70b3d51ff123L).getManufacturer());
+        assertEquals("Medium Block Co.", compact.getOui(0x70b3d51fe123L).getManufacturer());
+        assertEquals("IEEE Registration Authority", compact.getOui(0x70b3d5200000L).getManufacturer());
+        assertEquals("Orphan IAB Ltd", compact.getOui(0xf0f0f0123456L).getManufacturer());
+        assertNull(compact.getOui(0xf0f0f0124000L));
+        assertEquals("Small-1f:f1:23", compact.format(0x70b3d51ff123L));
+        assertEquals(0, compact.indexOf(0x000000123456L));
+    }
+
+    public void testEmpty() {
+        System.out.println("empty");
+        OuiRegistry compact = new OuiRegistry(new HeapOuiTable(0, new ArrayList<Oui>())).compact();
+        assertEquals(0, compact.size());
+        assertNull(compact.getOui(0L));
+        assertNull(compact.getOui(MacAddress.MAC_MASK));
+    }
+
+    public void testRankSelect() throws Exception {
+        System.out.println("rank/select");
+        CompactOuiTable table = new CompactOuiTable(new OuiRegistry().table());
+        int index = 0;
+        for (int oui = 0; oui < (1 << 24); ++oui) {
+            int rank = table.rank(oui);
+            if (rank != OuiTable.NOT_FOUND) {
+                assertEquals(index++, rank);
+                assertEquals(oui, table.select(rank));
+            }
+        }
+        assertEquals(table.size(), index);
+    }
+
+    public void testPackedInts() {
+        System.out.println("packedInts");
+        Random r = new Random(3);
+        for (int limit : new int[] { 1, 2, 3, 1000, 12345, 1 << 20, Integer.MAX_VALUE }) {
+            int[] expected = new int[1000];
+            CompactOuiTable.PackedInts packed = new CompactOuiTable.PackedInts(expected.length, limit);
+            for (int pass = 0; pass < 2; ++pass) {
+                for (int i = 0; i < expected.length; ++i) {
+                    expected[i] = r.nextInt(limit);
+                    packed.set(i, expected[i]);
+                }
+                for (int i = 0; i < expected.length; ++i) assertEquals(expected[i], packed.get(i));
+            }
+        }
+    }
+
+    public void testFootprint() throws Exception {
+        System.out.println("footprint");
+        CompactOuiTable table = new CompactOuiTable(new OuiRegistry().table());
+        System.out.println("    compact table: " + table.footprint() + " bytes for " + table.size() + " OUIs");
+        assertTrue(table.footprint() < 32L * table.size());
+    }
+}
@@ -0,0 +1,119 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Checksum;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class Crc32cTest extends TestCase {
+
+    public Crc32cTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Computes a CRC-32C one bit at a time
+     */
+    private static int slowCrc(byte[] b, int off, int len) {
+        int crc = ~0;
+        for (int i = off; i < off + len; ++i) {
+            crc ^= b[i] & 0xff;
+            for (int k = 0; k < 8; ++k) crc = (crc & 1) != 0 ? crc >>> 1 ^ 0x82f63b78 : crc >>> 1;
+        }
+        return ~crc;
+    }
+
+    /**
+     * Test of update and getValue methods, of class Crc32c.
+     */
+    public void testKnownValues() {
+        System.out.println("knownValues");
+        Crc32c crc = new Crc32c();
+        assertEquals(0L, crc.getValue());
+        byte[] b = "123456789".getBytes(StandardCharsets.US_ASCII);
+        crc.update(b, 0, b.length);
+        assertEquals(0xe3069283L, crc.getValue());
+        crc.reset();
+        crc.update(new byte[32], 0, 32);
+        assertEquals(0x8a9136aaL, crc.getValue());
+        crc.reset();
+        for (byte x : b) crc.update(x);
+        assertEquals(0xe3069283L, crc.getValue());
+    }
+
+    /**
+     * Compares Crc32c with a bitwise implementation for all alignments and
+     * lengths around the 8-byte stride, and with the JDK's where available
+     */
+    public void testUpdate() throws Exception {
+        System.out.println("update");
+        Random r = new Random(11);
+        byte[] b = new byte[1000];
+        r.nextBytes(b);
+        Checksum jdk = Crc32c.newChecksum();
+        for (int off = 0; off < 9; ++off) {
+            for (int len = 0; len < 40; ++len) {
+                Crc32c crc = new Crc32c();
+                crc.update(b, off, len);
+                assertEquals(slowCrc(b, off, len), (int) crc.getValue());
+                jdk.reset();
+                jdk.update(b, off, len);
+                assertEquals(crc.getValue(), jdk.getValue());
+            }
+        }
+        // in pieces
+        Crc32c crc = new Crc32c();
+        crc.update(b, 0, 3);
+        crc.update(b, 3, 500);
+        crc.update(b, 503, b.length - 503);
+        assertEquals(slowCrc(b, 0, b.length), (int) crc.getValue());
+        try {
+            crc.update(b, 990, 11);
+            fail("Read past the end of the array.");
+        } catch (ArrayIndexOutOfBoundsException expected) {
+        }
+    }
+
+    /**
+     * Test of checksum method, of class Crc32c.
+     */
+    public void testChecksum() {
+        System.out.println("checksum");
+        Random r = new Random(5);
+        byte[] b = new byte[50000];
+        r.nextBytes(b);
+        int expected = slowCrc(b, 7, 40000);
+        ByteBuffer heap = ByteBuffer.wrap(b);
+        assertEquals(expected, Crc32c.checksum(heap, 7, 40000));
+        assertEquals(expected, Crc32c.checksum(heap.asReadOnlyBuffer(), 7, 40000));
+        ByteBuffer direct = ByteBuffer.allocateDirect(b.length);
+        direct.put(b).position(3);
+        assertEquals(expected, Crc32c.checksum(direct, 7, 40000));
+        assertEquals(3, direct.position());
+        assertEquals(b.length, direct.limit());
+    }
+}
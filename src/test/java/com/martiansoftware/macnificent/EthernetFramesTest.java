@@ -0,0 +1,126 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.nio.ByteBuffer;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class EthernetFramesTest extends TestCase {
+
+    private static final long DST = 0xffffffffffffL, SRC = TestConstants.TEST_MAC_LONG, TARGET = 0x001b63123456L;
+
+    public EthernetFramesTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Builds an ARP request at position 3 of a direct buffer, with the
+     * specified VLAN tags
+     */
+    private static ByteBuffer arpFrame(int... tags) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(3 + 14 + 4 * tags.length + 28 + 18);
+        buf.position(3);
+        MacAddress.toBytes(DST, buf, 3);
+        MacAddress.toBytes(SRC, buf, 9);
+        int i = 15;
+        for (int tag : tags) {
+            buf.putShort(i, (short) tag);
+            buf.putShort(i + 2, (short) 42); // VLAN id
+            i += 4;
+        }
+        buf.putShort(i, (short) EthernetFrames.ETHERTYPE_ARP);
+        i += 2;
+        buf.putShort(i, (short) 1);         // Ethernet
+        buf.putShort(i + 2, (short) 0x0800); // IPv4
+        buf.put(i + 4, (byte) 6);
+        buf.put(i + 5, (byte) 4);
+        buf.putShort(i + 6, (short) 1);     // request
+        MacAddress.toBytes(SRC, buf, i + 8);
+        buf.putInt(i + 14, 0x0a000001);
+        MacAddress.toBytes(TARGET, buf, i + 18);
+        buf.putInt(i + 24, 0x0a000002);
+        return buf;
+    }
+
+    public void testArp() {
+        System.out.println("arp");
+        for (int[] tags : new int[][] { {}, { EthernetFrames.ETHERTYPE_VLAN }, { EthernetFrames.ETHERTYPE_QINQ, EthernetFrames.ETHERTYPE_VLAN } }) {
+            ByteBuffer frame = arpFrame(tags);
+            assertEquals(DST, EthernetFrames.destination(frame));
+            assertEquals(SRC, EthernetFrames.source(frame));
+            assertEquals(3, EthernetFrames.destinationOffset(frame));
+            assertEquals(9, EthernetFrames.sourceOffset(frame));
+            assertEquals(EthernetFrames.ETHERTYPE_ARP, EthernetFrames.etherType(frame));
+            assertEquals(17 + 4 * tags.length, EthernetFrames.payloadOffset(frame));
+            assertEquals(SRC, EthernetFrames.arpSender(frame));
+            assertEquals(TARGET, EthernetFrames.arpTarget(frame));
+            assertEquals(EthernetFrames.payloadOffset(frame) + 18, EthernetFrames.arpTargetOffset(frame));
+            assertEquals(3, frame.position());
+        }
+    }
+
+    public void testNotArp() {
+        System.out.println("not arp");
+        ByteBuffer frame = arpFrame();
+        frame.putShort(15, (short) 0x0800); // IPv4
+        assertEquals(0x0800, EthernetFrames.etherType(frame));
+        assertEquals(SRC, EthernetFrames.source(frame));
+        assertEquals(-1, EthernetFrames.arpSenderOffset(frame));
+        assertEquals(MacAddressParser.INVALID, EthernetFrames.arpSender(frame));
+        assertEquals(MacAddressParser.INVALID, EthernetFrames.arpTarget(frame));
+
+        frame = arpFrame();
+        frame.put(17 + 4, (byte) 8); // hardware address length
+        assertEquals(MacAddressParser.INVALID, EthernetFrames.arpSender(frame));
+        frame = arpFrame();
+        frame.putShort(17, (short) 6); // IEEE 802 hardware type
+        assertEquals(MacAddressParser.INVALID, EthernetFrames.arpTarget(frame));
+    }
+
+    public void testTruncated() {
+        System.out.println("truncated");
+        ByteBuffer frame = arpFrame(EthernetFrames.ETHERTYPE_VLAN);
+        frame.limit(3 + 14 + 4 + 27);
+        assertEquals(SRC, EthernetFrames.source(frame));
+        assertEquals(EthernetFrames.ETHERTYPE_ARP, EthernetFrames.etherType(frame));
+        assertEquals(MacAddressParser.INVALID, EthernetFrames.arpTarget(frame));
+        frame.limit(3 + 14 + 1);
+        assertEquals(-1, EthernetFrames.etherType(frame));
+        assertEquals(-1, EthernetFrames.payloadOffset(frame));
+        frame.limit(3 + 13);
+        assertEquals(MacAddressParser.INVALID, EthernetFrames.source(frame));
+        assertEquals(MacAddressParser.INVALID, EthernetFrames.destination(frame));
+        assertEquals(-1, EthernetFrames.etherType(frame));
+    }
+
+    public void testRegistry() throws Exception {
+        System.out.println("registry");
+        OuiRegistry registry = new OuiRegistry();
+        ByteBuffer frame = arpFrame();
+        MacAddressView view = new MacAddressView();
+        assertEquals(TestConstants.TEST_MAC_MFG, registry.getOui(frame, EthernetFrames.sourceOffset(frame)).getManufacturer());
+        assertEquals(TestConstants.TEST_MAC_FORMATTED, registry.format(frame, EthernetFrames.arpSenderOffset(frame)));
+        assertEquals(SRC, view.wrap(frame, EthernetFrames.arpSenderOffset(frame)).toLong());
+    }
+}
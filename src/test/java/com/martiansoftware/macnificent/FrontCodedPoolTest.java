@@ -0,0 +1,93 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class FrontCodedPoolTest extends TestCase {
+
+    public FrontCodedPoolTest(String testName) {
+        super(testName);
+    }
+
+    public void testManufacturers() throws Exception {
+        System.out.println("manufacturers");
+        List<String> names = new ArrayList<String>();
+        long bytes = 0;
+        for (Oui oui : new OuiRegistry().table().ouis()) names.add(oui.getManufacturer());
+        String[] sorted = FrontCodedPool.sortDistinct(names);
+        for (String s : sorted) bytes += s.getBytes("UTF-8").length;
+        FrontCodedPool pool = new FrontCodedPool(sorted);
+        assertEquals(sorted.length, pool.size());
+        for (int i = 0; i < sorted.length; ++i) assertEquals(sorted[i], pool.get(i));
+        assertTrue(pool.footprint() < bytes);
+    }
+
+    public void testRandom() {
+        System.out.println("random");
+        Random r = new Random(11);
+        String alphabet = "aabé中😀";
+        List<String> strings = new ArrayList<String>();
+        for (int i = 0; i < 3000; ++i) {
+            StringBuilder buf = new StringBuilder();
+            int len = r.nextInt(r.nextInt(10) == 0 ? 300 : 8);
+            while (buf.length() < len) {
+                int c = r.nextInt(alphabet.length() - 1);
+                if (Character.isHighSurrogate(alphabet.charAt(c))) buf.append(alphabet, c, c + 2);
+                else if (!Character.isLowSurrogate(alphabet.charAt(c))) buf.append(alphabet.charAt(c));
+            }
+            strings.add(buf.toString());
+        }
+        String[] sorted = FrontCodedPool.sortDistinct(strings);
+        FrontCodedPool pool = new FrontCodedPool(sorted);
+        for (int i = 0; i < sorted.length; ++i) assertEquals(sorted[i], pool.get(i));
+        assertEquals("", pool.get(0));
+    }
+
+    public void testInvalid() {
+        System.out.println("invalid");
+        try {
+            new FrontCodedPool(new String[] { "b", "a" });
+            fail("Accepted unsorted strings");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new FrontCodedPool(new String[] { "a", "a" });
+            fail("Accepted duplicate strings");
+        } catch (IllegalArgumentException expected) {
+        }
+        FrontCodedPool empty = new FrontCodedPool(new String[0]);
+        assertEquals(0, empty.size());
+        try {
+            empty.get(0);
+            fail("Returned a string from an empty pool");
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        assertEquals(Arrays.asList("A", "a", "é"), Arrays.asList(FrontCodedPool.sortDistinct(Arrays.asList("é", "a", "A", "a"))));
+    }
+}
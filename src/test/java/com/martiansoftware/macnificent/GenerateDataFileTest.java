@@ -0,0 +1,175 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class GenerateDataFileTest extends TestCase {
+
+    public GenerateDataFileTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Renders OUIs as an oui.txt listing
+     */
+    private static byte[] toOuiTxt(List<Oui> ouis) {
+        StringBuilder buf = new StringBuilder("OUI/MA-L\tOrganization\r\n\r\n");
+        for (Oui oui : ouis) {
+            byte[] b = oui.getBytes();
+            buf.append(String.format("%02X-%02X-%02X   (hex)\t\t%s\r\n", b[0], b[1], b[2], oui.getManufacturer()));
+            buf.append(String.format("%02X%02X%02X     (base 16)\t\t%s\r\n", b[0], b[1], b[2], oui.getManufacturer()));
+            buf.append("\t\t\t\tSomewhere\r\n\r\n");
+        }
+        return buf.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test of parse method, of class GenerateDataFile.
+     */
+    public void testParse() throws Exception {
+        System.out.println("parse");
+        List<Oui> expected = new OuiRegistry().table().ouis();
+        byte[] txt = toOuiTxt(expected);
+        assertTrue(txt.length > 2 * GenerateDataFile.MIN_CHUNK_SIZE);
+        byte[] csv = RegistryParserTest.OUI_CSV.getBytes(StandardCharsets.UTF_8);
+        List<String> names = Arrays.asList("oui.txt", "oui.csv");
+        List<byte[]> listings = Arrays.asList(txt, csv);
+
+        List<Oui> sequential = GenerateDataFile.parse(names, listings, null);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        List<Oui> parallel;
+        try {
+            parallel = GenerateDataFile.parse(names, listings, pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(expected.size() + 6, sequential.size());
+        assertEquals(sequential, parallel);
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i), sequential.get(i));
+            assertEquals(expected.get(i).getManufacturer(), sequential.get(i).getManufacturer());
+            assertEquals(expected.get(i).getManufacturer(), parallel.get(i).getManufacturer());
+        }
+    }
+
+    /**
+     * Test of writeJava method, of class GenerateDataFile.  Compiles and
+     * loads the generated class if a compiler is available.
+     */
+    public void testWriteJava() throws Exception {
+        System.out.println("writeJava");
+        OuiRegistry expected = new OuiRegistry();
+        byte[] v2 = OuiDataFileTest.toV2(expected);
+        StringBuilder src = new StringBuilder();
+        GenerateDataFile.writeJava(src, "com.example.gen.OuiData", expected.table(), v2);
+        assertTrue(src.toString().startsWith("// Generated by "));
+        assertTrue(src.indexOf("\npackage com.example.gen;\n") > 0);
+        assertTrue(src.indexOf("public static final long LAST_MODIFIED = " + expected.getLastModified().getTime() + "L;") > 0);
+        for (int i = 0; i < src.length(); ++i) assertTrue(src.charAt(i) < 0x80);
+
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null) return; // running on a JRE
+
+        Path dir = Files.createTempDirectory("macnificent");
+        try {
+            Path file = dir.resolve("OuiData.java");
+            Files.write(file, src.toString().getBytes(StandardCharsets.US_ASCII));
+            String classpath = new File(OuiRegistry.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+            int status = javac.run(null, null, null, "-nowarn", "-cp", classpath, "-d", dir.toString(), file.toString());
+            assertEquals(0, status);
+
+            URLClassLoader loader = new URLClassLoader(new URL[] { dir.toUri().toURL() }, getClass().getClassLoader());
+            try {
+                Class<?> c = Class.forName("com.example.gen.OuiData", true, loader);
+                assertEquals(expected.getLastModified().getTime(), c.getField("LAST_MODIFIED").getLong(null));
+                ByteBuffer buf = (ByteBuffer) c.getMethod("buffer").invoke(null);
+                assertTrue(buf.isReadOnly());
+                byte[] data = new byte[buf.remaining()];
+                buf.get(data);
+                assertTrue(Arrays.equals(v2, data));
+                OuiDataFileTest.assertSameRegistry(expected, new OuiRegistry((ByteBuffer) c.getMethod("buffer").invoke(null)));
+            } finally {
+                loader.close();
+            }
+        } finally {
+            try (java.util.stream.Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Collections.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Test of isClassName method, of class GenerateDataFile.
+     */
+    public void testIsClassName() {
+        System.out.println("isClassName");
+        assertTrue(GenerateDataFile.isClassName("OuiData"));
+        assertTrue(GenerateDataFile.isClassName("com.example.$Oui_Data2"));
+        assertFalse(GenerateDataFile.isClassName(""));
+        assertFalse(GenerateDataFile.isClassName("com..OuiData"));
+        assertFalse(GenerateDataFile.isClassName("com.example."));
+        assertFalse(GenerateDataFile.isClassName("com.2example.OuiData"));
+        assertFalse(GenerateDataFile.isClassName("Oui-Data"));
+    }
+
+    /**
+     * Test of sortAndDedupe method, of class GenerateDataFile.
+     */
+    public void testSortAndDedupe() {
+        System.out.println("sortAndDedupe");
+        List<Oui> ouis = new ArrayList<Oui>();
+        ouis.add(new Oui(0x70b3d5f2f000L, 36, "Elsist Srl"));
+        ouis.add(new Oui(0x002272000000L, 24, "First"));
+        ouis.add(new Oui(0x38b8eb000000L, 28, "Lesswire AG"));
+        ouis.add(new Oui(0x000001000000L, 24, "One"));
+        ouis.add(new Oui(0x002272000000L, 24, "Second"));
+        List<Oui> expected = GenerateDataFile.sortAndDedupe(ouis);
+        assertEquals(4, expected.size());
+        assertEquals("One", expected.get(0).getManufacturer());
+        assertEquals("Second", expected.get(1).getManufacturer());
+        assertEquals("Lesswire AG", expected.get(2).getManufacturer());
+        assertEquals("Elsist Srl", expected.get(3).getManufacturer());
+
+        ouis.remove(4);
+        ouis.remove(1);
+        Collections.reverse(ouis);
+        ouis.add(new Oui(0x002272000000L, 24, "Second"));
+        assertEquals(expected, GenerateDataFile.sortAndDedupe(ouis));
+    }
+}
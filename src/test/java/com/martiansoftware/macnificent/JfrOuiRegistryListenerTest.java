@@ -0,0 +1,78 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class JfrOuiRegistryListenerTest extends TestCase {
+
+    public JfrOuiRegistryListenerTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Test of loaded method, of class JfrOuiRegistryListener.
+     */
+    public void testLoaded() throws Exception {
+        System.out.println("loaded");
+        OuiRegistryMetrics metrics = new OuiRegistryMetrics();
+        Path file = Files.createTempFile("macnificent", ".jfr");
+        OuiRegistry reg;
+        try (Recording recording = new Recording()) {
+            recording.enable("com.martiansoftware.macnificent.RegistryLoad");
+            recording.start();
+            reg = new OuiRegistry(new JfrOuiRegistryListener(metrics));
+            recording.stop();
+            recording.dump(file);
+        }
+        try {
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertEquals(1, events.size());
+            RecordedEvent event = events.get(0);
+            assertEquals(TestConstants.TEST_REGISTRY_SIZE, event.getInt("size"));
+            assertEquals(reg.getLoadNanos(), event.getDuration("loadTime").toNanos());
+            assertFalse(event.getBoolean("reload"));
+            assertEquals(TestConstants.TEST_REGISTRY_LASTMODIFIED.getTime(), event.getInstant("lastModified").toEpochMilli());
+        } finally {
+            Files.delete(file);
+        }
+
+        // everything is forwarded to the delegate
+        assertEquals(1, metrics.getLoads());
+        reg.getOui(TestConstants.TEST_MAC_LONG);
+        reg.getOui(TestConstants.TEST_MAC_LONG | 0x020000000000L);
+        reg.getOui(0xf0f0f0123456L);
+        reg.format("bad");
+        assertEquals(1, metrics.getHits());
+        assertEquals(1, metrics.getFallbacks());
+        assertEquals(1, metrics.getMisses());
+        assertEquals(1, metrics.getParseFailures());
+    }
+}
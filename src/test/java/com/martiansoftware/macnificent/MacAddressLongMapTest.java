@@ -0,0 +1,121 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class MacAddressLongMapTest extends TestCase {
+
+    public MacAddressLongMapTest(String testName) {
+        super(testName);
+    }
+
+    public void testPutRemove() {
+        System.out.println("putRemove");
+        MacAddressLongMap map = new MacAddressLongMap(0, -7);
+        Map<Long, Long> expected = new HashMap<Long, Long>();
+        Random r = new Random(0x5eed);
+        for (int n = 0; n < 200000; ++n) {
+            long mac = TestConstants.TEST_MAC_LONG + r.nextInt(4096);
+            Long old;
+            switch (r.nextInt(4)) {
+                case 0:
+                    old = expected.remove(mac);
+                    assertEquals(old == null ? -7 : old, map.remove(mac));
+                    break;
+                case 1:
+                    old = expected.get(mac);
+                    long sum = (old == null ? -7 : old) + 3;
+                    expected.put(mac, sum);
+                    assertEquals(sum, map.addTo(mac, 3));
+                    break;
+                default:
+                    long value = r.nextLong();
+                    old = expected.put(mac, value);
+                    assertEquals(old == null ? -7 : old, map.put(mac, value));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (long mac = TestConstants.TEST_MAC_LONG; mac < TestConstants.TEST_MAC_LONG + 4096; ++mac) {
+            assertEquals(expected.containsKey(mac), map.containsKey(mac));
+            assertEquals(expected.containsKey(mac) ? expected.get(mac) : -7, map.get(mac));
+        }
+
+        Map<Long, Long> seen = new HashMap<Long, Long>();
+        map.forEach((mac, value) -> assertNull(seen.put(mac, value)));
+        assertEquals(expected, seen);
+
+        seen.clear();
+        for (MacAddressLongMap.Cursor c = map.cursor(); c.next(); ) {
+            assertNull(seen.put(c.mac(), c.value()));
+            c.setValue(c.value() + 1);
+        }
+        assertEquals(expected, seen);
+        for (Map.Entry<Long, Long> e : expected.entrySet()) assertEquals(e.getValue() + 1, map.get(e.getKey()));
+        assertEquals(expected.size(), map.keys().length);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.cursor().next());
+        assertEquals(-7, map.get(new MacAddress(TestConstants.TEST_MAC)));
+    }
+
+    public void testPutAll() {
+        System.out.println("putAll");
+        long[] macs = { 0, MacAddress.MAC_MASK, TestConstants.TEST_MAC_LONG, 0 };
+        long[] values = { 1, 2, 3, 4 };
+        MacAddressLongMap map = new MacAddressLongMap();
+        map.putAll(macs, values);
+        assertEquals(3, map.size());
+        assertEquals(4, map.get(0));
+        assertEquals(2, map.get(MacAddress.MAC_MASK));
+        assertEquals(3, map.get(new MacAddress(TestConstants.TEST_MAC)));
+        assertEquals(0, map.get(-1L));
+        try {
+            map.putAll(macs, new long[1]);
+            fail("Accepted mismatched arrays");
+        } catch (IllegalArgumentException expected) {}
+        try {
+            map.put(-1L, 1);
+            fail("Added an invalid MAC address");
+        } catch (IllegalArgumentException expected) {}
+        try {
+            map.ensureCapacity(402653184);
+            fail("Grew past the maximum capacity");
+        } catch (IllegalStateException expected) {}
+    }
+
+    public void testFootprint() {
+        System.out.println("footprint");
+        MacAddressLongMap map = new MacAddressLongMap(1000, 0);
+        long before = map.footprint();
+        for (int i = 0; i < 1000; ++i) map.addTo(TestConstants.TEST_MAC_LONG + i, 1);
+        assertEquals(before, map.footprint());
+        assertTrue(map.footprint() <= 43L * 1000 + 64);
+    }
+}
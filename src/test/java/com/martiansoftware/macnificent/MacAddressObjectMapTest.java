@@ -0,0 +1,96 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class MacAddressObjectMapTest extends TestCase {
+
+    public MacAddressObjectMapTest(String testName) {
+        super(testName);
+    }
+
+    public void testPutRemove() {
+        System.out.println("putRemove");
+        MacAddressObjectMap<String> map = new MacAddressObjectMap<String>();
+        Map<Long, String> expected = new HashMap<Long, String>();
+        Random r = new Random(0x5eed);
+        for (int n = 0; n < 200000; ++n) {
+            long mac = TestConstants.TEST_MAC_LONG + r.nextInt(4096);
+            if (r.nextInt(3) == 0) {
+                assertEquals(expected.remove(mac), map.remove(mac));
+            } else {
+                String value = Integer.toString(n);
+                assertEquals(expected.put(mac, value), map.put(mac, value));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (long mac = TestConstants.TEST_MAC_LONG; mac < TestConstants.TEST_MAC_LONG + 4096; ++mac) {
+            assertEquals(expected.containsKey(mac), map.containsKey(mac));
+            assertEquals(expected.get(mac), map.get(mac));
+        }
+
+        Map<Long, String> seen = new HashMap<Long, String>();
+        map.forEach((mac, value) -> assertNull(seen.put(mac, value)));
+        assertEquals(expected, seen);
+
+        seen.clear();
+        for (MacAddressObjectMap<String>.Cursor c = map.cursor(); c.next(); ) {
+            assertNull(seen.put(c.mac(), c.value()));
+            c.setValue(c.value() + "!");
+        }
+        assertEquals(expected, seen);
+        for (Map.Entry<Long, String> e : expected.entrySet()) assertEquals(e.getValue() + "!", map.get(e.getKey()));
+        assertEquals(expected.size(), map.keys().length);
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(new MacAddress(TestConstants.TEST_MAC)));
+    }
+
+    public void testPutAll() {
+        System.out.println("putAll");
+        long[] macs = { 0, MacAddress.MAC_MASK, TestConstants.TEST_MAC_LONG };
+        MacAddressObjectMap<String> map = new MacAddressObjectMap<String>();
+        map.putAll(macs, new String[] { "a", "b", "c" });
+        assertEquals("a", map.get(0));
+        assertEquals("b", map.get(MacAddress.MAC_MASK));
+        assertEquals("c", map.get(new MacAddress(TestConstants.TEST_MAC)));
+        assertNull(map.get(-1L));
+        try {
+            map.put(TestConstants.TEST_MAC_LONG, null);
+            fail("Accepted a null value");
+        } catch (NullPointerException expected) {}
+        try {
+            map.put(1L << 48, "x");
+            fail("Added an invalid MAC address");
+        } catch (IllegalArgumentException expected) {}
+        assertEquals(3, map.size());
+        assertTrue(map.footprint() > 0);
+    }
+}
@@ -0,0 +1,162 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class MacAddressParserTest extends TestCase {
+
+    /**
+     * The regex previously used by MacAddress(String), kept here as the
+     * reference implementation for conformance testing.
+     */
+    private static final Pattern MACREGEX;
+
+    static {
+        StringBuilder buf = new StringBuilder("^\\s*");
+        for (int i = 0; i < MacAddress.ETH_ALEN; ++i) {
+            buf.append("([0-9a-fA-F]{2})");
+            if (i == 0) {
+                buf.append("([\\s-:._]?)");
+            } else if (i < MacAddress.ETH_ALEN - 1) {
+                buf.append("\\2");
+            }
+        }
+        buf.append("\\s*$");
+        MACREGEX = Pattern.compile(buf.toString());
+    }
+
+    private static final String[] SEPARATORS = { "", " ", "\t", "\n", "\u000b", "\f", "\r", "-", ":", ".", "_", "/", ",", "x", " ", " ", "  " };
+    private static final String[] PADDING = { "", " ", "\t", " \r\n", " ", " ", "\u0085", "z" };
+    private static final String ALPHABET = "0123456789abcdefABCDEFgG :-._\t\n é";
+
+    public MacAddressParserTest(String testName) {
+        super(testName);
+    }
+
+    private static long regexParse(String s) {
+        Matcher m = MACREGEX.matcher(s);
+        if (!m.matches()) return MacAddressParser.INVALID;
+        long result = 0;
+        for (int i = 0; i < MacAddress.ETH_ALEN; ++i) {
+            result = (result << 8) | Integer.parseInt(m.group(i == 0 ? 1 : i + 2), 16);
+        }
+        return result;
+    }
+
+    private static void assertConforms(String s) {
+        long expected = regexParse(s);
+        String msg = "\"" + s + "\"";
+        assertEquals(msg, expected, MacAddressParser.parse(s));
+
+        String padded = "@@" + s + "##";
+        assertEquals(msg, expected, MacAddressParser.parse(padded, 2, s.length()));
+        assertEquals(msg, expected, MacAddressParser.parse(padded.toCharArray(), 2, s.length()));
+
+        boolean ascii = true;
+        for (int i = 0; i < s.length(); ++i) ascii &= s.charAt(i) < 128;
+        if (ascii) {
+            byte[] b = padded.getBytes(StandardCharsets.US_ASCII);
+            assertEquals(msg, expected, MacAddressParser.parse(b, 2, s.length()));
+            assertEquals(msg, expected, MacAddressParser.parse(ByteBuffer.wrap(b), 2, s.length()));
+        }
+    }
+
+    public void testSeparators() {
+        System.out.println("separators");
+        String[] bytes = { "00", "1a", "2B", "c3", "D4", "ff" };
+        for (String sep : SEPARATORS) {
+            for (String pre : PADDING) {
+                for (String post : PADDING) {
+                    StringBuilder buf = new StringBuilder(pre);
+                    for (int i = 0; i < bytes.length; ++i) {
+                        if (i > 0) buf.append(sep);
+                        buf.append(bytes[i]);
+                    }
+                    assertConforms(buf.append(post).toString());
+                }
+            }
+        }
+    }
+
+    public void testMixedSeparators() {
+        System.out.println("mixed separators");
+        assertConforms("11:22-33:44-55:66");
+        assertConforms("1a2b3c 4d5e6f");
+        assertConforms("11:22:33:44:55-66");
+        assertConforms("11-22:33:44:55:66");
+        assertConforms("11 22 33 44 55\t66");
+    }
+
+    public void testLengths() {
+        System.out.println("lengths");
+        assertConforms("");
+        assertConforms("   ");
+        assertConforms("FFFFFFFFFFF");
+        assertConforms("FFFFFFFFFFFF");
+        assertConforms("FFFFFFFFFFFFF");
+        assertConforms("FF:FF:FF:FF:FF");
+        assertConforms("FF:FF:FF:FF:FF:F");
+        assertConforms("FF:FF:FF:FF:FF:FF:");
+        assertConforms("FF:FF:FF:FF:FF:FF:FF");
+        assertConforms(":FF:FF:FF:FF:FF:FF");
+    }
+
+    public void testRandom() {
+        System.out.println("random");
+        Random r = new Random(0x5eed);
+        for (int n = 0; n < 200000; ++n) {
+            int len = 10 + r.nextInt(12);
+            StringBuilder buf = new StringBuilder(len);
+            for (int i = 0; i < len; ++i) buf.append(ALPHABET.charAt(r.nextInt(ALPHABET.length())));
+            assertConforms(buf.toString());
+        }
+    }
+
+    public void testRandomValid() {
+        System.out.println("random valid");
+        Random r = new Random(42);
+        for (int n = 0; n < 10000; ++n) {
+            long mac = r.nextLong() & MacAddress.MAC_MASK;
+            String sep = SEPARATORS[r.nextInt(11)];
+            StringBuilder buf = new StringBuilder();
+            for (int i = MacAddress.ETH_ALEN - 1; i >= 0; --i) {
+                buf.append(String.format(r.nextBoolean() ? "%02x" : "%02X", (mac >>> (8 * i)) & 0xff));
+                if (i > 0) buf.append(sep);
+            }
+            assertEquals(mac, MacAddressParser.parse(buf));
+            assertConforms(buf.toString());
+        }
+    }
+
+    public void testNull() {
+        System.out.println("null");
+        assertEquals(MacAddressParser.INVALID, MacAddressParser.parse(null));
+    }
+}
@@ -0,0 +1,220 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class MacAddressScannerTest extends TestCase {
+
+    private static final String[] SEPARATORS = { "", ":", "-", ".", "_", " ", "\t" };
+    /**
+     * Text placed between MAC addresses, chosen so that no filler can be
+     * mistaken for part of an adjacent MAC address
+     */
+    private static final String[] FILLER = { ",", ";\n", " to=", "[", "]", "(", ") ", "é", "|DHCPACK on 10.0.0.5|", " via 10.1.1.1 vlan 12;", "\r\n" };
+
+    public MacAddressScannerTest(String testName) {
+        super(testName);
+    }
+
+    private static List<String> tokens(String s) {
+        final List<String> result = new ArrayList<String>();
+        final String str = s;
+        int n = MacAddressScanner.scan(s, (mac, start, end) -> {
+            assertEquals(MacAddressParser.parse(str, start, end - start), mac);
+            result.add(str.substring(start, end));
+        });
+        assertEquals(result.size(), n);
+        return result;
+    }
+
+    private static List<String> byteTokens(String s) {
+        final List<String> result = new ArrayList<String>();
+        final byte[] b = ("@@" + s).getBytes(StandardCharsets.UTF_8);
+        MacAddressScanner.scan(b, 2, b.length - 2, (mac, start, end) -> {
+            result.add(new String(b, start, end - start, StandardCharsets.UTF_8));
+        });
+        return result;
+    }
+
+    private static void assertTokens(String s, String... expected) {
+        List<String> exp = Arrays.asList(expected);
+        assertEquals(s, exp, tokens(s));
+        assertEquals(s, exp, byteTokens(s));
+    }
+
+    public void testScan() {
+        System.out.println("scan");
+        assertTokens("");
+        assertTokens("00:21:9b:07:20:74", "00:21:9b:07:20:74");
+        assertTokens("DHCPACK on 10.0.0.5 to 00:21:9b:07:20:74 (host) via eth0", "00:21:9b:07:20:74");
+        assertTokens("src=00-21-9B-07-20-74,dst=001122334455;", "00-21-9B-07-20-74", "001122334455");
+        assertTokens("via 00 11 22 33 44 55.", "00 11 22 33 44 55");
+        assertTokens("cafe 00 11 22 33 44 55 at", "00 11 22 33 44 55");
+        assertTokens("ab 00 11 22 33 44 55");
+        assertTokens("00 11 22 33 44 55 66");
+        assertTokens("00:11:22:33:44:55:66");
+        assertTokens("eui64 00:11:22:33:44:55:66:77");
+        assertTokens("x001122334455 0011223344556 00112233445");
+        assertTokens("00:11:22:33:44:55-66", "00:11:22:33:44:55");
+        assertTokens("00:11:22:33:44:5g 00:11:22:33:44:55", "00:11:22:33:44:55");
+        assertTokens("00:11-22:33:44:55 00.11.22.33.44.55", "00.11.22.33.44.55");
+        assertTokens("001122334455001122334455");
+        assertTokens("é001122334455é", "001122334455");
+    }
+
+    private static String randomText(Random r, List<String> macs) {
+        StringBuilder buf = new StringBuilder();
+        for (int n = 0; n < 2000; ++n) {
+            buf.append(FILLER[r.nextInt(FILLER.length)]);
+            if (r.nextInt(3) > 0) {
+                long mac = r.nextLong() & MacAddress.MAC_MASK;
+                if (r.nextBoolean()) mac = (TestConstants.TEST_MAC_LONG & ~0xffffffL) | (mac & 0xffffff);
+                String sep = SEPARATORS[r.nextInt(SEPARATORS.length)];
+                StringBuilder m = new StringBuilder();
+                for (int i = MacAddress.ETH_ALEN - 1; i >= 0; --i) {
+                    m.append(String.format(r.nextBoolean() ? "%02x" : "%02X", (mac >>> (8 * i)) & 0xff));
+                    if (i > 0) m.append(sep);
+                }
+                macs.add(m.toString());
+                buf.append(m);
+                buf.append(FILLER[r.nextInt(FILLER.length)]);
+            }
+        }
+        return buf.toString();
+    }
+
+    public void testRandom() {
+        System.out.println("random");
+        Random r = new Random(0x5eed);
+        List<String> macs = new ArrayList<String>();
+        String s = randomText(r, macs);
+        assertEquals(macs, tokens(s));
+        assertEquals(macs, byteTokens(s));
+    }
+
+    public void testRewrite() throws IOException {
+        System.out.println("rewrite");
+        OuiRegistry registry = new OuiRegistry();
+        StringBuilder out = new StringBuilder();
+        assertEquals(2, MacAddressScanner.rewrite("DHCPACK to " + TestConstants.TEST_MAC + " (x) from 001122334455", registry, out));
+        assertEquals("DHCPACK to " + TestConstants.TEST_MAC_FORMATTED + " (x) from " + registry.format(0x001122334455L), out.toString());
+
+        out.setLength(0);
+        assertEquals(0, MacAddressScanner.rewrite("nothing to see here", registry, out));
+        assertEquals("nothing to see here", out.toString());
+
+        out.setLength(0);
+        MacAddressScanner.rewrite(TestConstants.TEST_MAC, registry, MacAddressStyle.BARE, out);
+        assertEquals("Dell-072074", out.toString());
+    }
+
+    public void testStreamingRewrite() throws IOException {
+        System.out.println("streaming rewrite");
+        OuiRegistry registry = new OuiRegistry();
+        Random r = new Random(42);
+        List<String> macs = new ArrayList<String>();
+        String s = randomText(r, macs);
+        StringBuilder expected = new StringBuilder();
+        assertEquals(macs.size(), MacAddressScanner.rewrite(s, registry, expected));
+        byte[] input = s.getBytes(StandardCharsets.UTF_8);
+
+        for (int trial = 0; trial < 20; ++trial) {
+            MacAddressScanner.Rewriter rewriter = new MacAddressScanner.Rewriter(registry);
+            ByteBuffer in = ByteBuffer.allocate(MacAddressScanner.LOOKAHEAD + 1 + r.nextInt(200));
+            ByteBuffer out = trial % 2 == 0 ? ByteBuffer.allocate(64 + r.nextInt(100)) : ByteBuffer.allocateDirect(64 + r.nextInt(100));
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            int fed = 0;
+            boolean done = false;
+            while (!done) {
+                int n = Math.min(in.remaining(), Math.min(input.length - fed, 1 + r.nextInt(in.capacity())));
+                in.put(input, fed, n);
+                fed += n;
+                in.flip();
+                boolean eoi = fed == input.length;
+                while (!rewriter.rewrite(in, out, eoi)) drain(out, result);
+                done = eoi && !in.hasRemaining();
+                in.compact();
+            }
+            drain(out, result);
+            assertEquals(expected.toString(), new String(result.toByteArray(), StandardCharsets.UTF_8));
+            assertEquals(macs.size(), rewriter.getCount());
+        }
+    }
+
+    /**
+     * Rewrites through the smallest input buffer allowed, with a short name
+     * longer than the Rewriter's initial scratch space
+     */
+    public void testSmallestBuffer() throws IOException {
+        System.out.println("smallest buffer");
+        char[] name = new char[300];
+        Arrays.fill(name, 'x');
+        List<Oui> ouis = new ArrayList<Oui>(new OuiRegistry().table().ouis());
+        ouis.add(new Oui(0xf0f0f0L << 24, PrefixTrie.MA_L, "Long Name Inc.", new String(name)));
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        OuiDataFile.writeV2(data, 0, ouis);
+        OuiRegistry registry = new OuiRegistry(ByteBuffer.wrap(data.toByteArray()));
+
+        String s = "from f0:f0:f0:12:34:56 to " + TestConstants.TEST_MAC + ", then f0f0f0123456.";
+        StringBuilder expected = new StringBuilder();
+        assertEquals(3, MacAddressScanner.rewrite(s, registry, expected));
+        byte[] input = s.getBytes(StandardCharsets.UTF_8);
+
+        MacAddressScanner.Rewriter rewriter = new MacAddressScanner.Rewriter(registry);
+        ByteBuffer in = ByteBuffer.allocate(MacAddressScanner.LOOKAHEAD + 1);
+        ByteBuffer out = ByteBuffer.allocate(512);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        int fed = 0;
+        boolean done = false;
+        while (!done) {
+            int n = Math.min(in.remaining(), input.length - fed);
+            in.put(input, fed, n);
+            fed += n;
+            in.flip();
+            boolean eoi = fed == input.length;
+            while (!rewriter.rewrite(in, out, eoi)) drain(out, result);
+            assertTrue(eoi || in.position() > 0);
+            done = eoi && !in.hasRemaining();
+            in.compact();
+        }
+        drain(out, result);
+        assertEquals(expected.toString(), new String(result.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(3, rewriter.getCount());
+    }
+
+    private static void drain(ByteBuffer out, ByteArrayOutputStream result) {
+        out.flip();
+        while (out.hasRemaining()) result.write(out.get());
+        out.clear();
+    }
+}
@@ -0,0 +1,170 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class MacAddressSetTest extends TestCase {
+
+    public MacAddressSetTest(String testName) {
+        super(testName);
+    }
+
+    private static void assertSame(Set<Long> expected, MacAddressSet set) {
+        assertEquals(expected.size(), set.size());
+        for (long mac : expected) assertTrue(set.contains(mac));
+
+        Set<Long> seen = new HashSet<Long>();
+        for (PrimitiveIterator.OfLong i = set.iterator(); i.hasNext(); ) assertTrue(seen.add(i.nextLong()));
+        assertEquals(expected, seen);
+
+        seen.clear();
+        set.forEach(mac -> assertTrue(seen.add(mac)));
+        assertEquals(expected, seen);
+
+        long[] a = set.toArray();
+        assertEquals(expected.size(), a.length);
+        for (long mac : a) assertTrue(expected.contains(mac));
+    }
+
+    public void testAddRemove() {
+        System.out.println("addRemove");
+        MacAddressSet set = new MacAddressSet();
+        Set<Long> expected = new HashSet<Long>();
+        Random r = new Random(0x5eed);
+        // a narrow key space forces plenty of collisions, duplicates and shifts
+        for (int n = 0; n < 200000; ++n) {
+            long mac = TestConstants.TEST_MAC_LONG + r.nextInt(4096);
+            if (r.nextInt(3) == 0) {
+                assertEquals(expected.remove(mac), set.remove(mac));
+            } else {
+                assertEquals(expected.add(mac), set.add(mac));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        assertSame(expected, set);
+        for (long mac = TestConstants.TEST_MAC_LONG; mac < TestConstants.TEST_MAC_LONG + 4096; ++mac) {
+            assertEquals(expected.contains(mac), set.contains(mac));
+        }
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(TestConstants.TEST_MAC_LONG));
+    }
+
+    public void testAddAll() {
+        System.out.println("addAll");
+        Random r = new Random(42);
+        long[] macs = new long[10000];
+        for (int i = 0; i < macs.length; ++i) macs[i] = r.nextLong() & MacAddress.MAC_MASK;
+        macs[1] = macs[0];
+
+        MacAddressSet set = new MacAddressSet();
+        assertEquals(macs.length - 1, set.addAll(macs));
+        assertEquals(0, set.addAll(macs, 100, 50));
+        Set<Long> expected = new HashSet<Long>();
+        for (long mac : macs) expected.add(mac);
+        assertSame(expected, set);
+    }
+
+    public void testEdges() {
+        System.out.println("edges");
+        MacAddressSet set = new MacAddressSet();
+        assertTrue(set.add(0));
+        assertTrue(set.add(MacAddress.MAC_MASK));
+        assertTrue(set.add(new MacAddress(TestConstants.TEST_MAC)));
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(MacAddress.MAC_MASK));
+        assertTrue(set.contains(TestConstants.TEST_MAC_LONG));
+        assertFalse(set.contains(-1L));
+        assertFalse(set.contains(1L << 48));
+        assertFalse(set.remove(-1L));
+        try {
+            set.add(-1L);
+            fail("Added an invalid MAC address");
+        } catch (IllegalArgumentException expected) {}
+        try {
+            set.add(1L << 48);
+            fail("Added an invalid MAC address");
+        } catch (IllegalArgumentException expected) {}
+        try {
+            set.addAll(new long[2], 1, Integer.MAX_VALUE);
+            fail("Accepted a range whose end overflows");
+        } catch (IndexOutOfBoundsException expected) {}
+        try {
+            set.ensureCapacity(Integer.MAX_VALUE);
+            fail("Grew past the maximum capacity");
+        } catch (IllegalStateException expected) {}
+        assertEquals(3, set.size());
+        assertFalse(set.iterator().nextLong() == -1L);
+    }
+
+    public void testSorted() {
+        System.out.println("sorted");
+        MacAddressSet set = new MacAddressSet();
+        TreeSet<MacAddress> expected = new TreeSet<MacAddress>();
+        Random r = new Random(7);
+        for (int i = 0; i < 5000; ++i) {
+            long mac = r.nextLong() & MacAddress.MAC_MASK;
+            set.add(mac);
+            expected.add(MacAddress.fromLong(mac));
+        }
+        set.add(0L);
+        set.add(MacAddress.MAC_MASK);
+        expected.add(MacAddress.fromLong(0L));
+        expected.add(MacAddress.fromLong(MacAddress.MAC_MASK));
+
+        long[] sorted = set.toSortedArray();
+        assertEquals(expected.size(), sorted.length);
+        int n = 0;
+        for (MacAddress mac : expected) assertEquals(mac.toLong(), sorted[n++]);
+
+        for (String s : new String[] { "80:00:00:00:00:00/1", "00:00:00:00:00:00/1", "7f:00:00:00:00:00-81:ff:ff:ff:ff:ff", "ff:ff:ff:ff:ff:ff", "00:00:00:00:00:00/0" }) {
+            MacRange range = MacRange.parse(s);
+            long[] slice = set.toSortedArray(range);
+            assertTrue(Arrays.equals(Arrays.copyOfRange(sorted, range.indexOf(sorted), range.endIndexOf(sorted)), slice));
+            assertEquals(s, range.subSet(expected).size(), slice.length);
+            n = 0;
+            for (MacAddress mac : range.subSet(expected)) assertEquals(mac.toLong(), slice[n++]);
+        }
+    }
+
+    public void testFootprint() {
+        System.out.println("footprint");
+        MacAddressSet set = new MacAddressSet(100000);
+        long before = set.footprint();
+        long[] macs = new long[100000];
+        for (int i = 0; i < macs.length; ++i) macs[i] = TestConstants.TEST_MAC_LONG + i;
+        set.addAll(macs);
+        assertEquals(before, set.footprint());
+        assertTrue(set.footprint() <= 22L * macs.length + 64);
+        assertEquals(Arrays.toString(new long[0]), Arrays.toString(new MacAddressSet().toArray()));
+    }
+}
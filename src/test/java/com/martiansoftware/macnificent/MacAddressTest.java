@@ -19,6 +19,8 @@ package com.martiansoftware.macnificent;
  *
  */
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import junit.framework.TestCase;
 
@@ -43,16 +45,77 @@ public class MacAddressTest extends TestCase {
     }
 
     /**
-     * Test of getInternalBytes method, of class MacAddress.
+     * Test of toLong method, of class MacAddress.
      */
-    public void testGetInternalBytes() {
-        System.out.println("getInternalBytes");
-        byte[] b = { 0, 1, 2, 3, 4, 5 };
-        MacAddress m1 = new MacAddress(b);
-        byte[] b2 = m1.getInternalBytes();
-        assertTrue (b != m1.getInternalBytes());
-        assertTrue (b2 == m1.getInternalBytes());
-        assertTrue(m1.getInternalBytes() == m1.getInternalBytes());
+    public void testToLong() {
+        System.out.println("toLong");
+        MacAddress m1 = new MacAddress(TestConstants.TEST_MAC);
+        assertEquals(TestConstants.TEST_MAC_LONG, m1.toLong());
+        assertEquals(TestConstants.TEST_MAC_LONG, MacAddress.toLong(TestConstants.TEST_MAC_BYTES, 0));
+        byte[] b = new byte[8];
+        MacAddress.toBytes(m1.toLong(), b, 1);
+        assertTrue(Arrays.equals(TestConstants.TEST_MAC_BYTES, Arrays.copyOfRange(b, 1, 7)));
+
+        for (ByteBuffer buf : new ByteBuffer[] { ByteBuffer.allocate(9), ByteBuffer.allocateDirect(9).order(ByteOrder.LITTLE_ENDIAN) }) {
+            buf.position(5);
+            MacAddress.toBytes(0xfedcba987654L, buf, 2);
+            assertEquals(0xfedcba987654L, MacAddress.toLong(buf, 2));
+            assertEquals((byte) 0xfe, buf.get(2));
+            assertEquals(5, buf.position());
+            MacAddress.toBytes(TestConstants.TEST_MAC_LONG, buf, 3);
+            assertEquals(TestConstants.TEST_MAC_LONG, MacAddress.toLong(buf, 3));
+            try {
+                MacAddress.toLong(buf, 4);
+                fail("Read past the buffer's limit");
+            } catch (IndexOutOfBoundsException expected) {
+            }
+        }
+    }
+
+    /**
+     * Test of fromLong method, of class MacAddress.
+     */
+    public void testFromLong() {
+        System.out.println("fromLong");
+        MacAddress m1 = MacAddress.fromLong(TestConstants.TEST_MAC_LONG);
+        assertEquals(new MacAddress(TestConstants.TEST_MAC), m1);
+        assertEquals(TestConstants.TEST_MAC, m1.toString());
+        assertEquals(MacAddress.MAC_MASK, MacAddress.fromLong(MacAddress.MAC_MASK).toLong());
+        try {
+            MacAddress.fromLong(1L << 48);
+            fail("Accepted a value wider than 48 bits.");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * Test of static long helpers, of class MacAddress.
+     */
+    public void testLongHelpers() {
+        System.out.println("long helpers");
+        long mac = TestConstants.TEST_MAC_LONG;
+        assertEquals(0x00219b, MacAddress.oui(mac));
+        assertFalse(MacAddress.isMulticast(mac));
+        assertFalse(MacAddress.isLocal(mac));
+        assertTrue(MacAddress.isMulticast(mac | (1L << 40)));
+        assertTrue(MacAddress.isLocal(mac | (2L << 40)));
+        assertEquals(0xfe219b, MacAddress.oui(mac | (0xfeL << 40)));
+    }
+
+    /**
+     * Test of compareTo method, of class MacAddress.
+     */
+    public void testCompareTo() {
+        System.out.println("compareTo");
+        MacAddress m1 = new MacAddress("00:00:00:00:00:01");
+        MacAddress m2 = new MacAddress("00:00:00:00:00:02");
+        MacAddress m3 = new MacAddress("80:00:00:00:00:00");
+        assertTrue(m1.compareTo(m2) < 0);
+        assertTrue(m2.compareTo(m1) > 0);
+        assertEquals(0, m1.compareTo(new MacAddress("00:00:00:00:00:01")));
+        assertTrue(m3.compareTo(m1) > 0); // bytes compare as unsigned values
+        assertTrue(m3.compareTo(new MacAddress("7f:ff:ff:ff:ff:ff")) > 0);
+        assertTrue(new MacAddress("ff:ff:ff:ff:ff:ff").compareTo(m3) > 0);
     }
 
     /**
@@ -63,7 +126,6 @@ public class MacAddressTest extends TestCase {
         MacAddress instance = new MacAddress(TestConstants.TEST_MAC);
         assertTrue(Arrays.equals(instance.getBytes(), TestConstants.TEST_MAC_BYTES));
         assertTrue(instance.getBytes() != instance.getBytes());
-        assertTrue(instance.getBytes() != instance.getInternalBytes());
     }
 
     /**
@@ -115,6 +177,34 @@ public class MacAddressTest extends TestCase {
         assertTrue(!m1.equals(m3));
     }
 
+    /**
+     * Test of formatTo and toString(MacAddressStyle) methods, of class MacAddress.
+     */
+    public void testFormatTo() throws Exception {
+        System.out.println("formatTo");
+        MacAddress m1 = new MacAddress("00:21:9b:0a:bc:ef");
+        String[][] expected = {
+            { "COLON", "00:21:9b:0a:bc:ef" }, { "COLON_UPPER", "00:21:9B:0A:BC:EF" },
+            { "DASH", "00-21-9b-0a-bc-ef" }, { "DASH_UPPER", "00-21-9B-0A-BC-EF" },
+            { "DOTTED", "0021.9b0a.bcef" }, { "DOTTED_UPPER", "0021.9B0A.BCEF" },
+            { "BARE", "00219b0abcef" }, { "BARE_UPPER", "00219B0ABCEF" } };
+        assertEquals(expected.length, MacAddressStyle.values().length);
+        for (String[] e : expected) {
+            MacAddressStyle style = MacAddressStyle.valueOf(e[0]);
+            assertEquals(e[1], m1.toString(style));
+            assertEquals(e[1].length(), style.length());
+            StringBuilder buf = new StringBuilder("x");
+            m1.formatTo(buf, style);
+            assertEquals("x" + e[1], buf.toString());
+            byte[] b = new byte[20];
+            assertEquals(e[1].length(), m1.formatTo(b, 2, style));
+            assertEquals(e[1], new String(b, 2, e[1].length(), "US-ASCII"));
+        }
+        StringBuilder buf = new StringBuilder();
+        m1.formatTo(buf);
+        assertEquals(m1.toString(), buf.toString());
+    }
+
     public void testTooLong() {
         byte[] b = {01, 02, 03, 04, 05, 06, 07};
         try {
@@ -0,0 +1,85 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class MacAddressViewTest extends TestCase {
+
+    public MacAddressViewTest(String testName) {
+        super(testName);
+    }
+
+    public void testWrap() throws Exception {
+        System.out.println("wrap");
+        ByteBuffer buf = ByteBuffer.allocateDirect(20).order(ByteOrder.LITTLE_ENDIAN);
+        MacAddress.toBytes(TestConstants.TEST_MAC_LONG, buf, 2);
+        MacAddress.toBytes(0x030000000001L, buf, 12);
+        MacAddressView view = new MacAddressView();
+        assertEquals("(unwrapped)", view.toString());
+
+        assertSame(view, view.wrap(buf, 2));
+        assertSame(buf, view.getBuffer());
+        assertEquals(2, view.getOffset());
+        assertEquals(TestConstants.TEST_MAC_LONG, view.toLong());
+        assertEquals(MacAddress.oui(TestConstants.TEST_MAC_LONG), view.oui());
+        assertEquals(TestConstants.TEST_MAC, view.toString());
+        assertEquals(new MacAddress(TestConstants.TEST_MAC), view.toMacAddress());
+        assertFalse(view.isLocal());
+        assertFalse(view.isMulticast());
+        byte[] b = new byte[6];
+        view.copyBytes(b, 0);
+        assertTrue(Arrays.equals(TestConstants.TEST_MAC_BYTES, b));
+
+        view.wrap(buf, 12);
+        assertTrue(view.isLocal());
+        assertTrue(view.isMulticast());
+        StringBuilder out = new StringBuilder();
+        view.formatTo(out, MacAddressStyle.DOTTED);
+        assertEquals("0300.0000.0001", out.toString());
+
+        // a view reflects changes to the bytes it wraps
+        MacAddress.toBytes(0x123456789abcL, buf, 12);
+        assertEquals(0x123456789abcL, view.toLong());
+        assertEquals(0, buf.position());
+    }
+
+    public void testBounds() {
+        System.out.println("bounds");
+        ByteBuffer buf = ByteBuffer.allocate(10);
+        MacAddressView view = new MacAddressView(buf, 4);
+        assertEquals(4, view.getOffset());
+        for (int offset : new int[] { -1, 5 }) {
+            try {
+                view.wrap(buf, offset);
+                fail("Accepted offset " + offset);
+            } catch (IndexOutOfBoundsException expected) {
+            }
+        }
+        assertEquals(4, view.getOffset());
+    }
+}
@@ -0,0 +1,131 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class MacRangeMatcherTest extends TestCase {
+
+    public MacRangeMatcherTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Reference implementation: a linear scan for the smallest, then
+     * earliest, containing range
+     */
+    private static int bruteForce(MacRange[] ranges, long mac) {
+        int result = MacRangeMatcher.NOT_FOUND;
+        for (int i = 0; i < ranges.length; ++i) {
+            if (ranges[i].contains(mac) && (result == MacRangeMatcher.NOT_FOUND || ranges[i].size() < ranges[result].size())) result = i;
+        }
+        return result;
+    }
+
+    public void testPolicy() {
+        System.out.println("policy");
+        MacRangeMatcher m = new MacRangeMatcher(Arrays.asList(
+                MacRange.parse("00:1b:63:00:00:00/24"),
+                MacRange.parse("00:1b:63:80:00:00/28"),
+                MacRange.parse("00:1b:63:80:00:00/36"),
+                MacRange.parse("00:1b:63:80:00:00-00:1b:64:00:00:ff"),
+                MacRange.parse("02:00:00:00:00:00/ff:00:00:00:00:00"),
+                MacRange.parse("00:1b:63:00:00:00/24")));
+        assertEquals(6, m.size());
+        assertEquals(0, m.match(new MacAddress("00:1b:63:00:00:01")));
+        assertEquals(1, m.match(new MacAddress("00:1b:63:8f:ff:ff")));
+        assertEquals(2, m.match(new MacAddress("00:1b:63:80:00:ff")));
+        assertEquals(3, m.match(new MacAddress("00:1b:63:90:00:00"))); // the span is smaller than the /24
+        assertEquals(0, m.match(new MacAddress("00:1b:63:7f:ff:ff")));
+        assertEquals(3, m.match(new MacAddress("00:1b:64:00:00:80")));
+        assertEquals(MacRangeMatcher.NOT_FOUND, m.match(new MacAddress("00:1b:64:00:01:00")));
+        assertEquals(4, m.match(new MacAddress("02:12:34:56:78:9a")));
+        assertEquals(MacRangeMatcher.NOT_FOUND, m.match(0L));
+        assertEquals(MacRangeMatcher.NOT_FOUND, m.match(MacAddress.MAC_MASK));
+        assertEquals(MacRangeMatcher.NOT_FOUND, m.match(MacAddressParser.INVALID));
+        assertEquals(m.getRange(4), m.getMatch(new MacAddress("02:12:34:56:78:9a").toLong()));
+        assertNull(m.getMatch(0L));
+    }
+
+    public void testEdges() {
+        System.out.println("edges");
+        MacRangeMatcher empty = new MacRangeMatcher();
+        assertEquals(MacRangeMatcher.NOT_FOUND, empty.match(0L));
+        assertEquals(MacRangeMatcher.NOT_FOUND, empty.match(MacAddress.MAC_MASK));
+        assertEquals(1, empty.intervals());
+
+        MacRangeMatcher all = new MacRangeMatcher(MacRange.ALL, MacRange.of(0, 0), MacRange.of(MacAddress.MAC_MASK, MacAddress.MAC_MASK));
+        assertEquals(1, all.match(0L));
+        assertEquals(0, all.match(1L));
+        assertEquals(0, all.match(MacAddress.MAC_MASK - 1));
+        assertEquals(2, all.match(MacAddress.MAC_MASK));
+        assertEquals(MacRangeMatcher.NOT_FOUND, all.match(1L << 48));
+    }
+
+    public void testRandom() {
+        System.out.println("random");
+        Random r = new Random(0x5eed);
+        for (int round = 0; round < 20; ++round) {
+            // confine everything to a small space so ranges overlap heavily
+            long base = (r.nextLong() & MacAddress.MAC_MASK) & ~0xffffL;
+            List<MacRange> ranges = new ArrayList<MacRange>();
+            int n = 1 + r.nextInt(300);
+            for (int i = 0; i < n; ++i) {
+                long a = base + r.nextInt(0x10000);
+                if (r.nextBoolean()) {
+                    ranges.add(MacRange.prefix(a, 32 + r.nextInt(17)));
+                } else {
+                    long b = Math.min(base + 0xffff, a + r.nextInt(1 << (4 * (1 + r.nextInt(3)))));
+                    ranges.add(MacRange.of(a, b));
+                }
+            }
+            MacRange[] array = ranges.toArray(new MacRange[n]);
+            MacRangeMatcher m = new MacRangeMatcher(array);
+            assertTrue(m.intervals() <= 2 * n + 1);
+            for (long mac = base - 2; mac < base + 0x10002; ++mac) {
+                if (mac < 0 || mac > MacAddress.MAC_MASK) continue;
+                assertEquals(Long.toHexString(mac), bruteForce(array, mac), m.match(mac));
+            }
+        }
+    }
+
+    public void testMany() {
+        System.out.println("many");
+        Random r = new Random(42);
+        MacRange[] ranges = new MacRange[10000];
+        for (int i = 0; i < ranges.length; ++i) {
+            ranges[i] = MacRange.prefix(r.nextLong() & MacAddress.MAC_MASK, 16 + r.nextInt(33));
+        }
+        MacRangeMatcher m = new MacRangeMatcher(ranges);
+        for (int i = 0; i < 2000; ++i) {
+            long mac = r.nextInt(4) == 0 ? ranges[r.nextInt(ranges.length)].first() + r.nextInt(256) : r.nextLong() & MacAddress.MAC_MASK;
+            mac &= MacAddress.MAC_MASK;
+            assertEquals(bruteForce(ranges, mac), m.match(mac));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.TreeSet;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class MacRangeTest extends TestCase {
+
+    public MacRangeTest(String testName) {
+        super(testName);
+    }
+
+    private static long mac(String s) {
+        return new MacAddress(s).toLong();
+    }
+
+    private static void assertInvalid(String s) {
+        try {
+            MacRange.parse(s);
+            fail("Parsed invalid range: " + s);
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testParse() {
+        System.out.println("parse");
+        MacRange r = MacRange.parse("00:1b:63:00:00:00/24");
+        assertEquals(mac("00:1b:63:00:00:00"), r.first());
+        assertEquals(mac("00:1b:63:ff:ff:ff"), r.last());
+        assertEquals(1L << 24, r.size());
+        assertEquals(24, r.prefixLength());
+        assertEquals(mac("ff:ff:ff:00:00:00"), r.mask());
+        assertEquals("00:1b:63:00:00:00/24", r.toString());
+
+        assertEquals(r, MacRange.parse("00:1b:63:00:00:00/ff:ff:ff:00:00:00"));
+        assertEquals(r, MacRange.parse("00-1B-63-12-34-56 / 24")); // bits beyond the prefix are ignored
+        assertEquals(r, MacRange.parse("00-1b-63-00-00-00-00-1b-63-ff-ff-ff"));
+        assertEquals(r, MacRange.parse("001b63000000 - 001b63ffffff"));
+        assertEquals(r, MacRange.prefix(mac("00:1b:63:aa:bb:cc"), 24));
+        assertEquals(r, MacRange.masked(mac("00:1b:63:aa:bb:cc"), mac("ff:ff:ff:00:00:00")));
+        assertEquals(r.hashCode(), MacRange.parse("00:1b:63:00:00:00/24").hashCode());
+
+        assertEquals(MacRange.ALL, MacRange.parse("12:34:56:78:9a:bc/0"));
+        assertEquals(0, MacRange.ALL.prefixLength());
+        assertEquals(0L, MacRange.ALL.mask());
+        assertEquals(1L << 48, MacRange.ALL.size());
+
+        MacRange one = MacRange.parse("12:34:56:78:9a:bc");
+        assertEquals(1, one.size());
+        assertEquals(48, one.prefixLength());
+        assertEquals(one, MacRange.parse("12:34:56:78:9a:bc/48"));
+
+        MacRange span = MacRange.parse("00:1b:63:00:00:10-00:1b:63:00:00:2f");
+        assertEquals(0x20, span.size());
+        assertFalse(span.isPrefix());
+        assertEquals("00:1b:63:00:00:10-00:1b:63:00:00:2f", span.toString());
+        assertEquals(span, MacRange.parse(span.toString()));
+        try {
+            span.mask();
+            fail("Returned mask for non-prefix range");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    public void testInvalid() {
+        System.out.println("invalid");
+        assertInvalid("");
+        assertInvalid("00:1b:63");
+        assertInvalid("00:1b:63:00:00:00/49");
+        assertInvalid("00:1b:63:00:00:00/-1");
+        assertInvalid("00:1b:63:00:00:00/");
+        assertInvalid("00:1b:63:00:00:00/ff:00:ff:00:00:00");
+        assertInvalid("00:1b:63:00:00:00/24/24");
+        assertInvalid("00:1b:63:ff:ff:ff-00:1b:63:00:00:00");
+        assertInvalid("00:1b:63:00:00:00-");
+        try {
+            MacRange.prefix(1L << 48, 24);
+            fail("Accepted value wider than 48 bits");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testContains() {
+        System.out.println("contains");
+        MacRange r = MacRange.parse("00:1b:63:00:00:00/24");
+        assertTrue(r.contains(mac("00:1b:63:00:00:00")));
+        assertTrue(r.contains(mac("00:1b:63:ff:ff:ff")));
+        assertTrue(r.contains(new MacAddress("00:1b:63:12:34:56")));
+        assertFalse(r.contains(mac("00:1b:62:ff:ff:ff")));
+        assertFalse(r.contains(mac("00:1b:64:00:00:00")));
+        assertFalse(r.contains(MacAddressParser.INVALID));
+        assertFalse(MacRange.ALL.contains(MacAddressParser.INVALID));
+        assertFalse(MacRange.ALL.contains(1L << 48));
+
+        assertTrue(r.contains(MacRange.parse("00:1b:63:80:00:00/28")));
+        assertTrue(r.contains(r));
+        assertTrue(MacRange.ALL.contains(r));
+        assertFalse(r.contains(MacRange.parse("00:1b:63:80:00:00-00:1b:64:00:00:00")));
+        assertTrue(r.overlaps(MacRange.parse("00:1b:63:80:00:00-00:1b:64:00:00:00")));
+        assertFalse(r.overlaps(MacRange.parse("00:1b:64:00:00:00/24")));
+    }
+
+    public void testSubSet() {
+        System.out.println("subSet");
+        TreeSet<MacAddress> set = new TreeSet<MacAddress>();
+        for (String s : new String[] { "00:00:00:00:00:01", "7f:ff:ff:ff:ff:ff", "80:00:00:00:00:00", "80:00:00:00:00:01", "c0:00:00:00:00:00", "ff:ff:ff:ff:ff:ff" }) {
+            set.add(new MacAddress(s));
+        }
+        assertEquals(4, MacRange.parse("80:00:00:00:00:00/1").subSet(set).size());
+        assertEquals(2, MacRange.parse("00:00:00:00:00:00/1").subSet(set).size());
+        assertEquals(3, MacRange.parse("7f:ff:ff:ff:ff:ff-80:00:00:00:00:01").subSet(set).size());
+        assertEquals(new MacAddress("80:00:00:00:00:00"), MacRange.parse("80:00:00:00:00:00/1").subSet(set).first());
+
+        long[] sorted = { 1, 5, 5, 9, MacAddress.MAC_MASK };
+        MacRange r = MacRange.of(5, 9);
+        assertEquals(1, r.indexOf(sorted));
+        assertEquals(4, r.endIndexOf(sorted));
+        assertEquals(4, MacRange.of(10, MacAddress.MAC_MASK).indexOf(sorted));
+        assertEquals(5, MacRange.of(10, MacAddress.MAC_MASK).endIndexOf(sorted));
+        assertEquals(0, MacRange.of(0, 0).endIndexOf(sorted));
+    }
+}
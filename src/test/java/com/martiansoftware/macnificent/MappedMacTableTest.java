@@ -0,0 +1,189 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class MappedMacTableTest extends TestCase {
+
+    public MappedMacTableTest(String testName) {
+        super(testName);
+    }
+
+    private static File tempFile() throws IOException {
+        File f = File.createTempFile("macnificent", ".table");
+        f.deleteOnExit();
+        return f;
+    }
+
+    /**
+     * The i-th test MAC, spread across many manufacturers
+     */
+    private static long mac(int i) {
+        return (TestConstants.TEST_MAC_LONG + 0x1000000L * (i % 1000) + i / 1000) & MacAddress.MAC_MASK;
+    }
+
+    public void testSeenAndReopen() throws Exception {
+        System.out.println("seenAndReopen");
+        OuiRegistry registry = new OuiRegistry();
+        File f = tempFile();
+        int n = 20000;
+
+        MappedMacTable table = MappedMacTable.open(f);
+        long capacity = table.capacity();
+        for (int i = 0; i < n; ++i) assertEquals(registry.indexOf(mac(i)), table.seen(mac(i), 1000 + i, registry));
+        for (int i = 0; i < n; ++i) table.seen(mac(i), 500 + i, registry);
+        assertEquals(n, table.size());
+        assertTrue(table.capacity() > capacity);
+        assertTrue(table.capacity() * 3 >= table.size() * 4);
+        assertEquals(MappedMacTable.HEADER_SIZE + table.capacity() * MappedMacTable.RECORD_SIZE, f.length());
+        table.close();
+        assertFalse(new File(f.getPath() + ".resize").exists());
+
+        table = MappedMacTable.open(f);
+        assertEquals(n, table.size());
+        for (int i = 0; i < n; ++i) {
+            long mac = mac(i);
+            assertTrue(table.contains(mac));
+            assertEquals(registry.indexOf(mac), table.ouiIndexOf(mac));
+            assertEquals(500 + i, table.firstSeen(mac));
+            assertEquals(1000 + i, table.lastSeen(mac));
+        }
+        assertEquals(OuiRegistry.NOT_FOUND, registry.indexOf(0xf0f0f0123456L));
+        assertEquals(MappedMacTable.ABSENT, table.ouiIndexOf(0xf0f0f0123456L));
+        assertEquals(MappedMacTable.NEVER, table.firstSeen(0xf0f0f0123456L));
+        assertFalse(table.contains(-1L));
+
+        final long[] count = new long[1];
+        table.forEach((mac, firstSeen, lastSeen, ouiIndex) -> {
+            assertEquals(registry.indexOf(mac), ouiIndex);
+            assertTrue(firstSeen <= lastSeen);
+            ++count[0];
+        });
+        assertEquals(table.size(), count[0]);
+        table.close();
+    }
+
+    public void testPut() throws Exception {
+        System.out.println("put");
+        MappedMacTable table = MappedMacTable.open(tempFile(), 10);
+        assertTrue(table.put(TestConstants.TEST_MAC_LONG, 5, 10, 42));
+        assertFalse(table.put(TestConstants.TEST_MAC_LONG, 7, 20, 43));
+        assertEquals(5, table.firstSeen(TestConstants.TEST_MAC_LONG));
+        assertEquals(20, table.lastSeen(TestConstants.TEST_MAC_LONG));
+        assertEquals(43, table.ouiIndexOf(TestConstants.TEST_MAC_LONG));
+        assertTrue(table.put(0, 0, 0, OuiRegistry.NOT_FOUND));
+        assertTrue(table.put(MacAddress.MAC_MASK, 0, 0, OuiRegistry.NOT_FOUND));
+        assertEquals(OuiRegistry.NOT_FOUND, table.ouiIndexOf(0));
+        assertEquals(3, table.size());
+        try {
+            table.put(1L << 48, 0, 0, 0);
+            fail("Added an invalid MAC address");
+        } catch (IllegalArgumentException expected) {}
+        table.close();
+
+        // a size that just fits the load factor of the largest segment
+        // would need segments twice that large
+        File f = tempFile();
+        try {
+            MappedMacTable.open(f, (long) MappedMacTable.DEFAULT_SEGMENTS * ((1 << 25) - (1 << 23) - 1));
+            fail("Created a table with oversized segments");
+        } catch (IllegalArgumentException expected) {}
+        assertEquals(0, f.length());
+    }
+
+    public void testConcurrentWriters() throws Exception {
+        System.out.println("concurrentWriters");
+        final OuiRegistry registry = new OuiRegistry();
+        final MappedMacTable table = MappedMacTable.open(tempFile());
+        final int threads = 8, perThread = 10000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int t = 0; t < threads; ++t) {
+                final int first = t * perThread / 2; // half of each range overlaps the next
+                results.add(pool.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        for (int i = first; i < first + perThread; ++i) {
+                            table.seen(mac(i), i, registry);
+                            assertTrue(table.contains(mac(i)));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> f : results) f.get();
+        } finally {
+            pool.shutdown();
+        }
+        int n = (threads + 1) * perThread / 2;
+        assertEquals(n, table.size());
+        for (int i = 0; i < n; ++i) assertEquals(i, table.firstSeen(mac(i)));
+        table.close();
+    }
+
+    public void testUncleanReopen() throws Exception {
+        System.out.println("uncleanReopen");
+        File f = tempFile();
+        MappedMacTable crashed = MappedMacTable.open(f);
+        for (int i = 0; i < 100; ++i) crashed.put(mac(i), i, i, 0);
+        crashed.force();
+        // simulate a crash: reopen without closing, after clobbering the stored sizes
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        try {
+            raf.seek(64);
+            raf.writeLong(12345);
+        } finally {
+            raf.close();
+        }
+        MappedMacTable table = MappedMacTable.open(f);
+        assertEquals(100, table.size());
+        table.close();
+    }
+
+    public void testRejectsBadFile() throws Exception {
+        System.out.println("rejectsBadFile");
+        File f = tempFile();
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            out.write(new byte[MappedMacTable.HEADER_SIZE]);
+        } finally {
+            out.close();
+        }
+        try {
+            MappedMacTable.open(f);
+            fail("Opened a file that is not a table");
+        } catch (IOException expected) {}
+    }
+}
@@ -19,7 +19,21 @@ package com.martiansoftware.macnificent;
  *
  */
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import junit.framework.TestCase;
 
 /**
@@ -84,6 +98,18 @@ public class OUIRegistryTest extends TestCase {
         assertEquals(TestConstants.TEST_MAC_FORMATTED, result);
     }
 
+    /**
+     * Test of getOUI method with a long argument, of class OUIRegistry.
+     */
+    public void testGetOUI_Long() throws Exception {
+        System.out.println("getOUI(long)");
+        OuiRegistry instance = new OuiRegistry();
+        Oui result = instance.getOui(TestConstants.TEST_MAC_LONG);
+        assertEquals(TestConstants.TEST_MAC_MFG, result.getManufacturer());
+        assertEquals(result, instance.getOui(TestConstants.TEST_MAC_LONG | (3L << 40)));
+        assertEquals(TestConstants.TEST_MAC_FORMATTED, instance.format(TestConstants.TEST_MAC_LONG));
+    }
+
     /**
      * Test of format method, of class OUIRegistry.
      */
@@ -95,5 +121,205 @@ public class OUIRegistryTest extends TestCase {
         assertEquals(TestConstants.TEST_MAC_FORMATTED, result);
     }
 
+    /**
+     * Returns a batch of MACs, about half of which have a known OUI
+     */
+    private static long[] batch(OuiRegistry reg, int n) {
+        Random r = new Random(n);
+        long[] result = new long[n];
+        for (int i = 0; i < n; ++i) {
+            long mac = r.nextLong() & MacAddress.MAC_MASK;
+            if (r.nextBoolean()) mac = (reg.getOuiByIndex(r.nextInt(reg.size())).getPrefix() | (mac & 0xfff)) ^ (r.nextInt(4) << 40);
+            result[i] = mac;
+        }
+        return result;
+    }
+
+    /**
+     * Test of indexOf and getOuiByIndex methods, of class OUIRegistry.
+     */
+    public void testIndexOf() throws Exception {
+        System.out.println("indexOf");
+        OuiRegistry instance = new OuiRegistry();
+        int i = instance.indexOf(TestConstants.TEST_MAC_LONG);
+        assertEquals(instance.getOui(TestConstants.TEST_MAC_LONG), instance.getOuiByIndex(i));
+        assertEquals(OuiRegistry.NOT_FOUND, instance.indexOf(0xf0f0f0000000L));
+        try {
+            instance.getOuiByIndex(instance.size());
+            fail("Accepted an out-of-range index.");
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    /**
+     * Test of the ByteBuffer getOui, indexOf, format and formatTo methods,
+     * of class OUIRegistry.
+     */
+    public void testByteBuffer() throws Exception {
+        System.out.println("byteBuffer");
+        OuiRegistry instance = new OuiRegistry();
+        ByteBuffer buf = ByteBuffer.allocateDirect(16);
+        buf.position(3);
+        MacAddress.toBytes(TestConstants.TEST_MAC_LONG, buf, 7);
+        assertEquals(instance.getOui(TestConstants.TEST_MAC_LONG), instance.getOui(buf, 7));
+        assertEquals(instance.indexOf(TestConstants.TEST_MAC_LONG), instance.indexOf(buf, 7));
+        assertEquals(TestConstants.TEST_MAC_FORMATTED, instance.format(buf, 7));
+        StringBuilder out = new StringBuilder();
+        instance.formatTo(buf, 7, out, MacAddressStyle.DASH);
+        assertEquals("Dell-07-20-74", out.toString());
+        assertEquals(3, buf.position());
+        MacAddress.toBytes(0xf0f0f0000000L, buf, 0);
+        assertNull(instance.getOui(buf, 0));
+        assertEquals(OuiRegistry.NOT_FOUND, instance.indexOf(buf, 0));
+    }
+
+    /**
+     * Test of lookupAll methods, of class OUIRegistry.
+     */
+    public void testLookupAll() throws Exception {
+        System.out.println("lookupAll");
+        OuiRegistry instance = new OuiRegistry();
+        long[] macs = batch(instance, 3 * OuiRegistry.PARALLEL_THRESHOLD + 17);
+        int[] expected = new int[macs.length];
+        for (int i = 0; i < macs.length; ++i) {
+            expected[i] = instance.indexOf(macs[i]);
+            Oui oui = instance.getOui(macs[i]);
+            assertEquals(oui, expected[i] == OuiRegistry.NOT_FOUND ? null : instance.getOuiByIndex(expected[i]));
+        }
+
+        int[] out = new int[macs.length];
+        instance.lookupAll(macs, out);
+        assertTrue(Arrays.equals(expected, out));
+
+        out = new int[macs.length];
+        instance.lookupAll(macs, out, ForkJoinPool.commonPool());
+        assertTrue(Arrays.equals(expected, out));
+
+        IntBuffer ib = IntBuffer.allocate(macs.length);
+        instance.lookupAll(LongBuffer.wrap(macs), ib);
+        assertEquals(macs.length, ib.position());
+        assertTrue(Arrays.equals(expected, ib.array()));
+
+        ByteBuffer bb = ByteBuffer.allocateDirect(macs.length * 6 + 3);
+        for (long mac : macs) bb.putShort((short) (mac >>> 32)).putInt((int) mac);
+        bb.put(new byte[3]).flip(); // a trailing partial MAC
+        ib.clear();
+        instance.lookupAll(bb, ib);
+        assertEquals(3, bb.remaining());
+        assertTrue(Arrays.equals(expected, ib.array()));
+
+        try {
+            instance.lookupAll(macs, 1, out, 0, Integer.MAX_VALUE);
+            fail("Accepted a range whose end overflows.");
+        } catch (IndexOutOfBoundsException ok) {
+        }
+    }
+
+    /**
+     * Test of formatAll methods, of class OUIRegistry.
+     */
+    public void testFormatAll() throws Exception {
+        System.out.println("formatAll");
+        OuiRegistry instance = new OuiRegistry();
+        long[] macs = batch(instance, 3 * OuiRegistry.PARALLEL_THRESHOLD + 17);
+        StringBuilder expected = new StringBuilder();
+        for (long mac : macs) expected.append(instance.format(mac)).append('\n');
+
+        StringBuilder out = new StringBuilder();
+        instance.formatAll(macs, out);
+        assertEquals(expected.toString(), out.toString());
+
+        out.setLength(0);
+        instance.formatAll(macs, out, ForkJoinPool.commonPool());
+        assertEquals(expected.toString(), out.toString());
+
+        out.setLength(0);
+        instance.formatAll(LongBuffer.wrap(macs), out);
+        assertEquals(expected.toString(), out.toString());
+
+        ByteBuffer bb = ByteBuffer.allocate(macs.length * 6);
+        for (long mac : macs) bb.putShort((short) (mac >>> 32)).putInt((int) mac);
+        bb.flip();
+        out.setLength(0);
+        instance.formatAll(bb, out);
+        assertEquals(expected.toString(), out.toString());
+        assertEquals("Unknown-f0-f0-f0-01:02:03", instance.format(0xf0f0f0010203L));
+
+        try {
+            instance.formatAll(macs, 1, Integer.MAX_VALUE, out);
+            fail("Accepted a range whose end overflows.");
+        } catch (IndexOutOfBoundsException ok) {
+        }
+    }
+
+    /**
+     * Test of formatTo methods, of class OUIRegistry.
+     */
+    public void testFormatTo() throws Exception {
+        System.out.println("formatTo");
+        OuiRegistry instance = new OuiRegistry();
+        MacAddress mac = new MacAddress(TestConstants.TEST_MAC);
+        StringBuilder buf = new StringBuilder();
+        instance.formatTo(mac, buf);
+        assertEquals(TestConstants.TEST_MAC_FORMATTED, buf.toString());
+        buf.setLength(0);
+        instance.formatTo(mac.toLong(), buf, MacAddressStyle.DOTTED_UPPER);
+        assertEquals("Dell-07.2074", buf.toString());
+
+        byte[] b = new byte[64];
+        assertEquals("Dell-07.2074".length(), instance.formattedLength(instance.lookup(mac.toLong()), MacAddressStyle.DOTTED_UPPER));
+        int n = instance.formatTo(mac.toLong(), b, 0, MacAddressStyle.DOTTED_UPPER);
+        assertEquals("Dell-07.2074", new String(b, 0, n, "UTF-8"));
+
+        for (int i = 0; i < 2; ++i) { // second pass uses the cached prefix
+            n = instance.formatTo(mac, b, 1);
+            assertEquals(TestConstants.TEST_MAC_FORMATTED, new String(b, 1, n, "UTF-8"));
+        }
+        n = instance.formatTo(0xf0f0f0abcdefL, b, 0, MacAddressStyle.DASH_UPPER);
+        assertEquals("Unknown-f0-f0-f0-AB-CD-EF", new String(b, 0, n, "UTF-8"));
+
+        long[] macs = batch(instance, 1000);
+        for (long m : macs) {
+            n = instance.formatTo(m, b, 0);
+            assertEquals(instance.format(m), new String(b, 0, n, "UTF-8"));
+        }
 
+        // a non-ASCII short name, with and without a cached prefix
+        List<Oui> ouis = new ArrayList<Oui>(instance.table().ouis());
+        ouis.add(new Oui(0xf0f0f0L << 24, PrefixTrie.MA_L, "Z\u00fcrich Networks AG", "Z\u00fcrich"));
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        OuiDataFile.writeV2(data, 0, ouis);
+        OuiRegistry zurich = new OuiRegistry(ByteBuffer.wrap(data.toByteArray()));
+        for (OuiRegistry reg : new OuiRegistry[] { zurich, zurich.compact() }) {
+            assertEquals("Z\u00fcrich-12:34:56", reg.format(0xf0f0f0123456L));
+            n = reg.formatTo(0xf0f0f0123456L, b, 0);
+            assertEquals("Z\u00fcrich-12:34:56", new String(b, 0, n, "UTF-8"));
+            assertEquals("Z\u00fcrich-12:34:56", reg.format(0xf0f0f0123456L));
+        }
+    }
+
+    /**
+     * Test of loadAsync method, of class OuiRegistry.
+     */
+    public void testLoadAsync() throws Exception {
+        System.out.println("loadAsync");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            OuiRegistryMetrics metrics = new OuiRegistryMetrics();
+            OuiRegistry reg = OuiRegistry.loadAsync(executor, metrics).get();
+            assertEquals(TestConstants.TEST_REGISTRY_SIZE, reg.size());
+            assertSame(metrics, reg.getListener());
+            assertEquals(TestConstants.TEST_MAC_FORMATTED, reg.format(TestConstants.TEST_MAC_LONG));
+            assertEquals(TestConstants.TEST_REGISTRY_SIZE, OuiRegistry.loadAsync(executor).get().size());
+
+            try {
+                OuiRegistry.loadAsync(new File("no-such-file.dat"), executor).get();
+                fail("Loaded a missing file.");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
@@ -0,0 +1,392 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class OuiDataFileTest extends TestCase {
+
+    public OuiDataFileTest(String testName) {
+        super(testName);
+    }
+
+    static byte[] toV2(OuiRegistry reg) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OuiDataFile.writeV2(bout, reg.getLastModified().getTime(), reg.table().ouis());
+        return bout.toByteArray();
+    }
+
+    private static File tempFile(byte[] contents) throws IOException {
+        File f = File.createTempFile("macnificent", ".dat");
+        f.deleteOnExit();
+        OutputStream out = new FileOutputStream(f);
+        try {
+            out.write(contents);
+        } finally {
+            out.close();
+        }
+        return f;
+    }
+
+    static void assertSameRegistry(OuiRegistry expected, OuiRegistry actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getLastModified(), actual.getLastModified());
+        for (Oui oui : expected.table().ouis()) {
+            long mac = oui.getPrefix() | (0x123456 & ~PrefixTrie.mask(oui.getPrefixLength()));
+            Oui o = actual.getOui(mac);
+            assertEquals(oui, o);
+            assertEquals(oui.getManufacturer(), o.getManufacturer());
+            assertEquals(expected.format(mac), actual.format(mac));
+        }
+        Random r = new Random(7);
+        for (int i = 0; i < 10000; ++i) {
+            long mac = r.nextLong() & MacAddress.MAC_MASK;
+            assertEquals(expected.getOui(mac), actual.getOui(mac));
+            assertEquals(expected.format(mac), actual.format(mac));
+        }
+    }
+
+    /**
+     * Test of writeV2 and map methods, of class OuiDataFile.
+     */
+    public void testMapV2() throws Exception {
+        System.out.println("mapV2");
+        OuiRegistry expected = new OuiRegistry();
+        OuiRegistry actual = new OuiRegistry(tempFile(toV2(expected)));
+        assertTrue(actual.table() instanceof BufferOuiTable);
+        assertSameRegistry(expected, actual);
+    }
+
+    /**
+     * Test of wrap method, of class OuiDataFile.
+     */
+    public void testWrap() throws Exception {
+        System.out.println("wrap");
+        OuiRegistry expected = new OuiRegistry();
+        byte[] v2 = toV2(expected);
+
+        ByteBuffer heap = ByteBuffer.allocate(v2.length + 10);
+        heap.position(3);
+        heap.put(v2).flip().position(3);
+        OuiRegistry actual = new OuiRegistry(heap.asReadOnlyBuffer());
+        assertTrue(actual.table() instanceof BufferOuiTable);
+        assertSameRegistry(expected, actual);
+        assertEquals(3, heap.position());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(v2.length).order(ByteOrder.LITTLE_ENDIAN);
+        direct.put(v2).flip();
+        assertSameRegistry(expected, new OuiRegistry(direct));
+        assertEquals(0, direct.position());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, direct.order());
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OuiDataFile.writeV1(bout, expected.getLastModified().getTime(), expected.table().ouis());
+        actual = new OuiRegistry(ByteBuffer.wrap(bout.toByteArray()));
+        assertTrue(actual.table() instanceof HeapOuiTable);
+        assertSameRegistry(expected, actual);
+    }
+
+    /**
+     * Test of read method with v2 data, of class OuiDataFile.
+     */
+    public void testReadV2() throws Exception {
+        System.out.println("readV2");
+        OuiRegistry expected = new OuiRegistry();
+        assertSameRegistry(expected, new OuiRegistry(new ByteArrayInputStream(toV2(expected))));
+    }
+
+    /**
+     * Test of writeV1 and map methods with v1 data, of class OuiDataFile.
+     */
+    public void testV1() throws Exception {
+        System.out.println("v1");
+        OuiRegistry expected = new OuiRegistry();
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OuiDataFile.writeV1(bout, expected.getLastModified().getTime(), expected.table().ouis());
+        OuiRegistry actual = new OuiRegistry(tempFile(bout.toByteArray()));
+        assertTrue(actual.table() instanceof HeapOuiTable);
+        assertSameRegistry(expected, actual);
+    }
+
+    public void testWriteV2SortsAndDedupes() throws Exception {
+        List<Oui> ouis = Arrays.asList(new Oui(new byte[] {9, 9, 9}, "Nine"),
+                                       new Oui(new byte[] {1, 2, 3}, "First"),
+                                       new Oui(new byte[] {1, 2, 3}, "Second"));
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OuiDataFile.writeV2(bout, 0, ouis);
+        OuiRegistry reg = new OuiRegistry(new ByteArrayInputStream(bout.toByteArray()));
+        assertEquals(2, reg.size());
+        assertEquals("Second", reg.table().ouiAt(0).getManufacturer());
+        assertEquals("Nine", reg.table().ouiAt(1).getManufacturer());
+    }
+
+    /**
+     * Test of MA-M/MA-S assignments in v2 data, of class OuiDataFile.
+     */
+    public void testSubBlocks() throws Exception {
+        System.out.println("sub-blocks");
+        List<Oui> ouis = new ArrayList<Oui>(new OuiRegistry().table().ouis());
+        ouis.add(new Oui(0x70b3d5000000L, 24, "IEEE Registration Authority"));
+        ouis.add(new Oui(0x70b3d51ff000L, 36, "Small Block Inc."));
+        ouis.add(new Oui(0x70b3d5100000L, 28, "Medium Block Co."));
+        ouis.add(new Oui(0xf0f0f0123000L, 36, "Orphan IAB Ltd"));
+        OuiRegistry heap = new OuiRegistry(new HeapOuiTable(0, ouis));
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OuiDataFile.writeV2(bout, 0, ouis);
+        OuiRegistry mapped = new OuiRegistry(tempFile(bout.toByteArray()));
+        assertEquals(heap.size(), mapped.size());
+
+        for (OuiRegistry reg : new OuiRegistry[] { heap, mapped }) {
+            assertEquals("Small Block Inc.", reg.getOui(0x70b3d51ff123L).getManufacturer());
+            assertEquals(36, reg.getOui(0x70b3d51ff123L).getPrefixLength());
+            assertEquals("Medium Block Co.", reg.getOui(0x70b3d51fe123L).getManufacturer());
+            assertEquals("IEEE Registration Authority", reg.getOui(0x70b3d5200000L).getManufacturer());
+            assertEquals("Orphan IAB Ltd", reg.getOui(0xf0f0f0123456L).getManufacturer());
+            assertNull(reg.getOui(0xf0f0f0124000L));
+            assertEquals("Small-1f:f1:23", reg.format(0x70b3d51ff123L));
+            assertEquals(TestConstants.TEST_MAC_FORMATTED, reg.format(TestConstants.TEST_MAC_LONG));
+        }
+
+        bout.reset();
+        OuiDataFile.writeV1(bout, 0, ouis);
+        assertEquals(heap.size() - 3, new OuiRegistry(new ByteArrayInputStream(bout.toByteArray())).size());
+    }
+
+    public void testRejectsBadV2() throws Exception {
+        byte[] good = toV2(new OuiRegistry());
+        byte[] b = good.clone();
+        b[OuiDataFile.V2_VERSION + 3] = 99;
+        assertRejected(b);
+        b = good.clone();
+        b[OuiDataFile.V2_FLAGS + 3] = 2; // not a defined flag
+        assertRejected(b);
+        assertRejected(Arrays.copyOf(good, good.length - 1));
+
+        // a name offset that runs backwards
+        ByteBuffer buf = ByteBuffer.wrap(good.clone());
+        int offsets = OuiDataFile.V2_HEADER_SIZE + 4 * buf.getInt(OuiDataFile.V2_COUNT) + 8 * buf.getInt(OuiDataFile.V2_SUB_COUNT);
+        buf.putInt(offsets + 8, buf.getInt(offsets + 4) - 1);
+        assertRejected(buf.array());
+
+        // a short name index past the end, and a short name offset that runs backwards
+        buf = ByteBuffer.wrap(good);
+        int count = buf.getInt(OuiDataFile.V2_COUNT) + buf.getInt(OuiDataFile.V2_SUB_COUNT);
+        int shortStart = (offsets + 4 * (count + 1) + buf.getInt(OuiDataFile.V2_POOL_SIZE) + 3) & ~3;
+        int shortCount = buf.getInt(shortStart);
+        buf = ByteBuffer.wrap(good.clone());
+        buf.putInt(shortStart + 8, shortCount);
+        assertRejected(buf.array());
+        buf = ByteBuffer.wrap(good.clone());
+        int shortOffsets = shortStart + 4 + 4 * count;
+        buf.putInt(shortOffsets + 8, buf.getInt(shortOffsets + 4) - 1);
+        assertRejected(buf.array());
+    }
+
+    private static byte[] toV3(OuiRegistry reg) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OuiDataFile.writeV3(bout, reg.getLastModified().getTime(), reg.table().ouis());
+        return bout.toByteArray();
+    }
+
+    /**
+     * Test of writeV3, map, read and wrap methods with v3 data, of class
+     * OuiDataFile.
+     */
+    public void testV3() throws Exception {
+        System.out.println("v3");
+        OuiRegistry expected = new OuiRegistry();
+        byte[] v3 = toV3(expected);
+        assertTrue(v3.length < toV2(expected).length);
+        assertEquals(OuiDataFile.V3, ByteBuffer.wrap(v3).getInt(OuiDataFile.V2_VERSION));
+
+        OuiRegistry mapped = new OuiRegistry(tempFile(v3));
+        assertTrue(mapped.table() instanceof BufferOuiTable);
+        assertSameRegistry(expected, mapped);
+        assertSameRegistry(expected, new OuiRegistry(new ByteArrayInputStream(v3)));
+        assertSameRegistry(expected, new OuiRegistry(ByteBuffer.wrap(v3)));
+
+        // a rewritten file is identical, so the output is deterministic
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OuiDataFile.writeV3(bout, mapped.getLastModified().getTime(), mapped.table().ouis());
+        assertTrue(Arrays.equals(v3, bout.toByteArray()));
+    }
+
+    /**
+     * Tests that each distinct manufacturer name in v3 data is read as one
+     * String
+     */
+    public void testSharedNames() throws Exception {
+        System.out.println("shared names");
+        OuiRegistry v1 = new OuiRegistry();
+        OuiRegistry v3 = new OuiRegistry(ByteBuffer.wrap(toV3(v1)));
+        for (OuiRegistry reg : Arrays.asList(v3, new OuiRegistry(new ByteArrayInputStream(toV3(v1))))) {
+            Map<String, String> names = new HashMap<String, String>();
+            int shared = 0;
+            for (Oui oui : reg.table().ouis()) {
+                String first = names.get(oui.getManufacturer());
+                if (first == null) {
+                    names.put(oui.getManufacturer(), oui.getManufacturer());
+                } else {
+                    assertSame(first, oui.getManufacturer());
+                    ++shared;
+                }
+            }
+            assertTrue(shared > 0);
+        }
+    }
+
+    public void testRejectsBadV3() throws Exception {
+        System.out.println("rejects bad v3");
+        byte[] good = toV3(new OuiRegistry());
+        // every truncation, including at a record boundary, is rejected
+        for (int length = 0; length < good.length; length += 997) assertRejected(Arrays.copyOf(good, length));
+        assertRejected(Arrays.copyOf(good, good.length - 1));
+        assertRejected(Arrays.copyOf(good, good.length + 4));
+        Random r = new Random(3);
+        for (int i = 0; i < 20; ++i) {
+            byte[] b = good.clone();
+            b[OuiDataFile.V3_HEADER_SIZE + r.nextInt(b.length - OuiDataFile.V3_HEADER_SIZE)] ^= 1 << r.nextInt(8);
+            assertRejected(b);
+        }
+
+        // bad contents with a valid checksum
+        ByteBuffer buf = ByteBuffer.wrap(good);
+        int count = buf.getInt(OuiDataFile.V2_COUNT) + buf.getInt(OuiDataFile.V2_SUB_COUNT);
+        int offsets = OuiDataFile.V3_HEADER_SIZE + 4 * buf.getInt(OuiDataFile.V2_COUNT) + 8 * buf.getInt(OuiDataFile.V2_SUB_COUNT);
+        int pool = offsets + 4 * count;
+        int poolSize = buf.getInt(OuiDataFile.V2_POOL_SIZE);
+        assertRejected(resigned(good, offsets, poolSize)); // a name offset past the pool
+        assertRejected(resigned(good, offsets, buf.getInt(offsets) + 1)); // into the middle of a name
+        assertRejected(resigned(good, OuiDataFile.V3_NAME_COUNT, Integer.MAX_VALUE));
+        assertRejected(resigned(good, OuiDataFile.V3_NAME_COUNT, buf.getInt(OuiDataFile.V3_NAME_COUNT) - 1));
+        assertRejected(resigned(good, pool, -1, -1)); // a length longer than five bytes
+        assertRejected(resigned(good, pool, 0xffffff7f)); // a length longer than the pool
+    }
+
+    /**
+     * Returns a copy of v3 data with the ints starting at the specified
+     * position replaced and the checksum recomputed
+     */
+    private static byte[] resigned(byte[] v3, int position, int... values) {
+        ByteBuffer buf = ByteBuffer.wrap(v3.clone());
+        for (int i = 0; i < values.length; ++i) buf.putInt(position + 4 * i, values[i]);
+        buf.putInt(v3.length - 4, Crc32c.checksum(buf, 0, v3.length - 4));
+        return buf.array();
+    }
+
+    private static void assertRejected(byte[] b) throws Exception {
+        try {
+            new OuiRegistry(tempFile(b));
+            fail("Accepted an invalid data file.");
+        } catch (IOException expected) {
+        }
+    }
+
+    /**
+     * Test of writeDelta and applyDelta methods, of class OuiDataFile.
+     */
+    public void testDelta() throws Exception {
+        System.out.println("delta");
+        OuiRegistry base = new OuiRegistry(new ByteArrayInputStream(toV2(new OuiRegistry())));
+        List<Oui> ouis = new ArrayList<Oui>(base.table().ouis());
+        ouis.remove(0);
+        ouis.remove(100);
+        Oui renamed = ouis.get(200);
+        ouis.set(200, new Oui(renamed.getPrefix(), renamed.getPrefixLength(), "Renamed Corp."));
+        ouis.add(new Oui(0xf0f0f0000000L, 24, "Added Inc."));
+        ouis.add(new Oui(0xf0f0f0abc000L, 36, "Added IAB Ltd"));
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OuiDataFile.writeV2(bout, base.getLastModified().getTime() + 1000, ouis);
+        OuiRegistry target = new OuiRegistry(tempFile(bout.toByteArray()));
+
+        bout.reset();
+        assertEquals(5, OuiDataFile.writeDelta(bout, base.table(), target.table()));
+        byte[] delta = bout.toByteArray();
+        assertTrue(delta.length < 200);
+
+        OuiRegistry patched = base.applyDelta(new ByteArrayInputStream(delta));
+        assertSameRegistry(target, patched);
+        assertEquals("Renamed Corp.", patched.getOui(renamed.getPrefix()).getManufacturer());
+        assertEquals("Added IAB Ltd", patched.getOui(0xf0f0f0abc456L).getManufacturer());
+        assertEquals("Added Inc.", patched.getOui(0xf0f0f0abd000L).getManufacturer());
+        assertEquals(TestConstants.TEST_REGISTRY_SIZE, base.size()); // unchanged
+
+        // the delta no longer applies once applied
+        try {
+            patched.applyDelta(new ByteArrayInputStream(delta));
+            fail("Applied a delta to the wrong base version.");
+        } catch (IOException expected) {
+        }
+
+        // an empty delta only changes the timestamp
+        bout.reset();
+        assertEquals(0, OuiDataFile.writeDelta(bout, target.table(), patched.table()));
+    }
+
+    /**
+     * Test of short names in v2 data and deltas, of class OuiDataFile.
+     */
+    public void testShortNames() throws Exception {
+        System.out.println("short names");
+        OuiRegistry base = new OuiRegistry();
+        List<Oui> ouis = new ArrayList<Oui>(base.table().ouis());
+        Oui dell = base.getOui(TestConstants.TEST_MAC_LONG);
+        ouis.add(new Oui(dell.getPrefix(), dell.getPrefixLength(), dell.getManufacturer(), "DELL"));
+        ouis.add(new Oui(0x70b3d51ff000L, 36, "Small Block Inc.", "Tiny"));
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OuiDataFile.writeV2(bout, 1, ouis);
+        OuiRegistry mapped = new OuiRegistry(tempFile(bout.toByteArray()));
+        assertEquals("DELL", mapped.getOui(TestConstants.TEST_MAC_LONG).getShortName());
+        assertEquals("DELL-07:20:74", mapped.format(TestConstants.TEST_MAC_LONG));
+        assertEquals("Tiny-1f:f1:23", mapped.format(0x70b3d51ff123L));
+        for (Oui oui : base.table().ouis()) {
+            if (!oui.equals(dell)) assertEquals(oui.getShortName(), mapped.getOui(oui.getPrefix()).getShortName());
+        }
+
+        // a short name change alone is carried by a delta
+        bout.reset();
+        OuiDataFile.writeV2(bout, 0, base.table().ouis());
+        OuiRegistry v2 = new OuiRegistry(tempFile(bout.toByteArray()));
+        bout.reset();
+        assertEquals(2, OuiDataFile.writeDelta(bout, v2.table(), mapped.table()));
+        OuiRegistry patched = v2.applyDelta(new ByteArrayInputStream(bout.toByteArray()));
+        assertEquals("DELL-07:20:74", patched.format(TestConstants.TEST_MAC_LONG));
+        assertEquals("Tiny-1f:f1:23", patched.format(0x70b3d51ff123L));
+    }
+}
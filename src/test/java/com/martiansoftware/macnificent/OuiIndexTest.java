@@ -0,0 +1,79 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class OuiIndexTest extends TestCase {
+
+    public OuiIndexTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Test of get and put methods, of class OuiIndex.
+     */
+    public void testGetPut() {
+        System.out.println("get/put");
+        OuiIndex instance = new OuiIndex(0);
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        Random r = new Random(1);
+        for (int i = 0; i < 50000; ++i) {
+            int key = r.nextInt(1 << 24);
+            Integer prev = expected.put(key, i);
+            assertEquals(prev == null ? OuiIndex.NOT_FOUND : prev.intValue(), instance.put(key, i));
+        }
+        assertEquals(expected.size(), instance.size());
+        for (Map.Entry<Integer, Integer> e : expected.entrySet()) {
+            assertEquals(e.getValue().intValue(), instance.get(e.getKey()));
+        }
+        for (int i = 0; i < 50000; ++i) {
+            int key = r.nextInt(1 << 24);
+            if (!expected.containsKey(key)) assertEquals(OuiIndex.NOT_FOUND, instance.get(key));
+        }
+    }
+
+    /**
+     * Test of footprint method, of class OuiIndex.
+     */
+    public void testFootprint() {
+        System.out.println("footprint");
+        OuiIndex instance = new OuiIndex(TestConstants.TEST_REGISTRY_SIZE);
+        for (int i = 0; i < TestConstants.TEST_REGISTRY_SIZE; ++i) instance.put(i * 7919, i);
+        // a HashMap<Integer, Integer> needs at least a 32-byte node and a 16-byte Integer per entry
+        assertTrue(instance.footprint() < 48L * TestConstants.TEST_REGISTRY_SIZE);
+    }
+
+    public void testNegative() {
+        OuiIndex instance = new OuiIndex(1);
+        try {
+            instance.put(-1, 0);
+            fail("Accepted a negative key.");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
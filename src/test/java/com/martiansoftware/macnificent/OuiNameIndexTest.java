@@ -0,0 +1,113 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class OuiNameIndexTest extends TestCase {
+
+    private static OuiRegistry registry;
+
+    public OuiNameIndexTest(String testName) {
+        super(testName);
+    }
+
+    private static synchronized OuiRegistry registry() throws IOException {
+        if (registry == null) registry = new OuiRegistry();
+        return registry;
+    }
+
+    private interface Predicate {
+        boolean matches(Oui oui);
+    }
+
+    private static int[] bruteForce(Predicate p) throws IOException {
+        List<Integer> result = new ArrayList<Integer>();
+        for (int i = 0; i < registry().size(); ++i) {
+            if (p.matches(registry().getOuiByIndex(i))) result.add(i);
+        }
+        int[] a = new int[result.size()];
+        for (int i = 0; i < a.length; ++i) a[i] = result.get(i);
+        return a;
+    }
+
+    private static void assertFound(int[] expected, int[] actual) {
+        assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+    }
+
+    public void testNormalize() {
+        System.out.println("normalize");
+        assertEquals("cisco systems inc", OuiNameIndex.normalize("  Cisco Systems, Inc."));
+        assertEquals("cisco ", OuiNameIndex.normalize("Cisco,", true));
+        assertEquals("", OuiNameIndex.normalize(" ,. ", true));
+        assertEquals("müller gmbh co kg", OuiNameIndex.normalize("MÜLLER GmbH & Co. KG"));
+    }
+
+    public void testManufacturerPrefix() throws IOException {
+        System.out.println("manufacturerPrefix");
+        for (final String prefix : new String[] { "Cisco", "apple", "ESPRESSIF", "Dell Inc", "dell, inc.", "Cisco ", "zzzz", "" }) {
+            final String p = OuiNameIndex.normalize(prefix);
+            final boolean word = OuiNameIndex.normalize(prefix, true).endsWith(" ");
+            int[] expected = bruteForce(oui -> {
+                String name = OuiNameIndex.normalize(oui.getManufacturer());
+                return name.startsWith(p) && (!word || name.length() == p.length() || name.charAt(p.length()) == ' ');
+            });
+            assertFound(expected, registry().findByManufacturerPrefix(prefix));
+        }
+        assertTrue(registry().findByManufacturerPrefix("Cisco").length > 100);
+        assertTrue(registry().findByManufacturerPrefix("Cisco").length > registry().findByManufacturerPrefix("Cisco Systems").length);
+    }
+
+    public void testShortName() throws IOException {
+        System.out.println("shortName");
+        for (final String name : new String[] { "Dell", "dell", "Apple", "Espressif", "Unknown", "Nope" }) {
+            int[] expected = bruteForce(oui -> oui.getShortName().toLowerCase(Locale.ROOT).equals(name.toLowerCase(Locale.ROOT)));
+            assertFound(expected, registry().findByShortName(name));
+        }
+        int i = registry().indexOf(TestConstants.TEST_MAC_LONG);
+        assertTrue(Arrays.binarySearch(registry().findByShortName("DELL"), i) >= 0);
+    }
+
+    public void testTokens() throws IOException {
+        System.out.println("tokens");
+        for (final String query : new String[] { "systems", "Cisco Systems", "inc apple", "technology co ltd", "nosuchword", "apple nosuchword" }) {
+            final List<String> words = Arrays.asList(OuiNameIndex.normalize(query).split(" "));
+            int[] expected = bruteForce(oui -> Arrays.asList(OuiNameIndex.normalize(oui.getManufacturer()).split(" ")).containsAll(words));
+            assertFound(expected, registry().findByTokens(query));
+        }
+        assertEquals(0, registry().findByTokens(" , ").length);
+    }
+
+    public void testFootprint() throws IOException {
+        System.out.println("footprint");
+        OuiNameIndex index = new OuiNameIndex(registry().table());
+        assertTrue(index.footprint() > 0);
+        assertTrue(index.footprint() < 16L << 20);
+    }
+}
@@ -0,0 +1,114 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class OuiRegistryMetricsTest extends TestCase {
+
+    public OuiRegistryMetricsTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Test of lookup counting, of class OuiRegistryMetrics.
+     */
+    public void testLookups() throws Exception {
+        System.out.println("lookups");
+        OuiRegistryMetrics metrics = new OuiRegistryMetrics();
+        OuiRegistry reg = new OuiRegistry(metrics);
+        assertSame(metrics, reg.getListener());
+        assertEquals(1, metrics.getLoads());
+        assertEquals(TestConstants.TEST_REGISTRY_SIZE, metrics.getSize());
+        assertEquals(reg.getLoadNanos(), metrics.getLastLoadNanos());
+        assertTrue(reg.getLoadNanos() > 0);
+
+        assertNotNull(reg.getOui(TestConstants.TEST_MAC_LONG));
+        assertNotNull(reg.getOui(TestConstants.TEST_MAC_LONG | 0x020000000000L)); // local
+        assertNotNull(reg.getOui(TestConstants.TEST_MAC_LONG | 0x010000000000L)); // multicast
+        assertNull(reg.getOui(0xf0f0f0123456L));
+        assertEquals(TestConstants.TEST_MAC_FORMATTED, reg.format(TestConstants.TEST_MAC));
+        assertEquals("Unknown-f0-f0-f0-12:34:56", reg.format(0xf0f0f0123456L));
+        assertEquals("not a mac", reg.format("not a mac"));
+        int[] out = new int[3];
+        reg.lookupAll(new long[] { TestConstants.TEST_MAC_LONG, 0xf0f0f0123456L, 0 }, out);
+
+        assertEquals(4, metrics.getHits());
+        assertEquals(2, metrics.getFallbacks());
+        assertEquals(3, metrics.getMisses());
+        assertEquals(1, metrics.getParseFailures());
+
+        metrics.reset();
+        assertEquals(0, metrics.getHits() + metrics.getFallbacks() + metrics.getMisses() + metrics.getParseFailures());
+        assertEquals(1, metrics.getLoads());
+
+        // a registry without a listener reports nothing, even when it shares
+        // its table with one that has a listener
+        OuiRegistry quiet = new OuiRegistry(System.nanoTime(), reg.table(), null, false);
+        assertNull(quiet.getListener());
+        assertNotNull(quiet.getOui(TestConstants.TEST_MAC_LONG));
+        assertNotNull(quiet.getOui(TestConstants.TEST_MAC_LONG | 0x020000000000L));
+        assertNull(quiet.getOui(0xf0f0f0123456L));
+        assertEquals("not a mac", quiet.format("not a mac"));
+        quiet.lookupAll(new long[] { TestConstants.TEST_MAC_LONG, 0xf0f0f0123456L, 0 }, out);
+        assertEquals(0, metrics.getHits() + metrics.getFallbacks() + metrics.getMisses() + metrics.getParseFailures());
+        assertEquals(1, metrics.getLoads());
+    }
+
+    /**
+     * Test of reload notification, of class OuiRegistryMetrics.
+     */
+    public void testReload() throws Exception {
+        System.out.println("reload");
+        java.io.File f = java.io.File.createTempFile("macnificent", ".dat");
+        f.deleteOnExit();
+        java.io.OutputStream out = new java.io.FileOutputStream(f);
+        try {
+            OuiDataFile.writeV2(out, 0, new OuiRegistry().table().ouis());
+        } finally {
+            out.close();
+        }
+        final boolean[] reloaded = new boolean[1];
+        OuiRegistryMetrics metrics = new OuiRegistryMetrics() {
+            @Override
+            public void loaded(OuiRegistry registry, long nanos, boolean reload) {
+                super.loaded(registry, nanos, reload);
+                reloaded[0] = reload;
+            }
+        };
+        ReloadableOuiRegistry reg = new ReloadableOuiRegistry(f, metrics);
+        try {
+            assertEquals(1, metrics.getLoads());
+            assertFalse(reloaded[0]);
+            reg.reload();
+            assertEquals(2, metrics.getLoads());
+            assertTrue(reloaded[0]);
+            assertSame(metrics, reg.current().getListener());
+            reg.getOui(TestConstants.TEST_MAC_LONG);
+            assertEquals(1, metrics.getHits());
+        } finally {
+            reg.close();
+        }
+    }
+}
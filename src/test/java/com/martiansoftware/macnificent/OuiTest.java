@@ -88,6 +88,30 @@ public class OuiTest extends TestCase {
         assertEquals(TestConstants.TEST_MAC_SHORTNAME, result);
     }
 
+    /**
+     * Test of getPrefix and getPrefixLength methods, of class OUI.
+     */
+    public void testPrefix() throws Exception {
+        System.out.println("prefix");
+        Oui instance = new OuiRegistry().getOui(new MacAddress(TestConstants.TEST_MAC));
+        assertEquals(TestConstants.TEST_MAC_LONG & 0xffffff000000L, instance.getPrefix());
+        assertEquals(24, instance.getPrefixLength());
+
+        Oui block = new Oui(0x70b3d51ff123L, 36, "Small Block Inc.");
+        assertEquals(0x70b3d51ff000L, block.getPrefix());
+        assertEquals(36, block.getPrefixLength());
+        assertTrue(Arrays.equals(new byte[] {(byte) 0x70, (byte) 0xb3, (byte) 0xd5}, block.getBytes()));
+        assertEquals("70-b3-d5-1f-f0-00/36: [Small] Small Block Inc.", block.toString());
+        assertFalse(block.equals(new Oui(block.getBytes(), "Small Block Inc.")));
+        assertFalse(block.equals(new Oui(0x70b3d51ff000L, 28, "Small Block Inc.")));
+        assertEquals(block, new Oui(0x70b3d51ff000L, 36, "Whatever"));
+        try {
+            new Oui(0, 32, "Bad");
+            fail("Accepted an unsupported prefix length.");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
     public void testEquals() throws Exception {
         OuiRegistry reg = new OuiRegistry();
         MacAddress m1 = new MacAddress(TestConstants.TEST_MAC);
@@ -0,0 +1,98 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class PrefixTrieTest extends TestCase {
+
+    public PrefixTrieTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Test of lookup method, of class PrefixTrie.
+     */
+    public void testLongestPrefix() {
+        System.out.println("longest prefix");
+        PrefixTrie instance = new PrefixTrie(4);
+        instance.put(0x70b3d5000000L, 24, 0);
+        instance.put(0x70b3d5100000L, 28, 1);
+        instance.put(0x70b3d51ff000L, 36, 2);
+        instance.put(0x70b3d5f2f000L, 36, 3);   // no enclosing 28-bit block
+        instance.put(0x001122300000L, 28, 4);   // no enclosing 24-bit block
+
+        assertEquals(0, instance.lookup(0x70b3d5000001L));
+        assertEquals(1, instance.lookup(0x70b3d5123456L));
+        assertEquals(2, instance.lookup(0x70b3d51ff123L));
+        assertEquals(1, instance.lookup(0x70b3d51fe123L));
+        assertEquals(3, instance.lookup(0x70b3d5f2fabcL));
+        assertEquals(0, instance.lookup(0x70b3d5f30000L));
+        assertEquals(4, instance.lookup(0x0011223fffffL));
+        assertEquals(PrefixTrie.NOT_FOUND, instance.lookup(0x001122400000L));
+        assertEquals(PrefixTrie.NOT_FOUND, instance.lookup(0x000000000000L));
+    }
+
+    /**
+     * Test of put method, of class PrefixTrie.
+     */
+    public void testReplace() {
+        System.out.println("replace");
+        PrefixTrie instance = new PrefixTrie(1);
+        assertEquals(PrefixTrie.NOT_FOUND, instance.put(0x70b3d51ff000L, 36, 0));
+        assertEquals(PrefixTrie.NOT_FOUND, instance.put(0x70b3d5000000L, 24, 1));
+        assertEquals(PrefixTrie.NOT_FOUND, instance.put(0x70b3d5100000L, 28, 2));
+        assertEquals(1, instance.put(0x70b3d5000000L, 24, 3));
+        assertEquals(2, instance.put(0x70b3d5100000L, 28, 4));
+        assertEquals(0, instance.put(0x70b3d51ff000L, 36, 5));
+        assertEquals(3, instance.lookup(0x70b3d5000000L));
+        assertEquals(4, instance.lookup(0x70b3d5100000L));
+        assertEquals(5, instance.lookup(0x70b3d51ff000L));
+    }
+
+    public void testRandom() {
+        System.out.println("random");
+        Random r = new Random(3);
+        long[] prefixes = new long[5000];
+        int[] lengths = new int[prefixes.length];
+        PrefixTrie instance = new PrefixTrie(16);
+        for (int i = 0; i < prefixes.length; ++i) {
+            lengths[i] = new int[] {24, 28, 36}[r.nextInt(3)];
+            prefixes[i] = (((long) r.nextInt(64)) << 40 | (r.nextLong() & 0xffffffffffL)) & PrefixTrie.mask(lengths[i]);
+            instance.put(prefixes[i], lengths[i], i);
+        }
+        for (int n = 0; n < 20000; ++n) {
+            long mac = n < prefixes.length ? prefixes[n] | (r.nextLong() & 0xfff) : (((long) r.nextInt(64)) << 40 | (r.nextLong() & 0xffffffffffL));
+            int expected = PrefixTrie.NOT_FOUND, bestLength = 0;
+            for (int i = 0; i < prefixes.length; ++i) {
+                if ((mac & PrefixTrie.mask(lengths[i])) == prefixes[i] && lengths[i] >= bestLength) {
+                    expected = i;
+                    bestLength = lengths[i];
+                }
+            }
+            assertEquals(expected, instance.lookup(mac));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class RegistryParserTest extends TestCase {
+
+    static final String OUI_TXT = "OUI/MA-L                                                    Organization                                 \r\n"
+            + "company_id                                                  Organization                                 \r\n"
+            + "                                                            Address                                      \r\n"
+            + "\r\n"
+            + "00-22-72   (hex)\t\tAmerican Micro-Fuel Device Corp.\r\n"
+            + "002272     (base 16)\t\tAmerican Micro-Fuel Device Corp.\r\n"
+            + "\t\t\t\t2181 Buchanan Loop\r\n"
+            + "\t\t\t\tFerndale  WA  98248\r\n"
+            + "\t\t\t\tUS\r\n"
+            + "\r\n"
+            + "00-D0-EF   (hex)\t\tIGT\r\n"
+            + "00D0EF     (base 16)\t\tIGT\r\n"
+            + "\t\t\t\t9295 PROTOTYPE DRIVE\r\n"
+            + "\r\n"
+            + "70-B3-D5   (hex)\t\tElsist Srl\r\n"
+            + "F2F000-F2FFFF     (base 16)\t\tElsist Srl\r\n"
+            + "\t\t\t\tVia G. Brodolini, 15\r\n"
+            + "\r\n"
+            + "38-B8-EB   (hex)\t\tLesswire AG\r\n"
+            + "000000-0FFFFF     (base 16)\t\tLesswire AG\r\n"
+            + "\r\n"
+            + "38-B8-EB   (hex)\t\tBroken Range\r\n"
+            + "000000-0FFFFE     (base 16)\t\tBroken Range\r\n"
+            + "\r\n"
+            + "F0-F0-F0   (hex)\t\tSociété Générale\n"
+            + "F0F0F0     (base 16)\t\tSociété Générale\n";
+
+    static final String OUI_CSV = "﻿Registry,Assignment,Organization Name,Organization Address\r\n"
+            + "MA-L,002272,American Micro-Fuel Device Corp.,2181 Buchanan Loop Ferndale WA US 98248 \r\n"
+            + "MA-L,00D0EF,IGT,\"9295 PROTOTYPE DRIVE RENO NV US 89511-8986 \"\r\n"
+            + "MA-M,38B8EB0,Lesswire AG,Im Technologiepark 25 Frankfurt (Oder) Brandenburg DE 15236 \r\n"
+            + "MA-S,70B3D5F2F,Elsist Srl,\"Via G. Brodolini, 15 Casale Monferrato  IT 15033 \"\r\n"
+            + "MA-L,F0F0F0,\"Quoted, \"\"Inc.\"\"\",Nowhere\r\n"
+            + "MA-L,00D0,Too Short,Nowhere\r\n"
+            + "Registry,Assignment,Organization Name,Organization Address\r\n"
+            + "IAB,0050C2000,T.L.S. Corp.,Anywhere\n";
+
+    public RegistryParserTest(String testName) {
+        super(testName);
+    }
+
+    private static RegistryParser parse(String s) {
+        byte[] data = s.getBytes(StandardCharsets.UTF_8);
+        return new RegistryParser(data, 0, data.length, RegistryParser.isCsv(data)).call();
+    }
+
+    private static void assertOui(long prefix, int length, String manufacturer, Oui oui) {
+        assertEquals(prefix, oui.getPrefix());
+        assertEquals(length, oui.getPrefixLength());
+        assertEquals(manufacturer, oui.getManufacturer());
+    }
+
+    /**
+     * Test of parsing the text format, of class RegistryParser.
+     */
+    public void testText() {
+        System.out.println("text");
+        assertFalse(RegistryParser.isCsv(OUI_TXT.getBytes(StandardCharsets.UTF_8)));
+        RegistryParser p = parse(OUI_TXT);
+        List<Oui> ouis = p.ouis();
+        assertEquals(5, ouis.size());
+        assertOui(0x002272000000L, 24, "American Micro-Fuel Device Corp.", ouis.get(0));
+        assertOui(0x00d0ef000000L, 24, "IGT", ouis.get(1));
+        assertOui(0x70b3d5f2f000L, 36, "Elsist Srl", ouis.get(2));
+        assertOui(0x38b8eb000000L, 28, "Lesswire AG", ouis.get(3));
+        assertOui(0xf0f0f0000000L, 24, "Société Générale", ouis.get(4));
+        assertEquals(1, p.warnings().size());
+        assertEquals(23, p.warningLines().get(0).intValue());
+        assertEquals(26, p.lines());
+    }
+
+    /**
+     * Test of parsing the CSV format, of class RegistryParser.
+     */
+    public void testCsv() {
+        System.out.println("csv");
+        assertTrue(RegistryParser.isCsv(OUI_CSV.getBytes(StandardCharsets.UTF_8)));
+        RegistryParser p = parse(OUI_CSV);
+        List<Oui> ouis = p.ouis();
+        assertEquals(6, ouis.size());
+        assertOui(0x002272000000L, 24, "American Micro-Fuel Device Corp.", ouis.get(0));
+        assertOui(0x00d0ef000000L, 24, "IGT", ouis.get(1));
+        assertOui(0x38b8eb000000L, 28, "Lesswire AG", ouis.get(2));
+        assertOui(0x70b3d5f2f000L, 36, "Elsist Srl", ouis.get(3));
+        assertOui(0xf0f0f0000000L, 24, "Quoted, \"Inc.\"", ouis.get(4));
+        assertOui(0x0050c2000000L, 36, "T.L.S. Corp.", ouis.get(5));
+        assertEquals(1, p.warnings().size());
+        assertEquals(7, p.warningLines().get(0).intValue());
+    }
+
+    /**
+     * Test of split method, of class RegistryParser.
+     */
+    public void testSplit() throws Exception {
+        System.out.println("split");
+        for (String s : new String[] { OUI_TXT, OUI_CSV }) {
+            byte[] data = s.getBytes(StandardCharsets.UTF_8);
+            boolean csv = RegistryParser.isCsv(data);
+            List<Oui> expected = new RegistryParser(data, 0, data.length, csv).call().ouis();
+            for (int chunks = 1; chunks < 40; ++chunks) {
+                int[] bounds = RegistryParser.split(data, chunks, csv);
+                assertEquals(0, bounds[0]);
+                assertEquals(data.length, bounds[bounds.length - 1]);
+                List<Oui> actual = new ArrayList<Oui>();
+                int lines = 0;
+                for (int i = 0; i + 1 < bounds.length; ++i) {
+                    assertTrue(bounds[i] < bounds[i + 1]);
+                    RegistryParser p = new RegistryParser(data, bounds[i], bounds[i + 1], csv).call();
+                    actual.addAll(p.ouis());
+                    lines += p.lines();
+                }
+                assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); ++i) {
+                    assertEquals(expected.get(i), actual.get(i));
+                    assertEquals(expected.get(i).getManufacturer(), actual.get(i).getManufacturer());
+                }
+                assertEquals(new RegistryParser(data, 0, data.length, csv).call().lines(), lines);
+            }
+        }
+    }
+
+    /**
+     * Test of parseRange method, of class RegistryParser.
+     */
+    public void testParseRange() {
+        System.out.println("parseRange");
+        Oui mam = RegistryParser.parseRange(0x38b8eb, 0x000000, 0x0fffff, "Lesswire AG");
+        assertEquals(0x38b8eb000000L, mam.getPrefix());
+        assertEquals(28, mam.getPrefixLength());
+        Oui mas = RegistryParser.parseRange(0x70b3d5, 0xf2f000, 0xf2ffff, "Elsist Srl");
+        assertEquals(0x70b3d5f2f000L, mas.getPrefix());
+        assertEquals(36, mas.getPrefixLength());
+        assertNull(RegistryParser.parseRange(0x70b3d5, 0xf2f000, 0xf2fffe, "Bad"));
+        assertNull(RegistryParser.parseRange(0x70b3d5, 0xf2f800, 0xf307ff, "Bad"));
+        assertNull(RegistryParser.parseRange(0x70b3d5, 0x000000, 0x00ffff, "Bad"));
+    }
+}
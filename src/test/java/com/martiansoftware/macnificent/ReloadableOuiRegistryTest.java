@@ -0,0 +1,160 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class ReloadableOuiRegistryTest extends TestCase {
+
+    private static final Oui TEST_OUI = new Oui(0xf0f0f0L << 24, PrefixTrie.MA_L, "Test Manufacturer Inc.");
+
+    public ReloadableOuiRegistryTest(String testName) {
+        super(testName);
+    }
+
+    private static void write(File f, long lastModified, List<Oui> ouis) throws IOException {
+        OutputStream out = new FileOutputStream(f);
+        try {
+            OuiDataFile.writeV2(out, lastModified, ouis);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static File tempDataFile(List<Oui> ouis) throws IOException {
+        File f = File.createTempFile("macnificent", ".dat");
+        f.deleteOnExit();
+        write(f, 1, ouis);
+        return f;
+    }
+
+    /**
+     * Test of reload method, of class ReloadableOuiRegistry.
+     */
+    public void testReload() throws IOException {
+        System.out.println("reload");
+        List<Oui> ouis = new OuiRegistry().table().ouis();
+        File f = tempDataFile(ouis);
+        ReloadableOuiRegistry reg = new ReloadableOuiRegistry(f);
+        assertEquals(TestConstants.TEST_REGISTRY_SIZE, reg.size());
+        assertNull(reg.getOui(0xf0f0f0123456L));
+
+        OuiRegistry before = reg.current();
+        List<Oui> more = new ArrayList<Oui>(ouis);
+        more.add(TEST_OUI);
+        write(f, 2, more);
+        OuiRegistry after = reg.reload();
+        assertSame(after, reg.current());
+        assertEquals(TestConstants.TEST_REGISTRY_SIZE + 1, reg.size());
+        assertEquals(2, reg.getLastModified().getTime());
+        assertEquals(TEST_OUI, reg.getOui(0xf0f0f0123456L));
+        assertEquals("Test-12:34:56", reg.format(0xf0f0f0123456L));
+        assertEquals(TestConstants.TEST_MAC_FORMATTED, reg.format(TestConstants.TEST_MAC));
+
+        // the earlier snapshot is unaffected
+        assertEquals(TestConstants.TEST_REGISTRY_SIZE, before.size());
+        assertNull(before.getOui(0xf0f0f0123456L));
+    }
+
+    /**
+     * A failed reload must leave the current snapshot in place.
+     */
+    public void testFailedReload() throws IOException {
+        System.out.println("failed reload");
+        File f = tempDataFile(new OuiRegistry().table().ouis());
+        ReloadableOuiRegistry reg = new ReloadableOuiRegistry(f);
+        OuiRegistry before = reg.current();
+
+        OutputStream out = new FileOutputStream(f);
+        try {
+            out.write(new byte[] { 'M', 'A', 'C', 'N', 0, 0, 0, 2, 0 });
+        } finally {
+            out.close();
+        }
+        try {
+            reg.reload();
+            fail("Truncated data file should not load");
+        } catch (IOException expected) {
+            assertSame(expected, reg.getLastError());
+        }
+        assertSame(before, reg.current());
+        assertEquals(TestConstants.TEST_REGISTRY_SIZE, reg.size());
+    }
+
+    /**
+     * Test of applyDelta method, of class ReloadableOuiRegistry.
+     */
+    public void testApplyDelta() throws IOException {
+        System.out.println("applyDelta");
+        List<Oui> ouis = new OuiRegistry().table().ouis();
+        ReloadableOuiRegistry reg = new ReloadableOuiRegistry(tempDataFile(ouis));
+        OuiRegistry before = reg.current();
+        try {
+            reg.applyDelta(new ByteArrayInputStream(new byte[] { 'M', 'A', 'C', 'D' }));
+            fail("Applied a corrupt delta.");
+        } catch (IOException expected) {
+            assertSame(expected, reg.getLastError());
+        }
+        assertSame(before, reg.current());
+
+        List<Oui> more = new ArrayList<Oui>(ouis);
+        more.add(TEST_OUI);
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        OuiDataFile.writeDelta(delta, before.table(), new OuiRegistry(tempDataFile(more)).table());
+        OuiRegistry after = reg.applyDelta(new ByteArrayInputStream(delta.toByteArray()));
+        assertSame(after, reg.current());
+        assertNull(reg.getLastError());
+        assertEquals(TEST_OUI, reg.getOui(0xf0f0f0123456L));
+    }
+
+    /**
+     * Test of startWatching method, of class ReloadableOuiRegistry.
+     */
+    public void testWatch() throws Exception {
+        System.out.println("watch");
+        List<Oui> ouis = new ArrayList<Oui>();
+        ouis.add(new Oui(TestConstants.TEST_MAC_LONG & ~0xffffffL, PrefixTrie.MA_L, TestConstants.TEST_MAC_MFG));
+        File f = tempDataFile(ouis);
+        ReloadableOuiRegistry reg = new ReloadableOuiRegistry(f).startWatching();
+        try {
+            assertEquals(1, reg.size());
+            ouis.add(TEST_OUI);
+            write(f, 2, ouis);
+            long deadline = System.currentTimeMillis() + 30000;
+            while (reg.size() != 2 && System.currentTimeMillis() < deadline) Thread.sleep(50);
+            assertEquals(2, reg.size());
+            assertEquals(TEST_OUI, reg.getOui(0xf0f0f0123456L));
+        } finally {
+            reg.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.martiansoftware.macnificent;
+
+/*
+ * Copyright (C) Martian Software, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author <a href="http://martylamb.com">Marty Lamb</a>
+ */
+public class ShortNamesTest extends TestCase {
+
+    private static final String ALPHABET = "aZ.The-, \t&é1()";
+
+    public ShortNamesTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * The regex-based derivation previously used by Oui.getShortName(), kept
+     * here as the reference implementation for conformance testing.
+     */
+    private static String regexDerive(String manufacturer, int oui) {
+        String[] words = manufacturer.split("\\s+", 3);
+        int i = (words[0].equalsIgnoreCase("The")) ? 1 : 0;
+        String result = i < words.length ? words[i].replaceAll("[^a-zA-Z]*$", "").replaceAll("\\.", "") : "";
+        if (result.length() == 0) result = String.format("Unknown-%02x-%02x-%02x", (byte) (oui >>> 16), (byte) (oui >>> 8), (byte) oui);
+        return result;
+    }
+
+    /**
+     * Test of derive method against every manufacturer in the registry, of class ShortNames.
+     */
+    public void testDeriveRegistry() throws Exception {
+        System.out.println("deriveRegistry");
+        for (Oui oui : new OuiRegistry().table().ouis()) {
+            int o = Oui.hashCode(oui.getBytes());
+            assertEquals(regexDerive(oui.getManufacturer(), o), ShortNames.derive(oui.getManufacturer(), o));
+        }
+    }
+
+    /**
+     * Test of derive method against random names, of class ShortNames.
+     */
+    public void testDeriveRandom() {
+        System.out.println("deriveRandom");
+        Random r = new Random(13);
+        for (int n = 0; n < 100000; ++n) {
+            StringBuilder buf = new StringBuilder();
+            for (int i = r.nextInt(12); i > 0; --i) {
+                if (r.nextInt(4) == 0) buf.append(r.nextBoolean() ? "The" : "the ");
+                else buf.append(ALPHABET.charAt(r.nextInt(ALPHABET.length())));
+            }
+            String s = buf.toString();
+            if (s.trim().equalsIgnoreCase("The") && !s.startsWith(" ")) continue; // regex version throws
+            assertEquals("\"" + s + "\"", regexDerive(s, 0xfc0102), ShortNames.derive(s, 0xfc0102));
+        }
+        assertEquals("Unknown-00-21-9b", ShortNames.derive("The", 0x00219b));
+    }
+
+    /**
+     * Test of read and apply methods, of class ShortNames.
+     */
+    public void testRules() throws IOException {
+        System.out.println("rules");
+        ShortNames rules = ShortNames.read(new StringReader("# comment\n\n"
+                + "Hewlett Packard Enterprise = HPE\n"
+                + "  cisco systems* =Cisco  \n"
+                + "Cisco Systems, Inc = NotReached\n"));
+        assertEquals(3, rules.size());
+        assertEquals("HPE", rules.override("Hewlett Packard Enterprise"));
+        assertEquals("HPE", rules.override("hewlett packard enterprise"));
+        assertNull(rules.override("Hewlett Packard Enterprise Co."));
+        assertEquals("Cisco", rules.override("Cisco Systems, Inc"));
+        assertNull(rules.override("Cisco"));
+
+        Oui hpe = new Oui(0x001b78000000L, 24, "Hewlett Packard Enterprise");
+        Oui dell = new Oui(TestConstants.TEST_MAC_LONG, 24, TestConstants.TEST_MAC_MFG);
+        assertEquals("Hewlett", hpe.getShortName());
+        List<Oui> applied = rules.apply(Arrays.asList(hpe, dell));
+        assertEquals("HPE", applied.get(0).getShortName());
+        assertEquals(hpe, applied.get(0));
+        assertSame(dell, applied.get(1));
+
+        try {
+            ShortNames.read(new StringReader("Hewlett Packard Enterprise\n"));
+            fail("Accepted a rule without a short name.");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -32,6 +32,7 @@ public class TestConstants {
 
     public static final String TEST_MAC = "00:21:9b:07:20:74";
     public static final byte[] TEST_MAC_BYTES = {(byte) 0x00, (byte) 0x21, (byte) 0x9b, (byte) 0x07, (byte) 0x20, (byte) 0x74};
+    public static final long TEST_MAC_LONG = 0x00219b072074L;
     public static final String TEST_MAC_SHORTNAME = "Dell";
     public static final String TEST_MAC_MFG = "Dell Inc";
     public static final String TEST_MAC_FORMATTED = "Dell-07:20:74";